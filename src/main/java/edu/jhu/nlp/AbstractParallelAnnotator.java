@@ -5,9 +5,9 @@ import org.slf4j.LoggerFactory;
 
 import java.io.StringWriter;
 import java.io.PrintWriter;
+import edu.jhu.nlp.SentScheduler.SentCost;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
-import edu.jhu.pacaya.util.Threads;
 import edu.jhu.prim.util.Lambda.FnIntToVoid;
 
 public abstract class AbstractParallelAnnotator implements Annotator {
@@ -17,8 +17,8 @@ public abstract class AbstractParallelAnnotator implements Annotator {
 
     @Override
     public void annotate(final AnnoSentenceCollection sents) {
-    // Add the new predictions to each sentence.
-        Threads.forEach(0, sents.size(), new FnIntToVoid() {
+    // Add the new predictions to each sentence, starting with the most expensive.
+        SentScheduler.forEach(sents, getSentCost(), new FnIntToVoid() {
                 @Override
                 public void call(int i) {
                     try {
@@ -32,6 +32,15 @@ public abstract class AbstractParallelAnnotator implements Annotator {
 
     public abstract void annotate(AnnoSentence sent);
     
+    /**
+     * Gets the estimated cost of annotating each sentence, which determines the order in which
+     * they are annotated. Subclasses whose cost is superlinear in the sentence length should
+     * override this.
+     */
+    protected SentCost getSentCost() {
+        return SentScheduler.LINEAR;
+    }
+    
     public static void logThrowable(Logger log, Throwable t) {
         StringWriter sW = new StringWriter();
         PrintWriter pW = new PrintWriter(sW);
@@ -1,5 +1,6 @@
 package edu.jhu.nlp;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.HashSet;
 import java.util.List;
@@ -8,6 +9,8 @@ import java.util.Set;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.jhu.nlp.PipelinedAnnoExecutor.PipelinedAnnoExecutorPrm;
+import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
 import edu.jhu.nlp.features.TemplateLanguage.AT;
 
@@ -56,6 +59,59 @@ public class AnnoPipeline implements Trainable {
         }
     }
     
+    /**
+     * Annotates a stream of sentences in fixed-size batches. Each batch is passed through every
+     * annotator in the pipeline and then handed to the sink before the next batch is read, so peak
+     * memory depends on the batch size rather than the size of the corpus.
+     * 
+     * @param input The input sentences (e.g. from {@link edu.jhu.nlp.data.simple.AnnoSentenceReader#openSents}).
+     * @param batchSize The number of sentences per batch.
+     * @param sink Receives each batch once it has been annotated by all stages.
+     * @return The total number of sentences annotated.
+     */
+    public int annotate(Iterable<AnnoSentence> input, int batchSize, BatchSink sink) throws IOException {
+        if (batchSize < 1) {
+            throw new IllegalArgumentException("Batch size must be positive: " + batchSize);
+        }
+        int numSents = 0;
+        int numBatches = 0;
+        AnnoSentenceCollection batch = new AnnoSentenceCollection();
+        for (AnnoSentence sent : input) {
+            batch.add(sent);
+            if (batch.size() == batchSize) {
+                annotateBatch(batch, sink);
+                numSents += batch.size();
+                numBatches++;
+                batch = new AnnoSentenceCollection();
+            }
+        }
+        if (batch.size() > 0) {
+            annotateBatch(batch, sink);
+            numSents += batch.size();
+            numBatches++;
+        }
+        log.info(String.format("Annotated %d sentences in %d batches", numSents, numBatches));
+        return numSents;
+    }
+
+    /**
+     * Annotates a stream of sentences with each annotator running as a separate concurrent stage.
+     * See {@link PipelinedAnnoExecutor} for details.
+     */
+    public int annotatePipelined(Iterable<AnnoSentence> input, PipelinedAnnoExecutorPrm prm, BatchSink sink) throws IOException {
+        return new PipelinedAnnoExecutor(pipeline, prm).annotate(input, sink);
+    }
+
+    private void annotateBatch(AnnoSentenceCollection batch, BatchSink sink) throws IOException {
+        annotate(batch);
+        sink.accept(batch);
+    }
+    
+    /** Receives batches of annotated sentences during streaming annotation. */
+    public interface BatchSink {
+        void accept(AnnoSentenceCollection batch) throws IOException;
+    }
+    
     @Override
     public Set<AT> getAnnoTypes() {
         HashSet<AT> ats = new HashSet<>();
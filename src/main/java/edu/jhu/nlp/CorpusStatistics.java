@@ -48,6 +48,8 @@ public class CorpusStatistics implements Serializable {
         public int cutoff = 3;
         /** Cutoff for topN words. */ 
         public int topN = 800;
+        /** Whether to allow word, lemma, and cluster alphabets wider than a short (see AlphabetStore). */
+        public boolean wideAlphabets = false;
     }
 
     private static final long serialVersionUID = 1L;
@@ -90,7 +92,7 @@ public class CorpusStatistics implements Serializable {
 
     public void init(Iterable<AnnoSentence> cr, boolean initAlphabetStore) {
         if (initAlphabetStore) {
-            this.store = new AlphabetStore(cr);
+            this.store = new AlphabetStore(cr, prm.wideAlphabets);
         }      
         
         Map<String,Set<String>> predSenseSetMap = new HashMap<String,Set<String>>();
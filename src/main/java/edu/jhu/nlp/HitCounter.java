@@ -0,0 +1,113 @@
+package edu.jhu.nlp;
+
+import java.io.Serializable;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * Counts the lookups and misses of an annotator which is run by many threads at once.
+ *
+ * Each thread adds to its own counts, so the threads never contend on a shared counter. The
+ * counts of all the threads are summed when they are read, which should happen after the threads
+ * have finished (e.g. at the end of {@link AbstractParallelAnnotator#annotate(edu.jhu.nlp.data.simple.AnnoSentenceCollection)}).
+ * When they are read, the counts of threads which have terminated are folded into a total and
+ * dropped, so short-lived threads (e.g. the per-run pools of {@link PipelinedAnnoExecutor}) do not
+ * accumulate. The counts are not serialized.
+ *
+ * @author mgormley
+ */
+public class HitCounter implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static class Counts {
+        final WeakReference<Thread> owner;
+        long numLookups;
+        long numMisses;
+        Counts(Thread owner) {
+            this.owner = new WeakReference<>(owner);
+        }
+    }
+
+    // The counts of each live thread, and the total of the terminated threads. Guarded by allCounts.
+    private transient List<Counts> allCounts;
+    private transient Counts done;
+    private transient ThreadLocal<Counts> counts;
+
+    public HitCounter() {
+        init();
+    }
+
+    private void init() {
+        allCounts = new ArrayList<>();
+        done = new Counts(null);
+        counts = new ThreadLocal<Counts>() {
+            @Override
+            protected Counts initialValue() {
+                Counts c = new Counts(Thread.currentThread());
+                synchronized (allCounts) {
+                    allCounts.add(c);
+                }
+                return c;
+            }
+        };
+    }
+
+    private Object readResolve() {
+        init();
+        return this;
+    }
+
+    /** Adds to the counts of the current thread. */
+    public void add(int numLookups, int numMisses) {
+        Counts c = counts.get();
+        c.numLookups += numLookups;
+        c.numMisses += numMisses;
+    }
+
+    public long getNumLookups() {
+        synchronized (allCounts) {
+            long n = foldTerminated().numLookups;
+            for (Counts c : allCounts) {
+                n += c.numLookups;
+            }
+            return n;
+        }
+    }
+
+    public long getNumMisses() {
+        synchronized (allCounts) {
+            long n = foldTerminated().numMisses;
+            for (Counts c : allCounts) {
+                n += c.numMisses;
+            }
+            return n;
+        }
+    }
+
+    /**
+     * Moves the counts of terminated threads into the total, and returns the total. Must be called
+     * while holding the lock on allCounts.
+     */
+    private Counts foldTerminated() {
+        for (Iterator<Counts> it = allCounts.iterator(); it.hasNext(); ) {
+            Counts c = it.next();
+            Thread t = c.owner.get();
+            // A thread's writes happen-before another thread sees that it is not alive.
+            if (t == null || !t.isAlive()) {
+                done.numLookups += c.numLookups;
+                done.numMisses += c.numMisses;
+                it.remove();
+            }
+        }
+        return done;
+    }
+
+    public double getHitRate() {
+        long numLookups = getNumLookups();
+        return (double) (numLookups - getNumMisses()) / numLookups;
+    }
+
+}
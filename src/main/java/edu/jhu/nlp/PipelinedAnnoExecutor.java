@@ -0,0 +1,359 @@
+package edu.jhu.nlp;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.nlp.AnnoPipeline.BatchSink;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+
+/**
+ * Runs a sequence of annotators as a pipeline of concurrent stages. Each stage has its own pool of
+ * worker threads and receives batches of sentences from the previous stage through a bounded
+ * queue. Cheap stages (e.g. prefixes, Brown clusters) therefore overlap with expensive ones (e.g.
+ * belief propagation) and there is no barrier between stages.
+ *
+ * Batches are handed to the sink on the calling thread in the same order as they were read. The
+ * reader only admits a new batch once an earlier one has been handed to the sink, up to a fixed
+ * number of batches in flight (see {@link #getMaxBatchesInFlight()}). So a slow batch holds back
+ * the reader instead of letting finished batches pile up while they wait for it. The
+ * annotators themselves may continue to parallelize over the sentences in each batch with
+ * {@link edu.jhu.pacaya.util.Threads#forEach(int, int, edu.jhu.prim.util.Lambda.FnIntToVoid)}.
+ *
+ * A stage with several worker threads calls annotate() on the same annotator concurrently. This
+ * is only allowed for an {@link AbstractParallelAnnotator}, whose sentences are already annotated
+ * concurrently. Any other annotator gets a single worker.
+ */
+public class PipelinedAnnoExecutor {
+
+    public static class PipelinedAnnoExecutorPrm {
+        /** The number of sentences in each batch. */
+        public int batchSize = 100;
+        /** The maximum number of batches waiting in front of each stage. */
+        public int queueCapacity = 4;
+        /**
+         * The number of worker threads for each stage that does not appear in stageThreads. Stages
+         * that are not an {@link AbstractParallelAnnotator} always have one worker.
+         */
+        public int defaultStageThreads = 1;
+        /** Optional number of worker threads for each stage, indexed by position in the pipeline. */
+        public int[] stageThreads = null;
+
+        public int getNumThreads(int stage) {
+            if (stageThreads != null && stage < stageThreads.length) {
+                return stageThreads[stage];
+            }
+            return defaultStageThreads;
+        }
+    }
+
+    /** Counters for one stage of the pipeline. These may be read while the pipeline is running. */
+    public static class StageStats {
+        private final String name;
+        private final int numThreads;
+        private final BlockingQueue<Batch> queue;
+        private final AtomicLong numBatches = new AtomicLong();
+        private final AtomicLong numSents = new AtomicLong();
+        private final AtomicLong busyNanos = new AtomicLong();
+        private final AtomicLong queueDepthSum = new AtomicLong();
+        private final AtomicInteger maxQueueDepth = new AtomicInteger();
+
+        private StageStats(String name, int numThreads, BlockingQueue<Batch> queue) {
+            this.name = name;
+            this.numThreads = numThreads;
+            this.queue = queue;
+        }
+
+        private void recordTake(int depth) {
+            queueDepthSum.addAndGet(depth);
+            int max;
+            while (depth > (max = maxQueueDepth.get()) && !maxQueueDepth.compareAndSet(max, depth)) { }
+        }
+
+        private void recordBatch(int size, long nanos) {
+            numBatches.incrementAndGet();
+            numSents.addAndGet(size);
+            busyNanos.addAndGet(nanos);
+        }
+
+        public String getName() { return name; }
+        public int getNumThreads() { return numThreads; }
+        public long getNumBatches() { return numBatches.get(); }
+        public long getNumSents() { return numSents.get(); }
+        public double getBusySec() { return busyNanos.get() / 1e9; }
+        /** Gets the number of batches currently waiting in front of this stage. */
+        public int getQueueDepth() { return queue.size(); }
+        /** Gets the maximum number of batches observed waiting in front of this stage. */
+        public int getMaxQueueDepth() { return maxQueueDepth.get(); }
+
+        /** Gets the average number of batches waiting in front of this stage when a batch was taken. */
+        public double getAvgQueueDepth() {
+            long n = numBatches.get();
+            return n == 0 ? 0.0 : (double) queueDepthSum.get() / n;
+        }
+
+        /** Gets the throughput of a single worker thread, in sentences per busy second. */
+        public double getSentsPerSec() {
+            double sec = getBusySec();
+            return sec == 0 ? 0.0 : numSents.get() / sec;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("%-30s threads=%d batches=%d sents=%d busySec=%.2f sents/sec=%.2f "
+                    + "avgQueueDepth=%.2f maxQueueDepth=%d", name, numThreads, getNumBatches(), getNumSents(),
+                    getBusySec(), getSentsPerSec(), getAvgQueueDepth(), getMaxQueueDepth());
+        }
+    }
+
+    /** A batch of sentences and its position in the input. A null batch of sentences marks the end. */
+    private static class Batch {
+        final int id;
+        final AnnoSentenceCollection sents;
+        Batch(int id, AnnoSentenceCollection sents) {
+            this.id = id;
+            this.sents = sents;
+        }
+    }
+
+    private static final Batch END = new Batch(-1, null);
+    private static final Logger log = LoggerFactory.getLogger(PipelinedAnnoExecutor.class);
+
+    private final List<Annotator> stages;
+    private final PipelinedAnnoExecutorPrm prm;
+    private final List<StageStats> stats = new ArrayList<>();
+    private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+    public PipelinedAnnoExecutor(List<Annotator> stages, PipelinedAnnoExecutorPrm prm) {
+        if (prm.batchSize < 1 || prm.queueCapacity < 1) {
+            throw new IllegalArgumentException("Batch size and queue capacity must be positive");
+        }
+        this.stages = stages;
+        this.prm = prm;
+    }
+
+    /**
+     * Gets the maximum number of batches between the reader and the sink at once, including those
+     * finished out of order and waiting for an earlier batch. This is enough to fill every queue
+     * and keep every worker busy.
+     */
+    public int getMaxBatchesInFlight() {
+        int max = prm.queueCapacity * (stages.size() + 1);
+        for (int s = 0; s < stages.size(); s++) {
+            max += Math.max(1, prm.getNumThreads(s));
+        }
+        return max;
+    }
+
+    /**
+     * Annotates a stream of sentences with every stage of the pipeline.
+     *
+     * @param input The input sentences.
+     * @param sink Receives each batch, in input order, once it has passed through every stage.
+     * @return The total number of sentences annotated.
+     */
+    public int annotate(final Iterable<AnnoSentence> input, BatchSink sink) throws IOException {
+        final int numStages = stages.size();
+        // queues.get(s) holds the input to stage s. The last queue holds the output of the pipeline.
+        List<BlockingQueue<Batch>> queues = new ArrayList<>();
+        for (int s = 0; s <= numStages; s++) {
+            queues.add(new ArrayBlockingQueue<Batch>(prm.queueCapacity));
+        }
+        stats.clear();
+        List<ExecutorService> pools = new ArrayList<>();
+        ExecutorService reader = Executors.newSingleThreadExecutor(getThreadFactory("reader"));
+        pools.add(reader);
+        for (int s = 0; s < numStages; s++) {
+            Annotator anno = stages.get(s);
+            String name = s + ":" + anno.getClass().getSimpleName();
+            int numThreads = getNumWorkers(s, name);
+            StageStats st = new StageStats(name, numThreads, queues.get(s));
+            stats.add(st);
+            ExecutorService pool = Executors.newFixedThreadPool(numThreads, getThreadFactory("stage-" + name));
+            pools.add(pool);
+            AtomicInteger numActive = new AtomicInteger(numThreads);
+            for (int t = 0; t < numThreads; t++) {
+                pool.execute(new StageWorker(anno, st, queues.get(s), queues.get(s + 1), numActive));
+            }
+        }
+        final BlockingQueue<Batch> first = queues.get(0);
+        // The reader takes a permit for each batch and the sink returns it.
+        final Semaphore inFlight = new Semaphore(getMaxBatchesInFlight());
+        reader.execute(new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    int id = 0;
+                    AnnoSentenceCollection batch = new AnnoSentenceCollection();
+                    for (AnnoSentence sent : input) {
+                        batch.add(sent);
+                        if (batch.size() == prm.batchSize) {
+                            inFlight.acquire();
+                            first.put(new Batch(id++, batch));
+                            batch = new AnnoSentenceCollection();
+                        }
+                    }
+                    if (batch.size() > 0) {
+                        inFlight.acquire();
+                        first.put(new Batch(id++, batch));
+                    }
+                    first.put(END);
+                } catch (InterruptedException e) {
+                    // Shutting down.
+                } catch (Throwable t) {
+                    fail(t);
+                }
+            }
+        });
+
+        int numSents = 0;
+        try {
+            numSents = drain(queues.get(numStages), sink, inFlight);
+        } finally {
+            for (ExecutorService pool : pools) {
+                pool.shutdownNow();
+            }
+        }
+        Throwable t = error.get();
+        if (t != null) {
+            throw new RuntimeException("Pipelined annotation failed", t);
+        }
+        log.info("Pipelined annotation of " + numSents + " sentences. Stage statistics:");
+        for (StageStats st : stats) {
+            log.info(st.toString());
+        }
+        return numSents;
+    }
+
+    /**
+     * Gets the number of worker threads for a stage. Only an {@link AbstractParallelAnnotator} may
+     * be called by more than one thread at once.
+     */
+    private int getNumWorkers(int s, String name) {
+        int numThreads = Math.max(1, prm.getNumThreads(s));
+        if (numThreads > 1 && !(stages.get(s) instanceof AbstractParallelAnnotator)) {
+            log.warn("Using 1 thread instead of " + numThreads + " for stage " + name
+                    + ", since it is not an AbstractParallelAnnotator and may not be thread safe.");
+            numThreads = 1;
+        }
+        return numThreads;
+    }
+
+    /** Passes the output batches to the sink in input order, returning a permit for each. */
+    private int drain(BlockingQueue<Batch> out, BatchSink sink, Semaphore inFlight) throws IOException {
+        Map<Integer, Batch> pending = new HashMap<>();
+        int nextId = 0;
+        int numSents = 0;
+        try {
+            while (error.get() == null) {
+                Batch b = out.poll(100, TimeUnit.MILLISECONDS);
+                if (b == null) {
+                    continue;
+                } else if (b == END) {
+                    break;
+                }
+                pending.put(b.id, b);
+                while (pending.containsKey(nextId)) {
+                    Batch next = pending.remove(nextId++);
+                    sink.accept(next.sents);
+                    numSents += next.sents.size();
+                    inFlight.release();
+                }
+            }
+        } catch (InterruptedException e) {
+            fail(e);
+        }
+        if (error.get() == null && !pending.isEmpty()) {
+            fail(new IllegalStateException("Missing output batch: " + nextId));
+        }
+        return numSents;
+    }
+
+    private class StageWorker implements Runnable {
+
+        private final Annotator anno;
+        private final StageStats st;
+        private final BlockingQueue<Batch> in;
+        private final BlockingQueue<Batch> out;
+        private final AtomicInteger numActive;
+
+        public StageWorker(Annotator anno, StageStats st, BlockingQueue<Batch> in, BlockingQueue<Batch> out,
+                AtomicInteger numActive) {
+            this.anno = anno;
+            this.st = st;
+            this.in = in;
+            this.out = out;
+            this.numActive = numActive;
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (true) {
+                    Batch b = in.take();
+                    if (b == END) {
+                        if (numActive.decrementAndGet() == 0) {
+                            // The last worker to finish passes the end marker downstream.
+                            out.put(END);
+                        } else {
+                            // Let the other workers for this stage see the end marker too.
+                            in.put(END);
+                        }
+                        break;
+                    }
+                    st.recordTake(in.size());
+                    long start = System.nanoTime();
+                    anno.annotate(b.sents);
+                    st.recordBatch(b.sents.size(), System.nanoTime() - start);
+                    out.put(b);
+                }
+            } catch (InterruptedException e) {
+                // Shutting down.
+            } catch (Throwable t) {
+                fail(t);
+            }
+        }
+
+    }
+
+    private void fail(Throwable t) {
+        if (error.compareAndSet(null, t)) {
+            log.error("Pipelined annotation failed in thread " + Thread.currentThread().getName(), t);
+        }
+    }
+
+    private static ThreadFactory getThreadFactory(final String name) {
+        final AtomicInteger count = new AtomicInteger();
+        return new ThreadFactory() {
+            @Override
+            public Thread newThread(Runnable r) {
+                Thread t = new Thread(r, "pipeline-" + name + "-" + count.getAndIncrement());
+                t.setDaemon(true);
+                return t;
+            }
+        };
+    }
+
+    /** Gets the statistics for each stage of the most recent (or current) call to annotate. */
+    public List<StageStats> getStageStats() {
+        return Collections.unmodifiableList(stats);
+    }
+
+}
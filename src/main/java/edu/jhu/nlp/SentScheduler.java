@@ -0,0 +1,89 @@
+package edu.jhu.nlp;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.prim.util.Lambda.FnIntToVoid;
+
+/**
+ * Length-aware replacement for {@link Threads#forEach(int, int, FnIntToVoid)} over the sentences
+ * in a collection.
+ *
+ * The cost of annotating a sentence (e.g. dependency parsing) grows polynomially in its length, so
+ * visiting sentences in index order tends to leave a few long sentences running on one thread after
+ * every other thread has gone idle. Instead, we estimate the cost of each sentence, sort the
+ * sentences from most to least expensive, and let each worker thread repeatedly claim the next
+ * most expensive unclaimed sentence. An idle worker therefore always picks up the remaining work,
+ * and the cheap sentences at the end fill in the gaps left by the expensive ones.
+ */
+public class SentScheduler {
+
+    /** Estimates the (relative) cost of annotating a sentence. */
+    public interface SentCost {
+        double getCost(AnnoSentence sent);
+    }
+
+    /** Cost which is linear in the sentence length. */
+    public static final SentCost LINEAR = new SentCost() {
+        @Override
+        public double getCost(AnnoSentence sent) {
+            return sent.size();
+        }
+    };
+
+    private SentScheduler() { }
+
+    /**
+     * Calls fn once for each index of sents, in decreasing order of estimated cost, using the
+     * threads of the default thread pool.
+     */
+    public static void forEach(AnnoSentenceCollection sents, SentCost cost, final FnIntToVoid fn) {
+        final int[] order = getOrder(sents, cost);
+        final AtomicInteger next = new AtomicInteger(0);
+        int numWorkers = Math.max(1, Math.min(Threads.numThreads, order.length));
+        List<Callable<Object>> workers = new ArrayList<>(numWorkers);
+        for (int w = 0; w < numWorkers; w++) {
+            workers.add(new Callable<Object>() {
+                @Override
+                public Object call() {
+                    int j;
+                    while ((j = next.getAndIncrement()) < order.length) {
+                        fn.call(order[j]);
+                    }
+                    return null;
+                }
+            });
+        }
+        Threads.invokeAndAwaitAll(Threads.defaultPool, workers);
+    }
+
+    /** Gets the indices of the sentences sorted in decreasing order of estimated cost. */
+    public static int[] getOrder(AnnoSentenceCollection sents, SentCost cost) {
+        final double[] costs = new double[sents.size()];
+        Integer[] idx = new Integer[sents.size()];
+        for (int i = 0; i < costs.length; i++) {
+            costs[i] = cost.getCost(sents.get(i));
+            idx[i] = i;
+        }
+        // This sort is stable, so ties are broken by index.
+        Arrays.sort(idx, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer i, Integer j) {
+                return Double.compare(costs[j], costs[i]);
+            }
+        });
+        int[] order = new int[idx.length];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = idx[i];
+        }
+        return order;
+    }
+
+}
@@ -19,13 +19,16 @@ public class DepGraph {
     // indicates no edge. The index 0 corresponds to the virtual root node (i.e. the wall node in
     // dependency parsing). The sentence's tokens are 1-indexed. Note that the API exposes a
     // different representation where the virtual root has index -1 and the tokens are 0-indexed.
+    //
+    // Only a few tokens (e.g. the SRL predicates) are ever parents, so each row is allocated the
+    // first time it is given an edge. A null row has no edges.
     private String[][] graph;
     // The sentence length.
     private int n;
     
     public DepGraph(int n) {
         this.n = n;
-        this.graph = new String[n+1][n+1];
+        this.graph = new String[n+1][];
     }
     
     public DepGraph(SrlGraph srl) {
@@ -42,19 +45,31 @@ public class DepGraph {
 
     public String get(int p, int c) {
         checkIndices(p, c);
-        return graph[p+1][c+1];
+        String[] row = graph[p+1];
+        return (row == null) ? null : row[c+1];
     }
     
     public String set(int p, int c, String label) {
         checkIndices(p, c);
-        String prev = graph[p+1][c+1];
-        graph[p+1][c+1] = label;
+        String[] row = graph[p+1];
+        if (row == null) {
+            if (label == null) {
+                return null;
+            }
+            row = new String[n+1];
+            graph[p+1] = row;
+        }
+        String prev = row[c+1];
+        row[c+1] = label;
         return prev;
     }
         
     public SrlGraph toSrlGraph() {
         SrlGraph srl = new SrlGraph(n);
         for (int p = -1; p<n; p++) {
+            if (graph[p+1] == null) {
+                continue;
+            }
             for (int c=0; c<n; c++) {
                 String label = get(p, c);
                 if (label == null) {
@@ -0,0 +1,125 @@
+package edu.jhu.nlp.data.concrete;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.apache.thrift.TException;
+import org.apache.thrift.protocol.TCompactProtocol;
+import org.apache.thrift.transport.TIOStreamTransport;
+
+import edu.jhu.hlt.concrete.Communication;
+import edu.jhu.hlt.concrete.serialization.CompactCommunicationSerializer;
+import edu.jhu.hlt.concrete.util.ConcreteException;
+
+/**
+ * Writer of Communications to a zip or tar.gz archive, one entry per Communication.
+ *
+ * Each Communication is serialized and written as soon as it is given to
+ * {@link #write(Communication)}, so only a fixed-size output buffer is held in memory. Entries
+ * are named by the Communication ID (with a suffix if an ID is repeated) and the extension
+ * ".comm", so the archive can be read back by {@link ParallelConcreteReader}.
+ *
+ * @author mgormley
+ */
+public class ConcreteArchiveWriter implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
+    private final ZipOutputStream zos;
+    private final TarArchiveOutputStream tos;
+    private final Set<String> names = new HashSet<>();
+    private int numComms = 0;
+
+    /** Opens a writer for the given zip or tar.gz file. */
+    public ConcreteArchiveWriter(File out) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(out), BUFFER_SIZE);
+        if (ParallelConcreteReader.isZipFile(out)) {
+            zos = new ZipOutputStream(os);
+            tos = null;
+        } else if (ParallelConcreteReader.isTarGzFile(out)) {
+            zos = null;
+            tos = new TarArchiveOutputStream(new GzipCompressorOutputStream(os));
+            tos.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+        } else {
+            os.close();
+            throw new IllegalArgumentException("Expected a zip or tar.gz file: " + out);
+        }
+    }
+
+    /** Whether the file is one to which this class can write. */
+    public static boolean isArchive(File out) {
+        return ParallelConcreteReader.isZipFile(out) || ParallelConcreteReader.isTarGzFile(out);
+    }
+
+    /** Appends the Communication to the archive. */
+    public void write(Communication comm) throws IOException {
+        String name = getEntryName(comm);
+        if (zos != null) {
+            zos.putNextEntry(new ZipEntry(name));
+            writeComm(comm, zos);
+            zos.closeEntry();
+        } else {
+            // Tar entries must be preceded by their size, so the Communication is serialized first.
+            byte[] bytez;
+            try {
+                bytez = ser.toBytes(comm);
+            } catch (ConcreteException e) {
+                throw new IOException(e);
+            }
+            TarArchiveEntry te = new TarArchiveEntry(name);
+            te.setSize(bytez.length);
+            tos.putArchiveEntry(te);
+            tos.write(bytez);
+            tos.closeArchiveEntry();
+        }
+        numComms++;
+    }
+
+    private String getEntryName(Communication comm) {
+        String id = (comm.getId() != null) ? comm.getId() : "comm";
+        String name = id + ".comm";
+        for (int i=1; !names.add(name); i++) {
+            name = id + "_" + i + ".comm";
+        }
+        return name;
+    }
+
+    /** Gets the number of Communications written. */
+    public int getNumComms() {
+        return numComms;
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (zos != null) {
+            zos.close();
+        } else {
+            tos.close();
+        }
+    }
+
+    /**
+     * Serializes the Communication directly to the output stream, in the format read by
+     * {@link CompactCommunicationSerializer}. The stream is not closed.
+     */
+    public static void writeComm(Communication comm, OutputStream os) throws IOException {
+        try {
+            comm.write(new TCompactProtocol(new TIOStreamTransport(os)));
+        } catch (TException e) {
+            throw new IOException(e);
+        }
+    }
+
+}
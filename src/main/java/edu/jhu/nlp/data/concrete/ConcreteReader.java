@@ -1,19 +1,20 @@
 package edu.jhu.nlp.data.concrete;
 
-import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
-import java.util.Enumeration;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.zip.ZipEntry;
-import java.util.zip.ZipFile;
+import java.util.NoSuchElementException;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -54,6 +55,8 @@ import edu.jhu.nlp.data.conll.SrlGraph.SrlEdge;
 import edu.jhu.nlp.data.conll.SrlGraph.SrlPred;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.CompressedFiles;
+import edu.jhu.nlp.data.simple.CloseableIterable;
 import edu.jhu.nlp.sprl.BinarySprlLabelConverter;
 import edu.jhu.nlp.sprl.SprlLabelConverter;
 import edu.jhu.nlp.sprl.SprlProperties;
@@ -87,15 +90,22 @@ public class ConcreteReader {
         public String srlTool = null;
         public String sprlTool = null;
         public SprlLabelConverter sprlConverter = new BinarySprlLabelConverter(3.5);
+        /**
+         * Whether {@link ConcreteReader#openSentsFromPath(File)} should queue each Communication it
+         * reads until a {@link StreamingConcreteWriter} writes it, so that Communications none of
+         * whose sentences are kept are still written. Only set this when the sentences will be
+         * written by a {@link StreamingConcreteWriter}, which empties the queue.
+         */
+        public boolean trackComms = false;
     }
 
     private static final Logger log = LoggerFactory.getLogger(ConcreteReader.class);
 
     private CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
-    private int numEntityMentions = 0;
-    private int numOverlapingMentions = 0;
-    private int numSituationMentions = 0;
-    private int numSrlPredicates = 0;
+    private final AtomicInteger numEntityMentions = new AtomicInteger();
+    private final AtomicInteger numOverlapingMentions = new AtomicInteger();
+    private final AtomicInteger numSituationMentions = new AtomicInteger();
+    private final AtomicInteger numSrlPredicates = new AtomicInteger();
     private ConcreteReaderPrm prm;
 
     public ConcreteReader(ConcreteReaderPrm prm) {
@@ -111,10 +121,8 @@ public class ConcreteReader {
      */
     public AnnoSentenceCollection sentsFromPath(File inFile) throws IOException {
     	AnnoSentenceCollection sents;
-    	if (inFile.isDirectory()) {
-    	    sents = sentsFromDir(inFile);
-    	} else if (inFile.getName().endsWith(".zip")) {
-    	    sents = sentsFromZipFile(inFile);
+    	if (ParallelConcreteReader.isMultiCommPath(inFile)) {
+    	    sents = sentsFromMultiCommPath(inFile);
         } else {
             sents = sentsFromCommFile(inFile);
         }
@@ -125,53 +133,110 @@ public class ConcreteReader {
         return sents;
     }
 
-    public AnnoSentenceCollection sentsFromDir(File inDir) throws IOException {
-        try {
-            List<File> commFiles = edu.jhu.pacaya.util.files.QFiles.getMatchingFiles(inDir, ".+\\.comm$");
-            AnnoSentenceCollection annoSents = new AnnoSentenceCollection();
-            for (File commFile : commFiles) {
-                Communication comm = ser.fromPathString(commFile.getAbsolutePath());
-                addSentences(comm, annoSents);
+    /**
+     * Opens a stream of the AnnoSentences in the given path without loading all of them into
+     * memory. Directories, zip files, and tar.gz files are read incrementally (see
+     * {@link ParallelConcreteReader}), and a single Communication file is read in its entirety. The
+     * returned iterable can only be iterated over once, and the caller must close it.
+     * 
+     * If {@link ConcreteReaderPrm#trackComms} is set, each Communication is added to a queue
+     * shared by the source sentences (see {@link ConcreteSourceSent#getUnwrittenComms()}) before
+     * its sentences are returned.
+     */
+    public CloseableIterable<AnnoSentence> openSentsFromPath(File inFile) throws IOException {
+        final Queue<Communication> unwrittenComms = prm.trackComms ? new ConcurrentLinkedQueue<Communication>() : null;
+        if (!ParallelConcreteReader.isMultiCommPath(inFile)) {
+            AnnoSentenceCollection sents = sentsFromPath(inFile);
+            if (unwrittenComms != null) {
+                Communication comm = ((List<Communication>) sents.getSourceSents()).get(0);
+                trackComm(comm, sents, unwrittenComms);
             }
-            return annoSents;
-        } catch (ConcreteException e) {
-            throw new RuntimeException(e);
+            return new ListCloseableIterable(sents);
         }
-    }
+        final ParallelConcreteReader pcr = new ParallelConcreteReader(this, inFile);
+        return new CloseableIterable<AnnoSentence>() {
 
-    public AnnoSentenceCollection sentsFromZipFile(File zipFile) throws IOException {
-        try {
-            AnnoSentenceCollection annoSents = new AnnoSentenceCollection();
-            try (ZipFile zf = new ZipFile(zipFile)) {
-                Enumeration<? extends ZipEntry> e = zf.entries();
-                while (e.hasMoreElements()) {
-                    ZipEntry ze = e.nextElement();
-                    log.trace("Reading communication: " + ze.getName());
-                    byte[] bytez = toBytes(zf.getInputStream(ze));
-                    Communication comm = ser.fromBytes(bytez);
-                    addSentences(comm, annoSents);
-                }
+            @Override
+            public Iterator<AnnoSentence> iterator() {
+                return new Iterator<AnnoSentence>() {
+
+                    private Iterator<AnnoSentence> cur = Collections.emptyIterator();
+
+                    @Override
+                    public boolean hasNext() {
+                        while (!cur.hasNext() && pcr.hasNext()) {
+                            Pair<Communication, List<AnnoSentence>> p = pcr.next();
+                            if (unwrittenComms != null) {
+                                trackComm(p.get1(), p.get2(), unwrittenComms);
+                            }
+                            cur = p.get2().iterator();
+                        }
+                        return cur.hasNext();
+                    }
+
+                    @Override
+                    public AnnoSentence next() {
+                        if (!hasNext()) {
+                            throw new NoSuchElementException();
+                        }
+                        return cur.next();
+                    }
+
+                };
             }
-            return annoSents;
-        } catch (ConcreteException e) {
-            throw new RuntimeException(e);
+
+            @Override
+            public void close() throws IOException {
+                pcr.close();
+            }
+
+        };
+    }
+
+    /** Queues the Communication and points the source sentences of its sentences at the queue. */
+    private static void trackComm(Communication comm, List<AnnoSentence> sents, Queue<Communication> unwrittenComms) {
+        unwrittenComms.add(comm);
+        for (int i=0; i<sents.size(); i++) {
+            sents.get(i).setSourceSent(new ConcreteSourceSent(comm, i, unwrittenComms));
         }
     }
 
-    // Adapted from ThriftIO.
-    // TODO: Move to Files?
-    /** Reads an input stream into a correctly sized array of bytes. */
-    private static byte[] toBytes(InputStream input) throws IOException {
-        byte[] buffer = new byte[8192];
-        int bytesRead;
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-        while ((bytesRead = input.read(buffer)) != -1) {
-            baos.write(buffer, 0, bytesRead);
+    public AnnoSentenceCollection sentsFromDir(File inDir) throws IOException {
+        return sentsFromMultiCommPath(inDir);
+    }
+
+    public AnnoSentenceCollection sentsFromZipFile(File zipFile) throws IOException {
+        return sentsFromMultiCommPath(zipFile);
+    }
+
+    public AnnoSentenceCollection sentsFromTarGzFile(File tarGzFile) throws IOException {
+        return sentsFromMultiCommPath(tarGzFile);
+    }
+
+    /**
+     * Reads the Communications in a directory, zip file, or tar.gz file in parallel (see
+     * {@link ParallelConcreteReader}) and creates AnnoSentences from them in input order.
+     */
+    private AnnoSentenceCollection sentsFromMultiCommPath(File path) throws IOException {
+        AnnoSentenceCollection annoSents = new AnnoSentenceCollection();
+        ArrayList<Communication> comms = new ArrayList<>();
+        try (ParallelConcreteReader pcr = new ParallelConcreteReader(this, path)) {
+            while (pcr.hasNext()) {
+                Pair<Communication, List<AnnoSentence>> p = pcr.next();
+                comms.add(p.get1());
+                annoSents.addAll(p.get2());
+            }
         }
-        return baos.toByteArray();
+        annoSents.setSourceSents(comms);
+        return annoSents;
     }
 
     public AnnoSentenceCollection sentsFromCommFile(File concreteFile) throws IOException {
+        if (CompressedFiles.isCompressed(concreteFile)) {
+            try (InputStream is = CompressedFiles.newInputStream(concreteFile)) {
+                return sentsFromCommInputStream(is);
+            }
+        }
         try {
             Communication communication = ser.fromPathString(concreteFile.getAbsolutePath());
             AnnoSentenceCollection sents = sentsFromComm(communication);
@@ -202,12 +267,28 @@ public class ConcreteReader {
      * and adds it to annoSents.
      */
     protected void addSentences(Communication comm, AnnoSentenceCollection aSents) {
+        aSents.addAll(getSentences(comm));
+        // Update source sentences.
+        if (aSents.getSourceSents() == null) {
+            aSents.setSourceSents(new ArrayList<Communication>());
+        }
+        log.trace("Adding Communication in sourceSents");
+        ((ArrayList<Communication>)aSents.getSourceSents()).add(comm);
+    }
+
+    /**
+     * Converts each sentence in communication to a {@link AnnoSentence}. This method is
+     * thread-safe.
+     */
+    public List<AnnoSentence> getSentences(Communication comm) {
         List<AnnoSentence> tmpSents = new ArrayList<>();
 
         for (Section cSection : comm.getSectionList()) {
             for (Sentence cSent : cSection.getSentenceList()) {
                 Tokenization cToks = cSent.getTokenization();
-                tmpSents.add(getAnnoSentence(cToks));
+                AnnoSentence aSent = getAnnoSentence(cToks);
+                aSent.setSourceSent(new ConcreteSourceSent(comm, tmpSents.size()));
+                tmpSents.add(aSent);
             }
         }
 
@@ -228,14 +309,7 @@ public class ConcreteReader {
                 addSprlFromSituationMentions(comm, tmpSents, prm.sprlTool);
             }
         }
-
-        aSents.addAll(tmpSents);
-        // Update source sentences.
-        if (aSents.getSourceSents() == null) {
-            aSents.setSourceSents(new ArrayList<Communication>());
-        }
-        log.trace("Adding Communication in sourceSents");
-        ((ArrayList<Communication>)aSents.getSourceSents()).add(comm);
+        return tmpSents;
     }
 
     private void addNerMentionsFromEntityMentions(Communication comm, List<AnnoSentence> tmpSents, String nerTool) {
@@ -245,8 +319,8 @@ public class ConcreteReader {
             AnnoSentence aSent = tmpSents.get(i);
             List<NerMention> mentions = allMentions.get(i);
             NerMentions ner = new NerMentions(aSent.size(), mentions);
-            numEntityMentions += mentions.size();
-            numOverlapingMentions += ner.getNumOverlapping();
+            numEntityMentions.addAndGet(mentions.size());
+            numOverlapingMentions.addAndGet(ner.getNumOverlapping());
             aSent.setNamedEntities(ner);
         }
 
@@ -343,7 +417,7 @@ public class ConcreteReader {
             AnnoSentence sent = tmpSents.get(i);
             sent.setSrlGraph(g.toDepGraph());
             sent.setKnownPredsFromSrlGraph();
-            numSrlPredicates += g.getNumPreds();
+            numSrlPredicates.addAndGet(g.getNumPreds());
             sent.setKnownPairsFromSrlGraph();
             i++;
         }
@@ -505,7 +579,7 @@ public class ConcreteReader {
             aRels.add(aSm);
             aSent.setRelations(aRels);
         }
-        numSituationMentions += cSms.getMentionList().size();
+        numSituationMentions.addAndGet(cSms.getMentionList().size());
     }
 
 
@@ -0,0 +1,54 @@
+package edu.jhu.nlp.data.concrete;
+
+import java.util.Queue;
+
+import edu.jhu.hlt.concrete.Communication;
+
+/**
+ * The source of an {@link edu.jhu.nlp.data.simple.AnnoSentence} read from Concrete: the
+ * Communication and the index of the sentence within it.
+ *
+ * @author mgormley
+ */
+public class ConcreteSourceSent {
+
+    private final Communication comm;
+    private final int sentIdx;
+    private final Queue<Communication> unwrittenComms;
+
+    public ConcreteSourceSent(Communication comm, int sentIdx) {
+        this(comm, sentIdx, null);
+    }
+
+    public ConcreteSourceSent(Communication comm, int sentIdx, Queue<Communication> unwrittenComms) {
+        this.comm = comm;
+        this.sentIdx = sentIdx;
+        this.unwrittenComms = unwrittenComms;
+    }
+
+    public Communication getComm() {
+        return comm;
+    }
+
+    /** Gets the index of the sentence among all the sentences of the Communication. */
+    public int getSentIdx() {
+        return sentIdx;
+    }
+
+    /**
+     * Gets the Communications read so far, in input order, which have not yet been written by a
+     * {@link StreamingConcreteWriter}; or null if the reader does not track them (see
+     * {@link ConcreteReader.ConcreteReaderPrm#trackComms}). The queue is shared by all the
+     * sentences read from the same path.
+     */
+    public Queue<Communication> getUnwrittenComms() {
+        return unwrittenComms;
+    }
+
+    @Override
+    public String toString() {
+        // Avoid printing the entire Communication.
+        return "ConcreteSourceSent [comm=" + comm.getId() + ", sentIdx=" + sentIdx + "]";
+    }
+
+}
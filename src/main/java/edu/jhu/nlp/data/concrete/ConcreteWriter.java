@@ -2,14 +2,14 @@ package edu.jhu.nlp.data.concrete;
 
 import java.io.File;
 import java.io.IOException;
-import java.nio.file.Files;
-import java.nio.file.Paths;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
 import java.util.EnumSet;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -33,8 +33,6 @@ import edu.jhu.hlt.concrete.TokenRefSequence;
 import edu.jhu.hlt.concrete.TokenTagging;
 import edu.jhu.hlt.concrete.Tokenization;
 import edu.jhu.hlt.concrete.UUID;
-import edu.jhu.hlt.concrete.serialization.CompactCommunicationSerializer;
-import edu.jhu.hlt.concrete.util.ConcreteException;
 import edu.jhu.hlt.concrete.uuid.UUIDFactory;
 import edu.jhu.nlp.data.NerMention;
 import edu.jhu.nlp.data.NerMentions;
@@ -46,6 +44,7 @@ import edu.jhu.nlp.data.conll.SrlGraph.SrlEdge;
 import edu.jhu.nlp.data.conll.SrlGraph.SrlPred;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.CompressedFiles;
 import edu.jhu.nlp.features.TemplateLanguage.AT;
 import edu.jhu.nlp.sprl.SprlLabelConverter;
 import edu.jhu.nlp.sprl.SprlProperties;
@@ -130,30 +129,118 @@ public class ConcreteWriter {
         this.prm = prm;
     }
 
+    /**
+     * Adds the annotations to the source Communications of the sentences and writes them to a
+     * single Communication file, or to a zip or tar.gz archive with one entry per Communication.
+     *
+     * The annotations are added to the source Communications in place and removed again once each
+     * has been written, so no copy of the Communications is made.
+     */
     public void write(AnnoSentenceCollection sents, File out) throws IOException {
         List<Communication> comms = (List<Communication>) sents.getSourceSents();
-        if (out.getName().endsWith(".zip")) {
-            throw new RuntimeException("Zip file output not yet supported for Concrete");
-        } else {
-            if (comms.size() == 0) {
-                throw new RuntimeException("No Communication in sourceSents field.");
+        if (comms == null || comms.size() == 0) {
+            throw new RuntimeException("No Communication in sourceSents field.");
+        }
+        if (ConcreteArchiveWriter.isArchive(out)) {
+            // Group the sentences by the Communication they were read from, since the reader may
+            // have dropped some of the sentences of a Communication.
+            Map<Communication, AnnoSentenceCollection> commSents = new IdentityHashMap<>();
+            for (AnnoSentence sent : sents) {
+                if (!(sent.getSourceSent() instanceof ConcreteSourceSent)) {
+                    throw new IllegalStateException("Concrete archive output requires sentences read from Concrete Communications");
+                }
+                Communication comm = ((ConcreteSourceSent) sent.getSourceSent()).getComm();
+                AnnoSentenceCollection cSents = commSents.get(comm);
+                if (cSents == null) {
+                    cSents = new AnnoSentenceCollection();
+                    commSents.put(comm, cSents);
+                }
+                cSents.add(sent);
             }
+            try (ConcreteArchiveWriter aw = new ConcreteArchiveWriter(out)) {
+                for (Communication comm : comms) {
+                    AnnoSentenceCollection cSents = commSents.get(comm);
+                    TheoryCounts counts = new TheoryCounts(comm);
+                    try {
+                        addAnnotations((cSents != null) ? cSents : new AnnoSentenceCollection(), comm);
+                        aw.write(comm);
+                    } finally {
+                        counts.restore(comm);
+                    }
+                }
+            }
+        } else {
             if (comms.size() > 1) {
                 throw new RuntimeException("Multiple Communications in input cannot be written to a single Communication as output.");
             }
             Communication comm = comms.get(0);
-            comm = comm.deepCopy();
-            addAnnotations(sents, comm);
+            TheoryCounts counts = new TheoryCounts(comm);
             try {
-                CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
-                byte[] bytez =ser.toBytes(comm);
-                Files.write(Paths.get(out.getAbsolutePath()), bytez);
-            } catch (ConcreteException e) {
-                throw new RuntimeException(e);
+                addAnnotations(sents, comm);
+                writeCommFile(comm, out);
+            } finally {
+                counts.restore(comm);
             }
         }
     }
 
+    /** Writes the Communication to a single file, which is compressed if it ends in .gz or .bz2. */
+    public static void writeCommFile(Communication comm, File out) throws IOException {
+        try (OutputStream os = CompressedFiles.newOutputStream(out)) {
+            ConcreteArchiveWriter.writeComm(comm, os);
+        }
+    }
+
+    /**
+     * The number of theories in each list of a Communication to which this writer adds. This is
+     * used to remove the added annotations from a Communication after it is written.
+     */
+    private static class TheoryCounts {
+
+        private static final int NULL_LIST = -1;
+
+        private final int numEntityMentionSets;
+        private final int numSituationMentionSets;
+        private final List<Tokenization> toks;
+        private final int[] numTokenTaggings;
+        private final int[] numDepParses;
+
+        public TheoryCounts(Communication comm) {
+            numEntityMentionSets = size(comm.getEntityMentionSetList());
+            numSituationMentionSets = size(comm.getSituationMentionSetList());
+            toks = getTokenizations(comm);
+            numTokenTaggings = new int[toks.size()];
+            numDepParses = new int[toks.size()];
+            for (int i=0; i<toks.size(); i++) {
+                numTokenTaggings[i] = size(toks.get(i).getTokenTaggingList());
+                numDepParses[i] = size(toks.get(i).getDependencyParseList());
+            }
+        }
+
+        public void restore(Communication comm) {
+            comm.setEntityMentionSetList(truncate(comm.getEntityMentionSetList(), numEntityMentionSets));
+            comm.setSituationMentionSetList(truncate(comm.getSituationMentionSetList(), numSituationMentionSets));
+            for (int i=0; i<toks.size(); i++) {
+                Tokenization t = toks.get(i);
+                t.setTokenTaggingList(truncate(t.getTokenTaggingList(), numTokenTaggings[i]));
+                t.setDependencyParseList(truncate(t.getDependencyParseList(), numDepParses[i]));
+            }
+        }
+
+        private static int size(List<?> list) {
+            return (list == null) ? NULL_LIST : list.size();
+        }
+
+        private static <T> List<T> truncate(List<T> list, int size) {
+            if (size == NULL_LIST) {
+                return null;
+            }
+            list.subList(size, list.size()).clear();
+            return list;
+        }
+
+    }
+
     /** Adds the annotations from the {@link AnnoSentenceCollection} to the {@link Communication}. */
     public void addAnnotations(AnnoSentenceCollection sents, Communication comm) {
         int numSents = ConcreteUtils.getNumSents(comm);
@@ -567,12 +654,7 @@ public class ConcreteWriter {
     }
 
     private static List<Tokenization> getTokenizationsCorrespondingTo(AnnoSentenceCollection sentences, Communication from) {
-        List<Tokenization> ts = new ArrayList<Tokenization>();
-        for(Section s : from.getSectionList()) {
-            for(Sentence sent : s.getSentenceList()) {
-                ts.add(sent.getTokenization());
-            }
-        }
+        List<Tokenization> ts = getTokenizations(from);
         // make sure that the sentences line up
         if(ts.size() != sentences.size()) {
             log.error("Number of sentences don't match");
@@ -587,6 +669,16 @@ public class ConcreteWriter {
         return ts;
     }
 
+    private static List<Tokenization> getTokenizations(Communication comm) {
+        List<Tokenization> ts = new ArrayList<Tokenization>();
+        for(Section s : comm.getSectionList()) {
+            for(Sentence sent : s.getSentenceList()) {
+                ts.add(sent.getTokenization());
+            }
+        }
+        return ts;
+    }
+
     private static UUID getUUID() {
         return UUIDFactory.newUUID();
     }
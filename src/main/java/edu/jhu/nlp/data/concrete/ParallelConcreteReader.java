@@ -0,0 +1,288 @@
+package edu.jhu.nlp.data.concrete;
+
+import java.io.BufferedInputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayDeque;
+import java.util.Enumeration;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.hlt.concrete.Communication;
+import edu.jhu.hlt.concrete.serialization.CompactCommunicationSerializer;
+import edu.jhu.hlt.concrete.util.ConcreteException;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.files.QFiles;
+import edu.jhu.prim.tuple.Pair;
+
+/**
+ * Reads the Communications in a directory, zip file, or tar.gz file, and converts each to
+ * AnnoSentences with a {@link ConcreteReader}.
+ *
+ * The Communications are deserialized and converted on the default thread pool (see
+ * {@link Threads#defaultPool}). They are returned in the order in which they appear in the input.
+ * At most a fixed number of Communications are in flight at once, so the memory used does not
+ * grow with the size of the input.
+ *
+ * Zip entries and files in a directory are deserialized directly from their input streams. The
+ * entries of a tar.gz file must be read sequentially, so each is read into an array of exactly
+ * its size before being deserialized on the pool.
+ *
+ * @author mgormley
+ */
+public class ParallelConcreteReader implements Iterator<Pair<Communication, List<AnnoSentence>>>, Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(ParallelConcreteReader.class);
+
+    /** A source of Communications, each given as a task which deserializes it. */
+    private interface CommSource extends Closeable {
+        /** Gets the next task, or null if there are no more Communications. */
+        Callable<Communication> next() throws IOException;
+    }
+
+    private final ConcreteReader reader;
+    private final CommSource source;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<Pair<Communication, List<AnnoSentence>>>> inFlight = new ArrayDeque<>();
+    private boolean sourceDone = false;
+
+    /**
+     * Opens a reader for the given directory (of .comm files), zip file, or tar.gz file.
+     *
+     * @param reader The reader used to convert each Communication.
+     * @param path The path.
+     */
+    public ParallelConcreteReader(ConcreteReader reader, File path) throws IOException {
+        this(reader, path, 4 * Math.max(1, Threads.numThreads));
+    }
+
+    /**
+     * Opens a reader for the given directory (of .comm files), zip file, or tar.gz file.
+     *
+     * @param reader The reader used to convert each Communication.
+     * @param path The path.
+     * @param maxInFlight The maximum number of Communications being read or held at once.
+     */
+    public ParallelConcreteReader(ConcreteReader reader, File path, int maxInFlight) throws IOException {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.reader = reader;
+        this.maxInFlight = maxInFlight;
+        if (path.isDirectory()) {
+            source = new DirSource(path);
+        } else if (isZipFile(path)) {
+            source = new ZipSource(path);
+        } else if (isTarGzFile(path)) {
+            source = new TarGzSource(path);
+        } else {
+            throw new IllegalArgumentException("Expected a directory, zip file, or tar.gz file: " + path);
+        }
+    }
+
+    public static boolean isZipFile(File path) {
+        return path.getName().endsWith(".zip");
+    }
+
+    public static boolean isTarGzFile(File path) {
+        return path.getName().endsWith(".tar.gz") || path.getName().endsWith(".tgz");
+    }
+
+    /** Whether the path is one from which this class can read multiple Communications. */
+    public static boolean isMultiCommPath(File path) {
+        return path.isDirectory() || isZipFile(path) || isTarGzFile(path);
+    }
+
+    @Override
+    public boolean hasNext() {
+        fill();
+        return !inFlight.isEmpty();
+    }
+
+    /** Gets the next Communication and the sentences converted from it. */
+    @Override
+    public Pair<Communication, List<AnnoSentence>> next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        Future<Pair<Communication, List<AnnoSentence>>> f = inFlight.removeFirst();
+        try {
+            return f.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException(e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException(e.getCause());
+        } finally {
+            fill();
+        }
+    }
+
+    /** Submits tasks until the maximum number are in flight or the source is exhausted. */
+    private void fill() {
+        while (!sourceDone && inFlight.size() < maxInFlight) {
+            final Callable<Communication> task;
+            try {
+                task = source.next();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (task == null) {
+                sourceDone = true;
+                break;
+            }
+            Callable<Pair<Communication, List<AnnoSentence>>> convert = new Callable<Pair<Communication, List<AnnoSentence>>>() {
+                @Override
+                public Pair<Communication, List<AnnoSentence>> call() throws Exception {
+                    Communication comm = task.call();
+                    return new Pair<>(comm, reader.getSentences(comm));
+                }
+            };
+            inFlight.addLast(Threads.defaultPool.submit(convert));
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<?> f : inFlight) {
+            f.cancel(false);
+        }
+        inFlight.clear();
+        source.close();
+    }
+
+    /** Deserializes a Communication from a stream, closing the stream afterwards. */
+    private static Communication fromInputStream(InputStream is, CompactCommunicationSerializer ser) throws ConcreteException, IOException {
+        try (InputStream bis = new BufferedInputStream(is)) {
+            return ser.fromInputStream(bis);
+        }
+    }
+
+    private static class DirSource implements CommSource {
+
+        private final CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
+        private final Iterator<File> files;
+
+        public DirSource(File dir) {
+            List<File> commFiles = QFiles.getMatchingFiles(dir, ".+\\.comm$");
+            this.files = commFiles.iterator();
+        }
+
+        @Override
+        public Callable<Communication> next() {
+            if (!files.hasNext()) {
+                return null;
+            }
+            final File file = files.next();
+            return new Callable<Communication>() {
+                @Override
+                public Communication call() throws Exception {
+                    return fromInputStream(new FileInputStream(file), ser);
+                }
+            };
+        }
+
+        @Override
+        public void close() {
+            // No-op.
+        }
+
+    }
+
+    private static class ZipSource implements CommSource {
+
+        private final CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
+        private final ZipFile zf;
+        private final Enumeration<? extends ZipEntry> entries;
+
+        public ZipSource(File zipFile) throws IOException {
+            this.zf = new ZipFile(zipFile);
+            this.entries = zf.entries();
+        }
+
+        @Override
+        public Callable<Communication> next() {
+            while (entries.hasMoreElements()) {
+                final ZipEntry ze = entries.nextElement();
+                if (ze.isDirectory()) {
+                    continue;
+                }
+                log.trace("Reading communication: " + ze.getName());
+                return new Callable<Communication>() {
+                    @Override
+                    public Communication call() throws Exception {
+                        // ZipFile supports concurrent reads of different entries.
+                        return fromInputStream(zf.getInputStream(ze), ser);
+                    }
+                };
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            zf.close();
+        }
+
+    }
+
+    private static class TarGzSource implements CommSource {
+
+        private final CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
+        private final TarArchiveInputStream tis;
+
+        public TarGzSource(File tarGzFile) throws IOException {
+            this.tis = new TarArchiveInputStream(new GzipCompressorInputStream(
+                    new BufferedInputStream(new FileInputStream(tarGzFile))));
+        }
+
+        @Override
+        public Callable<Communication> next() throws IOException {
+            TarArchiveEntry te;
+            while ((te = tis.getNextTarEntry()) != null) {
+                if (!te.isFile()) {
+                    continue;
+                }
+                log.trace("Reading communication: " + te.getName());
+                if (te.getSize() > Integer.MAX_VALUE) {
+                    throw new IOException("Tar entry too large: " + te.getName());
+                }
+                final byte[] bytez = new byte[(int) te.getSize()];
+                if (IOUtils.readFully(tis, bytez) != bytez.length) {
+                    throw new IOException("Truncated tar entry: " + te.getName());
+                }
+                return new Callable<Communication>() {
+                    @Override
+                    public Communication call() throws Exception {
+                        return ser.fromBytes(bytez);
+                    }
+                };
+            }
+            return null;
+        }
+
+        @Override
+        public void close() throws IOException {
+            tis.close();
+        }
+
+    }
+
+}
@@ -0,0 +1,131 @@
+package edu.jhu.nlp.data.concrete;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.util.Queue;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.hlt.concrete.Communication;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+
+/**
+ * Streaming writer of annotated Communications.
+ *
+ * Sentences are appended in batches as they are annotated. Each sentence must have been read by
+ * {@link ConcreteReader} so that its source sentence is a {@link ConcreteSourceSent}, and the
+ * sentences of each Communication must be contiguous. Once all the sentences of a Communication
+ * have been seen, the annotations are added to it in place (see
+ * {@link ConcreteWriter#addAnnotations(AnnoSentenceCollection, Communication)}) and it is written
+ * out. Only the sentences of one Communication are buffered at a time.
+ *
+ * The output is a zip or tar.gz archive, or a single Communication file if the input contains
+ * only one Communication.
+ *
+ * Communications none of whose sentences reach this writer (e.g. because of the reader's
+ * sentence length filter) are written without annotations, in input order, as
+ * {@link ConcreteWriter#write(AnnoSentenceCollection, File)} does, but only if the reader tracks
+ * them (see {@link ConcreteReader.ConcreteReaderPrm#trackComms}) and at least one sentence reaches
+ * this writer. Communications which were never read, because the reader stopped at its maximum
+ * number of sentences, are not written.
+ *
+ * @author mgormley
+ */
+public class StreamingConcreteWriter implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(StreamingConcreteWriter.class);
+
+    private final ConcreteWriter cw;
+    private final File out;
+    private final ConcreteArchiveWriter aw;
+    // The Communication whose sentences are currently buffered, or null if none.
+    private Communication curComm;
+    private final AnnoSentenceCollection curSents = new AnnoSentenceCollection();
+    // The Communications read but not yet written, or null if the reader does not track them.
+    private Queue<Communication> unwrittenComms;
+    private int numComms = 0;
+
+    public StreamingConcreteWriter(ConcreteWriter cw, File out) throws IOException {
+        this.cw = cw;
+        this.out = out;
+        this.aw = ConcreteArchiveWriter.isArchive(out) ? new ConcreteArchiveWriter(out) : null;
+    }
+
+    /** Appends a batch of sentences. */
+    public void writeBatch(AnnoSentenceCollection sents) throws IOException {
+        for (AnnoSentence sent : sents) {
+            write(sent);
+        }
+    }
+
+    /** Appends a single sentence. */
+    public void write(AnnoSentence sent) throws IOException {
+        if (!(sent.getSourceSent() instanceof ConcreteSourceSent)) {
+            throw new IllegalStateException("Streaming Concrete output requires sentences read from Concrete Communications");
+        }
+        ConcreteSourceSent source = (ConcreteSourceSent) sent.getSourceSent();
+        Communication comm = source.getComm();
+        if (comm != curComm) {
+            flush();
+            unwrittenComms = source.getUnwrittenComms();
+            if (unwrittenComms != null) {
+                // Write the Communications with no sentences here, up to this one.
+                Communication next;
+                while ((next = unwrittenComms.poll()) != comm) {
+                    if (next == null) {
+                        throw new IllegalStateException("The sentences of each Communication must be contiguous: " + comm.getId());
+                    }
+                    writeComm(new AnnoSentenceCollection(), next);
+                }
+            }
+            curComm = comm;
+        }
+        curSents.add(sent);
+    }
+
+    /** Annotates and writes the buffered Communication. */
+    private void flush() throws IOException {
+        if (curComm == null) {
+            return;
+        }
+        writeComm(curSents, curComm);
+        curComm = null;
+        curSents.clear();
+    }
+
+    /** Adds the annotations to the Communication and writes it. */
+    private void writeComm(AnnoSentenceCollection sents, Communication comm) throws IOException {
+        cw.addAnnotations(sents, comm);
+        if (aw != null) {
+            aw.write(comm);
+        } else if (numComms == 0) {
+            ConcreteWriter.writeCommFile(comm, out);
+        } else {
+            throw new RuntimeException("Multiple Communications in input cannot be written to a single Communication as output.");
+        }
+        numComms++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            flush();
+            if (unwrittenComms != null) {
+                // Write the Communications with no sentences after the last one.
+                Communication next;
+                while ((next = unwrittenComms.poll()) != null) {
+                    writeComm(new AnnoSentenceCollection(), next);
+                }
+            }
+        } finally {
+            if (aw != null) {
+                aw.close();
+            }
+        }
+        log.info("Number of Communications written: " + numComms);
+    }
+
+}
@@ -22,21 +22,53 @@ import edu.jhu.nlp.data.simple.CloseableIterable;
 public class CoNLL02Reader implements CloseableIterable<CoNLL02Sentence>, Iterator<CoNLL02Sentence> {
 
     private CoNLL02Sentence sentence;
-    private BufferedReader reader;
+    private ConllLineScanner scanner;
 
     public CoNLL02Reader(File file) throws IOException {
         this(new FileInputStream(file));
     }
 
     public CoNLL02Reader(InputStream inputStream) throws UnsupportedEncodingException {
-        this(new BufferedReader(new InputStreamReader(inputStream, "iso-8859-1")));
+        this(new ConllLineScanner(new InputStreamReader(inputStream, "iso-8859-1")));
     }
     
     public CoNLL02Reader(BufferedReader reader) {
-        this.reader = reader;
+        this(new ConllLineScanner(reader));
+    }
+
+    public CoNLL02Reader(ConllLineScanner scanner) {
+        this.scanner = scanner;
         next();
     }
 
+    /**
+     * Reads the next sentence from the scanner.
+     *
+     * @return The sentence, or null if there are no more sentences.
+     */
+    public static CoNLL02Sentence readCoNLL02Sentence(ConllLineScanner scanner) throws IOException {
+        // The tokens for one sentence.
+        List<CoNLL02Token> tokens = new ArrayList<CoNLL02Token>();
+        while (scanner.nextLine()) {
+            if (scanner.isBlank()) {
+                if (tokens.size() == 0) {
+                    // Skip repeated blank lines between sentences.
+                    continue;
+                }
+                // End of sentence marker.
+                break;
+            } else {
+                // Regular token.
+                tokens.add(new CoNLL02Token(scanner));
+            }
+        }
+        if (tokens.size() > 0) {
+            return new CoNLL02Sentence(tokens);
+        } else {
+            return null;
+        }
+    }
+
     public static CoNLL02Sentence readCoNLL02Sentence(BufferedReader reader) throws IOException {
         // The current token.
         String line;
@@ -68,7 +100,7 @@ public class CoNLL02Reader implements CloseableIterable<CoNLL02Sentence>, Iterat
     public CoNLL02Sentence next() {
         try {
             CoNLL02Sentence curSent = sentence;
-            sentence = readCoNLL02Sentence(reader);
+            sentence = readCoNLL02Sentence(scanner);
             return curSent;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -86,7 +118,7 @@ public class CoNLL02Reader implements CloseableIterable<CoNLL02Sentence>, Iterat
     }
 
     public void close() throws IOException {
-        reader.close();
+        scanner.close();
     }
 
     public List<CoNLL02Sentence> readAll() {
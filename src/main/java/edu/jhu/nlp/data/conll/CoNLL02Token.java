@@ -43,6 +43,13 @@ public class CoNLL02Token {
         ne = splits[2].trim();
     }
     
+    /** Reads the token from the current line of the scanner. */
+    public CoNLL02Token(ConllLineScanner scanner) {
+        word = scanner.nextString();
+        pos = scanner.nextString();
+        ne = scanner.nextString();
+    }
+
     public CoNLL02Token(String word, String pos, String ne) {
         super();
         this.word = word;
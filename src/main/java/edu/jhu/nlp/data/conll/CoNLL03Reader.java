@@ -22,21 +22,53 @@ import edu.jhu.nlp.data.simple.CloseableIterable;
 public class CoNLL03Reader implements CloseableIterable<CoNLL03Sentence>, Iterator<CoNLL03Sentence> {
 
     private CoNLL03Sentence sentence;
-    private BufferedReader reader;
+    private ConllLineScanner scanner;
 
     public CoNLL03Reader(File file) throws IOException {
         this(new FileInputStream(file));
     }
 
     public CoNLL03Reader(InputStream inputStream) throws UnsupportedEncodingException {
-        this(new BufferedReader(new InputStreamReader(inputStream, "iso-8859-1")));
+        this(new ConllLineScanner(new InputStreamReader(inputStream, "iso-8859-1")));
     }
     
     public CoNLL03Reader(BufferedReader reader) {
-        this.reader = reader;
+        this(new ConllLineScanner(reader));
+    }
+
+    public CoNLL03Reader(ConllLineScanner scanner) {
+        this.scanner = scanner;
         next();
     }
 
+    /**
+     * Reads the next sentence from the scanner.
+     *
+     * @return The sentence, or null if there are no more sentences.
+     */
+    public static CoNLL03Sentence readCoNLL03Sentence(ConllLineScanner scanner) throws IOException {
+        // The tokens for one sentence.
+        List<CoNLL03Token> tokens = new ArrayList<CoNLL03Token>();
+        while (scanner.nextLine()) {
+            if (scanner.isBlank()) {
+                if (tokens.size() == 0) {
+                    // Skip repeated blank lines between sentences.
+                    continue;
+                }
+                // End of sentence marker.
+                break;
+            } else {
+                // Regular token.
+                tokens.add(new CoNLL03Token(scanner));
+            }
+        }
+        if (tokens.size() > 0) {
+            return new CoNLL03Sentence(tokens);
+        } else {
+            return null;
+        }
+    }
+
     public static CoNLL03Sentence readCoNLL03Sentence(BufferedReader reader) throws IOException {
         // The current token.
         String line;
@@ -68,7 +100,7 @@ public class CoNLL03Reader implements CloseableIterable<CoNLL03Sentence>, Iterat
     public CoNLL03Sentence next() {
         try {
             CoNLL03Sentence curSent = sentence;
-            sentence = readCoNLL03Sentence(reader);
+            sentence = readCoNLL03Sentence(scanner);
             return curSent;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -86,7 +118,7 @@ public class CoNLL03Reader implements CloseableIterable<CoNLL03Sentence>, Iterat
     }
 
     public void close() throws IOException {
-        reader.close();
+        scanner.close();
     }
 
     public List<CoNLL03Sentence> readAll() {
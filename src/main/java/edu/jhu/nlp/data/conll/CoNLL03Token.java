@@ -46,6 +46,14 @@ public class CoNLL03Token {
         ne= splits[3].trim();
     }
     
+    /** Reads the token from the current line of the scanner. */
+    public CoNLL03Token(ConllLineScanner scanner) {
+        word = scanner.nextString();
+        pos = scanner.nextString();
+        chunk = scanner.nextString();
+        ne = scanner.nextString();
+    }
+
     public CoNLL03Token(String word, String pos, String chunk, String ne) {
         super();
         this.word = word;
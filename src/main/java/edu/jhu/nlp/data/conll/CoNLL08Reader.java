@@ -22,21 +22,53 @@ import edu.jhu.nlp.data.simple.CloseableIterable;
 public class CoNLL08Reader implements CloseableIterable<CoNLL08Sentence>, Iterator<CoNLL08Sentence> {
 
     private CoNLL08Sentence sentence;
-    private BufferedReader reader;
+    private ConllLineScanner scanner;
 
     public CoNLL08Reader(File file) throws IOException {
         this(new FileInputStream(file));
     }
 
     public CoNLL08Reader(InputStream inputStream) throws UnsupportedEncodingException {
-        this(new BufferedReader(new InputStreamReader(inputStream, "UTF-8")));
+        this(new ConllLineScanner(new InputStreamReader(inputStream, "UTF-8")));
     }
     
     public CoNLL08Reader(BufferedReader reader) {
-        this.reader = reader;
+        this(new ConllLineScanner(reader));
+    }
+
+    public CoNLL08Reader(ConllLineScanner scanner) {
+        this.scanner = scanner;
         next();
     }
 
+    /**
+     * Reads the next sentence from the scanner.
+     *
+     * @return The sentence, or null if there are no more sentences.
+     */
+    public static CoNLL08Sentence readCoNLL08Sentence(ConllLineScanner scanner) throws IOException {
+        // The tokens for one sentence.
+        List<CoNLL08Token> tokens = new ArrayList<CoNLL08Token>();
+        while (scanner.nextLine()) {
+            if (scanner.isBlank()) {
+                if (tokens.size() == 0) {
+                    // Skip repeated blank lines between sentences.
+                    continue;
+                }
+                // End of sentence marker.
+                break;
+            } else {
+                // Regular token.
+                tokens.add(new CoNLL08Token(scanner));
+            }
+        }
+        if (tokens.size() > 0) {
+            return new CoNLL08Sentence(tokens);
+        } else {
+            return null;
+        }
+    }
+
     public static CoNLL08Sentence readCoNLL08Sentence(BufferedReader reader) throws IOException {
         // The current token.
         String line;
@@ -68,8 +100,8 @@ public class CoNLL08Reader implements CloseableIterable<CoNLL08Sentence>, Iterat
     public CoNLL08Sentence next() {
         try {
             CoNLL08Sentence curSent = sentence;
-            sentence = readCoNLL08Sentence(reader);
-            if (curSent != null) { curSent.intern(); }
+            sentence = readCoNLL08Sentence(scanner);
+            // The scanner has already interned the strings of curSent.
             return curSent;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -87,7 +119,7 @@ public class CoNLL08Reader implements CloseableIterable<CoNLL08Sentence>, Iterat
     }
 
     public void close() throws IOException {
-        reader.close();
+        scanner.close();
     }
 
     public List<CoNLL08Sentence> readAll() {
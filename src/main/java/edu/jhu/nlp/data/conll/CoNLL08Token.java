@@ -86,6 +86,22 @@ public class CoNLL08Token {
         apreds = new ArrayList<String>(Arrays.asList(Arrays.copyOfRange(splits, 11, splits.length)));
     }
     
+    /** Reads the token from the current line of the scanner. */
+    public CoNLL08Token(ConllLineScanner scanner) {
+        id = scanner.nextInt();
+        form = scanner.nextString();
+        lemma = scanner.nextOptString();
+        gpos = scanner.nextOptString();
+        ppos = scanner.nextOptString();
+        splitForm = scanner.nextOptString();
+        splitLemma = scanner.nextOptString();
+        splitPpos = scanner.nextOptString();
+        head = scanner.nextInt();
+        deprel = scanner.nextOptString();
+        pred = scanner.nextOptString();
+        apreds = scanner.nextStrings();
+    }
+
     public CoNLL08Token(int id, String form, String lemma, String gpos, String pos, String splitForm,
             String splitLemma, String pposs, int head, String deprel, String pred, List<String> apreds) {
         super();
@@ -22,21 +22,53 @@ import edu.jhu.nlp.data.simple.CloseableIterable;
 public class CoNLL09Reader implements CloseableIterable<CoNLL09Sentence>, Iterator<CoNLL09Sentence> {
 
     private CoNLL09Sentence sentence;
-    private BufferedReader reader;
+    private ConllLineScanner scanner;
 
     public CoNLL09Reader(File file) throws IOException {
         this(new FileInputStream(file));
     }
 
     public CoNLL09Reader(InputStream inputStream) throws UnsupportedEncodingException {
-        this(new BufferedReader(new InputStreamReader(inputStream, "UTF-8")));
+        this(new ConllLineScanner(new InputStreamReader(inputStream, "UTF-8")));
     }
     
     public CoNLL09Reader(BufferedReader reader) {
-        this.reader = reader;
+        this(new ConllLineScanner(reader));
+    }
+
+    public CoNLL09Reader(ConllLineScanner scanner) {
+        this.scanner = scanner;
         next();
     }
 
+    /**
+     * Reads the next sentence from the scanner.
+     *
+     * @return The sentence, or null if there are no more sentences.
+     */
+    public static CoNLL09Sentence readCoNLL09Sentence(ConllLineScanner scanner) throws IOException {
+        // The tokens for one sentence.
+        List<CoNLL09Token> tokens = new ArrayList<CoNLL09Token>();
+        while (scanner.nextLine()) {
+            if (scanner.isBlank()) {
+                if (tokens.size() == 0) {
+                    // Skip repeated blank lines between sentences.
+                    continue;
+                }
+                // End of sentence marker.
+                break;
+            } else {
+                // Regular token.
+                tokens.add(new CoNLL09Token(scanner));
+            }
+        }
+        if (tokens.size() > 0) {
+            return new CoNLL09Sentence(tokens);
+        } else {
+            return null;
+        }
+    }
+
     public static CoNLL09Sentence readCoNLL09Sentence(BufferedReader reader) throws IOException {
         // The current token.
         String line;
@@ -68,8 +100,8 @@ public class CoNLL09Reader implements CloseableIterable<CoNLL09Sentence>, Iterat
     public CoNLL09Sentence next() {
         try {
             CoNLL09Sentence curSent = sentence;
-            sentence = readCoNLL09Sentence(reader);
-            if (curSent != null) { curSent.intern(); }
+            sentence = readCoNLL09Sentence(scanner);
+            // The scanner has already interned the strings of curSent.
             return curSent;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -87,7 +119,7 @@ public class CoNLL09Reader implements CloseableIterable<CoNLL09Sentence>, Iterat
     }
 
     public void close() throws IOException {
-        reader.close();
+        scanner.close();
     }
 
     public List<CoNLL09Sentence> readAll() {
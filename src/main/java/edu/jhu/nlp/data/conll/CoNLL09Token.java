@@ -97,6 +97,25 @@ public class CoNLL09Token {
         apreds = new ArrayList<String>(Arrays.asList(Arrays.copyOfRange(splits, 14, splits.length)));
     }
 
+    /** Reads the token from the current line of the scanner. */
+    public CoNLL09Token(ConllLineScanner scanner) {
+        id = scanner.nextInt();
+        form = scanner.nextString();
+        lemma = scanner.nextString();
+        plemma = scanner.nextString();
+        pos = scanner.nextOptString();
+        ppos = scanner.nextOptString();
+        feat = scanner.nextFeats();
+        pfeat = scanner.nextFeats();
+        head = scanner.nextOptInt(-1);
+        phead = scanner.nextOptInt(-1);
+        deprel = scanner.nextOptString();
+        pdeprel = scanner.nextOptString();
+        fillpred = (scanner.nextOptString() != null);
+        pred = scanner.nextOptString();
+        apreds = scanner.nextStrings();
+    }
+
     public CoNLL09Token(int id, String form, String lemma, String plemma,
             String pos, String ppos, List<String> feat, List<String> pfeat,
             int head, int phead, String deprel, String pdeprel,
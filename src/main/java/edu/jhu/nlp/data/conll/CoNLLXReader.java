@@ -9,6 +9,7 @@ import java.io.InputStreamReader;
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 
 import edu.jhu.nlp.data.simple.CloseableIterable;
 
@@ -21,21 +22,53 @@ import edu.jhu.nlp.data.simple.CloseableIterable;
 public class CoNLLXReader implements CloseableIterable<CoNLLXSentence>, Iterator<CoNLLXSentence> {
 
     private CoNLLXSentence sentence;
-    private BufferedReader reader;
+    private ConllLineScanner scanner;
 
     public CoNLLXReader(File file) throws IOException {
         this(new FileInputStream(file));
     }
 
     public CoNLLXReader(InputStream inputStream) throws UnsupportedEncodingException {
-        this(new BufferedReader(new InputStreamReader(inputStream, "UTF-8")));
+        this(new ConllLineScanner(new InputStreamReader(inputStream, "UTF-8")));
     }
     
     public CoNLLXReader(BufferedReader reader) {
-        this.reader = reader;
+        this(new ConllLineScanner(reader));
+    }
+
+    public CoNLLXReader(ConllLineScanner scanner) {
+        this.scanner = scanner;
         next();
     }
 
+    /**
+     * Reads the next sentence from the scanner.
+     *
+     * @return The sentence, or null if there are no more sentences.
+     */
+    public static CoNLLXSentence readCoNLLXSentence(ConllLineScanner scanner) throws IOException {
+        // The tokens for one sentence.
+        List<CoNLLXToken> tokens = new ArrayList<CoNLLXToken>();
+        while (scanner.nextLine()) {
+            if (scanner.isBlank()) {
+                if (tokens.size() == 0) {
+                    // Skip repeated blank lines between sentences.
+                    continue;
+                }
+                // End of sentence marker.
+                break;
+            } else {
+                // Regular token.
+                tokens.add(new CoNLLXToken(scanner));
+            }
+        }
+        if (tokens.size() > 0) {
+            return new CoNLLXSentence(tokens);
+        } else {
+            return null;
+        }
+    }
+
     public static CoNLLXSentence readCoNLLXSentence(BufferedReader reader) throws IOException {
         // The current token.
         String line;
@@ -68,8 +101,8 @@ public class CoNLLXReader implements CloseableIterable<CoNLLXSentence>, Iterator
     public CoNLLXSentence next() {
         try {
             CoNLLXSentence curSent = sentence;
-            sentence = readCoNLLXSentence(reader);
-            if (curSent != null) { curSent.intern(); }
+            sentence = readCoNLLXSentence(scanner);
+            // The scanner has already interned the strings of curSent.
             return curSent;
         } catch (IOException e) {
             throw new RuntimeException(e);
@@ -87,7 +120,7 @@ public class CoNLLXReader implements CloseableIterable<CoNLLXSentence>, Iterator
     }
 
     public void close() throws IOException {
-        reader.close();
+        scanner.close();
     }
 
 }
\ No newline at end of file
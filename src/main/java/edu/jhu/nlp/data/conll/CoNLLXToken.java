@@ -79,6 +79,20 @@ public class CoNLLXToken {
         pdeprel = fromUnderscoreString(splits[9]);
     }
     
+    /** Reads the token from the current line of the scanner. */
+    public CoNLLXToken(ConllLineScanner scanner) {
+        id = scanner.nextInt();
+        form = scanner.nextString();
+        lemma = scanner.nextOptString();
+        cpostag = scanner.nextOptString();
+        postag = scanner.nextString();
+        feats = scanner.nextFeats();
+        head = scanner.nextInt();
+        deprel = scanner.nextString();
+        phead = scanner.nextOptInt(-1);
+        pdeprel = scanner.nextOptString();
+    }
+
     public CoNLLXToken(int id, String form, String lemma, String cpostag,
             String postag, List<String> feats, int head, String deprel,
             int phead, String pdeprel) {
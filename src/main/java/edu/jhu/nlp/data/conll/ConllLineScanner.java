@@ -0,0 +1,255 @@
+package edu.jhu.nlp.data.conll;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import edu.jhu.nlp.data.simple.StringInterner;
+
+/**
+ * Scanner of the whitespace-separated columns of a CoNLL formatted file.
+ *
+ * The input is read in large blocks into a reusable character buffer, and the lines and columns
+ * are found by scanning that buffer directly: no regular expressions are used and no
+ * {@link String} is created for a line. Each string column is looked up in a
+ * {@link StringInterner} straight from the buffer, so a new string is only allocated the first
+ * time a value is seen. Integer columns are parsed without allocating at all.
+ *
+ * Columns are separated by one or more whitespace characters, as with a split on "\\s+", except
+ * that leading whitespace on a line is ignored. A line is blank if it contains only whitespace.
+ *
+ * @author mgormley
+ */
+public class ConllLineScanner implements Closeable {
+
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private final Reader reader;
+    private final StringInterner interner;
+    private char[] buf = new char[BUFFER_SIZE];
+    // The unconsumed input is buf[pos, limit).
+    private int pos = 0;
+    private int limit = 0;
+    private boolean eof = false;
+    // The current line is buf[lineStart, lineEnd), and col is the scanning position within it.
+    private int lineStart = 0;
+    private int lineEnd = 0;
+    private int col = 0;
+    // The most recently scanned column is buf[colStart, colEnd).
+    private int colStart = 0;
+    private int colEnd = 0;
+    private int lineNum = 0;
+
+    public ConllLineScanner(Reader reader) {
+        this(reader, StringInterner.getShared());
+    }
+
+    public ConllLineScanner(Reader reader, StringInterner interner) {
+        this.reader = reader;
+        this.interner = interner;
+    }
+
+    /**
+     * Advances to the next line.
+     *
+     * @return True if there was another line, false at the end of the input.
+     */
+    public boolean nextLine() throws IOException {
+        int i = pos;
+        while (true) {
+            for (; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    setLine(pos, i);
+                    pos = i + 1;
+                    return true;
+                }
+            }
+            if (eof) {
+                break;
+            }
+            // Move the partial line to the front of the buffer, growing it if the line fills it.
+            int n = limit - pos;
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, n);
+            } else if (n == buf.length) {
+                buf = Arrays.copyOf(buf, buf.length * 2);
+            }
+            i -= pos;
+            pos = 0;
+            limit = n;
+            int r = reader.read(buf, limit, buf.length - limit);
+            if (r < 0) {
+                eof = true;
+            } else {
+                limit += r;
+            }
+        }
+        if (pos < limit) {
+            // Last line, without a trailing newline.
+            setLine(pos, limit);
+            pos = limit;
+            return true;
+        }
+        return false;
+    }
+
+    private void setLine(int start, int end) {
+        if (end > start && buf[end - 1] == '\r') {
+            end--;
+        }
+        lineStart = start;
+        lineEnd = end;
+        col = start;
+        colStart = colEnd = start;
+        lineNum++;
+    }
+
+    /** Whether the current line contains only whitespace. */
+    public boolean isBlank() {
+        for (int i = lineStart; i < lineEnd; i++) {
+            if (!isWhitespace(buf[i])) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Whether there is another column on the current line. */
+    public boolean hasNextColumn() {
+        skipWhitespace();
+        return col < lineEnd;
+    }
+
+    /** Gets the next column as an interned string. */
+    public String nextString() {
+        nextColumn();
+        return interner.intern(buf, colStart, colEnd - colStart);
+    }
+
+    /** Gets the next column as an interned string, or null if it is an underscore. */
+    public String nextOptString() {
+        nextColumn();
+        if (isUnderscore()) {
+            return null;
+        }
+        return interner.intern(buf, colStart, colEnd - colStart);
+    }
+
+    /** Gets the next column as an integer. */
+    public int nextInt() {
+        nextColumn();
+        return parseInt(colStart, colEnd);
+    }
+
+    /** Gets the next column as an integer, or the default value if it is an underscore. */
+    public int nextOptInt(int defaultVal) {
+        nextColumn();
+        if (isUnderscore()) {
+            return defaultVal;
+        }
+        return parseInt(colStart, colEnd);
+    }
+
+    /**
+     * Gets the next column as a list of features separated by vertical bars, or an empty list if
+     * it is an underscore. The features are interned.
+     */
+    public List<String> nextFeats() {
+        nextColumn();
+        if (isUnderscore()) {
+            return Collections.emptyList();
+        }
+        ArrayList<String> feats = new ArrayList<String>();
+        int start = colStart;
+        for (int i = colStart; i <= colEnd; i++) {
+            if (i == colEnd || buf[i] == '|') {
+                feats.add(interner.intern(buf, start, i - start));
+                start = i + 1;
+            }
+        }
+        // Drop trailing empty features, as with String.split().
+        while (feats.size() > 0 && feats.get(feats.size() - 1).isEmpty()) {
+            feats.remove(feats.size() - 1);
+        }
+        return feats;
+    }
+
+    /** Gets all the remaining columns on the current line as interned strings. */
+    public ArrayList<String> nextStrings() {
+        ArrayList<String> strs = new ArrayList<String>();
+        while (hasNextColumn()) {
+            strs.add(nextString());
+        }
+        return strs;
+    }
+
+    /** Gets the current line as a string (e.g. for error messages). */
+    public String getLine() {
+        return new String(buf, lineStart, lineEnd - lineStart);
+    }
+
+    /** Gets the 1-indexed number of the current line. */
+    public int getLineNum() {
+        return lineNum;
+    }
+
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+
+    private void nextColumn() {
+        skipWhitespace();
+        if (col >= lineEnd) {
+            throw new IllegalStateException("Line " + lineNum + " is incomplete: " + getLine());
+        }
+        colStart = col;
+        while (col < lineEnd && !isWhitespace(buf[col])) {
+            col++;
+        }
+        colEnd = col;
+    }
+
+    private void skipWhitespace() {
+        while (col < lineEnd && isWhitespace(buf[col])) {
+            col++;
+        }
+    }
+
+    private boolean isUnderscore() {
+        return colEnd - colStart == 1 && buf[colStart] == '_';
+    }
+
+    private int parseInt(int start, int end) {
+        int i = start;
+        boolean neg = false;
+        if (i < end && (buf[i] == '-' || buf[i] == '+')) {
+            neg = (buf[i] == '-');
+            i++;
+        }
+        // Longer values might overflow, so leave them to the library.
+        if (i == end || end - i > 9) {
+            return Integer.parseInt(new String(buf, start, end - start));
+        }
+        int val = 0;
+        for (; i < end; i++) {
+            int d = buf[i] - '0';
+            if (d < 0 || d > 9) {
+                throw new NumberFormatException("For input string: \"" + new String(buf, start, end - start)
+                        + "\" on line " + lineNum);
+            }
+            val = val * 10 + d;
+        }
+        return neg ? -val : val;
+    }
+
+    /** Whether the character matches the regular expression "\\s". */
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
+    }
+
+}
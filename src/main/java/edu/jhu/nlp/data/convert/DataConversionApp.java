@@ -5,6 +5,7 @@ import org.apache.commons.cli.ParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
 import edu.jhu.nlp.data.simple.CorpusHandler;
 import edu.jhu.pacaya.util.cli.ArgParser;
 
@@ -42,6 +43,9 @@ public class DataConversionApp {
         } else {
             log.info("using gold syntax from input");
         }
+        if (CorpusHandler.trainTypeOut == DatasetType.BINARY) {
+            log.info("Binary output keeps only the token-level columns: words, lemmas, POS, CPOS, clusters, feats, deprels, parents");
+        }
         corpus.getTrainGold();
         corpus.writeTrainGold();
     }
@@ -1,17 +1,21 @@
 package edu.jhu.nlp.data.simple;
 
 import java.io.Serializable;
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.jhu.pacaya.util.Threads;
 import edu.jhu.pacaya.util.collections.QLists;
 import edu.jhu.prim.Primitives;
 import edu.jhu.prim.bimap.CountingIntObjectBimap;
 import edu.jhu.prim.bimap.IntObjectBimap;
 import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.util.Lambda.FnIntToVoid;
 import edu.jhu.prim.util.SafeCast;
+import edu.jhu.prim.util.Timer;
 
 public class AlphabetStore implements Serializable {
     
@@ -75,6 +79,10 @@ public class AlphabetStore implements Serializable {
     
     private final int wordTopNCutoff;
     
+    // Whether the word, lemma and cluster alphabets may exceed the maximum of a short. If so, they
+    // are sorted by descending count, so that only the rarest types have IDs beyond a short.
+    private final boolean wide;
+    
     private static class CountingIntObjectBimapWithoutIdxLookup<T> extends CountingIntObjectBimap<T> {
 
         private static final long serialVersionUID = 1L;
@@ -88,6 +96,18 @@ public class AlphabetStore implements Serializable {
     }
     
     public AlphabetStore(Iterable<AnnoSentence> sents) {
+        this(sents, false);
+    }
+    
+    /**
+     * Constructs the alphabets from the given sentences.
+     * 
+     * @param sents The sentences.
+     * @param allowWide Whether to allow the word, lemma and cluster alphabets to exceed the
+     *            maximum of a short, rather than applying a count cutoff. The wide mode is only
+     *            used if the vocabulary does not fit in a short.
+     */
+    public AlphabetStore(Iterable<AnnoSentence> sents, boolean allowWide) {
         words = new CountingIntObjectBimapWithoutIdxLookup<>();
         lcWords = new CountingIntObjectBimapWithoutIdxLookup<>();
         prefixes = new CountingIntObjectBimapWithoutIdxLookup<>();
@@ -102,25 +122,59 @@ public class AlphabetStore implements Serializable {
         srlPredSenses = new CountingIntObjectBimapWithoutIdxLookup<>();
         srlArgs = new CountingIntObjectBimapWithoutIdxLookup<>();
         
-        // Construct the IntAnnoSentences only for counting.
+        // Construct the IntAnnoSentences only for counting, reusing a single scratch object.
+        IntAnnoSentence scratch = null;
         for (AnnoSentence sent : sents) {
-            new IntAnnoSentence(sent, this);
+            if (scratch == null) {
+                scratch = new IntAnnoSentence(sent, this);
+            } else {
+                scratch.reset(sent, this);
+            }
         }
 
-        // Apply the count cutoffs.
-        words = applyCountCutoffToGetAlphabet("word", MAX_WORD, words);
-        lcWords = applyCountCutoffToGetAlphabet("lcWord", MAX_WORD, lcWords);
-        prefixes = applyCountCutoffToGetAlphabet("prefix", MAX_PREFIX, prefixes);
-        suffixes = applyCountCutoffToGetAlphabet("suffix", MAX_SUFFIX, suffixes);
-        lemmas = applyCountCutoffToGetAlphabet("lemma", MAX_LEMMA, lemmas);
-        posTags = applyCountCutoffToGetAlphabet("pos", MAX_POS, posTags);
-        cposTags = applyCountCutoffToGetAlphabet("cpos", MAX_CPOS, cposTags);
-        clusters = applyCountCutoffToGetAlphabet("cluster", MAX_CLUSTER, clusters);
-        clusterPrefixes = applyCountCutoffToGetAlphabet("clusterPrefix", MAX_CLUSTER, clusterPrefixes);
-        feats = applyCountCutoffToGetAlphabet("feat", MAX_FEAT, feats);
-        deprels= applyCountCutoffToGetAlphabet("deprel", MAX_DEPREL, deprels);
-        srlPredSenses = applyCountCutoffToGetAlphabet("srlPredSense", MAX_SRL_PRED_SENSE, srlPredSenses);
-        srlArgs = applyCountCutoffToGetAlphabet("srlArgs", MAX_SRL_ARG, srlArgs);
+        // Pick the width from the vocabulary sizes.
+        wide = allowWide && !(fitsInShort(words) && fitsInShort(lcWords) && fitsInShort(lemmas) && fitsInShort(clusters));
+        if (wide) {
+            log.info("Using wide alphabets for words, lemmas, and clusters.");
+        }
+        
+        // Apply the count cutoffs, building each alphabet in parallel.
+        final List<CountingIntObjectBimap<String>> counters = QLists.getList(words, lcWords, prefixes, suffixes,
+                lemmas, posTags, cposTags, clusters, clusterPrefixes, feats, deprels, srlPredSenses, srlArgs);
+        final String[] names = { "word", "lcWord", "prefix", "suffix", "lemma", "pos", "cpos", "cluster",
+                "clusterPrefix", "feat", "deprel", "srlPredSense", "srlArgs" };
+        final int[] maxIdxs = { MAX_WORD, MAX_WORD, MAX_PREFIX, MAX_SUFFIX, MAX_LEMMA, MAX_POS, MAX_CPOS,
+                MAX_CLUSTER, MAX_CLUSTER, MAX_FEAT, MAX_DEPREL, MAX_SRL_PRED_SENSE, MAX_SRL_ARG };
+        final boolean[] sortByCount = new boolean[counters.size()];
+        if (wide) {
+            for (int i : new int[]{ 0, 1, 4, 7 }) {
+                // Words, lowercased words, lemmas, and clusters.
+                maxIdxs[i] = INT_MAX_IDX;
+                sortByCount[i] = true;
+            }
+        }
+        @SuppressWarnings({"unchecked", "rawtypes"})
+        final CountingIntObjectBimap<String>[] alphabets = new CountingIntObjectBimap[counters.size()];
+        FnIntToVoid applyCutoff = new FnIntToVoid() {
+            @Override
+            public void call(int i) {
+                alphabets[i] = applyCountCutoffToGetAlphabet(names[i], maxIdxs[i], counters.get(i), sortByCount[i]);
+            }
+        };
+        Threads.forEach(0, alphabets.length, applyCutoff);
+        words = alphabets[0];
+        lcWords = alphabets[1];
+        prefixes = alphabets[2];
+        suffixes = alphabets[3];
+        lemmas = alphabets[4];
+        posTags = alphabets[5];
+        cposTags = alphabets[6];
+        clusters = alphabets[7];
+        clusterPrefixes = alphabets[8];
+        feats = alphabets[9];
+        deprels = alphabets[10];
+        srlPredSenses = alphabets[11];
+        srlArgs = alphabets[12];
         
         // Compute the minimum frequence of the top 800 most frequent words.
         wordTopNCutoff = getTopNCutoff(words, 800);
@@ -137,34 +191,93 @@ public class AlphabetStore implements Serializable {
      */
     protected static CountingIntObjectBimap<String> applyCountCutoffToGetAlphabet(String name, int maxIdx,
             CountingIntObjectBimap<String> counter) {
-        // Apply count-cutoffs, increasing K (the cutoff) until the total number of types is <= maxIdx.
-        CountingIntObjectBimap<String> alphabet;
-        for (int cutoff = 1; ; cutoff++) {
-            alphabet = getInitAlphabet();
-            alphabet.setObjectCount(TOK_START_INT, 0);
-            alphabet.setObjectCount(TOK_END_INT, 0);
-            alphabet.setObjectCount(TOK_WALL_INT, 0);
-            alphabet.setObjectCount(TOK_UNK_INT, 0);
-            for (int idx=0; idx<counter.size(); idx++) {
-                String str = counter.lookupObject(idx);
-                int count = counter.lookupObjectCount(idx);
-                if (count >= cutoff) {
-                    int newIdx = alphabet.lookupIndex(str);
-                    alphabet.setObjectCount(newIdx, count);
-                } else if (idx >= NUM_SPECIAL_TOKS) {
-                    count += alphabet.lookupObjectCount(TOK_UNK_INT);
-                    alphabet.setObjectCount(TOK_UNK_INT, count);
-                }
-            }
-            if (alphabet.size()-1 <= maxIdx) {
-                log.info(String.format("For %s: Type count = %d Alphabet count = %d Cutoff = %d", 
-                        name, counter.size(), alphabet.size(), cutoff));
-                break;
+        return applyCountCutoffToGetAlphabet(name, maxIdx, counter, false);
+    }
+
+    /**
+     * As above, but optionally assigns the indices in order of descending count (breaking ties by
+     * the original index), so that the most frequent types have the smallest indices.
+     */
+    protected static CountingIntObjectBimap<String> applyCountCutoffToGetAlphabet(String name, int maxIdx,
+            CountingIntObjectBimap<String> counter, boolean sortByCount) {
+        Timer timer = new Timer();
+        timer.start();
+        int cutoff = getCountCutoff(maxIdx, counter);
+        int[] order = sortByCount ? getIdxsByDescendingCount(counter) : null;
+        CountingIntObjectBimap<String> alphabet = getInitAlphabet();
+        alphabet.setObjectCount(TOK_START_INT, 0);
+        alphabet.setObjectCount(TOK_END_INT, 0);
+        alphabet.setObjectCount(TOK_WALL_INT, 0);
+        alphabet.setObjectCount(TOK_UNK_INT, 0);
+        for (int k=0; k<counter.size(); k++) {
+            int idx = (order == null) ? k : order[k];
+            String str = counter.lookupObject(idx);
+            int count = counter.lookupObjectCount(idx);
+            if (count >= cutoff) {
+                int newIdx = alphabet.lookupIndex(str);
+                alphabet.setObjectCount(newIdx, count);
+            } else if (idx >= NUM_SPECIAL_TOKS) {
+                count += alphabet.lookupObjectCount(TOK_UNK_INT);
+                alphabet.setObjectCount(TOK_UNK_INT, count);
             }
         }
+        timer.stop();
+        log.info(String.format("For %s: Type count = %d Alphabet count = %d Cutoff = %d Time (ms) = %.1f", 
+                name, counter.size(), alphabet.size(), cutoff, timer.totMs()));
         return alphabet;
     }
 
+    /**
+     * Gets the minimum count cutoff K such that the alphabet of the special tokens plus the types
+     * occurring at least K times has maximum index less-than-or-equal to maxIdx. Rather than trying
+     * each K in turn, this sorts the type counts once and reads off the count of the first type
+     * which would not fit.
+     */
+    static int getCountCutoff(int maxIdx, CountingIntObjectBimap<String> counter) {
+        // The number of non-special types which fit in the alphabet.
+        int maxTypes = maxIdx + 1 - NUM_SPECIAL_TOKS;
+        IntArrayList counts = new IntArrayList(counter.size());
+        for (int idx=0; idx<counter.size(); idx++) {
+            // Types which are the same as a special token don't take up a new index.
+            if (!isSpecialTokenStr(counter.lookupObject(idx))) {
+                counts.add(counter.lookupObjectCount(idx));
+            }
+        }
+        if (counts.size() <= maxTypes) {
+            return 1;
+        }
+        counts.sortDesc();
+        return Math.max(1, counts.get(Math.max(0, maxTypes)) + 1);
+    }
+
+    private static int[] getIdxsByDescendingCount(CountingIntObjectBimap<String> counter) {
+        // Pack (MAX - count, idx) into a long so that a single primitive sort orders the indices.
+        long[] keys = new long[counter.size()];
+        for (int idx=0; idx<keys.length; idx++) {
+            keys[idx] = ((long) (Integer.MAX_VALUE - counter.lookupObjectCount(idx)) << 32) | idx;
+        }
+        Arrays.sort(keys);
+        int[] order = new int[keys.length];
+        for (int k=0; k<keys.length; k++) {
+            order[k] = (int) keys[k];
+        }
+        return order;
+    }
+
+    /** Whether all the types of the counter fit in an alphabet with short indices. */
+    private static boolean fitsInShort(CountingIntObjectBimap<String> counter) {
+        return counter.size() <= SHORT_MAX_IDX + 1 - NUM_SPECIAL_TOKS;
+    }
+
+    private static boolean isSpecialTokenStr(String str) {
+        for (int i=0; i<NUM_SPECIAL_TOKS; i++) {
+            if (specialTokenStrs[i].equals(str)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     /**
      * Gets a mapping from ints to strings, which is initialized with the special tokens occupying
      * their reserved positions.
@@ -222,12 +335,17 @@ public class AlphabetStore implements Serializable {
         return words.lookupObjectCount(SafeCast.safeUnsignedShortToInt(wordIdx));
     }
     
+    /** Maps indices beyond the short tier of a wide alphabet to UNK. */
+    private static int toShortTier(int idx) {
+        return (idx > TieredIdList.MAX_SHORT_TIER_IDX) ? TOK_UNK_INT : idx;
+    }
+
     public short getWordIdx(String word) {
-        return SafeCast.safeIntToUnsignedShort(safeLookup(words, word));
+        return SafeCast.safeIntToUnsignedShort(toShortTier(safeLookup(words, word)));
     }
 
     public int getLcWordIdx(String lcWord) {
-        return SafeCast.safeIntToUnsignedShort(safeLookup(lcWords, lcWord));
+        return SafeCast.safeIntToUnsignedShort(toShortTier(safeLookup(lcWords, lcWord)));
     }
 
     public int getPrefixIdx(String prefix) {
@@ -277,5 +395,13 @@ public class AlphabetStore implements Serializable {
     public int getWordTopNCutoff() {
         return wordTopNCutoff;
     }
+
+    /**
+     * Whether the word, lemma and cluster alphabets may have indices beyond the maximum of a
+     * short. See {@link IntAnnoSentence#getWordInt(int)}.
+     */
+    public boolean isWide() {
+        return wide;
+    }
     
 }
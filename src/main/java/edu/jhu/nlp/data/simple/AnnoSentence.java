@@ -29,6 +29,8 @@ import edu.jhu.prim.tuple.Pair;
  * Simple representation of a single sentence with many annotations.
  *
  * This representation only uses strings, without String objects or Alphabet objects.
+ * To save memory, the string-valued layers can instead be stored as columns of IDs
+ * (see {@link #compact(ColumnAlphabets)}).
  *
  * @author mgormley
  * @author mmitchell
@@ -94,6 +96,18 @@ public class AnnoSentence {
     /** The original object (e.g. CoNLL09Sentence) used to create this sentence. */
     private Object sourceSent;
 
+    /**
+     * Cached integer representation of this sentence, or null if none. It is cleared whenever one
+     * of the layers it is built from is set or removed.
+     */
+    private volatile IntAnnoSentence intSent;
+    /**
+     * The binary corpus this sentence was read from, and its index in that corpus, or null if none.
+     * This is cleared whenever one of the layers stored in the corpus is set or removed.
+     */
+    private BinaryCorpusReader corpus;
+    private int corpusIdx;
+
     public AnnoSentence() {
 
     }
@@ -148,19 +162,19 @@ public class AnnoSentence {
 
     public static void copyShallow(AnnoSentence src, AnnoSentence dest, AT at) {
         switch (at) {
-        case WORD: dest.words = src.words; break;
-        case PREFIX: dest.prefixes = src.prefixes; break;
-        case LEMMA: dest.lemmas = src.lemmas; break;
-        case POS: dest.posTags = src.posTags; break;
-        case CPOS: dest.cposTags = src.cposTags; break;
+        case WORD: dest.words = StringColumn.shallowCopy(src.words); break;
+        case PREFIX: dest.prefixes = StringColumn.shallowCopy(src.prefixes); break;
+        case LEMMA: dest.lemmas = StringColumn.shallowCopy(src.lemmas); break;
+        case POS: dest.posTags = StringColumn.shallowCopy(src.posTags); break;
+        case CPOS: dest.cposTags = StringColumn.shallowCopy(src.cposTags); break;
         case STRICT_POS: dest.strictPosTags = src.strictPosTags; break;
-        case BROWN: dest.clusters = src.clusters; break;
+        case BROWN: dest.clusters = StringColumn.shallowCopy(src.clusters); break;
         case EMBED_IDX: dest.embedIds = src.embedIds; break;
-        case MORPHO: dest.feats = src.feats; break;
-        case CHUNKS: dest.chunks = src.chunks; break;
-        case NE_TAGS: dest.neTags = src.neTags; break;
+        case MORPHO: dest.feats = StringListColumn.shallowCopy(src.feats); break;
+        case CHUNKS: dest.chunks = StringColumn.shallowCopy(src.chunks); break;
+        case NE_TAGS: dest.neTags = StringColumn.shallowCopy(src.neTags); break;
         case DEP_TREE: dest.parents = src.parents; break;
-        case DEPREL: dest.deprels = src.deprels; break;
+        case DEPREL: dest.deprels = StringColumn.shallowCopy(src.deprels); break;
         case DEP_EDGE_MASK: dest.depEdgeMask = src.depEdgeMask; break;
         case SRL_PRED_IDX: dest.knownPreds = src.knownPreds; break;
         case SRL_PAIR_IDX: dest.knownSrlPairs= src.knownSrlPairs; break;
@@ -172,7 +186,7 @@ public class AnnoSentence {
         case NARY_TREE: dest.naryTree = src.naryTree; break;
         case NER: dest.namedEntities = src.namedEntities; break;
         case NE_PAIRS: dest.nePairs = src.nePairs; break;
-        case REL_LABELS: dest.relLabels = src.relLabels; break;
+        case REL_LABELS: dest.relLabels = StringColumn.shallowCopy(src.relLabels); break;
         case RELATIONS: dest.relations = src.relations; break;
         default: throw new RuntimeException("not implemented for " + at);
         }
@@ -198,6 +212,8 @@ public class AnnoSentence {
     }
 
     public void removeAt(AT at) {
+        this.intSent = null;
+        this.corpus = null;
         switch (at) {
         case WORD: this.words = null; break;
         case PREFIX: this.prefixes = null; break;
@@ -261,22 +277,44 @@ public class AnnoSentence {
         }
     }
 
+    /**
+     * Converts each string-valued token layer, the morphological features and the relation labels
+     * into columns of IDs, with one alphabet per layer. The layers are still exposed as lists of
+     * strings, but they can no longer change size, and shallow copies of this sentence share them
+     * copy-on-write.
+     */
+    public void compact(ColumnAlphabets alphabets) {
+        words = StringColumn.compact(words, alphabets.get(AT.WORD));
+        prefixes = StringColumn.compact(prefixes, alphabets.get(AT.PREFIX));
+        lemmas = StringColumn.compact(lemmas, alphabets.get(AT.LEMMA));
+        posTags = StringColumn.compact(posTags, alphabets.get(AT.POS));
+        cposTags = StringColumn.compact(cposTags, alphabets.get(AT.CPOS));
+        clusters = StringColumn.compact(clusters, alphabets.get(AT.BROWN));
+        feats = StringListColumn.compact(feats, alphabets.get(AT.MORPHO));
+        chunks = StringColumn.compact(chunks, alphabets.get(AT.CHUNKS));
+        neTags = StringColumn.compact(neTags, alphabets.get(AT.NE_TAGS));
+        deprels = StringColumn.compact(deprels, alphabets.get(AT.DEPREL));
+        relLabels = StringColumn.compact(relLabels, alphabets.get(AT.REL_LABELS));
+    }
+
     public void intern() {
-        QLists.intern(words);
-        QLists.intern(prefixes);
-        QLists.intern(lemmas);
-        QLists.intern(posTags);
-        QLists.intern(cposTags);
+        // The interner avoids the JVM's string pool for strings it has already seen.
+        StringInterner interner = StringInterner.getShared();
+        interner.intern(words);
+        interner.intern(prefixes);
+        interner.intern(lemmas);
+        interner.intern(posTags);
+        interner.intern(cposTags);
         // Not needed since these are enums. Lists.intern(strictPosTags);
-        QLists.intern(clusters);
+        interner.intern(clusters);
         if (feats != null) {
             for (int i=0; i<feats.size(); i++) {
-                QLists.intern(feats.get(i));
+                interner.intern(feats.get(i));
             }
         }
-        QLists.intern(chunks);
-        QLists.intern(neTags);
-        QLists.intern(deprels);
+        interner.intern(chunks);
+        interner.intern(neTags);
+        interner.intern(deprels);
         if (naryTree != null) {
             naryTree.intern();
         }
@@ -284,7 +322,7 @@ public class AnnoSentence {
             namedEntities.intern();
         }
         // TODO: Lists.intern(nePairs);
-        QLists.intern(relLabels);
+        interner.intern(relLabels);
         if (relations != null) {
             relations.intern();
         }
@@ -533,6 +571,36 @@ public class AnnoSentence {
         knownSrlPairs = srlGraph.toSrlGraph().getKnownSrlPairs();
     }
 
+    /**
+     * Gets the integer representation of this sentence under the given store. The result is
+     * cached on this sentence and rebuilt only if the store differs or if one of the annotation
+     * layers it depends on was replaced (via a setter or {@link #removeAt(AT)}) since it was built.
+     * Changes made in-place to a layer's list are not detected.
+     * 
+     * If this sentence was read from a binary corpus and none of the layers stored there has been
+     * replaced since, the ids are taken from the corpus (see
+     * {@link BinaryCorpusReader#getIntAnnoSentence(int, AlphabetStore)}).
+     */
+    public IntAnnoSentence getIntAnnoSentence(AlphabetStore store) {
+        IntAnnoSentence isent = this.intSent;
+        if (isent == null || isent.getStore() != store) {
+            BinaryCorpusReader corpus = this.corpus;
+            if (corpus != null) {
+                isent = corpus.getIntAnnoSentence(this, corpusIdx, store);
+            } else {
+                isent = new IntAnnoSentence(this, store);
+            }
+            this.intSent = isent;
+        }
+        return isent;
+    }
+
+    /** Records that this sentence is the s'th sentence of the given binary corpus. */
+    void setBinaryCorpus(BinaryCorpusReader corpus, int s) {
+        this.corpus = corpus;
+        this.corpusIdx = s;
+    }
+
     /* ----------- Getters/Setters for internal storage ------------ */
 
     public List<String> getWords() {
@@ -541,6 +609,8 @@ public class AnnoSentence {
 
     public void setWords(List<String> words) {
         this.words = words;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public List<String> getPrefixes() {
@@ -557,6 +627,8 @@ public class AnnoSentence {
 
     public void setLemmas(List<String> lemmas) {
         this.lemmas = lemmas;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public List<String> getPosTags() {
@@ -565,6 +637,8 @@ public class AnnoSentence {
 
     public void setPosTags(List<String> posTags) {
         this.posTags = posTags;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public List<String> getCposTags() {
@@ -573,6 +647,8 @@ public class AnnoSentence {
 
     public void setCposTags(List<String> cposTags) {
         this.cposTags = cposTags;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public List<StrictPosTag> getStrictPosTags() {
@@ -581,6 +657,7 @@ public class AnnoSentence {
 
     public void setStrictPosTags(List<StrictPosTag> strictPosTags) {
         this.strictPosTags = strictPosTags;
+        this.intSent = null;
     }
 
     public List<String> getClusters() {
@@ -589,6 +666,8 @@ public class AnnoSentence {
 
     public void setClusters(List<String> clusters) {
         this.clusters = clusters;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public IntArrayList getEmbedIds() {
@@ -660,6 +739,7 @@ public class AnnoSentence {
 
     public void setSrlGraph(DepGraph srlGraph) {
         this.srlGraph = srlGraph;
+        this.intSent = null;
     }
 
     public List<String> getDeprels() {
@@ -668,6 +748,8 @@ public class AnnoSentence {
 
     public void setDeprels(List<String> deprels) {
         this.deprels = deprels;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public List<List<String>> getFeats() {
@@ -676,6 +758,8 @@ public class AnnoSentence {
 
     public void setFeats(List<List<String>> feats) {
         this.feats = feats;
+        this.intSent = null;
+        this.corpus = null;
     }
 
     public NaryTree getNaryTree() {
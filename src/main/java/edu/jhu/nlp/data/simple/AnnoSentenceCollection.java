@@ -203,6 +203,13 @@ public class AnnoSentenceCollection extends ArrayList<AnnoSentence> {
         return folds;
    }
 
+    /** Converts the string-valued layers of every sentence to columns backed by the given alphabets. */
+    public void compact(ColumnAlphabets alphabets) {
+        for (AnnoSentence sent : this) {
+            sent.compact(alphabets);
+        }
+    }
+
     /**
      * Creates and returns a new AnnoSentenceCollection containing a shallow copy of
      * each sentence in this collection
@@ -1,9 +1,16 @@
 package edu.jhu.nlp.data.simple;
 
+import java.io.BufferedReader;
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,6 +18,7 @@ import org.slf4j.LoggerFactory;
 import edu.jhu.nlp.data.concrete.ConcreteReader;
 import edu.jhu.nlp.data.concrete.ConcreteReader.ConcreteReaderPrm;
 import edu.jhu.nlp.data.concrete.ListCloseableIterable;
+import edu.jhu.nlp.data.concrete.ParallelConcreteReader;
 import edu.jhu.nlp.data.conll.CoNLL02Reader;
 import edu.jhu.nlp.data.conll.CoNLL02Sentence;
 import edu.jhu.nlp.data.conll.CoNLL03Reader;
@@ -23,6 +31,7 @@ import edu.jhu.nlp.data.conll.CoNLLXReader;
 import edu.jhu.nlp.data.conll.CoNLLXSentence;
 import edu.jhu.nlp.data.semeval.SemEval2010Reader;
 import edu.jhu.nlp.data.semeval.SemEval2010Sentence;
+import edu.jhu.pacaya.util.Threads;
 
 /**
  * Generic reader of AnnoSentence objects from many different corpora. 
@@ -51,7 +60,7 @@ public class AnnoSentenceReader {
 
     public enum DatasetType {
         SYNTHETIC, PTB, CONLL_2002, CONLL_2003, CONLL_X, CONLL_2008, CONLL_2009, 
-        CONCRETE, SEMEVAL_2010, DEP_EDGE_MASK, JSON
+        CONCRETE, SEMEVAL_2010, DEP_EDGE_MASK, JSON, BINARY
     };
 
     public interface SASReader extends Iterable<AnnoSentence> {
@@ -74,7 +83,7 @@ public class AnnoSentenceReader {
     
     public void loadSents(File dataFile, DatasetType type) throws IOException {
         log.info("Reading " + prm.name + " data of type " + type + " from " + dataFile);
-        if (type == DatasetType.CONCRETE && (dataFile.isDirectory() || dataFile.getName().endsWith(".zip"))) {
+        if (type == DatasetType.CONCRETE && ParallelConcreteReader.isMultiCommPath(dataFile)) {
             ConcreteReader cr = new ConcreteReader(prm.rePrm);
             AnnoSentenceCollection csents = cr.sentsFromPath(dataFile);
             CloseableIterable<AnnoSentence> reader = new ListCloseableIterable(csents);
@@ -82,20 +91,24 @@ public class AnnoSentenceReader {
             sents.setSourceSents(csents.getSourceSents());
             reader.close();
             logSentStats(sents, log, prm.name);
+        } else if (type == DatasetType.BINARY) {
+            File binFile = CompressedFiles.toUncompressedFile(dataFile);
+            // The reader deletes the decompressed copy, if any, when it is closed.
+            BinaryCorpusReader reader = new BinaryCorpusReader(binFile, binFile != dataFile);
+            try {
+                loadSents(reader);
+            } finally {
+                reader.close();
+            }
+            logSentStats(sents, log, prm.name);
         } else {
-            InputStream fis = new FileInputStream(dataFile);
+            InputStream fis = CompressedFiles.newInputStream(dataFile);
             loadSents(fis, type);
             fis.close();
         }
     }
     
     public void loadSents(InputStream fis, DatasetType type) throws IOException {
-        if (prm.normalizeRoleNames) {
-            if (type == DatasetType.CONLL_2008 || type == DatasetType.CONLL_2009) {
-                log.info("Normalizing role names");
-            }
-        }
-        
         CloseableIterable<AnnoSentence> reader = null;
         Object sourceSents = null;
         if (type == DatasetType.CONCRETE) {
@@ -104,25 +117,7 @@ public class AnnoSentenceReader {
             sourceSents = csents.getSourceSents();
             reader = new ListCloseableIterable(csents);
         } else {
-            if (type == DatasetType.CONLL_2009) {
-                reader = ConvCloseableIterable.getInstance(new CoNLL09Reader(fis), new CoNLL092Anno());
-            } else if (type == DatasetType.CONLL_2008) {
-                reader = ConvCloseableIterable.getInstance(new CoNLL08Reader(fis), new CoNLL082Anno());
-            } else if (type == DatasetType.CONLL_X) {
-                reader = ConvCloseableIterable.getInstance(new CoNLLXReader(fis), new CoNLLX2Anno());
-            } else if (type == DatasetType.CONLL_2002) {
-                reader = ConvCloseableIterable.getInstance(new CoNLL02Reader(fis), new CoNLL022Anno());
-            } else if (type == DatasetType.CONLL_2003) {
-                reader = ConvCloseableIterable.getInstance(new CoNLL03Reader(fis), new CoNLL032Anno());
-            } else if (type == DatasetType.SEMEVAL_2010) {
-                reader = ConvCloseableIterable.getInstance(new SemEval2010Reader(fis), new SemEval20102Anno());
-            } else if (type == DatasetType.JSON) {
-                reader = new JsonConcatReader(fis);
-            //} else if (type == DatasetType.PTB) {
-                //reader = new Ptb2Anno(new PtbFileReader(dataFile));
-            } else {
-                throw new IllegalStateException("Unsupported data type: " + type);
-            }
+            reader = getReader(fis, type);
         }
         
         loadSents(reader);
@@ -131,6 +126,121 @@ public class AnnoSentenceReader {
         logSentStats(sents, log, prm.name);
     }
 
+    /**
+     * Opens a stream of sentences from the given file without loading them into memory. The
+     * sentences are filtered and interned exactly as in {@link #loadSents(File, DatasetType)}, but
+     * they are not added to {@link #getData()}. The caller must close the returned iterable.
+     * 
+     * Note: A single Concrete Communication file is still read in its entirety before the first
+     * sentence is returned.
+     */
+    public CloseableIterable<AnnoSentence> openSents(File dataFile, DatasetType type) throws IOException {
+        log.info("Streaming " + prm.name + " data of type " + type + " from " + dataFile);
+        CloseableIterable<AnnoSentence> reader;
+        if (type == DatasetType.CONCRETE) {
+            ConcreteReader cr = new ConcreteReader(prm.rePrm);
+            reader = cr.openSentsFromPath(dataFile);
+        } else if (type == DatasetType.BINARY) {
+            File binFile = CompressedFiles.toUncompressedFile(dataFile);
+            reader = new BinaryCorpusReader(binFile, binFile != dataFile);
+        } else {
+            reader = getReader(CompressedFiles.newInputStream(dataFile), type);
+        }
+        return new FilteredSents(reader);
+    }
+
+    private CloseableIterable<AnnoSentence> getReader(InputStream fis, DatasetType type) throws IOException {
+        if (prm.normalizeRoleNames) {
+            if (type == DatasetType.CONLL_2008 || type == DatasetType.CONLL_2009) {
+                log.info("Normalizing role names");
+            }
+        }
+        if (isChunkable(type) && Threads.numThreads > 1) {
+            // Parse and convert chunks of the input in parallel.
+            Reader reader = new InputStreamReader(fis, getCharset(type));
+            return new ParallelAnnoSentenceReader(reader, type == DatasetType.JSON, new ChunkParser(type));
+        } else if (type == DatasetType.CONLL_2009) {
+            return ConvCloseableIterable.getInstance(new CoNLL09Reader(fis), new CoNLL092Anno());
+        } else if (type == DatasetType.CONLL_2008) {
+            return ConvCloseableIterable.getInstance(new CoNLL08Reader(fis), new CoNLL082Anno());
+        } else if (type == DatasetType.CONLL_X) {
+            return ConvCloseableIterable.getInstance(new CoNLLXReader(fis), new CoNLLX2Anno());
+        } else if (type == DatasetType.CONLL_2002) {
+            return ConvCloseableIterable.getInstance(new CoNLL02Reader(fis), new CoNLL022Anno());
+        } else if (type == DatasetType.CONLL_2003) {
+            return ConvCloseableIterable.getInstance(new CoNLL03Reader(fis), new CoNLL032Anno());
+        } else if (type == DatasetType.SEMEVAL_2010) {
+            return ConvCloseableIterable.getInstance(new SemEval2010Reader(fis), new SemEval20102Anno());
+        } else if (type == DatasetType.JSON) {
+            return new JsonConcatReader(fis);
+        } else if (type == DatasetType.BINARY) {
+            throw new IllegalStateException("Binary corpora must be read from a file, not a stream");
+        //} else if (type == DatasetType.PTB) {
+            //return new Ptb2Anno(new PtbFileReader(dataFile));
+        } else {
+            throw new IllegalStateException("Unsupported data type: " + type);
+        }
+    }
+
+    /** Whether the sentences of this type can be read in parallel by {@link ParallelAnnoSentenceReader}. */
+    private static boolean isChunkable(DatasetType type) {
+        return type == DatasetType.CONLL_2009 || type == DatasetType.CONLL_2008 || type == DatasetType.CONLL_X
+                || type == DatasetType.CONLL_2002 || type == DatasetType.CONLL_2003 || type == DatasetType.JSON;
+    }
+
+    private static String getCharset(DatasetType type) {
+        if (type == DatasetType.CONLL_2002 || type == DatasetType.CONLL_2003) {
+            return "iso-8859-1";
+        }
+        return "UTF-8";
+    }
+
+    /** Gets a sequential reader of a chunkable type from characters. */
+    private CloseableIterable<AnnoSentence> getReader(BufferedReader reader, DatasetType type) {
+        if (type == DatasetType.CONLL_2009) {
+            return ConvCloseableIterable.getInstance(new CoNLL09Reader(reader), new CoNLL092Anno());
+        } else if (type == DatasetType.CONLL_2008) {
+            return ConvCloseableIterable.getInstance(new CoNLL08Reader(reader), new CoNLL082Anno());
+        } else if (type == DatasetType.CONLL_X) {
+            return ConvCloseableIterable.getInstance(new CoNLLXReader(reader), new CoNLLX2Anno());
+        } else if (type == DatasetType.CONLL_2002) {
+            return ConvCloseableIterable.getInstance(new CoNLL02Reader(reader), new CoNLL022Anno());
+        } else if (type == DatasetType.CONLL_2003) {
+            return ConvCloseableIterable.getInstance(new CoNLL03Reader(reader), new CoNLL032Anno());
+        } else if (type == DatasetType.JSON) {
+            return new JsonConcatReader(reader);
+        } else {
+            throw new IllegalStateException("Unsupported data type: " + type);
+        }
+    }
+
+    /**
+     * Parses the sentences in one chunk of a file. Used on the worker threads. The sentences are
+     * interned later, once they have passed the filters.
+     */
+    private class ChunkParser implements Converter<String, List<AnnoSentence>> {
+
+        private final DatasetType type;
+
+        public ChunkParser(DatasetType type) {
+            this.type = type;
+        }
+
+        @Override
+        public List<AnnoSentence> convert(String chunk) {
+            List<AnnoSentence> chunkSents = new ArrayList<>();
+            try (CloseableIterable<AnnoSentence> reader = getReader(new BufferedReader(new StringReader(chunk)), type)) {
+                for (AnnoSentence sent : reader) {
+                    chunkSents.add(sent);
+                }
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return chunkSents;
+        }
+
+    }
+
     public static void logSentStats(AnnoSentenceCollection sents, Logger log, String name) {
         log.info("Num " + name + " sentences: " + sents.size());   
         log.info("Num " + name + " tokens: " + sents.getNumTokens());
@@ -143,13 +253,78 @@ public class AnnoSentenceReader {
             if (sents.size() >= prm.maxNumSentences) {
                 break;
             }
-            if (sent.size() <= prm.maxSentenceLength && prm.minSentenceLength <= sent.size()) {
-                if (prm.filter == null || prm.filter.accept(sent)) {
+            if (accept(sent)) {
+                sent.intern();
+                sents.add(sent);
+            }
+        }
+    }
+
+    private boolean accept(AnnoSentence sent) {
+        return sent.size() <= prm.maxSentenceLength && prm.minSentenceLength <= sent.size()
+                && (prm.filter == null || prm.filter.accept(sent));
+    }
+    
+    /** Lazily applies the length / count filters and interning to an underlying stream of sentences. */
+    private class FilteredSents implements CloseableIterable<AnnoSentence>, Iterator<AnnoSentence> {
+
+        private final CloseableIterable<AnnoSentence> reader;
+        private final Iterator<AnnoSentence> iter;
+        private AnnoSentence next;
+        private int numReturned = 0;
+        
+        public FilteredSents(CloseableIterable<AnnoSentence> reader) {
+            this.reader = reader;
+            this.iter = reader.iterator();
+            advance();
+        }
+
+        private void advance() {
+            next = null;
+            if (numReturned >= prm.maxNumSentences) {
+                return;
+            }
+            while (iter.hasNext()) {
+                AnnoSentence sent = iter.next();
+                if (accept(sent)) {
                     sent.intern();
-                    sents.add(sent);
+                    next = sent;
+                    return;
                 }
             }
         }
+        
+        @Override
+        public boolean hasNext() {
+            return next != null;
+        }
+
+        @Override
+        public AnnoSentence next() {
+            if (next == null) {
+                throw new NoSuchElementException();
+            }
+            AnnoSentence cur = next;
+            numReturned++;
+            advance();
+            return cur;
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+        
+        @Override
+        public Iterator<AnnoSentence> iterator() {
+            return this;
+        }
+
+        @Override
+        public void close() throws IOException {
+            reader.close();
+        }
+        
     }
     
     public class CoNLL092Anno implements Converter<CoNLL09Sentence, AnnoSentence> {
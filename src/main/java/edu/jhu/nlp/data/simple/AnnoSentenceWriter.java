@@ -1,5 +1,6 @@
 package edu.jhu.nlp.data.simple;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.IOException;
 import java.util.Collection;
@@ -10,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import edu.jhu.nlp.data.concrete.ConcreteWriter;
 import edu.jhu.nlp.data.concrete.ConcreteWriter.ConcreteWriterPrm;
+import edu.jhu.nlp.data.concrete.StreamingConcreteWriter;
 import edu.jhu.nlp.data.conll.CoNLL02Sentence;
 import edu.jhu.nlp.data.conll.CoNLL02Writer;
 import edu.jhu.nlp.data.conll.CoNLL03Sentence;
@@ -35,78 +37,143 @@ public class AnnoSentenceWriter {
     private static final Logger log = LoggerFactory.getLogger(AnnoSentenceWriter.class);
 
     private AnnoSentenceWriterPrm prm;
+    // The currently open writer and its type, used for streaming output.
+    private Closeable writer;
+    private DatasetType type;
+    // The number of SemEval-2010 sentences written to the current file.
+    private int numSemEvalSents;
+    // The parameters of the current Concrete writer, until its annotation types are set.
+    private ConcreteWriterPrm concretePrm;
     
     public AnnoSentenceWriter(AnnoSentenceWriterPrm prm) {
         this.prm = prm;
     }
     
     public void write(File out, DatasetType type, AnnoSentenceCollection sents, Collection<AT> addAnnoTypes) throws IOException {
+        if (type == DatasetType.CONCRETE) {
+            log.info("Writing sentences for " + prm.name + " data of type " + type + " to " + out);
+            ConcreteWriterPrm cwPrm = new ConcreteWriterPrm();
+            cwPrm.srlIsSyntax = prm.concreteSrlIsSyntax;
+            cwPrm.addAnnoTypes(addAnnoTypes);
+            ConcreteWriter w = new ConcreteWriter(cwPrm);
+            w.write(sents, out);
+        } else {
+            open(out, type);
+            try {
+                writeBatch(sents);
+            } finally {
+                close();
+            }
+        }
+    }
+    
+    /**
+     * Opens an output file to which batches of sentences can be appended with
+     * {@link #writeBatch(AnnoSentenceCollection)}. This is used for streaming annotation where the
+     * full corpus is never held in memory. Concrete output requires sentences read from Concrete
+     * (see {@link StreamingConcreteWriter}), and takes its annotation types from the first batch.
+     */
+    public void open(File out, DatasetType type) throws IOException {
+        if (writer != null) {
+            throw new IllegalStateException("Writer is already open: " + this.type);
+        }
         log.info("Writing sentences for " + prm.name + " data of type " + type + " to " + out);
+        // Files with a .gz or .bz2 extension are compressed.
+        if (type == DatasetType.CONLL_2009) {
+            writer = new CoNLL09Writer(CompressedFiles.newWriter(out, "UTF-8"));
+        } else if (type == DatasetType.CONLL_2008) {
+            writer = new CoNLL08Writer(CompressedFiles.newWriter(out, "UTF-8"));
+        } else if (type == DatasetType.CONLL_X) {
+            writer = new CoNLLXWriter(CompressedFiles.newWriter(out, "UTF-8"));
+        } else if (type == DatasetType.CONLL_2002) {
+            writer = new CoNLL02Writer(CompressedFiles.newWriter(out, "iso-8859-1"));
+        } else if (type == DatasetType.CONLL_2003) {
+            writer = new CoNLL03Writer(CompressedFiles.newWriter(out, "iso-8859-1"));
+        } else if (type == DatasetType.SEMEVAL_2010) {
+            writer = new SemEval2010Writer(CompressedFiles.newWriter(out, "UTF-8"));
+        } else if (type == DatasetType.DEP_EDGE_MASK) {
+            writer = new DepEdgeMaskWriter(CompressedFiles.newWriter(out, "UTF-8"));
+        } else if (type == DatasetType.JSON) {
+            writer = new JsonConcatWriter(CompressedFiles.newOutputStream(out));
+        } else if (type == DatasetType.BINARY) {
+            writer = new BinaryCorpusWriter(out);
+        } else if (type == DatasetType.CONCRETE) {
+            concretePrm = new ConcreteWriterPrm();
+            concretePrm.srlIsSyntax = prm.concreteSrlIsSyntax;
+            writer = new StreamingConcreteWriter(new ConcreteWriter(concretePrm), out);
+        } else {
+            throw new IllegalStateException("Unsupported data type for streaming output: " + type);
+        }
+        this.type = type;
+        this.numSemEvalSents = 0;
+    }
+
+    /** Appends a batch of sentences to the file opened by {@link #open(File, DatasetType)}. */
+    public void writeBatch(AnnoSentenceCollection sents) throws IOException {
+        if (writer == null) {
+            throw new IllegalStateException("Writer must be opened before writing");
+        }
         if (type == DatasetType.CONLL_2009) {
-            CoNLL09Writer cw = new CoNLL09Writer(out);
+            CoNLL09Writer cw = (CoNLL09Writer) writer;
             for (AnnoSentence sent : sents) {
-                CoNLL09Sentence conllSent = CoNLL09Sentence.fromAnnoSentence(sent);
-                cw.write(conllSent);
+                cw.write(CoNLL09Sentence.fromAnnoSentence(sent));
             }
-            cw.close();
         } else if (type == DatasetType.CONLL_2008) {
-            CoNLL08Writer cw = new CoNLL08Writer(out);
+            CoNLL08Writer cw = (CoNLL08Writer) writer;
             for (AnnoSentence sent : sents) {
-                CoNLL08Sentence conllSent = CoNLL08Sentence.fromAnnoSentence(sent);
-                cw.write(conllSent);
+                cw.write(CoNLL08Sentence.fromAnnoSentence(sent));
             }
-            cw.close();
         } else if (type == DatasetType.CONLL_X) {
-            CoNLLXWriter cw = new CoNLLXWriter(out);
+            CoNLLXWriter cw = (CoNLLXWriter) writer;
             for (AnnoSentence sent : sents) {
-                CoNLLXSentence conllSent = CoNLLXSentence.fromAnnoSentence(sent);
-                cw.write(conllSent);
+                cw.write(CoNLLXSentence.fromAnnoSentence(sent));
             }
-            cw.close();
         } else if (type == DatasetType.CONLL_2002) {
-            CoNLL02Writer cw = new CoNLL02Writer(out);
+            CoNLL02Writer cw = (CoNLL02Writer) writer;
             for (AnnoSentence sent : sents) {
-                CoNLL02Sentence conllSent = CoNLL02Sentence.fromAnnoSentence(sent);
-                cw.write(conllSent);
+                cw.write(CoNLL02Sentence.fromAnnoSentence(sent));
             }
-            cw.close();
         } else if (type == DatasetType.CONLL_2003) {
-            CoNLL03Writer cw = new CoNLL03Writer(out);
+            CoNLL03Writer cw = (CoNLL03Writer) writer;
             for (AnnoSentence sent : sents) {
-                CoNLL03Sentence conllSent = CoNLL03Sentence.fromAnnoSentence(sent);
-                cw.write(conllSent);
+                cw.write(CoNLL03Sentence.fromAnnoSentence(sent));
             }
-            cw.close();
         } else if (type == DatasetType.SEMEVAL_2010) {
-            SemEval2010Writer sw = new SemEval2010Writer(out);
-            try {
-                write(sw, sents);
-            } finally {
-                sw.close();
-            }
+            write((SemEval2010Writer) writer, sents);
         } else if (type == DatasetType.DEP_EDGE_MASK) {
-            DepEdgeMaskWriter cw = new DepEdgeMaskWriter(out);
+            DepEdgeMaskWriter cw = (DepEdgeMaskWriter) writer;
             for (AnnoSentence sent : sents) {
                 cw.write(sent);
             }
-            cw.close();
-        } else if (type == DatasetType.CONCRETE) {
-            ConcreteWriterPrm cwPrm = new ConcreteWriterPrm();
-            cwPrm.srlIsSyntax = prm.concreteSrlIsSyntax;
-            cwPrm.addAnnoTypes(addAnnoTypes);
-            ConcreteWriter w = new ConcreteWriter(cwPrm);
-            w.write(sents, out);
         } else if (type == DatasetType.JSON) {
-            JsonConcatWriter w = new JsonConcatWriter(out);
-            w.write(sents);
-            w.close();
+            ((JsonConcatWriter) writer).write(sents);
+        } else if (type == DatasetType.BINARY) {
+            ((BinaryCorpusWriter) writer).write(sents);
+        } else if (type == DatasetType.CONCRETE) {
+            if (concretePrm != null && sents.size() > 0) {
+                concretePrm.addAnnoTypes(sents.get(0).getAts());
+                concretePrm = null;
+            }
+            ((StreamingConcreteWriter) writer).writeBatch(sents);
         } else {
             throw new IllegalStateException("Unsupported data type: " + type);
         }
     }
+    
+    /** Closes the file opened by {@link #open(File, DatasetType)}. */
+    public void close() throws IOException {
+        if (writer != null) {
+            try {
+                writer.close();
+            } finally {
+                writer = null;
+                type = null;
+                concretePrm = null;
+            }
+        }
+    }
 
     protected void write(SemEval2010Writer sw, AnnoSentenceCollection sents) throws IOException {
-        int i = 0;
         for (AnnoSentence sent : sents) {
             // Write one SemEval-2010 sentence for each pair of entities.
             if (!sent.hasAt(AT.NE_PAIRS)) {
@@ -117,7 +184,7 @@ public class AnnoSentenceWriter {
                     //throw new RuntimeException("Sentence missing required annotation: " + AT.REL_LABELS);
                     log.warn("Sentence missing required annotation: " + AT.REL_LABELS);
                 } else {
-                    List<SemEval2010Sentence> seSents = SemEval2010Sentence.fromAnnoSentence(sent, i++);
+                    List<SemEval2010Sentence> seSents = SemEval2010Sentence.fromAnnoSentence(sent, numSemEvalSents++);
                     for (SemEval2010Sentence seSent : seSents) {                        
                         sw.write(seSent);
                     }
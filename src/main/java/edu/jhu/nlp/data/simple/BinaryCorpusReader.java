@@ -0,0 +1,406 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.nlp.features.FeaturizedToken;
+import edu.jhu.prim.bimap.IntObjectBimap;
+import edu.jhu.prim.util.SafeCast;
+
+/**
+ * Reads a binary columnar corpus written by {@link BinaryCorpusWriter}.
+ *
+ * The file is memory mapped with {@link FileChannel#map(MapMode, long, long)}, so opening a corpus
+ * only decodes the alphabets. The ids of individual tokens can be accessed with
+ * {@link #getId(Column, int, int)} without allocating any objects. Iterating over the corpus
+ * creates an {@link AnnoSentence} for each sentence whose strings are shared with the alphabets.
+ *
+ * @author mgormley
+ */
+public class BinaryCorpusReader implements CloseableIterable<AnnoSentence> {
+
+    /** The columns of a binary corpus. */
+    public enum Column {
+        WORD(true), LEMMA(true), POS(true), CPOS(true), CLUSTER(true), FEAT(true), DEPREL(true), PARENT(false);
+
+        private final boolean hasAlphabet;
+
+        private Column(boolean hasAlphabet) {
+            this.hasAlphabet = hasAlphabet;
+        }
+
+        /** Whether the values of this column are ids in a string alphabet. */
+        public boolean hasAlphabet() {
+            return hasAlphabet;
+        }
+    }
+
+    private static final Logger log = LoggerFactory.getLogger(BinaryCorpusReader.class);
+
+    static final int MAGIC = 0x50414342; // "PACB"
+    static final int VERSION = 1;
+    static final int NUM_COLS = Column.values().length;
+    /** magic, version, numSents, numTokens, numFeatVals, a width for each column, and the alphabet length. */
+    static final int HEADER_BYTES = 5 * 4 + NUM_COLS + 8;
+
+    private final File file;
+    private final boolean deleteOnClose;
+    private final RandomAccessFile raf;
+    private final int numSents;
+    private final int numTokens;
+    private final int numFeatVals;
+    private final int[] widths = new int[NUM_COLS];
+    private final String[][] alphabets = new String[NUM_COLS][];
+    private final ByteBuffer present;
+    private final ByteBuffer sentStarts;
+    private final ByteBuffer featStarts;
+    private final ByteBuffer[] cols = new ByteBuffer[NUM_COLS];
+    // The ids of the alphabet types in the most recently requested AlphabetStore.
+    private StoreIds storeIds;
+
+    public BinaryCorpusReader(File file) throws IOException {
+        this(file, false);
+    }
+
+    /**
+     * @param file The binary corpus.
+     * @param deleteOnClose Whether to delete the file when this reader is closed (e.g. if it is a
+     *            temporary copy). The sentences already read remain valid.
+     */
+    public BinaryCorpusReader(File file, boolean deleteOnClose) throws IOException {
+        this.file = file;
+        this.deleteOnClose = deleteOnClose;
+        this.raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            ByteBuffer header = map(ch, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not a binary corpus: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported binary corpus version " + version + ": " + file);
+            }
+            numSents = header.getInt();
+            numTokens = header.getInt();
+            numFeatVals = header.getInt();
+            for (int c = 0; c < NUM_COLS; c++) {
+                widths[c] = header.get();
+            }
+            long alphabetBytes = header.getLong();
+
+            long pos = HEADER_BYTES;
+            ByteBuffer abuf = map(ch, pos, alphabetBytes);
+            for (Column col : Column.values()) {
+                if (col.hasAlphabet()) {
+                    alphabets[col.ordinal()] = readAlphabet(abuf);
+                }
+            }
+            pos += alphabetBytes;
+            present = map(ch, pos, numSents);
+            pos += numSents;
+            sentStarts = map(ch, pos, 4L * (numSents + 1));
+            pos += 4L * (numSents + 1);
+            featStarts = map(ch, pos, 4L * (numTokens + 1));
+            pos += 4L * (numTokens + 1);
+            for (Column col : Column.values()) {
+                int c = col.ordinal();
+                long len = (long) widths[c] * (col == Column.FEAT ? numFeatVals : numTokens);
+                cols[c] = map(ch, pos, len);
+                pos += len;
+            }
+            if (pos != ch.size()) {
+                throw new IOException("Unexpected binary corpus length: " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer map(FileChannel ch, long pos, long len) throws IOException {
+        if (len > Integer.MAX_VALUE) {
+            throw new IOException("Binary corpus column is too large to map: " + len + " bytes");
+        }
+        return ch.map(MapMode.READ_ONLY, pos, len);
+    }
+
+    private static String[] readAlphabet(ByteBuffer buf) {
+        String[] alphabet = new String[buf.getInt()];
+        byte[] bytes = new byte[64];
+        for (int i = 0; i < alphabet.length; i++) {
+            int len = buf.getInt();
+            if (bytes.length < len) {
+                bytes = new byte[Math.max(len, 2 * bytes.length)];
+            }
+            buf.get(bytes, 0, len);
+            alphabet[i] = new String(bytes, 0, len, StandardCharsets.UTF_8).intern();
+        }
+        return alphabet;
+    }
+
+    /** Reads the i'th value from a column of the given width. */
+    private static int get(ByteBuffer buf, int width, int i) {
+        switch (width) {
+        case 1: return buf.get(i) & 0xff;
+        case 2: return buf.getShort(2 * i) & 0xffff;
+        case 4: return buf.getInt(4 * i);
+        default: throw new IllegalStateException("Invalid width: " + width);
+        }
+    }
+
+    /** Gets the number of sentences in the corpus. */
+    public int getNumSents() {
+        return numSents;
+    }
+
+    /** Gets the number of tokens in the corpus. */
+    public int getNumTokens() {
+        return numTokens;
+    }
+
+    /** Gets the number of tokens in the s'th sentence. */
+    public int size(int s) {
+        return sentStarts.getInt(4 * (s + 1)) - sentStarts.getInt(4 * s);
+    }
+
+    /** Whether the s'th sentence has a value for the given column. */
+    public boolean hasColumn(int s, Column col) {
+        return (present.get(s) & (1 << col.ordinal())) != 0;
+    }
+
+    /**
+     * Gets the id of the i'th token of the s'th sentence for the given column. For PARENT this is
+     * the parent itself (-1 for the root). For FEAT use {@link #getFeatId(int, int, int)} instead.
+     */
+    public int getId(Column col, int s, int i) {
+        int c = col.ordinal();
+        int t = sentStarts.getInt(4 * s) + i;
+        int id = get(cols[c], widths[c], t);
+        return (col == Column.PARENT) ? id - 1 : id;
+    }
+
+    /** Gets the number of features of the i'th token of the s'th sentence. */
+    public int getNumFeats(int s, int i) {
+        int t = sentStarts.getInt(4 * s) + i;
+        return featStarts.getInt(4 * (t + 1)) - featStarts.getInt(4 * t);
+    }
+
+    /** Gets the id of the k'th feature of the i'th token of the s'th sentence. */
+    public int getFeatId(int s, int i, int k) {
+        int t = sentStarts.getInt(4 * s) + i;
+        int c = Column.FEAT.ordinal();
+        return get(cols[c], widths[c], featStarts.getInt(4 * t) + k);
+    }
+
+    /** Gets the string for an id of the given column. */
+    public String lookupString(Column col, int id) {
+        return alphabets[col.ordinal()][id];
+    }
+
+    /** Gets the number of types in the alphabet of the given column. */
+    public int getAlphabetSize(Column col) {
+        return alphabets[col.ordinal()].length;
+    }
+
+    /** Gets the s'th sentence. */
+    public AnnoSentence getSentence(int s) {
+        AnnoSentence sent = new AnnoSentence();
+        int n = size(s);
+        sent.setWords(getStrings(Column.WORD, s, n));
+        sent.setLemmas(getStrings(Column.LEMMA, s, n));
+        sent.setPosTags(getStrings(Column.POS, s, n));
+        sent.setCposTags(getStrings(Column.CPOS, s, n));
+        sent.setClusters(getStrings(Column.CLUSTER, s, n));
+        sent.setDeprels(getStrings(Column.DEPREL, s, n));
+        if (hasColumn(s, Column.FEAT)) {
+            List<List<String>> feats = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int numFeats = getNumFeats(s, i);
+                List<String> tokFeats = new ArrayList<>(numFeats);
+                for (int k = 0; k < numFeats; k++) {
+                    tokFeats.add(lookupString(Column.FEAT, getFeatId(s, i, k)));
+                }
+                feats.add(tokFeats);
+            }
+            sent.setFeats(feats);
+        }
+        if (hasColumn(s, Column.PARENT)) {
+            int[] parents = new int[n];
+            for (int i = 0; i < n; i++) {
+                parents[i] = getId(Column.PARENT, s, i);
+            }
+            sent.setParents(parents);
+        }
+        sent.setBinaryCorpus(this, s);
+        return sent;
+    }
+
+    private List<String> getStrings(Column col, int s, int n) {
+        if (!hasColumn(s, col)) {
+            return null;
+        }
+        List<String> strs = new ArrayList<>(n);
+        for (int i = 0; i < n; i++) {
+            strs.add(lookupString(col, getId(col, s, i)));
+        }
+        return strs;
+    }
+
+    /**
+     * Gets the s'th sentence along with its integer representation for the given store. This is
+     * equivalent to calling {@link IntAnnoSentence#IntAnnoSentence(AnnoSentence, AlphabetStore)}
+     * on {@link #getSentence(int)}, except that each type of the corpus is looked up in the store
+     * only once rather than once per token. The store must no longer be growing.
+     * 
+     * {@link AnnoSentence#getIntAnnoSentence(AlphabetStore)} uses this for the sentences read
+     * from a binary corpus, until one of their layers stored in the corpus is replaced.
+     */
+    public IntAnnoSentence getIntAnnoSentence(int s, AlphabetStore store) {
+        return getIntAnnoSentence(getSentence(s), s, store);
+    }
+
+    /** Gets the integer representation of sent, which must be the s'th sentence. */
+    IntAnnoSentence getIntAnnoSentence(AnnoSentence sent, int s, AlphabetStore store) {
+        return new IntAnnoSentence(sent, store, getStoreIds(store), this, s);
+    }
+
+    /** Gets the ids in the given store of each type in the corpus alphabets. */
+    synchronized StoreIds getStoreIds(AlphabetStore store) {
+        if (storeIds == null || storeIds.store != store) {
+            storeIds = new StoreIds(store);
+        }
+        return storeIds;
+    }
+
+    /** The ids in an {@link AlphabetStore} of the types in the corpus alphabets. */
+    class StoreIds {
+
+        final AlphabetStore store;
+        final int[] words;
+        final int[] lcWords;
+        final short[][] prefixes;
+        final short[][] suffixes;
+        final boolean[] isCapitalized;
+        final int[] lemmas;
+        final byte[] posTags;
+        final byte[] cposTags;
+        final int[] clusters;
+        final short[][] clusterPrefixes;
+        final short[] feats;
+        final byte[] deprels;
+
+        StoreIds(AlphabetStore store) {
+            this.store = store;
+            String[] ws = alphabets[Column.WORD.ordinal()];
+            words = getInts(ws, store.words);
+            String[] lcs = new String[ws.length];
+            isCapitalized = new boolean[ws.length];
+            for (int w = 0; w < ws.length; w++) {
+                lcs[w] = ws[w].toLowerCase();
+                isCapitalized[w] = FeaturizedToken.capitalized(ws[w]);
+            }
+            lcWords = getInts(lcs, store.lcWords);
+            prefixes = getAffixShorts(ws, store.prefixes, store.maxPrefixLen, true);
+            suffixes = getAffixShorts(ws, store.suffixes, store.maxSuffixLen, false);
+            lemmas = getInts(alphabets[Column.LEMMA.ordinal()], store.lemmas);
+            posTags = getBytes(alphabets[Column.POS.ordinal()], store.posTags);
+            cposTags = getBytes(alphabets[Column.CPOS.ordinal()], store.cposTags);
+            clusters = getInts(alphabets[Column.CLUSTER.ordinal()], store.clusters);
+            clusterPrefixes = getAffixShorts(alphabets[Column.CLUSTER.ordinal()], store.clusterPrefixes,
+                    store.maxClusterPrefixLen, true);
+            feats = getShorts(alphabets[Column.FEAT.ordinal()], store.feats);
+            deprels = getBytes(alphabets[Column.DEPREL.ordinal()], store.deprels);
+        }
+
+    }
+
+    private static int[] getInts(String[] types, IntObjectBimap<String> alphabet) {
+        int[] ids = new int[types.length];
+        for (int t = 0; t < types.length; t++) {
+            ids[t] = AlphabetStore.safeLookup(alphabet, types[t]);
+        }
+        return ids;
+    }
+
+    private static short[] getShorts(String[] types, IntObjectBimap<String> alphabet) {
+        short[] ids = new short[types.length];
+        for (int t = 0; t < types.length; t++) {
+            ids[t] = SafeCast.safeIntToUnsignedShort(AlphabetStore.safeLookup(alphabet, types[t]));
+        }
+        return ids;
+    }
+
+    private static byte[] getBytes(String[] types, IntObjectBimap<String> alphabet) {
+        byte[] ids = new byte[types.length];
+        for (int t = 0; t < types.length; t++) {
+            ids[t] = SafeCast.safeIntToUnsignedByte(AlphabetStore.safeLookup(alphabet, types[t]));
+        }
+        return ids;
+    }
+
+    private static short[][] getAffixShorts(String[] types, IntObjectBimap<String> alphabet,
+            int maxLen, boolean isPre) {
+        short[][] ids = new short[maxLen][];
+        for (int k = 0; k < maxLen; k++) {
+            String[] affixes = new String[types.length];
+            for (int t = 0; t < types.length; t++) {
+                affixes[t] = IntAnnoSentence.getAffix(types[t], k + 1, isPre);
+            }
+            ids[k] = getShorts(affixes, alphabet);
+        }
+        return ids;
+    }
+
+    @Override
+    public Iterator<AnnoSentence> iterator() {
+        return new Iterator<AnnoSentence>() {
+            private int s = 0;
+
+            @Override
+            public boolean hasNext() {
+                return s < numSents;
+            }
+
+            @Override
+            public AnnoSentence next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return getSentence(s++);
+            }
+
+            @Override
+            public void remove() {
+                throw new UnsupportedOperationException();
+            }
+        };
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+        // The memory mappings remain valid after the file is deleted.
+        if (deleteOnClose && file.exists() && !file.delete()) {
+            log.warn("Unable to delete " + file);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "BinaryCorpusReader [file=" + file + ", numSents=" + numSents + ", numTokens=" + numTokens + "]";
+    }
+
+}
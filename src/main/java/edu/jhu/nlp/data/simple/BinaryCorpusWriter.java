@@ -0,0 +1,201 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import edu.jhu.nlp.data.simple.BinaryCorpusReader.Column;
+import edu.jhu.prim.bimap.IntObjectBimap;
+import edu.jhu.prim.list.ByteArrayList;
+import edu.jhu.prim.list.IntArrayList;
+
+/**
+ * Writes annotated sentences to a binary columnar corpus which can be memory mapped by
+ * {@link BinaryCorpusReader}.
+ *
+ * Each string-valued column (words, lemmas, POS tags, coarse POS tags, clusters, features and
+ * dependency relations) has its own alphabet, and the ids of all the tokens in the corpus are
+ * stored contiguously with 1, 2 or 4 bytes per id depending on the size of that alphabet. The
+ * dependency parents are stored as the parent + 1. All other annotations are dropped.
+ *
+ * Since the width of each column is not known until every sentence has been seen, the ids are
+ * buffered in memory and the file is only written by {@link #close()}.
+ *
+ * The file layout is:
+ * <pre>
+ * header:    magic, version, numSents, numTokens, numFeatVals, width of each column, alphabet length
+ * alphabets: for each column with an alphabet, the number of types followed by each type as UTF-8
+ * present:   for each sentence, a bitmask of the columns it contains
+ * sentence starts: the index of the first token of each sentence (and the total number of tokens)
+ * feature starts:  the index of the first feature of each token (and the total number of features)
+ * columns:   the ids for each column, one per token (or one per feature for FEAT)
+ * </pre>
+ *
+ * @author mgormley
+ */
+public class BinaryCorpusWriter implements Closeable {
+
+    private final File out;
+    private final IntObjectBimap<String>[] alphabets;
+    private final IntArrayList[] cols;
+    private final ByteArrayList present = new ByteArrayList();
+    private final IntArrayList sentStarts = new IntArrayList();
+    private final IntArrayList featStarts = new IntArrayList();
+    private int numTokens = 0;
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    public BinaryCorpusWriter(File out) {
+        this.out = out;
+        this.alphabets = new IntObjectBimap[BinaryCorpusReader.NUM_COLS];
+        this.cols = new IntArrayList[BinaryCorpusReader.NUM_COLS];
+        for (Column col : Column.values()) {
+            if (col.hasAlphabet()) {
+                alphabets[col.ordinal()] = new IntObjectBimap<String>();
+            }
+            cols[col.ordinal()] = new IntArrayList();
+        }
+        sentStarts.add(0);
+        featStarts.add(0);
+    }
+
+    public void write(AnnoSentence sent) {
+        int n = sent.size();
+        int mask = 0;
+        mask |= add(Column.WORD, sent.getWords(), n);
+        mask |= add(Column.LEMMA, sent.getLemmas(), n);
+        mask |= add(Column.POS, sent.getPosTags(), n);
+        mask |= add(Column.CPOS, sent.getCposTags(), n);
+        mask |= add(Column.CLUSTER, sent.getClusters(), n);
+        mask |= add(Column.DEPREL, sent.getDeprels(), n);
+
+        IntArrayList featCol = cols[Column.FEAT.ordinal()];
+        List<List<String>> feats = sent.getFeats();
+        for (int i = 0; i < n; i++) {
+            if (feats != null) {
+                for (String feat : feats.get(i)) {
+                    featCol.add(alphabets[Column.FEAT.ordinal()].lookupIndex(feat));
+                }
+            }
+            featStarts.add(featCol.size());
+        }
+        if (feats != null) {
+            mask |= 1 << Column.FEAT.ordinal();
+        }
+
+        IntArrayList parentCol = cols[Column.PARENT.ordinal()];
+        int[] parents = sent.getParents();
+        for (int i = 0; i < n; i++) {
+            parentCol.add(parents == null ? 0 : parents[i] + 1);
+        }
+        if (parents != null) {
+            mask |= 1 << Column.PARENT.ordinal();
+        }
+
+        present.add((byte) mask);
+        numTokens += n;
+        sentStarts.add(numTokens);
+    }
+
+    /** Adds the ids for one column of a sentence, and returns its bit for the present mask. */
+    private int add(Column col, List<String> toks, int n) {
+        IntArrayList ids = cols[col.ordinal()];
+        IntObjectBimap<String> alphabet = alphabets[col.ordinal()];
+        for (int i = 0; i < n; i++) {
+            ids.add(toks == null ? 0 : alphabet.lookupIndex(toks.get(i)));
+        }
+        return toks == null ? 0 : 1 << col.ordinal();
+    }
+
+    public void write(AnnoSentenceCollection sents) {
+        for (AnnoSentence sent : sents) {
+            write(sent);
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        // Encode the alphabets first, so that we know their length.
+        byte[][][] types = new byte[BinaryCorpusReader.NUM_COLS][][];
+        long alphabetBytes = 0;
+        for (Column col : Column.values()) {
+            IntObjectBimap<String> alphabet = alphabets[col.ordinal()];
+            if (alphabet != null) {
+                types[col.ordinal()] = new byte[alphabet.size()][];
+                alphabetBytes += 4;
+                for (int t = 0; t < alphabet.size(); t++) {
+                    types[col.ordinal()][t] = alphabet.lookupObject(t).getBytes(StandardCharsets.UTF_8);
+                    alphabetBytes += 4 + types[col.ordinal()][t].length;
+                }
+            }
+        }
+        int[] widths = new int[BinaryCorpusReader.NUM_COLS];
+        for (Column col : Column.values()) {
+            widths[col.ordinal()] = getWidth(cols[col.ordinal()]);
+        }
+
+        try (DataOutputStream dos = new DataOutputStream(CompressedFiles.newOutputStream(out))) {
+            dos.writeInt(BinaryCorpusReader.MAGIC);
+            dos.writeInt(BinaryCorpusReader.VERSION);
+            dos.writeInt(present.size());
+            dos.writeInt(numTokens);
+            dos.writeInt(cols[Column.FEAT.ordinal()].size());
+            for (int width : widths) {
+                dos.writeByte(width);
+            }
+            dos.writeLong(alphabetBytes);
+            for (byte[][] alphabet : types) {
+                if (alphabet != null) {
+                    dos.writeInt(alphabet.length);
+                    for (byte[] type : alphabet) {
+                        dos.writeInt(type.length);
+                        dos.write(type);
+                    }
+                }
+            }
+            for (int s = 0; s < present.size(); s++) {
+                dos.writeByte(present.get(s));
+            }
+            writeInts(dos, sentStarts);
+            writeInts(dos, featStarts);
+            for (Column col : Column.values()) {
+                IntArrayList ids = cols[col.ordinal()];
+                int width = widths[col.ordinal()];
+                for (int t = 0; t < ids.size(); t++) {
+                    int id = ids.get(t);
+                    if (width == 1) {
+                        dos.writeByte(id);
+                    } else if (width == 2) {
+                        dos.writeShort(id);
+                    } else {
+                        dos.writeInt(id);
+                    }
+                }
+            }
+        }
+    }
+
+    /** Gets the number of bytes needed to store each of the (non-negative) ids. */
+    private static int getWidth(IntArrayList ids) {
+        int max = 0;
+        for (int t = 0; t < ids.size(); t++) {
+            max = Math.max(max, ids.get(t));
+        }
+        if (max <= 0xff) {
+            return 1;
+        } else if (max <= 0xffff) {
+            return 2;
+        } else {
+            return 4;
+        }
+    }
+
+    private static void writeInts(DataOutputStream dos, IntArrayList ints) throws IOException {
+        for (int i = 0; i < ints.size(); i++) {
+            dos.writeInt(ints.get(i));
+        }
+    }
+
+}
@@ -0,0 +1,252 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.util.ArrayDeque;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import edu.jhu.pacaya.util.Threads;
+
+/**
+ * Reads a block compressed gzip file, as written by {@link BlockGzipOutputStream}, decompressing
+ * the blocks in parallel.
+ *
+ * The compressed blocks are read sequentially, since each header gives the size of its block.
+ * They are then decompressed on the default thread pool (see {@link Threads#defaultPool}) and
+ * their contents are returned in order. At most a fixed number of blocks are in flight at once.
+ *
+ * The input may continue with ordinary gzip members (e.g. {@code cat a.bgz b.gz}). From the first
+ * member which is not a block, the rest of the input is read sequentially by a
+ * {@link GZIPInputStream}.
+ *
+ * @author mgormley
+ */
+public class BlockGzipInputStream extends InputStream {
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final InputStream in;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<byte[]>> inFlight = new ArrayDeque<>();
+    private boolean inputDone = false;
+    // The rest of the input from the first member which is not a block, or null if none.
+    private InputStream tail = null;
+    // The current decompressed block, of which cur[curPos, cur.length) is unread.
+    private byte[] cur = EMPTY;
+    private int curPos = 0;
+
+    public BlockGzipInputStream(InputStream in) {
+        this(in, 4 * Math.max(1, Threads.numThreads));
+    }
+
+    /**
+     * @param in The compressed input.
+     * @param maxInFlight The maximum number of blocks being decompressed or held at once.
+     */
+    public BlockGzipInputStream(InputStream in, int maxInFlight) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be positive: " + maxInFlight);
+        }
+        this.in = in;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Whether the stream starts with the header of a block written by
+     * {@link BlockGzipOutputStream}. The stream must support marks, and is reset to its current
+     * position.
+     */
+    public static boolean isBlockGzip(InputStream in) throws IOException {
+        byte[] h = new byte[BlockGzipOutputStream.HEADER_SIZE];
+        in.mark(h.length);
+        try {
+            return readFully(in, h, 0, h.length) == h.length && isBlockHeader(h);
+        } finally {
+            in.reset();
+        }
+    }
+
+    private static boolean isBlockHeader(byte[] h) {
+        return h[0] == 31 && (h[1] & 0xff) == 139 && h[2] == 8 && (h[3] & 4) != 0
+                && h[10] == 6 && h[11] == 0 && h[12] == 'B' && h[13] == 'C' && h[14] == 2 && h[15] == 0;
+    }
+
+    @Override
+    public int read() throws IOException {
+        while (curPos == cur.length) {
+            if (!nextBlock()) {
+                return (tail != null) ? tail.read() : -1;
+            }
+        }
+        return cur[curPos++] & 0xff;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        while (curPos == cur.length) {
+            if (!nextBlock()) {
+                return (tail != null) ? tail.read(b, off, len) : -1;
+            }
+        }
+        int n = Math.min(len, cur.length - curPos);
+        System.arraycopy(cur, curPos, b, off, n);
+        curPos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return cur.length - curPos;
+    }
+
+    private boolean nextBlock() throws IOException {
+        fill();
+        if (inFlight.isEmpty()) {
+            return false;
+        }
+        try {
+            cur = inFlight.removeFirst().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException(e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof IOException) {
+                throw (IOException) e.getCause();
+            }
+            throw new RuntimeException(e.getCause());
+        }
+        curPos = 0;
+        return true;
+    }
+
+    /** Submits blocks until the maximum number are in flight or the input is exhausted. */
+    private void fill() throws IOException {
+        while (!inputDone && inFlight.size() < maxInFlight) {
+            final byte[] block = readBlock();
+            if (block == null) {
+                inputDone = true;
+                break;
+            }
+            Callable<byte[]> inflate = new Callable<byte[]>() {
+                @Override
+                public byte[] call() throws Exception {
+                    return inflate(block);
+                }
+            };
+            inFlight.addLast(Threads.defaultPool.submit(inflate));
+        }
+    }
+
+    /**
+     * Reads the next compressed block, or returns null at the end of the input or of its blocks. In
+     * the latter case the rest of the input becomes the tail.
+     */
+    private byte[] readBlock() throws IOException {
+        byte[] h = new byte[BlockGzipOutputStream.HEADER_SIZE];
+        int n = readFully(in, h, 0, h.length);
+        if (n == 0) {
+            return null;
+        } else if (n < h.length || !isBlockHeader(h)) {
+            if (n >= 2 && h[0] == 31 && (h[1] & 0xff) == 139) {
+                // An ordinary gzip member.
+                tail = new GZIPInputStream(new SequenceInputStream(new ByteArrayInputStream(h, 0, n), in));
+                return null;
+            } else if (n < h.length) {
+                throw new EOFException("Truncated block header");
+            }
+            throw new ZipException("Not in gzip format");
+        }
+        int bsize = ((h[16] & 0xff) | ((h[17] & 0xff) << 8)) + 1;
+        int min = BlockGzipOutputStream.HEADER_SIZE + BlockGzipOutputStream.FOOTER_SIZE;
+        if (bsize < min) {
+            throw new ZipException("Corrupt block: size " + bsize + " is smaller than its header and footer");
+        }
+        byte[] block = new byte[bsize];
+        System.arraycopy(h, 0, block, 0, h.length);
+        if (readFully(in, block, h.length, bsize - h.length) < bsize - h.length) {
+            throw new EOFException("Truncated block");
+        }
+        int isize = readInt(block, bsize - 4);
+        if (isize < 0 || isize > BlockGzipOutputStream.MAX_BLOCK_SIZE) {
+            throw new ZipException("Corrupt block: uncompressed size " + (isize & 0xffffffffL)
+                    + " exceeds the maximum of " + BlockGzipOutputStream.MAX_BLOCK_SIZE);
+        }
+        return block;
+    }
+
+    private static byte[] inflate(byte[] block) throws IOException {
+        int bsize = block.length;
+        int isize = readInt(block, bsize - 4);
+        int crc = readInt(block, bsize - 8);
+        byte[] out = new byte[isize];
+        Inflater inflater = new Inflater(true);
+        try {
+            int hlen = BlockGzipOutputStream.HEADER_SIZE;
+            inflater.setInput(block, hlen, bsize - hlen - BlockGzipOutputStream.FOOTER_SIZE);
+            int n = 0;
+            while (n < isize) {
+                int r = inflater.inflate(out, n, isize - n);
+                if (r == 0 && (inflater.finished() || inflater.needsInput())) {
+                    break;
+                }
+                n += r;
+            }
+            if (n != isize) {
+                throw new ZipException("Corrupt block: expected " + isize + " bytes but found " + n);
+            }
+        } catch (DataFormatException e) {
+            throw new ZipException(e.getMessage());
+        } finally {
+            inflater.end();
+        }
+        CRC32 crc32 = new CRC32();
+        crc32.update(out, 0, isize);
+        if ((int) crc32.getValue() != crc) {
+            throw new ZipException("Corrupt block: CRC mismatch");
+        }
+        return out;
+    }
+
+    private static int readInt(byte[] b, int off) {
+        return (b[off] & 0xff) | ((b[off + 1] & 0xff) << 8) | ((b[off + 2] & 0xff) << 16) | ((b[off + 3] & 0xff) << 24);
+    }
+
+    /** Reads until the buffer is full or the stream ends, returning the number of bytes read. */
+    private static int readFully(InputStream in, byte[] b, int off, int len) throws IOException {
+        int n = 0;
+        while (n < len) {
+            int r = in.read(b, off + n, len - n);
+            if (r < 0) {
+                break;
+            }
+            n += r;
+        }
+        return n;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<?> f : inFlight) {
+            f.cancel(false);
+        }
+        inFlight.clear();
+        if (tail != null) {
+            tail.close();
+        }
+        in.close();
+    }
+
+}
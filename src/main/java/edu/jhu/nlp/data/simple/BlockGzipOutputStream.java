@@ -0,0 +1,155 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+/**
+ * Writes a block compressed gzip file.
+ *
+ * The output is a sequence of independent gzip members, each holding at most
+ * {@link #BLOCK_SIZE} bytes of input and recording its own compressed size in an extra header
+ * field (the "BGZF" layout used by samtools). Any gzip reader can read the file as usual, but
+ * {@link BlockGzipInputStream} can also find the block boundaries without decompressing and so
+ * decompress the blocks in parallel.
+ *
+ * @author mgormley
+ */
+public class BlockGzipOutputStream extends FilterOutputStream {
+
+    /** The maximum number of uncompressed bytes in a block, chosen so that a compressed block always fits in 64 KB. */
+    public static final int BLOCK_SIZE = 0xff00;
+    /** The maximum size of a compressed block, including its header and footer. */
+    public static final int MAX_BLOCK_SIZE = 1 << 16;
+    /** The size of a block header. */
+    static final int HEADER_SIZE = 18;
+    /** The size of a block footer: the CRC-32 and the uncompressed size. */
+    static final int FOOTER_SIZE = 8;
+
+    private final byte[] buf = new byte[BLOCK_SIZE];
+    private final byte[] block = new byte[MAX_BLOCK_SIZE];
+    private final Deflater deflater;
+    private final CRC32 crc = new CRC32();
+    private int count = 0;
+    private boolean closed = false;
+
+    public BlockGzipOutputStream(OutputStream out) {
+        this(out, Deflater.DEFAULT_COMPRESSION);
+    }
+
+    public BlockGzipOutputStream(OutputStream out, int level) {
+        super(out);
+        this.deflater = new Deflater(level, true);
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) {
+            writeBlock();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        while (len > 0) {
+            if (count == buf.length) {
+                writeBlock();
+            }
+            int n = Math.min(len, buf.length - count);
+            System.arraycopy(b, off, buf, count, n);
+            count += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    /** Writes out the buffered bytes as a block. The underlying stream is not flushed. */
+    @Override
+    public void flush() throws IOException {
+        if (count > 0) {
+            writeBlock();
+        }
+        out.flush();
+    }
+
+    /** Writes the buffered bytes, followed by an empty block which marks the end of the file. */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (count > 0) {
+                writeBlock();
+            }
+            writeBlock();
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+
+    private void writeBlock() throws IOException {
+        deflater.reset();
+        deflater.setInput(buf, 0, count);
+        deflater.finish();
+        int clen = 0;
+        int max = MAX_BLOCK_SIZE - HEADER_SIZE - FOOTER_SIZE;
+        while (!deflater.finished() && clen < max) {
+            clen += deflater.deflate(block, HEADER_SIZE + clen, max - clen);
+        }
+        if (!deflater.finished()) {
+            // Incompressible input: store it instead. This always fits by the choice of BLOCK_SIZE.
+            clen = store(buf, count, block, HEADER_SIZE);
+        }
+        crc.reset();
+        crc.update(buf, 0, count);
+        int bsize = HEADER_SIZE + clen + FOOTER_SIZE;
+        writeHeader(block, bsize);
+        writeInt(block, HEADER_SIZE + clen, (int) crc.getValue());
+        writeInt(block, HEADER_SIZE + clen + 4, count);
+        out.write(block, 0, bsize);
+        count = 0;
+    }
+
+    /** Writes the input as a single stored (uncompressed) deflate block, returning its length. */
+    private static int store(byte[] in, int len, byte[] out, int off) {
+        out[off] = 1; // Final block, stored.
+        out[off + 1] = (byte) len;
+        out[off + 2] = (byte) (len >>> 8);
+        out[off + 3] = (byte) ~len;
+        out[off + 4] = (byte) (~len >>> 8);
+        System.arraycopy(in, 0, out, off + 5, len);
+        return len + 5;
+    }
+
+    private static void writeHeader(byte[] b, int bsize) {
+        b[0] = 31; // ID1
+        b[1] = (byte) 139; // ID2
+        b[2] = 8; // CM = deflate
+        b[3] = 4; // FLG = FEXTRA
+        b[4] = b[5] = b[6] = b[7] = 0; // MTIME
+        b[8] = 0; // XFL
+        b[9] = (byte) 255; // OS = unknown
+        b[10] = 6; // XLEN
+        b[11] = 0;
+        b[12] = 'B'; // SI1
+        b[13] = 'C'; // SI2
+        b[14] = 2; // SLEN
+        b[15] = 0;
+        b[16] = (byte) (bsize - 1); // BSIZE
+        b[17] = (byte) ((bsize - 1) >>> 8);
+    }
+
+    private static void writeInt(byte[] b, int off, int v) {
+        b[off] = (byte) v;
+        b[off + 1] = (byte) (v >>> 8);
+        b[off + 2] = (byte) (v >>> 16);
+        b[off + 3] = (byte) (v >>> 24);
+    }
+
+}
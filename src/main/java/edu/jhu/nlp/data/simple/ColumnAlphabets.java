@@ -0,0 +1,30 @@
+package edu.jhu.nlp.data.simple;
+
+import edu.jhu.nlp.features.TemplateLanguage.AT;
+
+/**
+ * One {@link StringAlphabet} per annotation layer, for compacting sentences into columns (see
+ * {@link AnnoSentence#compact(ColumnAlphabets)}).
+ *
+ * Keeping the layers apart lets each {@link StringColumn} use the narrowest IDs its layer needs:
+ * the tag layers have few enough types for a byte per token, even when the words do not.
+ *
+ * Like {@link StringAlphabet}, this should be owned by whatever owns the compacted sentences.
+ *
+ * @author mgormley
+ */
+public class ColumnAlphabets {
+
+    private final StringAlphabet[] alphabets = new StringAlphabet[AT.values().length];
+
+    /** Gets the alphabet for the given layer, creating it if needed. */
+    public synchronized StringAlphabet get(AT at) {
+        StringAlphabet alphabet = alphabets[at.ordinal()];
+        if (alphabet == null) {
+            alphabet = new StringAlphabet();
+            alphabets[at.ordinal()] = alphabet;
+        }
+        return alphabet;
+    }
+
+}
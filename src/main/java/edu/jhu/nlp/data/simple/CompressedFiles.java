@@ -0,0 +1,120 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.util.zip.GZIPInputStream;
+
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorOutputStream;
+import org.apache.commons.compress.utils.IOUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.pacaya.util.Threads;
+
+/**
+ * Buffered reading and writing of files which may be compressed, chosen by file extension:
+ * ".gz" for gzip and ".bz2" for bzip2. Any other file is read and written as is.
+ *
+ * Gzip output is block compressed (see {@link BlockGzipOutputStream}), so that it can be read
+ * by any gzip reader, but is decompressed in parallel (see {@link BlockGzipInputStream}) when
+ * there is a default thread pool with more than one thread. Other gzip files are decompressed
+ * on the calling thread.
+ *
+ * @author mgormley
+ */
+public class CompressedFiles {
+
+    private static final Logger log = LoggerFactory.getLogger(CompressedFiles.class);
+    private static final int BUFFER_SIZE = 1 << 16;
+
+    private CompressedFiles() {
+        // Private constructor.
+    }
+
+    public static boolean isGzip(File file) {
+        return file.getName().endsWith(".gz");
+    }
+
+    public static boolean isBzip2(File file) {
+        return file.getName().endsWith(".bz2");
+    }
+
+    public static boolean isCompressed(File file) {
+        return isGzip(file) || isBzip2(file);
+    }
+
+    /** Opens a buffered stream of the (decompressed) contents of the file. */
+    public static InputStream newInputStream(File file) throws IOException {
+        InputStream is = new BufferedInputStream(new FileInputStream(file), BUFFER_SIZE);
+        try {
+            if (isGzip(file)) {
+                if (Threads.numThreads > 1 && BlockGzipInputStream.isBlockGzip(is)) {
+                    return new BlockGzipInputStream(is);
+                }
+                return new BufferedInputStream(new GZIPInputStream(is, BUFFER_SIZE), BUFFER_SIZE);
+            } else if (isBzip2(file)) {
+                return new BufferedInputStream(new BZip2CompressorInputStream(is, true), BUFFER_SIZE);
+            } else {
+                return is;
+            }
+        } catch (IOException e) {
+            is.close();
+            throw e;
+        }
+    }
+
+    /** Opens a buffered stream which compresses its output to the file. */
+    public static OutputStream newOutputStream(File file) throws IOException {
+        OutputStream os = new BufferedOutputStream(new FileOutputStream(file), BUFFER_SIZE);
+        if (isGzip(file)) {
+            // The blocks are written whole, so no buffer is needed in front of this stream.
+            return new BlockGzipOutputStream(os);
+        } else if (isBzip2(file)) {
+            return new BufferedOutputStream(new BZip2CompressorOutputStream(os), BUFFER_SIZE);
+        } else {
+            return os;
+        }
+    }
+
+    public static BufferedReader newReader(File file, String charset) throws IOException {
+        return new BufferedReader(new InputStreamReader(newInputStream(file), charset));
+    }
+
+    public static BufferedWriter newWriter(File file, String charset) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(newOutputStream(file), charset));
+    }
+
+    /**
+     * Gets an uncompressed copy of the file for readers which need random access. If the file is
+     * compressed, it is decompressed to a new temporary file, which the caller is responsible for
+     * deleting when it differs from the given file. Otherwise, the file itself is returned.
+     */
+    public static File toUncompressedFile(File file) throws IOException {
+        if (!isCompressed(file)) {
+            return file;
+        }
+        File tmp = File.createTempFile(file.getName() + ".", ".tmp");
+        log.info("Decompressing " + file + " to " + tmp);
+        try (InputStream is = newInputStream(file); OutputStream os = new FileOutputStream(tmp)) {
+            IOUtils.copy(is, os, BUFFER_SIZE);
+        } catch (IOException | RuntimeException e) {
+            if (!tmp.delete()) {
+                log.warn("Unable to delete temporary file: " + tmp);
+            }
+            throw e;
+        }
+        return tmp;
+    }
+
+}
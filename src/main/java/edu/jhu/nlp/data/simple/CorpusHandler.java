@@ -114,6 +114,8 @@ public class CorpusHandler {
     public static String concreteSrlTool = null;
     @Opt(hasArg = true, description = "Tool name of SPRL for ConcreteReader.")
     public static String concreteSprlTool = null;
+    @Opt(hasArg = true, description = "Whether to store the string annotations of each sentence as compact columns of IDs.")
+    public static boolean compactSents = true;
 
 
     private AnnoSentenceCollection trainGoldSents;
@@ -125,6 +127,9 @@ public class CorpusHandler {
 
     private AnnoSentenceCollection trainAsDevSents;
 
+    // The dictionaries of the compacted sentences, which live as long as this handler.
+    private final ColumnAlphabets alphabets = new ColumnAlphabets();
+
     // -------------------- Train data --------------------------
 
     public boolean hasTrain() {
@@ -174,6 +179,9 @@ public class CorpusHandler {
 
         // Cache gold train data.
         trainGoldSents = reader.getData();
+        if (compactSents) {
+            trainGoldSents.compact(alphabets);
+        }
         trainGoldSents = trainGoldSents.getWithAtsRemoved(getRemoveAts());
 
         if (hasTrain() && propTrainAsDev > 0) {
@@ -281,6 +289,9 @@ public class CorpusHandler {
 
         // Cache gold dev data.
         devGoldSents = reader.getData();
+        if (compactSents) {
+            devGoldSents.compact(alphabets);
+        }
         devGoldSents = devGoldSents.getWithAtsRemoved(getRemoveAts());
 
         // Cache input dev data.
@@ -354,12 +365,58 @@ public class CorpusHandler {
 
         // Cache gold test data.
         testGoldSents = reader.getData();
+        if (compactSents) {
+            testGoldSents.compact(alphabets);
+        }
         testGoldSents = testGoldSents.getWithAtsRemoved(getRemoveAts());
         if (!testHasGold) { testGoldSents = null; }
         // Cache input test data.
         testInputSents = testGoldSents.getWithAtsRemoved(getGoldOnlyAts());
     }
 
+    /**
+     * Opens a stream over the test input sentences, with the removed and gold-only annotations
+     * stripped from each sentence as it is read. The caller must close the returned iterable.
+     */
+    public CloseableIterable<AnnoSentence> openTestInput() throws IOException {
+        if (!hasTest()) {
+            return null;
+        }
+        AnnoSentenceReaderPrm prm = getDefaultReaderPrm();
+        prm.name = "test";
+        prm.maxNumSentences = testMaxNumSentences;
+        prm.maxSentenceLength = testMaxSentenceLength;
+        // Keep the Communications with no sentences left for the streaming Concrete writer.
+        prm.rePrm.trackComms = (testPredOut != null && getTestTypeOut() == DatasetType.CONCRETE);
+        AnnoSentenceReader reader = new AnnoSentenceReader(prm);
+        final Set<AT> removeAts = QSets.union(getRemoveAts(), getGoldOnlyAts());
+        return ConvCloseableIterable.getInstance(reader.openSents(test, testType), new Converter<AnnoSentence, AnnoSentence>() {
+            @Override
+            public AnnoSentence convert(AnnoSentence sent) {
+                AnnoSentence input = sent.getShallowCopy();
+                input.removeAts(removeAts);
+                // Keep the source (e.g. the Concrete Communication) for streaming output.
+                input.setSourceSent(sent.getSourceSent());
+                return input;
+            }
+        });
+    }
+
+    /**
+     * Opens a streaming writer for the predicted test data, or returns null if there is no
+     * predicted test output file. The caller must close the returned writer.
+     */
+    public AnnoSentenceWriter openTestPredsWriter() throws IOException {
+        if (testPredOut == null) {
+            return null;
+        }
+        AnnoSentenceWriterPrm wPrm = new AnnoSentenceWriterPrm();
+        wPrm.name = "predicted test";
+        AnnoSentenceWriter writer = new AnnoSentenceWriter(wPrm);
+        writer.open(testPredOut, getTestTypeOut());
+        return writer;
+    }
+
     public void writeTestGold() throws IOException {
         if (!testHasGold) { throw new IllegalStateException("Test does not have gold data to write."); }
         if (testGoldSents != null && testGoldOut != null) {
@@ -1,28 +1,30 @@
 package edu.jhu.nlp.data.simple;
 
+import java.util.Arrays;
 import java.util.List;
 
 import edu.jhu.nlp.data.DepGraph;
+import edu.jhu.nlp.data.simple.BinaryCorpusReader.Column;
 import edu.jhu.nlp.features.FeaturizedToken;
 import edu.jhu.nlp.tag.StrictPosTagAnnotator.StrictPosTag;
 import edu.jhu.prim.bimap.IntObjectBimap;
 import edu.jhu.prim.list.ByteArrayList;
-import edu.jhu.prim.list.IntArrayList;
 import edu.jhu.prim.list.ShortArrayList;
 import edu.jhu.prim.util.SafeCast;
 
 public class IntAnnoSentence {
 
-    private ShortArrayList words;
-    private ShortArrayList lcWords; // lower-case words
+    // Words, lemmas and clusters are tiered, since their alphabets may exceed a short.
+    private TieredIdList words;
+    private TieredIdList lcWords; // lower-case words
     private ShortArrayList[] prefixes;
     private ShortArrayList[] suffixes;
     private boolean[] isCapitalized;    
-    private ShortArrayList lemmas;
+    private TieredIdList lemmas;
     private ByteArrayList posTags;
     private ByteArrayList cposTags;
     private ByteArrayList coarserPosTags;
-    private ShortArrayList clusters;
+    private TieredIdList clusters;
     private ShortArrayList[] clusterPrefixes;
     private ShortArrayList[] feats;
     private ByteArrayList deprels;
@@ -39,52 +41,171 @@ public class IntAnnoSentence {
     private AlphabetStore store;
     
     public IntAnnoSentence(AnnoSentence sent, AlphabetStore store) {
+        reset(sent, store);
+    }
+
+    /**
+     * Rebuilds this integer representation for a different sentence (or store), reusing the
+     * buffers from the previous sentence. In steady state this avoids allocating the columns.
+     *
+     * This must only be called when nothing else refers to this object (e.g. a scratch object
+     * used for counting), since all of its columns are overwritten.
+     */
+    public void reset(AnnoSentence sent, AlphabetStore store) {
         this.sent = sent;
         this.store = store;
-        this.words = getShorts(sent.getWords(), store.words);
-        this.lcWords = getShorts(sent.getLowerCaseWords(), store.lcWords);
-        this.prefixes = getAffixShorts(sent.getWords(), store.prefixes, store.maxPrefixLen, true);
-        this.suffixes = getAffixShorts(sent.getWords(), store.suffixes, store.maxSuffixLen, false);
-        this.isCapitalized = getIsCapitalized(sent.getWords());
-        this.lemmas = getShorts(sent.getLemmas(), store.lemmas);
-        this.posTags = getBytes(sent.getPosTags(), store.posTags);
-        this.cposTags = getBytes(sent.getCposTags(), store.cposTags);
-        this.clusters = getShorts(sent.getClusters(), store.clusters);
-        this.clusterPrefixes = getAffixShorts(sent.getClusters(), store.clusterPrefixes, store.maxClusterPrefixLen, true);
+        this.words = getTiered(sent.getWords(), store.words, words);
+        this.lcWords = getTiered(sent.getLowerCaseWords(), store.lcWords, lcWords);
+        this.prefixes = getAffixShorts(sent.getWords(), store.prefixes, store.maxPrefixLen, true, prefixes);
+        this.suffixes = getAffixShorts(sent.getWords(), store.suffixes, store.maxSuffixLen, false, suffixes);
+        this.isCapitalized = getIsCapitalized(sent.getWords(), isCapitalized);
+        this.lemmas = getTiered(sent.getLemmas(), store.lemmas, lemmas);
+        this.posTags = getBytes(sent.getPosTags(), store.posTags, posTags);
+        this.cposTags = getBytes(sent.getCposTags(), store.cposTags, cposTags);
+        this.clusters = getTiered(sent.getClusters(), store.clusters, clusters);
+        this.clusterPrefixes = getAffixShorts(sent.getClusters(), store.clusterPrefixes, store.maxClusterPrefixLen, true, clusterPrefixes);
         if (sent.getFeats() != null) {
-            this.feats = new ShortArrayList[sent.getFeats().size()];
-            for (int i=0; i<feats.length; i++) {
-                this.feats[i] = getShorts(sent.getFeats(i), store.feats);
+            int n = sent.getFeats().size();
+            if (feats == null || feats.length != n) {
+                feats = (feats == null) ? new ShortArrayList[n] : Arrays.copyOf(feats, n);
+            }
+            for (int i=0; i<n; i++) {
+                this.feats[i] = getShorts(sent.getFeats(i), store.feats, feats[i]);
             }
+        } else {
+            this.feats = null;
         }
-        this.deprels = getBytes(sent.getDeprels(), store.deprels);
+        this.deprels = getBytes(sent.getDeprels(), store.deprels, deprels);
         if (sent.getSrlGraph() != null) {
-            this.srlPredSenses = getShorts(sent.getPredSenses(), store.srlPredSenses);
-            this.srlArgs = getBytesFromDepGraph(sent.getSrlGraph(), store.srlArgs);
+            this.srlPredSenses = getShorts(sent.getPredSenses(), store.srlPredSenses, srlPredSenses);
+            this.srlArgs = getBytesFromDepGraph(sent.getSrlGraph(), store.srlArgs, srlArgs);
+        } else {
+            this.srlPredSenses = null;
+            this.srlArgs = null;
         }
         if (StrictPosTag.values().length > AlphabetStore.MAX_STRICT_POS) {
             throw new IllegalStateException("Too many strict POS tags.");
         }
-        this.coarserPosTags = getBytesFromEnums(sent.getStrictPosTags());
-        this.numVerbsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.VERB);
-        this.numNounsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.NOUN);
-        this.numPuncsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.PUNC);
-        this.numConjsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.CONJ);
+        this.coarserPosTags = getBytesFromEnums(sent.getStrictPosTags(), coarserPosTags);
+        this.numVerbsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.VERB, numVerbsToLeft);
+        this.numNounsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.NOUN, numNounsToLeft);
+        this.numPuncsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.PUNC, numPuncsToLeft);
+        this.numConjsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.CONJ, numConjsToLeft);
+    }
+
+    /**
+     * Constructs the integer representation of the s'th sentence of a binary corpus, where sent
+     * is that sentence. Each token is mapped through the precomputed ids of its type, so no
+     * strings are looked up in the store.
+     */
+    IntAnnoSentence(AnnoSentence sent, AlphabetStore store, BinaryCorpusReader.StoreIds ids, BinaryCorpusReader corpus, int s) {
+        this.sent = sent;
+        this.store = store;
+        int n = corpus.size(s);
+        if (corpus.hasColumn(s, Column.WORD)) {
+            this.words = getTiered(corpus, Column.WORD, s, n, ids.words);
+            this.lcWords = getTiered(corpus, Column.WORD, s, n, ids.lcWords);
+            this.prefixes = getAffixShorts(corpus, Column.WORD, s, n, ids.prefixes);
+            this.suffixes = getAffixShorts(corpus, Column.WORD, s, n, ids.suffixes);
+            this.isCapitalized = new boolean[n];
+            for (int i=0; i<n; i++) {
+                isCapitalized[i] = ids.isCapitalized[corpus.getId(Column.WORD, s, i)];
+            }
+        }
+        this.lemmas = getTiered(corpus, Column.LEMMA, s, n, ids.lemmas);
+        this.posTags = getBytes(corpus, Column.POS, s, n, ids.posTags);
+        this.cposTags = getBytes(corpus, Column.CPOS, s, n, ids.cposTags);
+        this.clusters = getTiered(corpus, Column.CLUSTER, s, n, ids.clusters);
+        this.clusterPrefixes = getAffixShorts(corpus, Column.CLUSTER, s, n, ids.clusterPrefixes);
+        if (corpus.hasColumn(s, Column.FEAT)) {
+            this.feats = new ShortArrayList[n];
+            for (int i=0; i<n; i++) {
+                int numFeats = corpus.getNumFeats(s, i);
+                feats[i] = new ShortArrayList(numFeats);
+                for (int k=0; k<numFeats; k++) {
+                    feats[i].add(ids.feats[corpus.getFeatId(s, i, k)]);
+                }
+            }
+        }
+        this.deprels = getBytes(corpus, Column.DEPREL, s, n, ids.deprels);
+        // The binary corpus does not store SRL or strict POS tags, so these come from the sentence.
+        if (sent.getSrlGraph() != null) {
+            this.srlPredSenses = getShorts(sent.getPredSenses(), store.srlPredSenses, null);
+            this.srlArgs = getBytesFromDepGraph(sent.getSrlGraph(), store.srlArgs, null);
+        }
+        this.coarserPosTags = getBytesFromEnums(sent.getStrictPosTags(), null);
+        this.numVerbsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.VERB, null);
+        this.numNounsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.NOUN, null);
+        this.numPuncsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.PUNC, null);
+        this.numConjsToLeft = getNumToLeft(sent.getStrictPosTags(), StrictPosTag.CONJ, null);
+    }
+
+    private static ShortArrayList getShorts(BinaryCorpusReader corpus, Column col, int s, int n, short[] typeIds) {
+        if (!corpus.hasColumn(s, col)) { return null; }
+        ShortArrayList arr = new ShortArrayList(n);
+        for (int i=0; i<n; i++) {
+            arr.add(typeIds[corpus.getId(col, s, i)]);
+        }
+        return arr;
+    }
+
+    private static TieredIdList getTiered(BinaryCorpusReader corpus, Column col, int s, int n, int[] typeIds) {
+        if (!corpus.hasColumn(s, col)) { return null; }
+        TieredIdList arr = new TieredIdList(n);
+        for (int i=0; i<n; i++) {
+            arr.add(typeIds[corpus.getId(col, s, i)]);
+        }
+        return arr;
+    }
+
+    private static ByteArrayList getBytes(BinaryCorpusReader corpus, Column col, int s, int n, byte[] typeIds) {
+        if (!corpus.hasColumn(s, col)) { return null; }
+        ByteArrayList arr = new ByteArrayList(n);
+        for (int i=0; i<n; i++) {
+            arr.add(typeIds[corpus.getId(col, s, i)]);
+        }
+        return arr;
+    }
+
+    private static ShortArrayList[] getAffixShorts(BinaryCorpusReader corpus, Column col, int s, int n, short[][] typeIds) {
+        if (!corpus.hasColumn(s, col)) { return null; }
+        ShortArrayList[] arr = new ShortArrayList[typeIds.length];
+        for (int k=0; k<typeIds.length; k++) {
+            arr[k] = getShorts(corpus, col, s, n, typeIds[k]);
+        }
+        return arr;
+    }
+
+    /** Clears and returns the buffer, or returns a new list if the buffer is null. */
+    private static ShortArrayList reuse(ShortArrayList buf, int capacity) {
+        if (buf == null) { return new ShortArrayList(capacity); }
+        buf.clear();
+        return buf;
     }
 
-    private static IntArrayList getInts(List<String> tokens, IntObjectBimap<String> alphabet) {
+    private static ByteArrayList reuse(ByteArrayList buf, int capacity) {
+        if (buf == null) { return new ByteArrayList(capacity); }
+        buf.clear();
+        return buf;
+    }
+
+    private static TieredIdList getTiered(List<String> tokens, IntObjectBimap<String> alphabet, TieredIdList buf) {
         if (tokens == null) { return null; }
-        IntArrayList arr = new IntArrayList(tokens.size());
+        TieredIdList arr = buf;
+        if (arr == null) {
+            arr = new TieredIdList(tokens.size());
+        } else {
+            arr.clear();
+        }
         for (int i=0; i<tokens.size(); i++) {
-            int idx = AlphabetStore.safeLookup(alphabet, tokens.get(i));
-            arr.add(idx);
+            arr.add(AlphabetStore.safeLookup(alphabet, tokens.get(i)));
         }
         return arr;
     }
-    
-    private static ShortArrayList getShorts(List<String> tokens, IntObjectBimap<String> alphabet) {
+
+    private static ShortArrayList getShorts(List<String> tokens, IntObjectBimap<String> alphabet, ShortArrayList buf) {
         if (tokens == null) { return null; }
-        ShortArrayList arr = new ShortArrayList(tokens.size());
+        ShortArrayList arr = reuse(buf, tokens.size());
         for (int i=0; i<tokens.size(); i++) {
             int idx = AlphabetStore.safeLookup(alphabet, tokens.get(i));
             arr.add(SafeCast.safeIntToUnsignedShort(idx));
@@ -92,9 +213,9 @@ public class IntAnnoSentence {
         return arr;
     }
     
-    private static ByteArrayList getBytes(List<String> tokens, IntObjectBimap<String> alphabet) {
+    private static ByteArrayList getBytes(List<String> tokens, IntObjectBimap<String> alphabet, ByteArrayList buf) {
         if (tokens == null) { return null; }
-        ByteArrayList arr = new ByteArrayList(tokens.size());
+        ByteArrayList arr = reuse(buf, tokens.size());
         for (int i=0; i<tokens.size(); i++) {
             int idx = AlphabetStore.safeLookup(alphabet, tokens.get(i));
             arr.add(SafeCast.safeIntToUnsignedByte(idx));
@@ -102,9 +223,9 @@ public class IntAnnoSentence {
         return arr;
     }
     
-    private static ByteArrayList getBytesFromEnums(List<? extends Enum<?>> tokens) {
+    private static ByteArrayList getBytesFromEnums(List<? extends Enum<?>> tokens, ByteArrayList buf) {
         if (tokens == null) { return null; }
-        ByteArrayList arr = new ByteArrayList(tokens.size());
+        ByteArrayList arr = reuse(buf, tokens.size());
         for (int i=0; i<tokens.size(); i++) {
             int idx = tokens.get(i).ordinal();
             arr.add(SafeCast.safeIntToUnsignedByte(idx));
@@ -112,9 +233,9 @@ public class IntAnnoSentence {
         return arr;
     }
 
-    private static <X> ShortArrayList getNumToLeft(List<X> tokens, X type) {
+    private static <X> ShortArrayList getNumToLeft(List<X> tokens, X type, ShortArrayList buf) {
         if (tokens == null) { return null; }
-        ShortArrayList arr = new ShortArrayList(tokens.size());
+        ShortArrayList arr = reuse(buf, tokens.size() + 1);
         int numSeen = 0;
         for (int i=0; i<=tokens.size(); i++) {
             arr.add(SafeCast.safeIntToShort(numSeen));
@@ -125,12 +246,12 @@ public class IntAnnoSentence {
         return arr;
     }
     
-    private static ShortArrayList[] getAffixShorts(List<String> tokens, IntObjectBimap<String> alphabet, int maxLen, boolean isPre) {
+    private static ShortArrayList[] getAffixShorts(List<String> tokens, IntObjectBimap<String> alphabet, int maxLen, boolean isPre, ShortArrayList[] buf) {
         if (tokens == null) { return null; }
         // TODO: Simpler? short[][] arr2d = new short[maxLen][tokens.size()];
-        ShortArrayList[] arr = new ShortArrayList[maxLen];
+        ShortArrayList[] arr = (buf != null && buf.length == maxLen) ? buf : new ShortArrayList[maxLen];
         for (int k=0; k<maxLen; k++) {
-            arr[k] = new ShortArrayList(tokens.size());
+            arr[k] = reuse(arr[k], tokens.size());
             for (int i=0; i<tokens.size(); i++) {
                 int idx = AlphabetStore.safeLookup(alphabet, IntAnnoSentence.getAffix(tokens.get(i), k+1, isPre));
                 arr[k].add(SafeCast.safeIntToUnsignedShort(idx));
@@ -139,9 +260,9 @@ public class IntAnnoSentence {
         return arr;
     }
 
-    private static boolean[] getIsCapitalized(List<String> words) {
+    private static boolean[] getIsCapitalized(List<String> words, boolean[] buf) {
         if (words == null) { return null; }
-        boolean[] isCapitalized = new boolean[words.size()];
+        boolean[] isCapitalized = (buf != null && buf.length == words.size()) ? buf : new boolean[words.size()];
         for (int i=0; i<words.size(); i++) {
             isCapitalized[i] = FeaturizedToken.capitalized(words.get(i));
         }
@@ -149,10 +270,10 @@ public class IntAnnoSentence {
     }
 
     /** Gets all edges except for (-1, c) edges. */
-    private static ByteArrayList getBytesFromDepGraph(DepGraph graph, IntObjectBimap<String> alphabet) {
+    private static ByteArrayList getBytesFromDepGraph(DepGraph graph, IntObjectBimap<String> alphabet, ByteArrayList buf) {
         if (graph == null) { return null; }
         int n = graph.size();
-        ByteArrayList edges = new ByteArrayList(n*n);
+        ByteArrayList edges = reuse(buf, n*n);
         for (int p=0; p<n; p++) {
             for (int c=0; c<n; c++) {
                 int idx = AlphabetStore.safeLookup(alphabet, graph.get(p, c));
@@ -163,14 +284,24 @@ public class IntAnnoSentence {
         return edges;
     }
     
-    /** Gets the i'th word. */
+    /** Gets the i'th word, or UNK if its ID does not fit in a short. */
     public short getWord(int i) {
-        return words.get(i);
+        return words.getShort(i);
+    }
+
+    /** Gets the i'th word, including IDs beyond the range of a short. */
+    public int getWordInt(int i) {
+        return words.getInt(i);
     }
     
-    /** Gets the i'th lowercased word. */
+    /** Gets the i'th lowercased word, or UNK if its ID does not fit in a short. */
     public short getLcWord(int i) {
-        return lcWords.get(i);
+        return lcWords.getShort(i);
+    }
+
+    /** Gets the i'th lowercased word, including IDs beyond the range of a short. */
+    public int getLcWordInt(int i) {
+        return lcWords.getInt(i);
     }
 
     /** Gets the i'th prefix of length len. */
@@ -188,9 +319,14 @@ public class IntAnnoSentence {
         return isCapitalized[i];
     }
         
-    /** Gets the i'th lemma. */
+    /** Gets the i'th lemma, or UNK if its ID does not fit in a short. */
     public short getLemma(int i) {
-        return lemmas.get(i);
+        return lemmas.getShort(i);
+    }
+
+    /** Gets the i'th lemma, including IDs beyond the range of a short. */
+    public int getLemmaInt(int i) {
+        return lemmas.getInt(i);
     }
 
     /** Gets the i'th POS tag. */
@@ -208,9 +344,14 @@ public class IntAnnoSentence {
         return coarserPosTags.get(i);
     }
 
-    /** Gets the i'th Distributional Similarity Cluster ID. */
+    /** Gets the i'th Distributional Similarity Cluster ID, or UNK if the ID does not fit in a short. */
     public short getCluster(int i) {
-        return clusters.get(i);
+        return clusters.getShort(i);
+    }
+
+    /** Gets the i'th Distributional Similarity Cluster ID, including IDs beyond the range of a short. */
+    public int getClusterInt(int i) {
+        return clusters.getInt(i);
     }
 
     /** Gets the i'th cluster prefix of length len. */
@@ -269,7 +410,7 @@ public class IntAnnoSentence {
         }
     }
 
-    private static String getAffix(String s, int max, boolean isPre) {
+    static String getAffix(String s, int max, boolean isPre) {
         if (isPre) {
             s = s.substring(0, Math.min(s.length(), max)); // prefix
         } else {
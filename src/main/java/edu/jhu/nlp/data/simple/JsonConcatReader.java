@@ -1,6 +1,7 @@
 package edu.jhu.nlp.data.simple;
 
 import java.io.BufferedReader;
+import java.io.EOFException;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
@@ -11,20 +12,16 @@ import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
-import java.util.Map.Entry;
-import java.util.stream.Collectors;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import com.google.gson.JsonArray;
-import com.google.gson.JsonElement;
-import com.google.gson.JsonObject;
-import com.google.gson.JsonStreamParser;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
 
-import edu.jhu.nlp.data.semeval.SemEval2010Reader;
 import edu.jhu.nlp.tag.StrictPosTagAnnotator.StrictPosTag;
 import edu.jhu.pacaya.parse.cky.data.NaryTree;
+import edu.jhu.prim.list.IntArrayList;
 
 /**
  * Reads annotated sentences from a Concatenated JSON file.
@@ -32,14 +29,18 @@ import edu.jhu.pacaya.parse.cky.data.NaryTree;
  * See a description of concatenated JSON here:
  * https://en.wikipedia.org/wiki/JSON_Streaming#Concatenated_JSON.
  * 
+ * The sentences are parsed token by token with a {@link JsonReader} directly into the fields of
+ * each {@link AnnoSentence}, without building an intermediate JSON tree. Named entities and entity
+ * pairs may be given either as nested arrays (as written by {@link JsonConcatWriter}) or as JSON
+ * strings (the older format).
+ * 
  * @author mgormley
  */
 public class JsonConcatReader implements CloseableIterable<AnnoSentence>, Iterator<AnnoSentence> {
     
-    private static final Logger log = LoggerFactory.getLogger(SemEval2010Reader.class);
+    private static final Logger log = LoggerFactory.getLogger(JsonConcatReader.class);
     private AnnoSentence sentence;
-    private Reader reader;
-    private JsonStreamParser parser;
+    private JsonReader reader;
 
     public JsonConcatReader(File file) throws IOException {        
         this(new FileInputStream(file));
@@ -49,88 +50,114 @@ public class JsonConcatReader implements CloseableIterable<AnnoSentence>, Iterat
         this(new BufferedReader(new InputStreamReader(inputStream, "UTF-8")));
     }
 
-    private JsonConcatReader(Reader reader) {
-        this.reader = reader;
-        this.parser = new JsonStreamParser(reader);
+    public JsonConcatReader(Reader reader) {
+        this.reader = new JsonReader(reader);
+        // Allow multiple top-level values.
+        this.reader.setLenient(true);
         next();
     }
     
-    public static AnnoSentence readSentence(JsonStreamParser reader) throws IOException {
-        if(!reader.hasNext()) {
+    public static AnnoSentence readSentence(JsonReader reader) throws IOException {
+        try {
+            if (reader.peek() == JsonToken.END_DOCUMENT) {
+                return null;
+            }
+        } catch (EOFException e) {
+            // The input was empty.
             return null;
         }
-        JsonObject jo = reader.next().getAsJsonObject();
         AnnoSentence sent = new AnnoSentence();
-        for (Entry<String,JsonElement> entry : jo.entrySet()) {
-            String key = entry.getKey();
-            JsonElement val = entry.getValue();
+        reader.beginObject();
+        while (reader.hasNext()) {
+            String key = reader.nextName();
             // Process each key in this sentence.
             if (key.equals("words")) {
-                sent.setWords(getListOfStrings(key, val));
+                sent.setWords(readStrings(reader));
             } else if (key.equals("prefixes")) {
-                sent.setPrefixes(getListOfStrings(key, val));
+                sent.setPrefixes(readStrings(reader));
             } else if (key.equals("lemmas")) {
-                sent.setLemmas(getListOfStrings(key, val));
+                sent.setLemmas(readStrings(reader));
             } else if (key.equals("posTags")) {
-                sent.setPosTags(getListOfStrings(key, val));
+                sent.setPosTags(readStrings(reader));
             } else if (key.equals("cposTags")) {
-                sent.setCposTags(getListOfStrings(key, val));
+                sent.setCposTags(readStrings(reader));
             } else if (key.equals("strictPosTags")) {
-                List<String> tags = getListOfStrings(key, val);
-                sent.setStrictPosTags(tags.stream().map(x -> StrictPosTag.valueOf(x)).collect(Collectors.toList()));
+                List<StrictPosTag> tags = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    tags.add(StrictPosTag.valueOf(reader.nextString()));
+                }
+                reader.endArray();
+                sent.setStrictPosTags(tags);
             } else if (key.equals("clusters")) {
-                sent.setClusters(getListOfStrings(key, val));
+                sent.setClusters(readStrings(reader));
+            } else if (key.equals("feats")) {
+                List<List<String>> feats = new ArrayList<>();
+                reader.beginArray();
+                while (reader.hasNext()) {
+                    feats.add(readStrings(reader));
+                }
+                reader.endArray();
+                sent.setFeats(feats);
             } else if (key.equals("chunks")) {
-                sent.setChunks(getListOfStrings(key, val));
+                sent.setChunks(readStrings(reader));
             } else if (key.equals("neTags")) {
-                sent.setNeTags(getListOfStrings(key, val));
+                sent.setNeTags(readStrings(reader));
             } else if (key.equals("parents")) {
-                sent.setParents(getIntArray(key, val));
+                sent.setParents(readInts(reader));
             } else if (key.equals("deprels")) {
-                sent.setDeprels(getListOfStrings(key, val));
+                sent.setDeprels(readStrings(reader));
             } else if (key.equals("naryTree")) {
-                sent.setNaryTree(NaryTree.fromTreeInPtbFormat(val.getAsString()));
+                sent.setNaryTree(NaryTree.fromTreeInPtbFormat(reader.nextString()));
             } else if (key.equals("namedEntities")) {
                 if (sent.getWords() == null) {
                     throw new IllegalStateException("Invalid file format: words must appear before namedEntities in the JSON.");
                 }
-                sent.setNamedEntities(JsonConcatWriter.nesFromJson(val.getAsString(), sent.size()));
+                if (reader.peek() == JsonToken.STRING) {
+                    sent.setNamedEntities(JsonConcatWriter.nesFromJson(reader.nextString(), sent.size()));
+                } else {
+                    sent.setNamedEntities(JsonConcatWriter.readNes(reader, sent.size()));
+                }
             } else if (key.equals("nePairs")) {
-                sent.setNePairs(JsonConcatWriter.nePairsFromJson(val.getAsString()));
+                if (reader.peek() == JsonToken.STRING) {
+                    sent.setNePairs(JsonConcatWriter.nePairsFromJson(reader.nextString()));
+                } else {
+                    sent.setNePairs(JsonConcatWriter.readNePairs(reader));
+                }
             } else if (key.equals("relLabels")) {
-                sent.setRelLabels(getListOfStrings(key, val));
+                sent.setRelLabels(readStrings(reader));
+            } else if (key.equals("relations")) {
+                sent.setRelations(JsonConcatWriter.readRelations(reader));
             } else{
                 // Not supported: 
                 // - embedIds (IntArrayList)
-                // - feats (List<List<String>>)
                 // - depEdgeMask (DepEdgeMask)
                 // - srlGraph (SrlGraph)
                 // - knownPreds (IntHashSet)
-                // - namedEntitiesInContext
-                // - relations (RelationMentions)
-                // - relationsInContext
                 throw new RuntimeException("Unsupported key:" + key);
             }
         }
-        
+        reader.endObject();
         return sent;
     }
 
-    private static int[] getIntArray(String key, JsonElement val) {
-        JsonArray a = val.getAsJsonArray();
-        int[] ints = new int[a.size()];
-        for (int i=0; i<a.size(); i++) {
-            ints[i] = a.get(i).getAsInt();
+    private static int[] readInts(JsonReader reader) throws IOException {
+        IntArrayList ints = new IntArrayList();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            ints.add(reader.nextInt());
         }
-        return ints;
+        reader.endArray();
+        return ints.toNativeArray();
     }
 
-    private static List<String> getListOfStrings(String key, JsonElement val) {
-        JsonArray a = val.getAsJsonArray();
-        List<String> strs = new ArrayList<>(a.size());
-        for (int i=0; i<a.size(); i++) {
-            strs.add(a.get(i).getAsString());    
+    private static List<String> readStrings(JsonReader reader) throws IOException {
+        List<String> strs = new ArrayList<>();
+        reader.beginArray();
+        while (reader.hasNext()) {
+            strs.add(JsonConcatWriter.readNullableString(reader));
         }
+        reader.endArray();
         return strs;
     }
 
@@ -143,7 +170,7 @@ public class JsonConcatReader implements CloseableIterable<AnnoSentence>, Iterat
     public AnnoSentence next() {
         try {
             AnnoSentence curSent = sentence;
-            sentence = readSentence(parser);
+            sentence = readSentence(reader);
             if (curSent != null) {
                 curSent.intern();
             }
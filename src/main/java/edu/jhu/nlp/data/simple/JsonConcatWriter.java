@@ -1,5 +1,6 @@
 package edu.jhu.nlp.data.simple;
 
+import java.io.BufferedWriter;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileOutputStream;
@@ -9,235 +10,393 @@ import java.io.OutputStreamWriter;
 import java.io.StringReader;
 import java.io.Writer;
 import java.util.ArrayList;
-import java.util.HashMap;
 import java.util.List;
-import java.util.Map;
-
-import javax.json.Json;
-import javax.json.JsonArray;
-import javax.json.JsonArrayBuilder;
-import javax.json.JsonObject;
-import javax.json.JsonReader;
-import javax.json.JsonValue;
-import javax.json.stream.JsonGenerator;
-import javax.json.stream.JsonGeneratorFactory;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+
 import edu.jhu.nlp.data.NerMention;
 import edu.jhu.nlp.data.NerMentions;
+import edu.jhu.nlp.data.RelationMention;
+import edu.jhu.nlp.data.RelationMentions;
 import edu.jhu.nlp.data.Span;
 import edu.jhu.prim.tuple.Pair;
 
 /**
- * Writes annotated sentences to a Concatentated JSON file.  
- * 
+ * Writes annotated sentences to a Concatentated JSON file.
+ *
  * See a description of concatenated JSON here:
  * https://en.wikipedia.org/wiki/JSON_Streaming#Concatenated_JSON.
- * 
+ *
+ * Each field of the sentence is written token by token with a {@link JsonWriter}, so no
+ * intermediate JSON tree is built. Named entities, entity pairs, and relations are written as
+ * nested JSON arrays. (Older files stored the named entities and entity pairs as JSON strings;
+ * these are still read by {@link JsonConcatReader}.)
+ *
  * @author mgormley
  */
 public class JsonConcatWriter implements Closeable {
 
     private static final Logger log = LoggerFactory.getLogger(JsonConcatWriter.class);
-    private JsonGenerator g;
-    private Writer writer;    
+    private JsonWriter g;
+    private Writer writer;
     private int count;
-    
+
     public JsonConcatWriter(File path) throws IOException {
         this(new FileOutputStream(path));
     }
-    
+
     public JsonConcatWriter(OutputStream os) throws IOException {
-        writer = new OutputStreamWriter(os, "UTF-8");
+        writer = new BufferedWriter(new OutputStreamWriter(os, "UTF-8"));
+        g = new JsonWriter(writer);
+        // Allow multiple top-level values.
+        g.setLenient(true);
         this.count = 0;
     }
-    
+
     public void write(AnnoSentenceCollection sents) throws IOException {
         for (AnnoSentence sent : sents) { this.write(sent); }
     }
-    
+
     public void close() throws IOException {
+        // The JsonWriter does not buffer, and would reject an empty document on close.
         writer.close();
     }
-        
+
     public int getCount() {
         return count;
     }
-    
+
     private void forceNewline() throws IOException {
-        g.flush();
+        // The JsonWriter does not buffer, so we can write directly to the underlying writer.
         writer.write("\n");
     }
 
     public void write(AnnoSentence sent) throws IOException {
-        Map<String, Object> properties = new HashMap<>(1);
-        //properties.put(JsonGenerator.PRETTY_PRINTING, false);
-        JsonGeneratorFactory gf = Json.createGeneratorFactory(properties);
-        g = gf.createGenerator(writer);
-        
-        g.writeStartObject();
-        appendIfNotNull("words", sent.getWords(), false);
-        appendIfNotNull("prefixes", sent.getPrefixes());
-        appendIfNotNull("lemmas", sent.getLemmas());
-        appendIfNotNull("posTags", sent.getPosTags());
-        appendIfNotNull("cposTags", sent.getCposTags());
-        appendIfNotNull("strictPosTags", sent.getStrictPosTags());
-        appendIfNotNull("clusters", sent.getClusters());
-        appendIfNotNull("feats", sent.getFeats());
-        appendIfNotNull("chunks", sent.getChunks());
-        appendIfNotNull("neTags", sent.getNeTags());
-        appendIfNotNull("parents", sent.getParents());
-        appendIfNotNull("deprels", sent.getDeprels());
-        appendIfNotNull("naryTree", sent.getNaryTree() == null ? null : sent.getNaryTree().getAsOneLineString());
-        appendIfNotNull("namedEntities", sent.getNamedEntities() == null ? null : nesToJson(sent.getNamedEntities()).toString());
-        appendIfNotNull("nePairs", nePairsToJson(sent.getNePairs()).toString());
-        appendIfNotNull("relLabels", sent.getRelLabels());
-        
+        g.beginObject();
+        writeStrings("words", sent.getWords(), false);
+        writeStrings("prefixes", sent.getPrefixes());
+        writeStrings("lemmas", sent.getLemmas());
+        writeStrings("posTags", sent.getPosTags());
+        writeStrings("cposTags", sent.getCposTags());
+        writeStrings("strictPosTags", sent.getStrictPosTags());
+        writeStrings("clusters", sent.getClusters());
+        if (sent.getFeats() != null) {
+            forceNewline();
+            g.name("feats").beginArray();
+            for (List<String> feats : sent.getFeats()) {
+                writeStrings(g, feats);
+            }
+            g.endArray();
+        }
+        writeStrings("chunks", sent.getChunks());
+        writeStrings("neTags", sent.getNeTags());
+        if (sent.getParents() != null) {
+            forceNewline();
+            g.name("parents").beginArray();
+            for (int p : sent.getParents()) {
+                g.value(p);
+            }
+            g.endArray();
+        }
+        writeStrings("deprels", sent.getDeprels());
+        if (sent.getNaryTree() != null) {
+            forceNewline();
+            g.name("naryTree").value(sent.getNaryTree().getAsOneLineString());
+        }
+        if (sent.getNamedEntities() != null) {
+            forceNewline();
+            g.name("namedEntities");
+            writeNes(g, sent.getNamedEntities());
+        }
+        if (sent.getNePairs() != null) {
+            forceNewline();
+            g.name("nePairs");
+            writeNePairs(g, sent.getNePairs());
+        }
+        writeStrings("relLabels", sent.getRelLabels());
+        if (sent.getRelations() != null) {
+            forceNewline();
+            g.name("relations");
+            writeRelations(g, sent.getRelations());
+        }
+
         // Not included:
         //appendIfNotNull("embedIds", sent.getEmbedIds());
         //appendIfNotNull("depEdgeMask", sent.getDepEdgeMask());
         //appendIfNotNull("srlGraph", sent.getSrlGraph());
         //appendIfNotNull("knownPreds", sent.getKnownPreds());
-        //if (sent.getNamedEntities() != null) { 
-        // appendIfNotNull("namedEntities-InContext", sent.getNamedEntities().toString(sent.getWords())); 
-        //}
-        //appendIfNotNull("relations", sent.getRelations());
-        //if (sent.getRelations() != null) {
-        //   appendIfNotNull("relations-InContext", sent.getRelations().toString(sent.getWords())); 
-        //}
-        
-        g.writeEnd();
+
+        g.endObject();
         forceNewline();
         forceNewline();
-        g.flush();
         count++;
     }
 
-    private <T> void appendIfNotNull(String name, Object o) throws IOException {
-        appendIfNotNull(name, o, true);
+    private void writeStrings(String name, List<?> l) throws IOException {
+        writeStrings(name, l, true);
     }
-    
-    private <T> void appendIfNotNull(String name, Object o, boolean newline) throws IOException {
-        if (o != null) {
-            if (newline) { forceNewline(); }                
-            g.write(name, toJson(o));
+
+    private void writeStrings(String name, List<?> l, boolean newline) throws IOException {
+        if (l != null) {
+            if (newline) { forceNewline(); }
+            g.name(name);
+            writeStrings(g, l);
         }
     }
 
-    private static JsonValue toJson(Object o) {
-        if (o == null) {
-            return JsonValue.NULL;
-        } else if (o instanceof JsonValue) {
-            return (JsonValue) o;
-        } else if (o instanceof List) {
-            List<?> l = (List<?>) o;
-            JsonArrayBuilder b = Json.createArrayBuilder();
-            for (int i=0; i<l.size(); i++) {
-                b.add(toJson(l.get(i)));
-            }
-            return b.build();
-        } else if (o instanceof int[]) {
-            int[] l = (int[]) o;
-            JsonArrayBuilder b = Json.createArrayBuilder();
-            for (int i=0; i<l.length; i++) {
-                b.add(l[i]);
+    /** Writes a list of strings (or enums, by name) as an array. */
+    private static void writeStrings(JsonWriter g, List<?> l) throws IOException {
+        g.beginArray();
+        for (int i=0; i<l.size(); i++) {
+            Object o = l.get(i);
+            if (o == null) {
+                g.nullValue();
+            } else if (o instanceof String) {
+                g.value((String) o);
+            } else if (o instanceof Enum) {
+                g.value(((Enum<?>) o).name());
+            } else {
+                throw new RuntimeException("Unsupported type: " + o.getClass());
             }
-            return b.build();
-        } else if (o instanceof String) {
-            return safeStringToJson((String)o);
-        } else if (o instanceof Enum) {
-            return toJson(((Enum<?>)o).name());
-        } else {
-            throw new RuntimeException("Unsupported type: " + o.getClass());
         }
+        g.endArray();
     }
-    
+
     /* ------------ Object Specific Transformations -------------- */
 
-    public static JsonArray nePairsToJson(List<Pair<NerMention, NerMention>> nePairs) {
-        JsonArrayBuilder pairs = Json.createArrayBuilder();
+    public static void writeNePairs(JsonWriter g, List<Pair<NerMention, NerMention>> nePairs) throws IOException {
+        g.beginArray();
         for (Pair<NerMention, NerMention> nePair : nePairs) {
-            pairs.add(Json.createObjectBuilder()
-                    .add("m1", nemToJson(nePair.get1()))
-                    .add("m2", nemToJson(nePair.get2())));
+            g.beginObject();
+            g.name("m1");
+            writeNem(g, nePair.get1());
+            g.name("m2");
+            writeNem(g, nePair.get2());
+            g.endObject();
         }
-        return pairs.build();
+        g.endArray();
     }
-    
-    public static JsonArray nesToJson(NerMentions nes) {
-        JsonArrayBuilder jnes = Json.createArrayBuilder();
+
+    public static void writeNes(JsonWriter g, NerMentions nes) throws IOException {
+        g.beginArray();
         for (NerMention ne : nes) {
-            jnes.add(nemToJson(ne));
+            writeNem(g, ne);
         }
-        return jnes.build();
+        g.endArray();
     }
-    
-    private static JsonValue nemToJson(NerMention nem) {
-        return Json.createObjectBuilder()
-                .add("start", nem.getSpan().start())
-                .add("end", nem.getSpan().end())
-                .add("head", nem.getHead())
-                .add("type", safeStringToJson(nem.getEntityType()))
-                .add("subtype", safeStringToJson(nem.getEntitySubType()))
-                .add("phraseType", safeStringToJson(nem.getPhraseType()))
-                .add("id", safeStringToJson(nem.getId()))
-                .build();
+
+    public static void writeRelations(JsonWriter g, RelationMentions rels) throws IOException {
+        g.beginArray();
+        for (RelationMention rel : rels) {
+            g.beginObject();
+            g.name("type").value(rel.getType());
+            g.name("subtype").value(rel.getSubType());
+            g.name("trigger");
+            if (rel.getTrigger() == null) {
+                g.nullValue();
+            } else {
+                g.beginArray().value(rel.getTrigger().start()).value(rel.getTrigger().end()).endArray();
+            }
+            g.name("args");
+            if (rel.getArgs() == null) {
+                g.nullValue();
+            } else {
+                g.beginArray();
+                for (Pair<String, NerMention> arg : rel.getArgs()) {
+                    g.beginObject();
+                    g.name("role").value(arg.get1());
+                    g.name("m");
+                    writeNem(g, arg.get2());
+                    g.endObject();
+                }
+                g.endArray();
+            }
+            g.endObject();
+        }
+        g.endArray();
     }
 
-    public static List<Pair<NerMention,NerMention>> nePairsFromJson(String json) {
-        JsonReader jsonReader = Json.createReader(new StringReader(json));
-        JsonArray pairs = jsonReader.readArray();
-        jsonReader.close();
-        
+    private static void writeNem(JsonWriter g, NerMention nem) throws IOException {
+        g.beginObject();
+        g.name("start").value(nem.getSpan().start());
+        g.name("end").value(nem.getSpan().end());
+        g.name("head").value(nem.getHead());
+        g.name("type").value(nem.getEntityType());
+        g.name("subtype").value(nem.getEntitySubType());
+        g.name("phraseType").value(nem.getPhraseType());
+        g.name("id").value(nem.getId());
+        g.endObject();
+    }
+
+    public static List<Pair<NerMention,NerMention>> readNePairs(JsonReader r) throws IOException {
         List<Pair<NerMention,NerMention>> nePairs = new ArrayList<>();
-        for (int i=0; i<pairs.size(); i++) {
-            JsonObject pair = pairs.getJsonObject(i);
-            nePairs.add(new Pair<NerMention,NerMention>(
-                    nemFromJson(pair.getJsonObject("m1")),
-                    nemFromJson(pair.getJsonObject("m2"))));
+        r.beginArray();
+        while (r.hasNext()) {
+            NerMention m1 = null;
+            NerMention m2 = null;
+            r.beginObject();
+            while (r.hasNext()) {
+                String key = r.nextName();
+                if (key.equals("m1")) {
+                    m1 = readNem(r);
+                } else if (key.equals("m2")) {
+                    m2 = readNem(r);
+                } else {
+                    throw new RuntimeException("Unsupported key:" + key);
+                }
+            }
+            r.endObject();
+            nePairs.add(new Pair<NerMention,NerMention>(m1, m2));
         }
+        r.endArray();
         return nePairs;
     }
 
     /**
-     * Converts from JSON to NerMentions.
-     * 
-     * @param json The input JSON string.
+     * Reads NerMentions.
+     *
+     * @param r The reader, positioned at the start of the array of mentions.
      * @param n The number of words in the sentence.
      * @return The named entity mentions.
      */
-    public static NerMentions nesFromJson(String json, int n) {
-        JsonReader jsonReader = Json.createReader(new StringReader(json));
-        JsonArray pairs = jsonReader.readArray();
-        jsonReader.close();
-        
+    public static NerMentions readNes(JsonReader r, int n) throws IOException {
         List<NerMention> spans = new ArrayList<>();
-        for (int i=0; i<pairs.size(); i++) {
-            JsonObject ne = pairs.getJsonObject(i);
-            spans.add(nemFromJson(ne));
+        r.beginArray();
+        while (r.hasNext()) {
+            spans.add(readNem(r));
+        }
+        r.endArray();
+        return new NerMentions(n, spans);
+    }
+
+    public static RelationMentions readRelations(JsonReader r) throws IOException {
+        RelationMentions rels = new RelationMentions();
+        r.beginArray();
+        while (r.hasNext()) {
+            String type = null;
+            String subType = null;
+            Span trigger = null;
+            List<Pair<String, NerMention>> args = null;
+            r.beginObject();
+            while (r.hasNext()) {
+                String key = r.nextName();
+                if (key.equals("type")) {
+                    type = readNullableString(r);
+                } else if (key.equals("subtype")) {
+                    subType = readNullableString(r);
+                } else if (key.equals("trigger")) {
+                    if (r.peek() == JsonToken.NULL) {
+                        r.nextNull();
+                    } else {
+                        r.beginArray();
+                        int start = r.nextInt();
+                        int end = r.nextInt();
+                        r.endArray();
+                        trigger = new Span(start, end);
+                    }
+                } else if (key.equals("args")) {
+                    if (r.peek() == JsonToken.NULL) {
+                        r.nextNull();
+                    } else {
+                        args = new ArrayList<>();
+                        r.beginArray();
+                        while (r.hasNext()) {
+                            args.add(readArg(r));
+                        }
+                        r.endArray();
+                    }
+                } else {
+                    throw new RuntimeException("Unsupported key:" + key);
+                }
+            }
+            r.endObject();
+            rels.add(new RelationMention(type, subType, args, trigger));
+        }
+        r.endArray();
+        return rels;
+    }
+
+    private static Pair<String, NerMention> readArg(JsonReader r) throws IOException {
+        String role = null;
+        NerMention m = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            String key = r.nextName();
+            if (key.equals("role")) {
+                role = readNullableString(r);
+            } else if (key.equals("m")) {
+                m = readNem(r);
+            } else {
+                throw new RuntimeException("Unsupported key:" + key);
+            }
+        }
+        r.endObject();
+        return new Pair<String, NerMention>(role, m);
+    }
+
+    private static NerMention readNem(JsonReader r) throws IOException {
+        int start = -1, end = -1, head = -1;
+        String type = null, subtype = null, phraseType = null, id = null;
+        r.beginObject();
+        while (r.hasNext()) {
+            String key = r.nextName();
+            if (key.equals("start")) {
+                start = r.nextInt();
+            } else if (key.equals("end")) {
+                end = r.nextInt();
+            } else if (key.equals("head")) {
+                head = r.nextInt();
+            } else if (key.equals("type")) {
+                type = readNullableString(r);
+            } else if (key.equals("subtype")) {
+                subtype = readNullableString(r);
+            } else if (key.equals("phraseType")) {
+                phraseType = readNullableString(r);
+            } else if (key.equals("id")) {
+                id = readNullableString(r);
+            } else {
+                throw new RuntimeException("Unsupported key:" + key);
+            }
         }
-        NerMentions nes = new NerMentions(n, spans);
-        return nes;
+        r.endObject();
+        return new NerMention(new Span(start, end), type, subtype, phraseType, head, id);
     }
 
-    private static NerMention nemFromJson(JsonObject m) {
-        return new NerMention(
-                new Span(m.getInt("start"), m.getInt("end")), 
-                safeJsonToString(m, "type"),
-                safeJsonToString(m, "subtype"),
-                safeJsonToString(m, "phraseType"),
-                m.getInt("head"), 
-                safeJsonToString(m, "id"));
+    static String readNullableString(JsonReader r) throws IOException {
+        if (r.peek() == JsonToken.NULL) {
+            r.nextNull();
+            return null;
+        }
+        return r.nextString();
     }
-    
-    private static String safeJsonToString(JsonObject m, String key) {
-        return m.get(key) == JsonValue.NULL ? null : m.getString(key);
+
+    /** Converts from the (old) JSON string format to a list of entity pairs. */
+    public static List<Pair<NerMention,NerMention>> nePairsFromJson(String json) {
+        try (JsonReader r = new JsonReader(new StringReader(json))) {
+            return readNePairs(r);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
 
-    private static JsonValue safeStringToJson(String s) {
-        return (s == null) ? JsonValue.NULL : Json.createObjectBuilder().add("temp", s).build().getJsonString("temp");
+    /**
+     * Converts from the (old) JSON string format to NerMentions.
+     *
+     * @param json The input JSON string.
+     * @param n The number of words in the sentence.
+     * @return The named entity mentions.
+     */
+    public static NerMentions nesFromJson(String json, int n) {
+        try (JsonReader r = new JsonReader(new StringReader(json))) {
+            return readNes(r, n);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
     }
-    
+
 }
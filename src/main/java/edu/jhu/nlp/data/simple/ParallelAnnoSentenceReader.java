@@ -0,0 +1,219 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayDeque;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import edu.jhu.pacaya.util.Threads;
+
+/**
+ * Reads sentences from a CoNLL or concatenated JSON file by splitting it into chunks and parsing
+ * the chunks in parallel.
+ *
+ * The input is read sequentially and cut into chunks of roughly a fixed number of characters.
+ * Each chunk ends at a sentence boundary: a blank line for the CoNLL formats, or the end of a
+ * top-level value for concatenated JSON. The chunks are parsed (and converted to AnnoSentences)
+ * on the default thread pool (see {@link Threads#defaultPool}). The sentences are returned in
+ * the order in which they appear in the input. At most a fixed number of chunks are in flight at
+ * once, so the memory used does not grow with the size of the input.
+ *
+ * @author mgormley
+ */
+public class ParallelAnnoSentenceReader implements CloseableIterable<AnnoSentence>, Iterator<AnnoSentence> {
+
+    /** The default number of characters in a chunk. */
+    public static final int DEFAULT_CHUNK_SIZE = 1 << 20;
+
+    private final Reader in;
+    private final boolean json;
+    private final Converter<String, List<AnnoSentence>> parser;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final ArrayDeque<Future<List<AnnoSentence>>> inFlight = new ArrayDeque<>();
+    private boolean inputDone = false;
+    private List<AnnoSentence> cur = Collections.emptyList();
+    private int curIdx = 0;
+
+    // Input buffer: the unread characters are buf[pos, limit).
+    private final char[] buf = new char[1 << 16];
+    private int pos = 0;
+    private int limit = 0;
+    // CoNLL: whether the current line is blank so far.
+    private boolean lineBlank = true;
+    // JSON: the nesting depth, and whether we are inside a string (and after a backslash).
+    private int depth = 0;
+    private boolean inString = false;
+    private boolean escaped = false;
+
+    /**
+     * Opens a parallel reader.
+     *
+     * @param in The input.
+     * @param json Whether the input is concatenated JSON (as opposed to a CoNLL format).
+     * @param parser Parses a chunk of the input into sentences. This must be thread-safe.
+     */
+    public ParallelAnnoSentenceReader(Reader in, boolean json, Converter<String, List<AnnoSentence>> parser) {
+        this(in, json, parser, DEFAULT_CHUNK_SIZE, 2 * Math.max(1, Threads.numThreads));
+    }
+
+    /**
+     * Opens a parallel reader.
+     *
+     * @param in The input.
+     * @param json Whether the input is concatenated JSON (as opposed to a CoNLL format).
+     * @param parser Parses a chunk of the input into sentences. This must be thread-safe.
+     * @param chunkSize The minimum number of characters in each chunk (except the last).
+     * @param maxInFlight The maximum number of chunks being parsed or held at once.
+     */
+    public ParallelAnnoSentenceReader(Reader in, boolean json, Converter<String, List<AnnoSentence>> parser,
+            int chunkSize, int maxInFlight) {
+        if (chunkSize < 1 || maxInFlight < 1) {
+            throw new IllegalArgumentException("chunkSize and maxInFlight must be positive");
+        }
+        this.in = in;
+        this.json = json;
+        this.parser = parser;
+        this.chunkSize = chunkSize;
+        this.maxInFlight = maxInFlight;
+    }
+
+    @Override
+    public boolean hasNext() {
+        while (curIdx == cur.size()) {
+            fill();
+            if (inFlight.isEmpty()) {
+                return false;
+            }
+            Future<List<AnnoSentence>> f = inFlight.removeFirst();
+            try {
+                cur = f.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new RuntimeException(e);
+            } catch (ExecutionException e) {
+                throw new RuntimeException(e.getCause());
+            }
+            curIdx = 0;
+        }
+        return true;
+    }
+
+    @Override
+    public AnnoSentence next() {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        return cur.get(curIdx++);
+    }
+
+    /** Submits chunks until the maximum number are in flight or the input is exhausted. */
+    private void fill() {
+        while (!inputDone && inFlight.size() < maxInFlight) {
+            final String chunk;
+            try {
+                chunk = nextChunk();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            if (chunk == null) {
+                inputDone = true;
+                break;
+            }
+            Callable<List<AnnoSentence>> parse = new Callable<List<AnnoSentence>>() {
+                @Override
+                public List<AnnoSentence> call() throws Exception {
+                    return parser.convert(chunk);
+                }
+            };
+            inFlight.addLast(Threads.defaultPool.submit(parse));
+        }
+    }
+
+    /**
+     * Reads the next chunk: at least chunkSize characters (unless the input ends first), ending at
+     * a sentence boundary.
+     *
+     * @return The chunk, or null if the input is exhausted.
+     */
+    private String nextChunk() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos == limit) {
+                int r = in.read(buf, 0, buf.length);
+                if (r < 0) {
+                    return (sb.length() > 0) ? sb.toString() : null;
+                }
+                pos = 0;
+                limit = r;
+            }
+            int start = pos;
+            for (; pos < limit; pos++) {
+                if (endsSentence(buf[pos]) && sb.length() + (pos + 1 - start) >= chunkSize) {
+                    pos++;
+                    sb.append(buf, start, pos - start);
+                    return sb.toString();
+                }
+            }
+            sb.append(buf, start, limit - start);
+        }
+    }
+
+    /** Updates the scanning state with the next character, and returns whether it ends a sentence. */
+    private boolean endsSentence(char c) {
+        if (json) {
+            if (inString) {
+                if (escaped) {
+                    escaped = false;
+                } else if (c == '\\') {
+                    escaped = true;
+                } else if (c == '"') {
+                    inString = false;
+                }
+            } else if (c == '"') {
+                inString = true;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+                return depth == 0;
+            }
+            return false;
+        } else {
+            if (c == '\n') {
+                boolean blank = lineBlank;
+                lineBlank = true;
+                return blank;
+            } else if (c != ' ' && c != '\t' && c != '\r') {
+                lineBlank = false;
+            }
+            return false;
+        }
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public Iterator<AnnoSentence> iterator() {
+        return this;
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (Future<?> f : inFlight) {
+            f.cancel(false);
+        }
+        inFlight.clear();
+        in.close();
+    }
+
+}
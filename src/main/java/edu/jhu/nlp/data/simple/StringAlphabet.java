@@ -0,0 +1,59 @@
+package edu.jhu.nlp.data.simple;
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A thread-safe, append-only mapping between strings and dense integer IDs.
+ *
+ * Unlike the alphabets in {@link AlphabetStore}, this mapping is lossless: every string is given
+ * its own ID and no type is ever mapped to UNK. This makes it suitable as the backing dictionary
+ * for {@link StringColumn}s, where the original strings must be recoverable.
+ *
+ * Since no string is ever removed, an alphabet should be owned by whatever owns the sentences
+ * compacted with it (e.g. {@link CorpusHandler}) so that it is freed along with them.
+ *
+ * Lookups by ID are lock-free. Adding a new string takes a lock.
+ *
+ * @author mgormley
+ */
+public class StringAlphabet {
+
+    private final ConcurrentHashMap<String, Integer> str2id = new ConcurrentHashMap<>();
+    private volatile String[] id2str = new String[1024];
+    private int size = 0;
+
+    /** Gets the ID of the string, adding it to the alphabet if it is not yet present. */
+    public int lookupIndex(String str) {
+        Integer id = str2id.get(str);
+        if (id != null) {
+            return id;
+        }
+        synchronized (this) {
+            id = str2id.get(str);
+            if (id != null) {
+                return id;
+            }
+            String[] strs = id2str;
+            if (size == strs.length) {
+                strs = Arrays.copyOf(strs, strs.length * 2);
+            }
+            strs[size] = str;
+            // Publish the array before the ID so that readers of the ID will see the string.
+            id2str = strs;
+            str2id.put(str, size);
+            return size++;
+        }
+    }
+
+    /** Gets the string with the given ID. */
+    public String lookupObject(int id) {
+        return id2str[id];
+    }
+
+    /** Gets the number of strings in the alphabet. */
+    public synchronized int size() {
+        return size;
+    }
+
+}
@@ -0,0 +1,185 @@
+package edu.jhu.nlp.data.simple;
+
+import java.util.AbstractList;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A fixed-length list of strings stored as a primitive array of IDs into a {@link StringAlphabet}.
+ *
+ * This is the columnar representation of a single token-level annotation layer (e.g. the words or
+ * the POS tags) of an {@link AnnoSentence}. It is a {@link List} view, so code which reads the
+ * layer as a list of strings is unaffected. The IDs are stored in the narrowest array that holds
+ * them: a byte per token while the alphabet has fewer than 255 strings (e.g. tags), a short while
+ * it has fewer than 65535 (e.g. affixes), and an int otherwise (e.g. words). The array is widened if
+ * a later {@link #set(int, String)} needs a larger ID, so each layer should have its own alphabet
+ * (see {@link ColumnAlphabets}).
+ *
+ * The IDs are shared copy-on-write: {@link #copy()} is O(1) and the first
+ * {@link #set(int, String)} on either copy clones the IDs.
+ *
+ * Null entries are allowed. The list cannot change size.
+ *
+ * @author mgormley
+ */
+public class StringColumn extends AbstractList<String> implements RandomAccess {
+
+    // IDs are stored offset by one so that zero can mean null.
+    private static final int NULL_ID = -1;
+    private static final int MAX_BYTE_ID = 0xff - 1;
+    private static final int MAX_SHORT_ID = 0xffff - 1;
+
+    private final StringAlphabet alphabet;
+    // Exactly one of these is non-null.
+    private byte[] bytes;
+    private short[] shorts;
+    private int[] ints;
+    // Whether the ids array may be referenced by another column.
+    private boolean shared;
+
+    /** Creates a column from the given strings. */
+    public StringColumn(List<String> strs, StringAlphabet alphabet) {
+        this.alphabet = alphabet;
+        this.shared = false;
+        int n = strs.size();
+        int[] ids = new int[n];
+        int maxId = NULL_ID;
+        for (int i=0; i<n; i++) {
+            ids[i] = toId(strs.get(i));
+            maxId = Math.max(maxId, ids[i]);
+        }
+        if (maxId <= MAX_BYTE_ID) {
+            bytes = new byte[n];
+            for (int i=0; i<n; i++) {
+                bytes[i] = (byte) (ids[i] + 1);
+            }
+        } else if (maxId <= MAX_SHORT_ID) {
+            shorts = new short[n];
+            for (int i=0; i<n; i++) {
+                shorts[i] = (short) (ids[i] + 1);
+            }
+        } else {
+            ints = ids;
+            for (int i=0; i<n; i++) {
+                ints[i]++;
+            }
+        }
+    }
+
+    private StringColumn(StringColumn other) {
+        this.alphabet = other.alphabet;
+        this.bytes = other.bytes;
+        this.shorts = other.shorts;
+        this.ints = other.ints;
+        this.shared = true;
+    }
+
+    private int toId(String str) {
+        return (str == null) ? NULL_ID : alphabet.lookupIndex(str);
+    }
+
+    @Override
+    public String get(int i) {
+        int id = getId(i);
+        return (id == NULL_ID) ? null : alphabet.lookupObject(id);
+    }
+
+    @Override
+    public String set(int i, String str) {
+        String old = get(i);
+        int id = toId(str);
+        if (id != getId(i)) {
+            if (shared) {
+                unshare();
+            }
+            if (bytes != null && id > MAX_BYTE_ID) {
+                shorts = new short[bytes.length];
+                for (int j=0; j<bytes.length; j++) {
+                    shorts[j] = (short) (bytes[j] & 0xff);
+                }
+                bytes = null;
+            }
+            if (shorts != null && id > MAX_SHORT_ID) {
+                ints = new int[shorts.length];
+                for (int j=0; j<shorts.length; j++) {
+                    ints[j] = shorts[j] & 0xffff;
+                }
+                shorts = null;
+            }
+            if (bytes != null) {
+                bytes[i] = (byte) (id + 1);
+            } else if (shorts != null) {
+                shorts[i] = (short) (id + 1);
+            } else {
+                ints[i] = id + 1;
+            }
+        }
+        return old;
+    }
+
+    private void unshare() {
+        if (bytes != null) {
+            bytes = bytes.clone();
+        } else if (shorts != null) {
+            shorts = shorts.clone();
+        } else {
+            ints = ints.clone();
+        }
+        shared = false;
+    }
+
+    @Override
+    public int size() {
+        if (bytes != null) {
+            return bytes.length;
+        } else if (shorts != null) {
+            return shorts.length;
+        } else {
+            return ints.length;
+        }
+    }
+
+    /** Gets the ID of the i'th string, or -1 if it is null. */
+    public int getId(int i) {
+        if (bytes != null) {
+            return (bytes[i] & 0xff) - 1;
+        } else if (shorts != null) {
+            return (shorts[i] & 0xffff) - 1;
+        } else {
+            return ints[i] - 1;
+        }
+    }
+
+    /** Gets the number of bytes used per ID: 1, 2 or 4. */
+    public int getIdWidth() {
+        return (bytes != null) ? 1 : (shorts != null) ? 2 : 4;
+    }
+
+    /** Gets the alphabet backing this column. */
+    public StringAlphabet getAlphabet() {
+        return alphabet;
+    }
+
+    /** Gets a copy of this column in O(1) time. The two columns share IDs until either is modified. */
+    public StringColumn copy() {
+        shared = true;
+        return new StringColumn(this);
+    }
+
+    /** Converts the list to a column, returning it unchanged if it is null or already a column. */
+    public static List<String> compact(List<String> strs, StringAlphabet alphabet) {
+        if (strs == null || strs instanceof StringColumn) {
+            return strs;
+        }
+        return new StringColumn(strs, alphabet);
+    }
+
+    /** Gets a copy of the list if it is a column, otherwise the list itself. */
+    public static List<String> shallowCopy(List<String> strs) {
+        if (strs instanceof StringColumn) {
+            return ((StringColumn) strs).copy();
+        }
+        return strs;
+    }
+
+}
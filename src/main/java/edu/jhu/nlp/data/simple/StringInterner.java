@@ -0,0 +1,182 @@
+package edu.jhu.nlp.data.simple;
+
+import java.util.List;
+
+/**
+ * A thread-safe table of canonical strings.
+ *
+ * The canonical instance of each string is the one returned by {@link String#intern()}, so
+ * strings interned here may still be compared by reference with string literals and with
+ * strings interned by the JVM. However, the JVM's pool is only consulted the first time a
+ * string is seen: subsequent lookups hit this table, which is an open-addressing hash table of
+ * the strings themselves with linear probing. A string may also be looked up directly from a
+ * range of characters (see {@link #intern(char[], int, int)}), in which case no
+ * {@link String} is allocated unless the string is new.
+ *
+ * The table holds at most a fixed number of strings. Once it is full, strings which are not in
+ * it are interned by {@link String#intern()} alone, so memory use is bounded even for readers
+ * which see an open-ended vocabulary.
+ *
+ * Lookups are lock-free. Adding a new string takes a lock, but once the table is full a miss no
+ * longer does.
+ *
+ * @author mgormley
+ */
+public class StringInterner {
+
+    /** The default maximum number of strings in the table. */
+    public static final int DEFAULT_MAX_SIZE = 1 << 20;
+
+    private static final StringInterner shared = new StringInterner();
+
+    private final int maxSize;
+    private volatile String[] table = new String[1 << 12];
+    // Written only while holding the lock.
+    private volatile int size = 0;
+
+    public StringInterner() {
+        this(DEFAULT_MAX_SIZE);
+    }
+
+    /** Constructs an interner whose table holds at most maxSize strings. */
+    public StringInterner(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    /** Gets the interner shared by all readers in this JVM. */
+    public static StringInterner getShared() {
+        return shared;
+    }
+
+    /** Gets the canonical instance of the string given by the characters buf[off, off+len). */
+    public String intern(char[] buf, int off, int len) {
+        int h = hashCode(buf, off, len);
+        String s = find(table, h, buf, off, len);
+        if (s != null) {
+            return s;
+        } else if (size >= maxSize) {
+            return new String(buf, off, len).intern();
+        }
+        synchronized (this) {
+            s = find(table, h, buf, off, len);
+            if (s != null) {
+                return s;
+            }
+            String str = new String(buf, off, len).intern();
+            return (size < maxSize) ? add(str) : str;
+        }
+    }
+
+    /** Gets the canonical instance of the string. */
+    public String intern(String str) {
+        String s = find(table, str);
+        if (s != null) {
+            return s;
+        } else if (size >= maxSize) {
+            return str.intern();
+        }
+        synchronized (this) {
+            s = find(table, str);
+            if (s != null) {
+                return s;
+            }
+            str = str.intern();
+            return (size < maxSize) ? add(str) : str;
+        }
+    }
+
+    /** Replaces each non-null string in the list with its canonical instance. */
+    public void intern(List<String> strs) {
+        if (strs == null) {
+            return;
+        }
+        for (int i=0; i<strs.size(); i++) {
+            String s = strs.get(i);
+            if (s != null) {
+                strs.set(i, intern(s));
+            }
+        }
+    }
+
+    /** Gets the number of strings in the table. */
+    public int size() {
+        return size;
+    }
+
+    private static String find(String[] t, int h, char[] buf, int off, int len) {
+        int mask = t.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String s = t[i];
+            if (s == null) {
+                return null;
+            } else if (s.hashCode() == h && contentEquals(s, buf, off, len)) {
+                return s;
+            }
+        }
+    }
+
+    private static String find(String[] t, String str) {
+        int h = str.hashCode();
+        int mask = t.length - 1;
+        for (int i = h & mask; ; i = (i + 1) & mask) {
+            String s = t[i];
+            if (s == null) {
+                return null;
+            } else if (s == str || (s.hashCode() == h && s.equals(str))) {
+                return s;
+            }
+        }
+    }
+
+    /** Adds a string known not to be in the table. Must be called while holding the lock. */
+    private String add(String s) {
+        String[] t = table;
+        if ((size + 1) * 2 > t.length) {
+            String[] newT = new String[t.length * 2];
+            for (String old : t) {
+                if (old != null) {
+                    insert(newT, old);
+                }
+            }
+            insert(newT, s);
+            // Publish the new table only once it is complete.
+            table = newT;
+        } else {
+            // Readers that miss this write will fall through to the lock.
+            insert(t, s);
+        }
+        size++;
+        return s;
+    }
+
+    private static void insert(String[] t, String s) {
+        int mask = t.length - 1;
+        int i = s.hashCode() & mask;
+        while (t[i] != null) {
+            i = (i + 1) & mask;
+        }
+        t[i] = s;
+    }
+
+    private static boolean contentEquals(String s, char[] buf, int off, int len) {
+        if (s.length() != len) {
+            return false;
+        }
+        for (int i=0; i<len; i++) {
+            if (s.charAt(i) != buf[off + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Computes the same hash code as {@link String#hashCode()}. */
+    static int hashCode(char[] buf, int off, int len) {
+        int h = 0;
+        for (int i=0; i<len; i++) {
+            h = 31 * h + buf[off + i];
+        }
+        return h;
+    }
+
+}
@@ -0,0 +1,80 @@
+package edu.jhu.nlp.data.simple;
+
+import java.util.AbstractList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.RandomAccess;
+
+/**
+ * A fixed-length list of lists of strings (e.g. the morphological features of each token) stored
+ * as one flat {@link StringColumn} of IDs plus an array of offsets into it.
+ *
+ * The i'th inner list is a view of the flat column from {@code offsets[i]} to
+ * {@code offsets[i+1]}, so its entries can be set but neither the outer nor the inner lists can
+ * change size. Like {@link StringColumn}, {@link #copy()} is O(1) and the IDs are copied on the
+ * first write.
+ *
+ * @author mgormley
+ */
+public class StringListColumn extends AbstractList<List<String>> implements RandomAccess {
+
+    private final StringColumn flat;
+    private final int[] offsets;
+
+    /** Creates a column from the given lists, none of which may be null. */
+    public StringListColumn(List<List<String>> strs, StringAlphabet alphabet) {
+        int n = strs.size();
+        offsets = new int[n+1];
+        for (int i=0; i<n; i++) {
+            offsets[i+1] = offsets[i] + strs.get(i).size();
+        }
+        String[] all = new String[offsets[n]];
+        for (int i=0; i<n; i++) {
+            List<String> inner = strs.get(i);
+            for (int j=0; j<inner.size(); j++) {
+                all[offsets[i] + j] = inner.get(j);
+            }
+        }
+        flat = new StringColumn(Arrays.asList(all), alphabet);
+    }
+
+    private StringListColumn(StringColumn flat, int[] offsets) {
+        this.flat = flat;
+        this.offsets = offsets;
+    }
+
+    @Override
+    public List<String> get(int i) {
+        return flat.subList(offsets[i], offsets[i+1]);
+    }
+
+    @Override
+    public int size() {
+        return offsets.length - 1;
+    }
+
+    /** Gets a copy of this column in O(1) time. The two columns share IDs until either is modified. */
+    public StringListColumn copy() {
+        return new StringListColumn(flat.copy(), offsets);
+    }
+
+    /**
+     * Converts the lists to a column, returning them unchanged if they are null, already a column,
+     * or contain a null inner list.
+     */
+    public static List<List<String>> compact(List<List<String>> strs, StringAlphabet alphabet) {
+        if (strs == null || strs instanceof StringListColumn || strs.contains(null)) {
+            return strs;
+        }
+        return new StringListColumn(strs, alphabet);
+    }
+
+    /** Gets a copy of the lists if they are a column, otherwise the lists themselves. */
+    public static List<List<String>> shallowCopy(List<List<String>> strs) {
+        if (strs instanceof StringListColumn) {
+            return ((StringListColumn) strs).copy();
+        }
+        return strs;
+    }
+
+}
@@ -0,0 +1,76 @@
+package edu.jhu.nlp.data.simple;
+
+import java.util.Arrays;
+
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.list.ShortArrayList;
+
+/**
+ * A list of alphabet IDs stored in two tiers: IDs which fit in an unsigned short are stored
+ * directly in a short array, and any larger IDs are stored in a sparse int overflow tier.
+ *
+ * When the alphabet is sorted by descending count (see {@link AlphabetStore#isWide()}), only the
+ * rarest types overflow, so the list costs little more than a plain short array.
+ *
+ * @author mgormley
+ */
+public class TieredIdList {
+
+    /** The largest ID stored in the short tier. */
+    public static final int MAX_SHORT_TIER_IDX = 0xfffe;
+    /** Marker in the short tier for an ID stored in the overflow tier. */
+    private static final short OVERFLOW = (short) 0xffff;
+
+    private final ShortArrayList shorts;
+    // Sorted positions of the overflowed IDs, and the IDs themselves. Null if none.
+    private IntArrayList overflowPos;
+    private IntArrayList overflowIds;
+
+    public TieredIdList(int capacity) {
+        shorts = new ShortArrayList(capacity);
+    }
+
+    public void add(int id) {
+        if (id <= MAX_SHORT_TIER_IDX) {
+            shorts.add((short) id);
+        } else {
+            if (overflowPos == null) {
+                overflowPos = new IntArrayList();
+                overflowIds = new IntArrayList();
+            }
+            overflowPos.add(shorts.size());
+            overflowIds.add(id);
+            shorts.add(OVERFLOW);
+        }
+    }
+
+    /**
+     * Gets the i'th ID as a short (to be read as unsigned), where IDs in the overflow tier are
+     * mapped to UNK.
+     */
+    public short getShort(int i) {
+        short s = shorts.get(i);
+        return (s == OVERFLOW) ? (short) AlphabetStore.TOK_UNK_INT : s;
+    }
+
+    /** Gets the i'th ID. */
+    public int getInt(int i) {
+        short s = shorts.get(i);
+        if (s != OVERFLOW) {
+            return s & 0xffff;
+        }
+        int k = Arrays.binarySearch(overflowPos.getInternalElements(), 0, overflowPos.size(), i);
+        return overflowIds.get(k);
+    }
+
+    public int size() {
+        return shorts.size();
+    }
+
+    public void clear() {
+        shorts.clear();
+        overflowPos = null;
+        overflowIds = null;
+    }
+
+}
@@ -0,0 +1,87 @@
+package edu.jhu.nlp.depparse;
+
+import java.util.Arrays;
+
+import edu.jhu.nlp.data.simple.IntAnnoSentence;
+import edu.jhu.nlp.depparse.BitshiftDepParseFeatureExtractor.BitshiftDepParseFeatureExtractorPrm;
+import edu.jhu.nlp.depparse.BitshiftDepParseFeatures.FeatureCollection;
+import edu.jhu.prim.list.IntArrayList;
+
+/**
+ * Per-sentence cache of the hashed TurboParser word-pair features from
+ * {@link BitshiftDepParseFeatures#addTurboWordPairFeats(IntAnnoSentence, int, int, byte, IntArrayList, BitshiftDepParseFeatureExtractorPrm)}.
+ *
+ * The same (head, modifier, pairType) features are requested by many factors: e.g. the
+ * (grandparent, modifier) pair features are added to the grandparent factor for every choice of
+ * head, and the (modifier, sibling) pair features to the sibling factor for every choice of head.
+ * Each is computed once, on first use, and stored in a single flat array of feature ids.
+ *
+ * Only the pair types of the second-order factors are cached. The {@link FeatureCollection#ARC}
+ * features are requested once per arc factor, so caching them would only double their memory.
+ *
+ * This class is not thread-safe. Each cache belongs to the feature extractor of a single
+ * sentence's factor graph, and a factor graph's features are computed by whichever one thread is
+ * currently running inference on it.
+ *
+ * @author mgormley
+ */
+public class ArcFeatureCache {
+
+    private final IntAnnoSentence sent;
+    private final BitshiftDepParseFeatureExtractorPrm prm;
+    /** The number of positions in each dimension, including -1 for the wall. */
+    private final int width;
+    /** Indexed by pair type and then by pair. The start of the pair's features in vals, or -1 if not yet computed. */
+    private final int[][] starts;
+    /** Indexed by pair type and then by pair. The end (exclusive) of the pair's features in vals. */
+    private final int[][] ends;
+    /** The hashed feature ids for all the cached pairs. */
+    private final IntArrayList vals;
+
+    public ArcFeatureCache(IntAnnoSentence sent, BitshiftDepParseFeatureExtractorPrm prm) {
+        this.sent = sent;
+        this.prm = prm;
+        this.width = sent.size() + 1;
+        this.starts = new int[FeatureCollection.MAX_VAL + 1][];
+        this.ends = new int[FeatureCollection.MAX_VAL + 1][];
+        this.vals = new IntArrayList();
+    }
+
+    /**
+     * Adds the word-pair features for the given pair and pair type to feats. This is equivalent to
+     * calling addTurboWordPairFeats(sent, head, modifier, pairType, feats, prm).
+     *
+     * @param head The head, or -1 for the wall.
+     * @param modifier The modifier, or -1 for the wall.
+     * @param pairType The pair type, which must not be {@link FeatureCollection#ARC}.
+     */
+    public void addTurboWordPairFeats(int head, int modifier, byte pairType, IntArrayList feats) {
+        if (pairType == FeatureCollection.ARC) {
+            throw new IllegalArgumentException("Arc features are not cached");
+        }
+        if (starts[pairType] == null) {
+            starts[pairType] = new int[width * width];
+            ends[pairType] = new int[width * width];
+            Arrays.fill(starts[pairType], -1);
+        }
+        int k = (head + 1) * width + (modifier + 1);
+        int start = starts[pairType][k];
+        if (start < 0) {
+            start = vals.size();
+            BitshiftDepParseFeatures.addTurboWordPairFeats(sent, head, modifier, pairType, vals, prm);
+            starts[pairType][k] = start;
+            ends[pairType][k] = vals.size();
+        }
+        int end = ends[pairType][k];
+        int[] elems = vals.getInternalElements();
+        for (int i = start; i < end; i++) {
+            feats.add(elems[i]);
+        }
+    }
+
+    /** Gets the number of cached feature ids. */
+    public int getNumCachedFeats() {
+        return vals.size();
+    }
+
+}
@@ -1,6 +1,5 @@
 package edu.jhu.nlp.depparse;
 
-import org.apache.commons.lang3.ArrayUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -19,6 +18,7 @@ import edu.jhu.pacaya.gm.model.VarSet;
 import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
 import edu.jhu.pacaya.util.Prm;
 import edu.jhu.pacaya.util.cli.Opt;
+import edu.jhu.prim.list.IntArrayList;
 
 public class BitshiftDepParseFeatureExtractor implements FeatureExtractor {
 
@@ -54,6 +54,8 @@ public class BitshiftDepParseFeatureExtractor implements FeatureExtractor {
         public boolean useNonprojGrandDepFeats = false;
         @Opt(description = "Whether to use trilexical features (TurboParser style only)")
         public boolean useTrilexicalFeats = false;
+        @Opt(description = "Whether to cache the word-pair features of each sentence for reuse by the 2nd-order factors (TurboParser style only)")
+        public boolean useArcFeatureCache = true;
     }
     
     private static final Logger log = LoggerFactory.getLogger(BitshiftDepParseFeatureExtractor.class);     
@@ -62,8 +64,18 @@ public class BitshiftDepParseFeatureExtractor implements FeatureExtractor {
         emptyFv = new FeatureVector();
     }
 
+    // Reusable buffer of hashed feature indices for each thread.
+    private static final ThreadLocal<IntArrayList> scratch = new ThreadLocal<IntArrayList>() {
+        @Override
+        protected IntArrayList initialValue() {
+            return new IntArrayList(512);
+        }
+    };
+
     private BitshiftDepParseFeatureExtractorPrm prm;
     private IntAnnoSentence isent;
+    // Cache of the word-pair features for the 2nd-order factors, created by the first such factor.
+    private ArcFeatureCache cache;
     
     public BitshiftDepParseFeatureExtractor(BitshiftDepParseFeatureExtractorPrm prm, IntAnnoSentence isent, CorpusStatistics cs, ObsFeatureConjoiner ofc) {
         this.prm = prm;
@@ -77,13 +89,13 @@ public class BitshiftDepParseFeatureExtractor implements FeatureExtractor {
         Enum<?> ft = f.getFactorType();
         VarSet vars = f.getVars();
         
-        int[] vc = vars.getVarConfigAsArray(configId);
-        if (ArrayUtils.contains(vc, LinkVar.FALSE)) {
+        if (hasFalseLink(vars, configId)) {
             return emptyFv;
         }
         
-        //LongArrayList feats = new LongArrayList();
-        FeatureVector feats = new FeatureVector();
+        // Hash the features into the scratch buffer, and copy them out once at the end.
+        IntArrayList feats = scratch.get();
+        feats.clear();
 
         // Get the features for an edge that is "on".
         if (ft == DepParseFactorTemplate.UNARY) {
@@ -94,10 +106,10 @@ public class BitshiftDepParseFeatureExtractor implements FeatureExtractor {
             BitshiftDepParseFeatures.addArcFeats(isent, p, c, prm, feats);
         } else if (ft == DepParseFactorTemplate.ARBITRARY_SIBLING) {
             SibFeTypedFactor f2 = (SibFeTypedFactor)f;
-            BitshiftDepParseFeatures.addArbitrarySiblingFeats(isent, f2.p, f2.c, f2.s, feats, prm);
+            BitshiftDepParseFeatures.addArbitrarySiblingFeats(isent, f2.p, f2.c, f2.s, feats, prm, getCache());
         } else if (ft == DepParseFactorTemplate.GRANDPARENT) {
             GraFeTypedFactor f2 = (GraFeTypedFactor)f;
-            BitshiftDepParseFeatures.addGrandparentFeats(isent, f2.g, f2.p, f2.c, feats, prm);
+            BitshiftDepParseFeatures.addGrandparentFeats(isent, f2.g, f2.p, f2.c, feats, prm, getCache());
         } else if (ft == DepParseFactorTemplate.HEAD_BIGRAM) {
             HbFeTypedFactor f2 = (HbFeTypedFactor)f;
             BitshiftDepParseFeatures.addTurboHeadBigramFeats(isent, f2.p, f2.c, f2.p_other, feats, prm);
@@ -105,7 +117,31 @@ public class BitshiftDepParseFeatureExtractor implements FeatureExtractor {
             throw new RuntimeException("Unsupported template: " + ft);
         }
         
-        return feats;
+        return BitshiftDepParseFeatures.toFeatureVector(feats);
+    }
+
+    /** Gets the word-pair feature cache, creating it if needed, or null if it is not in use. */
+    private ArcFeatureCache getCache() {
+        if (cache == null && prm.useArcFeatureCache && !prm.useMstFeats) {
+            cache = new ArcFeatureCache(isent, prm);
+        }
+        return cache;
+    }
+    
+    /**
+     * Whether any of the variables has state LinkVar.FALSE in the given configuration. This
+     * decodes the configuration in the same order as {@link VarSet#getVarConfigAsArray(int)}, but
+     * without allocating an array.
+     */
+    static boolean hasFalseLink(VarSet vars, int configId) {
+        for (int v = vars.size() - 1; v >= 0; v--) {
+            int numStates = vars.get(v).getNumStates();
+            if (configId % numStates == LinkVar.FALSE) {
+                return true;
+            }
+            configId /= numStates;
+        }
+        return false;
     }
         
 }
@@ -15,6 +15,8 @@ import static edu.jhu.nlp.features.BitPacking.encodeFeatureSSS_;
 import static edu.jhu.nlp.features.BitPacking.encodeFeatureSS__;
 import static edu.jhu.nlp.features.BitPacking.encodeFeatureS___;
 
+import java.util.Arrays;
+
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -22,13 +24,14 @@ import edu.jhu.nlp.data.simple.AlphabetStore;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.IntAnnoSentence;
 import edu.jhu.nlp.depparse.BitshiftDepParseFeatureExtractor.BitshiftDepParseFeatureExtractorPrm;
+import edu.jhu.nlp.features.FeatureHashing;
 import edu.jhu.pacaya.gm.feat.FeatureVector;
-import edu.jhu.pacaya.util.hash.MurmurHash;
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.list.LongArrayList;
 import edu.jhu.prim.list.ShortArrayList;
 import edu.jhu.prim.sort.ByteSort;
 import edu.jhu.prim.sort.ShortSort;
 import edu.jhu.prim.util.SafeCast;
-import edu.jhu.prim.util.math.FastMath;
 
 /**
  * Very fast feature extraction for dependency parsing.
@@ -365,7 +368,11 @@ public class BitshiftDepParseFeatures {
         WALL_MORPHO.add((short)TOK_WALL_INT);
     }
     
-    public static void addArcFeats(IntAnnoSentence sent, int head, int modifier, BitshiftDepParseFeatureExtractorPrm prm, FeatureVector feats) {
+    /**
+     * Adds the features for an arc. These are not cached, since each arc factor asks for them only
+     * once.
+     */
+    public static void addArcFeats(IntAnnoSentence sent, int head, int modifier, BitshiftDepParseFeatureExtractorPrm prm, IntArrayList feats) {
         if (prm.useMstFeats) {
             BitshiftDepParseFeatures.addArcFactoredMSTFeats(sent, head, modifier, FeatureCollection.ARC, feats, prm.basicOnly, prm.useCoarseTags, prm.featureHashMod);
         } else {
@@ -373,10 +380,20 @@ public class BitshiftDepParseFeatures {
         }
     }
     
+    /** Adds the word-pair features, taking them from the cache if it is non-null. */
+    private static void addTurboWordPairFeats(final IntAnnoSentence sent, final int head, final int modifier, final byte pairType, 
+            final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm, ArcFeatureCache cache) {
+        if (cache != null) {
+            cache.addTurboWordPairFeats(head, modifier, pairType, feats);
+        } else {
+            addTurboWordPairFeats(sent, head, modifier, pairType, feats, prm);
+        }
+    }
+    
 
-    /** Wrapper of {@link #addTurboWordPairFeats(IntAnnoSentence, int, int, byte, FeatureVector, int, int, boolean, boolean, boolean, boolean, boolean)}. */
+    /** Wrapper of {@link #addTurboWordPairFeats(IntAnnoSentence, int, int, byte, IntArrayList, int, int, boolean, boolean, boolean, boolean, boolean)}. */
     public static void addTurboWordPairFeats(final IntAnnoSentence sent, final int head, final int modifier, final byte pairType, 
-            final FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+            final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
         addTurboWordPairFeats(sent, head, modifier, pairType, feats, prm.featureHashMod, 
                 prm.maxTokenContext, prm.isLabeledParsing, prm.useNonTurboFeats, prm.useLemmaFeats, prm.useMorphologicalFeats, 
                 prm.useCoarseTags);
@@ -392,13 +409,14 @@ public class BitshiftDepParseFeatures {
      * where the original features were defined in TurboParser over coarse tags only.
      */
     public static void addTurboWordPairFeats(final IntAnnoSentence sent, final int head, final int modifier, final byte pairType, 
-            final FeatureVector feats, final int mod,
+            final IntArrayList feats, final int mod,
             final int maxTokenContext,
             final boolean isLabeledParsing,
             final boolean useNonTurboFeats,
             final boolean useLemmaFeats,
             final boolean useMorphologicalFeats,
             final boolean useCoarseTags) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         int sentLen = sent.size();
 
         // Distance codes.
@@ -501,22 +519,22 @@ public class BitshiftDepParseFeatures {
         // --------------------------------------------------------------------
         // Bias Feature.
         // --------------------------------------------------------------------        
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.BIAS, flags, (byte)0));
+        codes.add(encodeFeatureB___(ArcTs.BIAS, flags, (byte)0));
 
         // --------------------------------------------------------------------
         // Unigram Features of the Parent and Child tokens.
         // --------------------------------------------------------------------
         
         // Head Only.
-        addFeat(feats, mod, encodeFeatureS___(ArcTs.hW, flags, hWord));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.hP, flags, hPos));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.hC, flags, hCpos));
+        codes.add(encodeFeatureS___(ArcTs.hW, flags, hWord));
+        codes.add(encodeFeatureB___(ArcTs.hP, flags, hPos));
+        codes.add(encodeFeatureB___(ArcTs.hC, flags, hCpos));
         if (useLemmaFeats) {
-            addFeat(feats, mod, encodeFeatureS___(ArcTs.hL, flags, hLemma));
+            codes.add(encodeFeatureS___(ArcTs.hL, flags, hLemma));
         }
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW_hP, flags, hWord, hPos));
+        codes.add(encodeFeatureSB__(ArcTs.hW_hP, flags, hWord, hPos));
         if (useCoarseTags) {
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW_hC, flags, hWord, hCpos));            
+            codes.add(encodeFeatureSB__(ArcTs.hW_hC, flags, hWord, hCpos));            
         }
         if (useMorphologicalFeats) {
             ShortArrayList hMorphosList = safeGetFeats(sent, head);
@@ -532,22 +550,22 @@ public class BitshiftDepParseFeatures {
                 } else {
                     hMorpho = SafeCast.safeIntToShort((hMorpho << 4) | j);
                 }
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.hF, flags, hMorpho));
-                addFeat(feats, mod, encodeFeatureSS__(ArcTs.hW_hF, flags, hWord, hMorpho));
+                codes.add(encodeFeatureS___(ArcTs.hF, flags, hMorpho));
+                codes.add(encodeFeatureSS__(ArcTs.hW_hF, flags, hWord, hMorpho));
             }
         }
 
         if (isLabeledParsing) {
             // Modifier Only.
-            addFeat(feats, mod, encodeFeatureS___(ArcTs.mW, flags, mWord));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.mP, flags, mPos));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.mC, flags, mCpos));
+            codes.add(encodeFeatureS___(ArcTs.mW, flags, mWord));
+            codes.add(encodeFeatureB___(ArcTs.mP, flags, mPos));
+            codes.add(encodeFeatureB___(ArcTs.mC, flags, mCpos));
             if (useLemmaFeats) {
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.mL, flags, mLemma));
+                codes.add(encodeFeatureS___(ArcTs.mL, flags, mLemma));
             }            
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW_mP, flags, mWord, mPos));
+            codes.add(encodeFeatureSB__(ArcTs.mW_mP, flags, mWord, mPos));
             if (useCoarseTags) {
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW_mC, flags, mWord, mCpos));
+                codes.add(encodeFeatureSB__(ArcTs.mW_mC, flags, mWord, mCpos));
             }
             if (useMorphologicalFeats) {
                 ShortArrayList mMorphosList = safeGetFeats(sent, modifier);
@@ -563,8 +581,8 @@ public class BitshiftDepParseFeatures {
                     } else {
                         mMorpho = SafeCast.safeIntToShort((mMorpho << 4) | k);
                     }
-                    addFeat(feats, mod, encodeFeatureS___(ArcTs.mF, flags, mMorpho));
-                    addFeat(feats, mod, encodeFeatureSS__(ArcTs.mW_mF, flags, hWord, mMorpho));
+                    codes.add(encodeFeatureS___(ArcTs.mF, flags, mMorpho));
+                    codes.add(encodeFeatureSS__(ArcTs.mW_mF, flags, hWord, mMorpho));
                 }
             }
         }
@@ -576,75 +594,75 @@ public class BitshiftDepParseFeatures {
         if (maxTokenContext >= 1) {
             // -- Head Context --
             // Word to the left.
-            addFeat(feats, mod, encodeFeatureS___(ArcTs.lhW, flags, lhWord));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.lhP, flags, lhPos));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.lhC, flags, lhCpos));
-            if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.lhL, flags, lhLemma)); }
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.lhW_lhP, flags, lhWord, lhPos));            
-            if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.lhW_lhC, flags, lhWord, lhCpos)); } 
+            codes.add(encodeFeatureS___(ArcTs.lhW, flags, lhWord));
+            codes.add(encodeFeatureB___(ArcTs.lhP, flags, lhPos));
+            codes.add(encodeFeatureB___(ArcTs.lhC, flags, lhCpos));
+            if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.lhL, flags, lhLemma)); }
+            codes.add(encodeFeatureSB__(ArcTs.lhW_lhP, flags, lhWord, lhPos));            
+            if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.lhW_lhC, flags, lhWord, lhCpos)); } 
             // Word to the right.
-            addFeat(feats, mod, encodeFeatureS___(ArcTs.rhW, flags, rhWord));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.rhP, flags, rhPos));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.rhC, flags, rhCpos));
-            if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.rhL, flags, rhLemma)); }
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.rhW_rhP, flags, rhWord, rhPos));            
-            if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.rhW_rhC, flags, rhWord, rhCpos)); } 
+            codes.add(encodeFeatureS___(ArcTs.rhW, flags, rhWord));
+            codes.add(encodeFeatureB___(ArcTs.rhP, flags, rhPos));
+            codes.add(encodeFeatureB___(ArcTs.rhC, flags, rhCpos));
+            if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.rhL, flags, rhLemma)); }
+            codes.add(encodeFeatureSB__(ArcTs.rhW_rhP, flags, rhWord, rhPos));            
+            if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.rhW_rhC, flags, rhWord, rhCpos)); } 
             // -- Modifier Context --
             // TurboParser excludes these features that look only at the modifier unless they are
             // also conjoined with the label.
             if (isLabeledParsing) {
                 // Word to the left.
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.lmW, flags, lmWord));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.lmP, flags, lmPos));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.lmC, flags, lmCpos));
-                if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.lmL, flags, lmLemma)); }
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.lmW_lmP, flags, lmWord, lmPos));                
-                if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.lmW_lmC, flags, lmWord, lmCpos)); } 
+                codes.add(encodeFeatureS___(ArcTs.lmW, flags, lmWord));
+                codes.add(encodeFeatureB___(ArcTs.lmP, flags, lmPos));
+                codes.add(encodeFeatureB___(ArcTs.lmC, flags, lmCpos));
+                if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.lmL, flags, lmLemma)); }
+                codes.add(encodeFeatureSB__(ArcTs.lmW_lmP, flags, lmWord, lmPos));                
+                if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.lmW_lmC, flags, lmWord, lmCpos)); } 
                 // Word to the right.
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.rmW, flags, rmWord));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.rmP, flags, rmPos));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.rmC, flags, rmCpos));
-                if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.rmL, flags, rmLemma)); }
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.rmW_rmP, flags, rmWord, rmPos));                
-                if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.rmW_rmC, flags, rmWord, rmCpos)); }
+                codes.add(encodeFeatureS___(ArcTs.rmW, flags, rmWord));
+                codes.add(encodeFeatureB___(ArcTs.rmP, flags, rmPos));
+                codes.add(encodeFeatureB___(ArcTs.rmC, flags, rmCpos));
+                if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.rmL, flags, rmLemma)); }
+                codes.add(encodeFeatureSB__(ArcTs.rmW_rmP, flags, rmWord, rmPos));                
+                if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.rmW_rmC, flags, rmWord, rmCpos)); }
             }
         }
         
         if (maxTokenContext >= 2) {
             // -- Head Context --
             // Two words to the left.
-            addFeat(feats, mod, encodeFeatureS___(ArcTs.llhW, flags, llhWord));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.llhP, flags, llhPos));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.llhC, flags, llhCpos));
-            if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.llhL, flags, llhLemma)); }
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.llhW_llhP, flags, llhWord, llhPos));            
-            if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.llhW_llhC, flags, llhWord, llhCpos)); } 
+            codes.add(encodeFeatureS___(ArcTs.llhW, flags, llhWord));
+            codes.add(encodeFeatureB___(ArcTs.llhP, flags, llhPos));
+            codes.add(encodeFeatureB___(ArcTs.llhC, flags, llhCpos));
+            if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.llhL, flags, llhLemma)); }
+            codes.add(encodeFeatureSB__(ArcTs.llhW_llhP, flags, llhWord, llhPos));            
+            if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.llhW_llhC, flags, llhWord, llhCpos)); } 
             // Two words to the right.
-            addFeat(feats, mod, encodeFeatureS___(ArcTs.rrhW, flags, rrhWord));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.rrhP, flags, rrhPos));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.rrhC, flags, rrhCpos));
-            if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.rrhL, flags, rrhLemma)); }
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.rrhW_rrhP, flags, rrhWord, rrhPos));            
-            if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.rrhW_rrhC, flags, rrhWord, rrhCpos)); } 
+            codes.add(encodeFeatureS___(ArcTs.rrhW, flags, rrhWord));
+            codes.add(encodeFeatureB___(ArcTs.rrhP, flags, rrhPos));
+            codes.add(encodeFeatureB___(ArcTs.rrhC, flags, rrhCpos));
+            if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.rrhL, flags, rrhLemma)); }
+            codes.add(encodeFeatureSB__(ArcTs.rrhW_rrhP, flags, rrhWord, rrhPos));            
+            if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.rrhW_rrhC, flags, rrhWord, rrhCpos)); } 
             // -- Modifier Context --
             if (isLabeledParsing) {
                 // Two words to the left.
                 //
                 // TurboParser excludes these features that look only at the modifier unless they are
                 // also conjoined with the label.
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.llmW, flags, llmWord));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.llmP, flags, llmPos));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.llmC, flags, llmCpos));
-                if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.llmL, flags, llmLemma)); }
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.llmW_llmP, flags, llmWord, llmPos));                 
-                if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.llmW_llmC, flags, llmWord, llmCpos)); } 
+                codes.add(encodeFeatureS___(ArcTs.llmW, flags, llmWord));
+                codes.add(encodeFeatureB___(ArcTs.llmP, flags, llmPos));
+                codes.add(encodeFeatureB___(ArcTs.llmC, flags, llmCpos));
+                if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.llmL, flags, llmLemma)); }
+                codes.add(encodeFeatureSB__(ArcTs.llmW_llmP, flags, llmWord, llmPos));                 
+                if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.llmW_llmC, flags, llmWord, llmCpos)); } 
                 // Two words to the right.
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.rrmW, flags, rrmWord));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.rrmP, flags, rrmPos));
-                addFeat(feats, mod, encodeFeatureB___(ArcTs.rrmC, flags, rrmCpos));
-                if (useLemmaFeats) { addFeat(feats, mod, encodeFeatureS___(ArcTs.rrmL, flags, rrmLemma)); }
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.rrmW_rrmP, flags, rrmWord, rrmPos));               
-                if (useCoarseTags) { addFeat(feats, mod, encodeFeatureSB__(ArcTs.rrmW_rrmC, flags, rrmWord, rrmCpos)); }
+                codes.add(encodeFeatureS___(ArcTs.rrmW, flags, rrmWord));
+                codes.add(encodeFeatureB___(ArcTs.rrmP, flags, rrmPos));
+                codes.add(encodeFeatureB___(ArcTs.rrmC, flags, rrmCpos));
+                if (useLemmaFeats) { codes.add(encodeFeatureS___(ArcTs.rrmL, flags, rrmLemma)); }
+                codes.add(encodeFeatureSB__(ArcTs.rrmW_rrmP, flags, rrmWord, rrmPos));               
+                if (useCoarseTags) { codes.add(encodeFeatureSB__(ArcTs.rrmW_rrmC, flags, rrmWord, rrmCpos)); }
             }
         }
 
@@ -653,28 +671,28 @@ public class BitshiftDepParseFeatures {
         // or Child plus context. 
         // --------------------------------------------------------------------
 
-        addFeat(feats, mod, encodeFeatureBB__(ArcTs.hP_lhP, flags, hPos, lhPos));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_lhP_llhP, flags, hPos, lhPos, llhPos));
-        addFeat(feats, mod, encodeFeatureBB__(ArcTs.hP_rhP, flags, hPos, rhPos));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_rhP_rrhP, flags, hPos, rhPos, rrhPos));   
+        codes.add(encodeFeatureBB__(ArcTs.hP_lhP, flags, hPos, lhPos));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_lhP_llhP, flags, hPos, lhPos, llhPos));
+        codes.add(encodeFeatureBB__(ArcTs.hP_rhP, flags, hPos, rhPos));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_rhP_rrhP, flags, hPos, rhPos, rrhPos));   
         if (useCoarseTags) {         
-            addFeat(feats, mod, encodeFeatureBB__(ArcTs.hC_lhC, flags, hCpos, lhCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_lhC_llhC, flags, hCpos, lhCpos, llhCpos));
-            addFeat(feats, mod, encodeFeatureBB__(ArcTs.hC_rhC, flags, hCpos, rhCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_rhC_rrhC, flags, hCpos, rhCpos, rrhCpos));
+            codes.add(encodeFeatureBB__(ArcTs.hC_lhC, flags, hCpos, lhCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_lhC_llhC, flags, hCpos, lhCpos, llhCpos));
+            codes.add(encodeFeatureBB__(ArcTs.hC_rhC, flags, hCpos, rhCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_rhC_rrhC, flags, hCpos, rhCpos, rrhCpos));
         }
         if (isLabeledParsing) {
             // TurboParser excludes these features that look only at the modifier unless they are
             // also conjoined with the label.
-            addFeat(feats, mod, encodeFeatureBB__(ArcTs.mP_lmP, flags, mPos, lmPos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.mP_lmP_llmP, flags, mPos, lmPos, llmPos));
-            addFeat(feats, mod, encodeFeatureBB__(ArcTs.mP_rmP, flags, mPos, rmPos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.mP_rmP_rrmP, flags, mPos, rmPos, rrmPos));   
+            codes.add(encodeFeatureBB__(ArcTs.mP_lmP, flags, mPos, lmPos));
+            codes.add(encodeFeatureBBB_(ArcTs.mP_lmP_llmP, flags, mPos, lmPos, llmPos));
+            codes.add(encodeFeatureBB__(ArcTs.mP_rmP, flags, mPos, rmPos));
+            codes.add(encodeFeatureBBB_(ArcTs.mP_rmP_rrmP, flags, mPos, rmPos, rrmPos));   
             if (useCoarseTags) {         
-                addFeat(feats, mod, encodeFeatureBB__(ArcTs.mC_lmC, flags, mCpos, lmCpos));
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.mC_lmC_llmC, flags, mCpos, lmCpos, llmCpos));
-                addFeat(feats, mod, encodeFeatureBB__(ArcTs.mC_rmC, flags, mCpos, rmCpos));
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.mC_rmC_rrmC, flags, mCpos, rmCpos, rrmCpos));
+                codes.add(encodeFeatureBB__(ArcTs.mC_lmC, flags, mCpos, lmCpos));
+                codes.add(encodeFeatureBBB_(ArcTs.mC_lmC_llmC, flags, mCpos, lmCpos, llmCpos));
+                codes.add(encodeFeatureBB__(ArcTs.mC_rmC, flags, mCpos, rmCpos));
+                codes.add(encodeFeatureBBB_(ArcTs.mC_rmC_rrmC, flags, mCpos, rmCpos, rrmCpos));
             }
         }
         
@@ -683,29 +701,29 @@ public class BitshiftDepParseFeatures {
         // --------------------------------------------------------------------
 
         // Words only.
-        addFeat(feats, mod, encodeFeatureSS__(ArcTs.hW_mW, flags, hWord, mWord));
+        codes.add(encodeFeatureSS__(ArcTs.hW_mW, flags, hWord, mWord));
         // POS tags and Words.
-        addFeat(feats, mod, encodeFeatureBB__(ArcTs.hP_mP, flags, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW_hP, flags, mWord, hPos));
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW_mP, flags, hWord, mPos));
-        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mW_hP_mP, flags, mWord, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hW_hP_mP, flags, hWord, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hW_mW_hP_mP, flags, hWord, mWord, hPos, mPos));       
+        codes.add(encodeFeatureBB__(ArcTs.hP_mP, flags, hPos, mPos));
+        codes.add(encodeFeatureSB__(ArcTs.mW_hP, flags, mWord, hPos));
+        codes.add(encodeFeatureSB__(ArcTs.hW_mP, flags, hWord, mPos));
+        codes.add(encodeFeatureSBB_(ArcTs.mW_hP_mP, flags, mWord, hPos, mPos));
+        codes.add(encodeFeatureSBB_(ArcTs.hW_hP_mP, flags, hWord, hPos, mPos));
+        codes.add(encodeFeatureSSBB(ArcTs.hW_mW_hP_mP, flags, hWord, mWord, hPos, mPos));       
         if (useCoarseTags) {
             // Coarse POS tags and Words.
-            addFeat(feats, mod, encodeFeatureBB__(ArcTs.hC_mC, flags, hCpos, mCpos));     
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW_hC, flags, mWord, hCpos));
-            addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW_mC, flags, hWord, mCpos));
-            addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mW_hC_mC, flags, mWord, hCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hW_hC_mC, flags, hWord, hCpos, mCpos));        
-            addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hW_mW_hC_mC, flags, hWord, mWord, hCpos, mCpos));
+            codes.add(encodeFeatureBB__(ArcTs.hC_mC, flags, hCpos, mCpos));     
+            codes.add(encodeFeatureSB__(ArcTs.mW_hC, flags, mWord, hCpos));
+            codes.add(encodeFeatureSB__(ArcTs.hW_mC, flags, hWord, mCpos));
+            codes.add(encodeFeatureSBB_(ArcTs.mW_hC_mC, flags, mWord, hCpos, mCpos));
+            codes.add(encodeFeatureSBB_(ArcTs.hW_hC_mC, flags, hWord, hCpos, mCpos));        
+            codes.add(encodeFeatureSSBB(ArcTs.hW_mW_hC_mC, flags, hWord, mWord, hCpos, mCpos));
         }
         if (useNonTurboFeats) {
             // Both Words plus a single Tag (from MST Parser).
-            addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_mC, flags, hWord, mWord, mCpos));
-            addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_hC, flags, hWord, mWord, hCpos));
-            addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_mP, flags, hWord, mWord, mPos));
-            addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_hP, flags, hWord, mWord, hPos));
+            codes.add(encodeFeatureSSB_(ArcTs.hW_mW_mC, flags, hWord, mWord, mCpos));
+            codes.add(encodeFeatureSSB_(ArcTs.hW_mW_hC, flags, hWord, mWord, hCpos));
+            codes.add(encodeFeatureSSB_(ArcTs.hW_mW_mP, flags, hWord, mWord, mPos));
+            codes.add(encodeFeatureSSB_(ArcTs.hW_mW_hP, flags, hWord, mWord, hPos));
         }
  
         if (useMorphologicalFeats) {
@@ -737,74 +755,74 @@ public class BitshiftDepParseFeatures {
                     } else {
                         mMorpho = SafeCast.safeIntToShort((mMorpho << 4) | k);
                     }
-                    addFeat(feats, mod, encodeFeatureSS__(ArcTs.hF_mF, flags, hMorpho, mMorpho));
-
-                    addFeat(feats, mod, encodeFeatureSB__(ArcTs.hF_mP, flags, hMorpho, mPos));
-                    addFeat(feats, mod, encodeFeatureSB__(ArcTs.mF_hP, flags, mMorpho, hPos));
-                    addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hF_mF_mP, flags, hMorpho, mMorpho, mPos));
-                    addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hF_mF_hP, flags, hMorpho, mMorpho, hPos));                    
-                    addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hF_hP_mP, flags, hMorpho, hPos, mPos));
-                    addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mF_hP_mP, flags, mMorpho, hPos, mPos));                    
-                    addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hF_mF_hP_mP, flags, hMorpho, mMorpho, hPos, mPos));
+                    codes.add(encodeFeatureSS__(ArcTs.hF_mF, flags, hMorpho, mMorpho));
+
+                    codes.add(encodeFeatureSB__(ArcTs.hF_mP, flags, hMorpho, mPos));
+                    codes.add(encodeFeatureSB__(ArcTs.mF_hP, flags, mMorpho, hPos));
+                    codes.add(encodeFeatureSSB_(ArcTs.hF_mF_mP, flags, hMorpho, mMorpho, mPos));
+                    codes.add(encodeFeatureSSB_(ArcTs.hF_mF_hP, flags, hMorpho, mMorpho, hPos));                    
+                    codes.add(encodeFeatureSBB_(ArcTs.hF_hP_mP, flags, hMorpho, hPos, mPos));
+                    codes.add(encodeFeatureSBB_(ArcTs.mF_hP_mP, flags, mMorpho, hPos, mPos));                    
+                    codes.add(encodeFeatureSSBB(ArcTs.hF_mF_hP_mP, flags, hMorpho, mMorpho, hPos, mPos));
                     
                     if (useCoarseTags) {
-                        addFeat(feats, mod, encodeFeatureSB__(ArcTs.hF_mC, flags, hMorpho, mCpos));
-                        addFeat(feats, mod, encodeFeatureSB__(ArcTs.mF_hC, flags, mMorpho, hCpos));
-                        addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hF_mF_mC, flags, hMorpho, mMorpho, mCpos));
-                        addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hF_mF_hC, flags, hMorpho, mMorpho, hCpos));                    
-                        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hF_hC_mC, flags, hMorpho, hCpos, mCpos));
-                        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mF_hC_mC, flags, mMorpho, hCpos, mCpos));                    
-                        addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hF_mF_hC_mC, flags, hMorpho, mMorpho, hCpos, mCpos));
+                        codes.add(encodeFeatureSB__(ArcTs.hF_mC, flags, hMorpho, mCpos));
+                        codes.add(encodeFeatureSB__(ArcTs.mF_hC, flags, mMorpho, hCpos));
+                        codes.add(encodeFeatureSSB_(ArcTs.hF_mF_mC, flags, hMorpho, mMorpho, mCpos));
+                        codes.add(encodeFeatureSSB_(ArcTs.hF_mF_hC, flags, hMorpho, mMorpho, hCpos));                    
+                        codes.add(encodeFeatureSBB_(ArcTs.hF_hC_mC, flags, hMorpho, hCpos, mCpos));
+                        codes.add(encodeFeatureSBB_(ArcTs.mF_hC_mC, flags, mMorpho, hCpos, mCpos));                    
+                        codes.add(encodeFeatureSSBB(ArcTs.hF_mF_hC_mC, flags, hMorpho, mMorpho, hCpos, mCpos));
                     }
                 }
             }
         }
 
         // Surrounding POS Features
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.lhP_hP_mP, flags, lhPos, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_lmP_mP, flags, hPos, lmPos, mPos));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_mP_rmP, flags, hPos, mPos, rmPos));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_rhP_mP, flags, hPos, rhPos, mPos));
-        addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_rhP_lmP_mP, flags, hPos, rhPos, lmPos, mPos));
-        addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhP_hP_lmP_mP, flags, lhPos, hPos, lmPos, mPos));
-        addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_rhP_mP_rmP, flags, hPos, rhPos, mPos, rmPos));
-        addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhP_hP_mP_rmP, flags, lhPos, hPos, mPos, rmPos));
+        codes.add(encodeFeatureBBB_(ArcTs.lhP_hP_mP, flags, lhPos, hPos, mPos));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_lmP_mP, flags, hPos, lmPos, mPos));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_mP_rmP, flags, hPos, mPos, rmPos));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_rhP_mP, flags, hPos, rhPos, mPos));
+        codes.add(encodeFeatureBBBB(ArcTs.hP_rhP_lmP_mP, flags, hPos, rhPos, lmPos, mPos));
+        codes.add(encodeFeatureBBBB(ArcTs.lhP_hP_lmP_mP, flags, lhPos, hPos, lmPos, mPos));
+        codes.add(encodeFeatureBBBB(ArcTs.hP_rhP_mP_rmP, flags, hPos, rhPos, mPos, rmPos));
+        codes.add(encodeFeatureBBBB(ArcTs.lhP_hP_mP_rmP, flags, lhPos, hPos, mPos, rmPos));
         //    we don't backoff to the 5 tag case, i.e. BBBBB.
-        addFeat(feats, mod, encodeFeatureBBBBBB(ArcTs.lhP_hP_rhP_lmP_mP_rmP, flags, lhPos, hPos, rhPos, lmPos, mPos, rmPos));       
+        codes.add(encodeFeatureBBBBBB(ArcTs.lhP_hP_rhP_lmP_mP_rmP, flags, lhPos, hPos, rhPos, lmPos, mPos, rmPos));       
         if (useCoarseTags) {
             // Surrounding Coarse POS Features
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.lhC_hC_mC, flags, lhCpos, hCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_lmC_mC, flags, hCpos, lmCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_mC_rmC, flags, hCpos, mCpos, rmCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_rhC_mC, flags, hCpos, rhCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_rhC_lmC_mC, flags, hCpos, rhCpos, lmCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhC_hC_lmC_mC, flags, lhCpos, hCpos, lmCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_rhC_mC_rmC, flags, hCpos, rhCpos, mCpos, rmCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhC_hC_mC_rmC, flags, lhCpos, hCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.lhC_hC_mC, flags, lhCpos, hCpos, mCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_lmC_mC, flags, hCpos, lmCpos, mCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_mC_rmC, flags, hCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_rhC_mC, flags, hCpos, rhCpos, mCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.hC_rhC_lmC_mC, flags, hCpos, rhCpos, lmCpos, mCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.lhC_hC_lmC_mC, flags, lhCpos, hCpos, lmCpos, mCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.hC_rhC_mC_rmC, flags, hCpos, rhCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.lhC_hC_mC_rmC, flags, lhCpos, hCpos, mCpos, rmCpos));
             //    we don't backoff to the 5 tag case, i.e. BBBBB.
-            addFeat(feats, mod, encodeFeatureBBBBBB(ArcTs.lhC_hC_rhC_lmC_mC_rmC, flags, lhCpos, hCpos, rhCpos, lmCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBBBBB(ArcTs.lhC_hC_rhC_lmC_mC_rmC, flags, lhCpos, hCpos, rhCpos, lmCpos, mCpos, rmCpos));
         }
         
         // The two cases of Adjacent Dependencies.
         if (head != -1 && head == modifier - 1) {
             // Parent is the token to the Left of the Child.
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhP_hP_mP, flags, lhPos, hPos, mPos, (byte)0x1));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_mP_rmP, flags, hPos, mPos, rmPos, (byte)0x1));
-            addFeat(feats, mod, encodeFeatureBBBBB(ArcTs.lhP_hP_mP_rmP, flags, lhPos, hPos, mPos, rmPos, (byte)0x1)); 
+            codes.add(encodeFeatureBBBB(ArcTs.lhP_hP_mP, flags, lhPos, hPos, mPos, (byte)0x1));
+            codes.add(encodeFeatureBBBB(ArcTs.hP_mP_rmP, flags, hPos, mPos, rmPos, (byte)0x1));
+            codes.add(encodeFeatureBBBBB(ArcTs.lhP_hP_mP_rmP, flags, lhPos, hPos, mPos, rmPos, (byte)0x1)); 
             if (useCoarseTags) {                   
-                addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhC_hC_mC, flags, lhCpos, hCpos, mCpos, (byte)0x1));
-                addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_mC_rmC, flags, hCpos, mCpos, rmCpos, (byte)0x1));
-                addFeat(feats, mod, encodeFeatureBBBBB(ArcTs.lhC_hC_mC_rmC, flags, lhCpos, hCpos, mCpos, rmCpos, (byte)0x1));
+                codes.add(encodeFeatureBBBB(ArcTs.lhC_hC_mC, flags, lhCpos, hCpos, mCpos, (byte)0x1));
+                codes.add(encodeFeatureBBBB(ArcTs.hC_mC_rmC, flags, hCpos, mCpos, rmCpos, (byte)0x1));
+                codes.add(encodeFeatureBBBBB(ArcTs.lhC_hC_mC_rmC, flags, lhCpos, hCpos, mCpos, rmCpos, (byte)0x1));
             }
         } else if (head != -1 && head == modifier + 1) {
             // Parent is the token to the Right of the Child.
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_lmP_mP, flags, hPos, lmPos, mPos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_rhP_mP, flags, hPos, rhPos, mPos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_rhP_lmP_mP, flags, hPos, rhPos, lmPos, mPos)); 
+            codes.add(encodeFeatureBBB_(ArcTs.hP_lmP_mP, flags, hPos, lmPos, mPos));
+            codes.add(encodeFeatureBBB_(ArcTs.hP_rhP_mP, flags, hPos, rhPos, mPos));
+            codes.add(encodeFeatureBBBB(ArcTs.hP_rhP_lmP_mP, flags, hPos, rhPos, lmPos, mPos)); 
             if (useCoarseTags) {                  
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_lmC_mC, flags, hCpos, lmCpos, mCpos));
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_rhC_mC, flags, hCpos, rhCpos, mCpos));
-                addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_rhC_lmC_mC, flags, hCpos, rhCpos, lmCpos, mCpos));
+                codes.add(encodeFeatureBBB_(ArcTs.hC_lmC_mC, flags, hCpos, lmCpos, mCpos));
+                codes.add(encodeFeatureBBB_(ArcTs.hC_rhC_mC, flags, hCpos, rhCpos, mCpos));
+                codes.add(encodeFeatureBBBB(ArcTs.hC_rhC_lmC_mC, flags, hCpos, rhCpos, lmCpos, mCpos));
             }
         }
         
@@ -812,20 +830,20 @@ public class BitshiftDepParseFeatures {
         // Arc Length Features.
         // --------------------------------------------------------------------
 
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.EXACT_DIST, flags, exactDistCode));
+        codes.add(encodeFeatureB___(ArcTs.EXACT_DIST, flags, exactDistCode));
         // Add features for each applicable bin.
         for (byte bin = 0; bin <= binDistCode; bin++) {
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.BIN_DIST, flags, bin));
+            codes.add(encodeFeatureB___(ArcTs.BIN_DIST, flags, bin));
             // NOTE: It looks like TurboParser's approach to these flags actually leads to
             // collisions with the non-binned-distance uses of these templates. The extra 0x1 flag
             // ensures we avoid them.
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP, flags, hPos, bin, (byte) 0x1));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.mP, flags, mPos, bin, (byte)0x1));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_mP, flags, hPos, mPos, bin, (byte)0x1));  
+            codes.add(encodeFeatureBBB_(ArcTs.hP, flags, hPos, bin, (byte) 0x1));
+            codes.add(encodeFeatureBBB_(ArcTs.mP, flags, mPos, bin, (byte)0x1));
+            codes.add(encodeFeatureBBBB(ArcTs.hP_mP, flags, hPos, mPos, bin, (byte)0x1));  
             if (useCoarseTags) {
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC, flags, hCpos, bin, (byte)0x1));
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.mC, flags, mCpos, bin, (byte)0x1));
-                addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_mC, flags, hCpos, mCpos, bin, (byte)0x1));                  
+                codes.add(encodeFeatureBBB_(ArcTs.hC, flags, hCpos, bin, (byte)0x1));
+                codes.add(encodeFeatureBBB_(ArcTs.mC, flags, mCpos, bin, (byte)0x1));
+                codes.add(encodeFeatureBBBB(ArcTs.hC_mC, flags, hCpos, mCpos, bin, (byte)0x1));                  
             }
         }
 
@@ -833,16 +851,16 @@ public class BitshiftDepParseFeatures {
         // Features on the tokens between Parent and Child.
         // --------------------------------------------------------------------
         
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.BFLAG, flags, verbsBetweenCode));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.BFLAG, flags, puncsBetweenCode));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.BFLAG, flags, conjsBetweenCode));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_mP_BFLAG, flags, hPos, mPos, verbsBetweenCode));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_mP_BFLAG, flags, hPos, mPos, puncsBetweenCode));
-        addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_mP_BFLAG, flags, hPos, mPos, conjsBetweenCode));
+        codes.add(encodeFeatureB___(ArcTs.BFLAG, flags, verbsBetweenCode));
+        codes.add(encodeFeatureB___(ArcTs.BFLAG, flags, puncsBetweenCode));
+        codes.add(encodeFeatureB___(ArcTs.BFLAG, flags, conjsBetweenCode));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_mP_BFLAG, flags, hPos, mPos, verbsBetweenCode));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_mP_BFLAG, flags, hPos, mPos, puncsBetweenCode));
+        codes.add(encodeFeatureBBB_(ArcTs.hP_mP_BFLAG, flags, hPos, mPos, conjsBetweenCode));
         if (useCoarseTags) {
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_mC_BFLAG, flags, hCpos, mCpos, verbsBetweenCode));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_mC_BFLAG, flags, hCpos, mCpos, puncsBetweenCode));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_mC_BFLAG, flags, hCpos, mCpos, conjsBetweenCode));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_mC_BFLAG, flags, hCpos, mCpos, verbsBetweenCode));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_mC_BFLAG, flags, hCpos, mCpos, puncsBetweenCode));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_mC_BFLAG, flags, hCpos, mCpos, conjsBetweenCode));
         }
            
         // In Between POS Features.
@@ -854,10 +872,10 @@ public class BitshiftDepParseFeatures {
         ByteSort.sortAsc(btwnPos);
         for (int i=0; i<btwnPos.length; i++) {
             if (i == 0 || btwnPos[i] != btwnPos[i-1]) {
-                addFeat(feats, mod, encodeFeatureSSB_(ArcTs.btwnP_hW_mW, flags, hWord, mWord, btwnPos[i]));
-                addFeat(feats, mod, encodeFeatureBBB_(ArcTs.btwnP_hP_mP, flags, hPos, mPos, btwnPos[i]));
-                addFeat(feats, mod, encodeFeatureSBB_(ArcTs.btwnP_hW_mP, flags, hWord, mPos, btwnPos[i]));
-                addFeat(feats, mod, encodeFeatureSBB_(ArcTs.btwnP_hP_mW, flags, mWord, hPos, btwnPos[i]));
+                codes.add(encodeFeatureSSB_(ArcTs.btwnP_hW_mW, flags, hWord, mWord, btwnPos[i]));
+                codes.add(encodeFeatureBBB_(ArcTs.btwnP_hP_mP, flags, hPos, mPos, btwnPos[i]));
+                codes.add(encodeFeatureSBB_(ArcTs.btwnP_hW_mP, flags, hWord, mPos, btwnPos[i]));
+                codes.add(encodeFeatureSBB_(ArcTs.btwnP_hP_mW, flags, mWord, hPos, btwnPos[i]));
             }
         }
         if (useCoarseTags) {
@@ -870,13 +888,15 @@ public class BitshiftDepParseFeatures {
             ByteSort.sortAsc(btwnCpos);
             for (int i=0; i<btwnCpos.length; i++) {
                 if (i == 0 || btwnCpos[i] != btwnCpos[i-1]) {
-                    addFeat(feats, mod, encodeFeatureSSB_(ArcTs.btwnC_hW_mW, flags, hWord, mWord, btwnCpos[i]));
-                    addFeat(feats, mod, encodeFeatureBBB_(ArcTs.btwnC_hC_mC, flags, hCpos, mCpos, btwnCpos[i]));
-                    addFeat(feats, mod, encodeFeatureSBB_(ArcTs.btwnC_hW_mC, flags, hWord, mCpos, btwnCpos[i]));
-                    addFeat(feats, mod, encodeFeatureSBB_(ArcTs.btwnC_hC_mW, flags, mWord, hCpos, btwnCpos[i]));   
+                    codes.add(encodeFeatureSSB_(ArcTs.btwnC_hW_mW, flags, hWord, mWord, btwnCpos[i]));
+                    codes.add(encodeFeatureBBB_(ArcTs.btwnC_hC_mC, flags, hCpos, mCpos, btwnCpos[i]));
+                    codes.add(encodeFeatureSBB_(ArcTs.btwnC_hW_mC, flags, hWord, mCpos, btwnCpos[i]));
+                    codes.add(encodeFeatureSBB_(ArcTs.btwnC_hC_mW, flags, mWord, hCpos, btwnCpos[i]));   
                 }
             }                          
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
 
     /**
@@ -914,7 +934,7 @@ public class BitshiftDepParseFeatures {
     
     /** Features from McDonald et al. (2005) "Online Large-Margin Training of Dependency Parsers." */
     public static void addArcFactoredMSTFeats(IntAnnoSentence sent, int head, int modifier, byte pairType,  
-            FeatureVector feats, boolean basicOnly, boolean useCoarseFeats, int mod) {
+            IntArrayList feats, boolean basicOnly, boolean useCoarseFeats, int mod) {
         // Head and modifier words / POS tags. We denote the head by p (for parent) and the modifier
         // by c (for child).
         short hWord = (head < 0) ? TOK_WALL_INT : sent.getWord(head);
@@ -985,48 +1005,49 @@ public class BitshiftDepParseFeatures {
     }
 
     /** Regular POS tag versions of the MST features. */
-    private static void extractMstFeaturesWithPos(IntAnnoSentence sent, int head, int modifier, FeatureVector feats,
+    private static void extractMstFeaturesWithPos(IntAnnoSentence sent, int head, int modifier, IntArrayList feats,
             boolean basicOnly, short hWord, short mWord, byte hPos, byte mPos, short hPrefix, short mPrefix,
             boolean hPrefixFeats, boolean mPrefixFeats, byte lhPos, byte lmPos, byte rhPos, byte rmPos, int distance,
             byte binnedDist, byte direction, byte mode, byte flags, int mod) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         // Bias features.
         //    # TODO: It's not clear whether these were included in McDonald et al. (2005), 
         //    # but Koo et al. (2008) had them.
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.BIAS, flags, (byte)0));
+        codes.add(encodeFeatureB___(ArcTs.BIAS, flags, (byte)0));
         if (mode == 0) {
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.DIR, flags, direction));
-            addFeat(feats, mod, encodeFeatureB___(ArcTs.BIN_DIST, flags, binnedDist));
+            codes.add(encodeFeatureB___(ArcTs.DIR, flags, direction));
+            codes.add(encodeFeatureB___(ArcTs.BIN_DIST, flags, binnedDist));
         }
         
         //    # Basic Unigram Features
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW_hP, flags, hWord, hPos));
-        addFeat(feats, mod, encodeFeatureS___(ArcTs.hW, flags, hWord));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.hP, flags, hPos));
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW_mP, flags, mWord, mPos));
-        addFeat(feats, mod, encodeFeatureS___(ArcTs.mW, flags, mWord));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.mP, flags, mPos));
+        codes.add(encodeFeatureSB__(ArcTs.hW_hP, flags, hWord, hPos));
+        codes.add(encodeFeatureS___(ArcTs.hW, flags, hWord));
+        codes.add(encodeFeatureB___(ArcTs.hP, flags, hPos));
+        codes.add(encodeFeatureSB__(ArcTs.mW_mP, flags, mWord, mPos));
+        codes.add(encodeFeatureS___(ArcTs.mW, flags, mWord));
+        codes.add(encodeFeatureB___(ArcTs.mP, flags, mPos));
         
         //    # Basic Bigram Features
-        addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hW_mW_hP_mP, flags, hWord, mWord, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mW_hP_mP, flags, mWord, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_mP, flags, hWord, mWord, mPos));
-        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hW_hP_mP, flags, hWord, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_hP, flags, hWord, mWord, hPos));
-        addFeat(feats, mod, encodeFeatureSS__(ArcTs.hW_mW, flags, hWord, mWord));
-        addFeat(feats, mod, encodeFeatureBB__(ArcTs.hP_mP, flags, hPos, mPos));            
+        codes.add(encodeFeatureSSBB(ArcTs.hW_mW_hP_mP, flags, hWord, mWord, hPos, mPos));
+        codes.add(encodeFeatureSBB_(ArcTs.mW_hP_mP, flags, mWord, hPos, mPos));
+        codes.add(encodeFeatureSSB_(ArcTs.hW_mW_mP, flags, hWord, mWord, mPos));
+        codes.add(encodeFeatureSBB_(ArcTs.hW_hP_mP, flags, hWord, hPos, mPos));
+        codes.add(encodeFeatureSSB_(ArcTs.hW_mW_hP, flags, hWord, mWord, hPos));
+        codes.add(encodeFeatureSS__(ArcTs.hW_mW, flags, hWord, mWord));
+        codes.add(encodeFeatureBB__(ArcTs.hP_mP, flags, hPos, mPos));            
         
         if (!basicOnly) {
             //    # Surrounding Word POS Features
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_rhP_lmP_mP, flags, hPos, rhPos, lmPos, mPos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhP_hP_lmP_mP, flags, lhPos, hPos, lmPos, mPos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hP_rhP_mP_rmP, flags, hPos, rhPos, mPos, rmPos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhP_hP_mP_rmP, flags, lhPos, hPos, mPos, rmPos));
+            codes.add(encodeFeatureBBBB(ArcTs.hP_rhP_lmP_mP, flags, hPos, rhPos, lmPos, mPos));
+            codes.add(encodeFeatureBBBB(ArcTs.lhP_hP_lmP_mP, flags, lhPos, hPos, lmPos, mPos));
+            codes.add(encodeFeatureBBBB(ArcTs.hP_rhP_mP_rmP, flags, hPos, rhPos, mPos, rmPos));
+            codes.add(encodeFeatureBBBB(ArcTs.lhP_hP_mP_rmP, flags, lhPos, hPos, mPos, rmPos));
             
             //    # Backed-off versions of Surrounding Word POS Features
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.lhP_hP_mP, flags, lhPos, hPos, mPos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_lmP_mP, flags, hPos, lmPos, mPos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_mP_rmP, flags, hPos, mPos, rmPos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hP_rhP_mP, flags, hPos, rhPos, mPos));
+            codes.add(encodeFeatureBBB_(ArcTs.lhP_hP_mP, flags, lhPos, hPos, mPos));
+            codes.add(encodeFeatureBBB_(ArcTs.hP_lmP_mP, flags, hPos, lmPos, mPos));
+            codes.add(encodeFeatureBBB_(ArcTs.hP_mP_rmP, flags, hPos, mPos, rmPos));
+            codes.add(encodeFeatureBBB_(ArcTs.hP_rhP_mP, flags, hPos, rhPos, mPos));
             
             //    # In Between POS Features
             int leftTok  = (head < modifier) ? head : modifier;
@@ -1039,37 +1060,40 @@ public class BitshiftDepParseFeatures {
             ByteSort.sortAsc(btwnPos);
             for (int i=0; i<btwnPos.length; i++) {
                 if (i == 0 || btwnPos[i] != btwnPos[i-1]) {
-                    addFeat(feats, mod, encodeFeatureBBB_(ArcTs.btwnP_hP_mP, flags, btwnPos[i], hPos, mPos));
+                    codes.add(encodeFeatureBBB_(ArcTs.btwnP_hP_mP, flags, btwnPos[i], hPos, mPos));
                 }
             }
             
             //    # These features are added for both the entire words as well as the
             //    # 5-gram prefix if the word is longer than 5 characters.
             if (hPrefixFeats) {
-                addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hW5_hP_mP, flags, hPrefix, hPos, mPos));
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW5_hP, flags, hPrefix, hPos));
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.hW5, flags, hPrefix));
+                codes.add(encodeFeatureSBB_(ArcTs.hW5_hP_mP, flags, hPrefix, hPos, mPos));
+                codes.add(encodeFeatureSB__(ArcTs.hW5_hP, flags, hPrefix, hPos));
+                codes.add(encodeFeatureS___(ArcTs.hW5, flags, hPrefix));
             }
             if (mPrefixFeats) {
-                addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mW5_hP_mP, flags, mPrefix, hPos, mPos));
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW5_mP, flags, mPrefix, mPos));
-                addFeat(feats, mod, encodeFeatureS___(ArcTs.mW5, flags, mPrefix));
+                codes.add(encodeFeatureSBB_(ArcTs.mW5_hP_mP, flags, mPrefix, hPos, mPos));
+                codes.add(encodeFeatureSB__(ArcTs.mW5_mP, flags, mPrefix, mPos));
+                codes.add(encodeFeatureS___(ArcTs.mW5, flags, mPrefix));
             }
             if (hPrefixFeats || mPrefixFeats) {
-                addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hW5_mW5_hP_mP, flags, hPrefix, mPrefix, hPos, mPos));
-                addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW5_mW5_mP, flags, hPrefix, mPrefix, mPos));
-                addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW5_mW5_hP, flags, hPrefix, mPrefix, hPos));
-                addFeat(feats, mod, encodeFeatureSS__(ArcTs.hW5_mW5, flags, hPrefix, mPrefix));
+                codes.add(encodeFeatureSSBB(ArcTs.hW5_mW5_hP_mP, flags, hPrefix, mPrefix, hPos, mPos));
+                codes.add(encodeFeatureSSB_(ArcTs.hW5_mW5_mP, flags, hPrefix, mPrefix, mPos));
+                codes.add(encodeFeatureSSB_(ArcTs.hW5_mW5_hP, flags, hPrefix, mPrefix, hPos));
+                codes.add(encodeFeatureSS__(ArcTs.hW5_mW5, flags, hPrefix, mPrefix));
             }
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
     
     /** Coarse POS tag versions of the MST features. */
-    private static void extractMstFeaturesWithCpos(IntAnnoSentence sent, int head, int modifier, FeatureVector feats,
+    private static void extractMstFeaturesWithCpos(IntAnnoSentence sent, int head, int modifier, IntArrayList feats,
             boolean basicOnly, short hWord, short mWord, byte hPos_NOTUSED, byte mPos_NOTUSED, short hPrefix,
             short mPrefix, boolean hPrefixFeats, boolean mPrefixFeats, byte lhPos_NOTUSED, byte lmPos_NOTUSED, 
             byte rhPos_NOTUSED, byte rmPos_NOTUSED,
             int distance, byte binnedDist, byte direction, byte mode, byte flags, int mod) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         byte hCpos = (head < 0) ? TOK_WALL_INT : sent.getCposTag(head);
         byte mCpos = (modifier < 0) ? TOK_WALL_INT : sent.getCposTag(modifier);
 
@@ -1081,34 +1105,34 @@ public class BitshiftDepParseFeatures {
         byte rmCpos = (modifier+1 >= sentLen) ? TOK_END_INT : sent.getCposTag(modifier+1);
         
         //    # Basic Unigram Features
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW_hC, flags, hWord, hCpos));
+        codes.add(encodeFeatureSB__(ArcTs.hW_hC, flags, hWord, hCpos));
         // word only: addFeat(feats, encodeFeatureS___(ArcTs.hW, flags, hWord));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.hC, flags, hCpos));
-        addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW_mC, flags, mWord, mCpos));
+        codes.add(encodeFeatureB___(ArcTs.hC, flags, hCpos));
+        codes.add(encodeFeatureSB__(ArcTs.mW_mC, flags, mWord, mCpos));
         // word only: addFeat(feats, encodeFeatureS___(ArcTs.mW, flags, mWord));
-        addFeat(feats, mod, encodeFeatureB___(ArcTs.mC, flags, mCpos));
+        codes.add(encodeFeatureB___(ArcTs.mC, flags, mCpos));
         
         //    # Basic Bigram Features
-        addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hW_mW_hC_mC, flags, hWord, mWord, hCpos, mCpos));
-        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mW_hC_mC, flags, mWord, hCpos, mCpos));
-        addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_mC, flags, hWord, mWord, mCpos));
-        addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hW_hC_mC, flags, hWord, hCpos, mCpos));
-        addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW_mW_hC, flags, hWord, mWord, hCpos));
+        codes.add(encodeFeatureSSBB(ArcTs.hW_mW_hC_mC, flags, hWord, mWord, hCpos, mCpos));
+        codes.add(encodeFeatureSBB_(ArcTs.mW_hC_mC, flags, mWord, hCpos, mCpos));
+        codes.add(encodeFeatureSSB_(ArcTs.hW_mW_mC, flags, hWord, mWord, mCpos));
+        codes.add(encodeFeatureSBB_(ArcTs.hW_hC_mC, flags, hWord, hCpos, mCpos));
+        codes.add(encodeFeatureSSB_(ArcTs.hW_mW_hC, flags, hWord, mWord, hCpos));
         // word only: addFeat(feats, encodeFeatureSS__(ArcTs.hW_mW, flags, hWord, mWord));
-        addFeat(feats, mod, encodeFeatureBB__(ArcTs.hC_mC, flags, hCpos, mCpos));            
+        codes.add(encodeFeatureBB__(ArcTs.hC_mC, flags, hCpos, mCpos));            
         
         if (!basicOnly) {            
             //    # Surrounding Word POS Features
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_rhC_lmC_mC, flags, hCpos, rhCpos, lmCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhC_hC_lmC_mC, flags, lhCpos, hCpos, lmCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.hC_rhC_mC_rmC, flags, hCpos, rhCpos, mCpos, rmCpos));
-            addFeat(feats, mod, encodeFeatureBBBB(ArcTs.lhC_hC_mC_rmC, flags, lhCpos, hCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.hC_rhC_lmC_mC, flags, hCpos, rhCpos, lmCpos, mCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.lhC_hC_lmC_mC, flags, lhCpos, hCpos, lmCpos, mCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.hC_rhC_mC_rmC, flags, hCpos, rhCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBBB(ArcTs.lhC_hC_mC_rmC, flags, lhCpos, hCpos, mCpos, rmCpos));
             
             //    # Backed-off versions of Surrounding Word POS Features
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.lhC_hC_mC, flags, lhCpos, hCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_lmC_mC, flags, hCpos, lmCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_mC_rmC, flags, hCpos, mCpos, rmCpos));
-            addFeat(feats, mod, encodeFeatureBBB_(ArcTs.hC_rhC_mC, flags, hCpos, rhCpos, mCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.lhC_hC_mC, flags, lhCpos, hCpos, mCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_lmC_mC, flags, hCpos, lmCpos, mCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_mC_rmC, flags, hCpos, mCpos, rmCpos));
+            codes.add(encodeFeatureBBB_(ArcTs.hC_rhC_mC, flags, hCpos, rhCpos, mCpos));
             
             //    # In Between POS Features
             int leftTok  = (head < modifier) ? head : modifier;
@@ -1122,55 +1146,72 @@ public class BitshiftDepParseFeatures {
             ShortSort.sortAsc(btwnPos);
             for (int i=0; i<btwnPos.length; i++) {
                 if (i == 0 || btwnPos[i] != btwnPos[i-1]) {
-                    addFeat(feats, mod, encodeFeatureSBB_(ArcTs.btwnP_hC_mC, flags, btwnPos[i], hCpos, mCpos));
+                    codes.add(encodeFeatureSBB_(ArcTs.btwnP_hC_mC, flags, btwnPos[i], hCpos, mCpos));
                 }
             }
             
             //    # These features are added for both the entire words as well as the
             //    # 5-gram prefix if the word is longer than 5 characters.
             if (hPrefixFeats) {
-                addFeat(feats, mod, encodeFeatureSBB_(ArcTs.hW5_hC_mC, flags, hPrefix, hCpos, mCpos));
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.hW5_hC, flags, hPrefix, hCpos));
+                codes.add(encodeFeatureSBB_(ArcTs.hW5_hC_mC, flags, hPrefix, hCpos, mCpos));
+                codes.add(encodeFeatureSB__(ArcTs.hW5_hC, flags, hPrefix, hCpos));
                 // word only: addFeat(feats, encodeFeatureS___(ArcTs.hW5, flags, hPrefix));
             }
             if (mPrefixFeats) {
-                addFeat(feats, mod, encodeFeatureSBB_(ArcTs.mW5_hC_mC, flags, mPrefix, hCpos, mCpos));
-                addFeat(feats, mod, encodeFeatureSB__(ArcTs.mW5_mC, flags, mPrefix, mCpos));
+                codes.add(encodeFeatureSBB_(ArcTs.mW5_hC_mC, flags, mPrefix, hCpos, mCpos));
+                codes.add(encodeFeatureSB__(ArcTs.mW5_mC, flags, mPrefix, mCpos));
                 // word only: addFeat(feats, encodeFeatureS___(ArcTs.mW5, flags, mPrefix));
             }
             if (hPrefixFeats || mPrefixFeats) {
-                addFeat(feats, mod, encodeFeatureSSBB(ArcTs.hW5_mW5_hC_mC, flags, hPrefix, mPrefix, hCpos, mCpos));
-                addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW5_mW5_mC, flags, hPrefix, mPrefix, mCpos));
-                addFeat(feats, mod, encodeFeatureSSB_(ArcTs.hW5_mW5_hC, flags, hPrefix, mPrefix, hCpos));
+                codes.add(encodeFeatureSSBB(ArcTs.hW5_mW5_hC_mC, flags, hPrefix, mPrefix, hCpos, mCpos));
+                codes.add(encodeFeatureSSB_(ArcTs.hW5_mW5_mC, flags, hPrefix, mPrefix, mCpos));
+                codes.add(encodeFeatureSSB_(ArcTs.hW5_mW5_hC, flags, hPrefix, mPrefix, hCpos));
                 // word only: addFeat(feats, encodeFeatureSS__(ArcTs.hW5_mW5, flags, hPrefix, mPrefix));
             }
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
+    }
+
+    public static void addArbitrarySiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling,
+            IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        addArbitrarySiblingFeats(sent, head, modifier, sibling, feats, prm, null);
     }
 
     public static void addArbitrarySiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling,
-            FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+            IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm, ArcFeatureCache cache) {
         if (prm.useCarerrasFeats) {
             addCarerrasSiblingFeats(sent, head, modifier, sibling, feats, prm.featureHashMod, false);
         } else {
-            addTurboArbitrarySiblingFeats(sent, head, modifier, sibling, feats, prm);
+            addTurboSiblingFeats(sent, head, modifier, sibling, feats, prm, false, cache);
         }
     }
 
     public static void addConsecutiveSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling,
-            FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+            IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        addConsecutiveSiblingFeats(sent, head, modifier, sibling, feats, prm, null);
+    }
+
+    public static void addConsecutiveSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling,
+            IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm, ArcFeatureCache cache) {
         if (prm.useCarerrasFeats) {
             addCarerrasSiblingFeats(sent, head, modifier, sibling, feats, prm.featureHashMod, true);
         } else {
-            addTurboConsecutiveSiblingFeats(sent, head, modifier, sibling, feats, prm);
+            addTurboSiblingFeats(sent, head, modifier, sibling, feats, prm, true, cache);
         }
     }
     
     public static void addGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier,
-            FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+            IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        addGrandparentFeats(sent, grandparent, head, modifier, feats, prm, null);
+    }
+    
+    public static void addGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier,
+            IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm, ArcFeatureCache cache) {
         if (prm.useCarerrasFeats) {
             addCarerrasGrandparentFeats(sent, grandparent, head, modifier, feats, prm.featureHashMod);
         } else {
-            addTurboGrandparentFeats(sent, grandparent, head, modifier, feats, prm);
+            addTurboGrandparentFeats(sent, grandparent, head, modifier, feats, prm, cache);
         }
     }
     
@@ -1178,7 +1219,7 @@ public class BitshiftDepParseFeatures {
      * This is similar to the 2nd order features from Carerras et al. (2007), but incorporates some
      * features from Martins' TurboParser.
      */
-    public static void addCarerrasSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, int mod, boolean consecutive) {
+    public static void addCarerrasSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, IntArrayList feats, int mod, boolean consecutive) {
         // Direction flags.
         // Parent-child relationship.
         byte direction_pc = (head < modifier) ? (byte) 0 : (byte) 1;
@@ -1196,7 +1237,7 @@ public class BitshiftDepParseFeatures {
      * This is similar to the 2nd order features from Carerras et al. (2007), but incorporates some
      * features from Martins' TurboParser.
      */
-    public static void addCarerrasGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier, FeatureVector feats, int mod) {
+    public static void addCarerrasGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier, IntArrayList feats, int mod) {
         byte direction = getGrandparentDirectionCode(grandparent, head, modifier);        
         byte flags = FeatureCollection.GRANDPARENT; // 4 bits.
         flags |= direction << 4; // 2 bits.        
@@ -1232,7 +1273,8 @@ public class BitshiftDepParseFeatures {
     public static final boolean extraTriplets = false;
     
     /** Can be used for either sibling or grandparent features. */
-    private static void addCarerrasTripletFeatures(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, byte flags, int mod) {
+    private static void addCarerrasTripletFeatures(IntAnnoSentence sent, int head, int modifier, int sibling, IntArrayList feats, byte flags, int mod) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         // Head, modifier, and sibling words / POS tags. We denote the head by p (for parent), the modifier
         // by c (for child), and the sibling by s.
         short hWord = (head < 0) ? TOK_WALL_INT : sent.getWord(head);
@@ -1244,20 +1286,20 @@ public class BitshiftDepParseFeatures {
         byte sCpos = (sibling < 0) ? TOK_WALL_INT : sent.getCposTag(sibling);
                 
         // --- Triplet features. ----
-        addFeat(feats, mod, encodeFeatureB___(TriTs.BIAS, flags, (byte)0));
+        codes.add(encodeFeatureB___(TriTs.BIAS, flags, (byte)0));
 
         //    cpos(p) + cpos(c) + cpos(s)
-        addFeat(feats, mod, encodeFeatureBBB_(TriTs.hC_mC_sC, flags, hCpos, mCpos, sCpos));
+        codes.add(encodeFeatureBBB_(TriTs.hC_mC_sC, flags, hCpos, mCpos, sCpos));
 
         // --- Pairwise features. ----
         
         //    cpos(p) + cpos(s)
         //    cpos(c) + cpos(s)
         //    cpos(p) + cpos(c) << Not in Carreras. From TurboParser.
-        addFeat(feats, mod, encodeFeatureBB__(TriTs.hC_sC, flags, hCpos, sCpos));
-        addFeat(feats, mod, encodeFeatureBB__(TriTs.mC_sC, flags, mCpos, sCpos));
+        codes.add(encodeFeatureBB__(TriTs.hC_sC, flags, hCpos, sCpos));
+        codes.add(encodeFeatureBB__(TriTs.mC_sC, flags, mCpos, sCpos));
         if (extraTriplets) {
-            addFeat(feats, mod, encodeFeatureBB__(TriTs.hC_mC, flags, hCpos, mCpos));
+            codes.add(encodeFeatureBB__(TriTs.hC_mC, flags, hCpos, mCpos));
         }
 
         //    cpos(p) + word(s)
@@ -1266,40 +1308,43 @@ public class BitshiftDepParseFeatures {
         //    word(c) + cpos(s)
         //    word(p) + cpos(c) << Not in Carreras. From TurboParser.
         //    word(c) + cpos(p) << Not in Carreras. From TurboParser.
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.sW_hC, flags, sWord, hCpos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.sW_mC, flags, sWord, mCpos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.hW_sC, flags, hWord, sCpos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.mW_sC, flags, mWord, sCpos));
+        codes.add(encodeFeatureSB__(TriTs.sW_hC, flags, sWord, hCpos));
+        codes.add(encodeFeatureSB__(TriTs.sW_mC, flags, sWord, mCpos));
+        codes.add(encodeFeatureSB__(TriTs.hW_sC, flags, hWord, sCpos));
+        codes.add(encodeFeatureSB__(TriTs.mW_sC, flags, mWord, sCpos));
         if (extraTriplets) {
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.mW_hC, flags, mWord, hCpos));
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.hW_mC, flags, hWord, mCpos));
+            codes.add(encodeFeatureSB__(TriTs.mW_hC, flags, mWord, hCpos));
+            codes.add(encodeFeatureSB__(TriTs.hW_mC, flags, hWord, mCpos));
         }
 
         //    word(p) + word(s)
         //    word(c) + word(s)
         //    word(p) + word(c) << Not in Carreras. From TurboParser.
-        addFeat(feats, mod, encodeFeatureSS__(TriTs.hW_sW, flags, hWord, sWord));
-        addFeat(feats, mod, encodeFeatureSS__(TriTs.mW_sW, flags, mWord, sWord));
+        codes.add(encodeFeatureSS__(TriTs.hW_sW, flags, hWord, sWord));
+        codes.add(encodeFeatureSS__(TriTs.mW_sW, flags, mWord, sWord));
         if (extraTriplets) {
-            addFeat(feats, mod, encodeFeatureSS__(TriTs.hW_mW, flags, hWord, mWord));
+            codes.add(encodeFeatureSS__(TriTs.hW_mW, flags, hWord, mWord));
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
 
     /** Adds the features for consecutive siblings from TurboParser (Martins et al., 2013). */
     public static void addTurboConsecutiveSiblingFeats(final IntAnnoSentence sent, final int head, final int modifier, final int sibling, 
-            final FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
-        addTurboSiblingFeats(sent, head, modifier, sibling, feats, prm, true);
+            final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        addTurboSiblingFeats(sent, head, modifier, sibling, feats, prm, true, null);
     }
     
     /** Adds the features for arbitrary siblings from TurboParser (Martins et al., 2013). */
     public static void addTurboArbitrarySiblingFeats(final IntAnnoSentence sent, final int head, final int modifier, final int sibling, 
-            final FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
-        addTurboSiblingFeats(sent, head, modifier, sibling, feats, prm, false);
+            final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        addTurboSiblingFeats(sent, head, modifier, sibling, feats, prm, false, null);
     }
     
     /** Can be used for any type of sibling features. */
     private static void addTurboSiblingFeats(final IntAnnoSentence sent, final int head, final int modifier, final int sibling, 
-            final FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm, final boolean consecutive) {
+            final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm, final boolean consecutive,
+            ArcFeatureCache cache) {
         final int mod = prm.featureHashMod;
         final boolean useCoarseTags = prm.useCoarseTags;
         final boolean useTrilexicalFeats = prm.useTrilexicalFeats;
@@ -1314,7 +1359,7 @@ public class BitshiftDepParseFeatures {
         if (usePairFor2ndOrder) {
             byte pairType = consecutive ? FeatureCollection.CONS_SIBL_M_S : FeatureCollection.ARBI_SIBL_M_S;
             if (consecutive || usePairFor2ndOrderArbiSibl) {
-                addTurboWordPairFeats(sent, modifier, sibling, pairType, feats, prm);
+                addTurboWordPairFeats(sent, modifier, sibling, pairType, feats, prm, cache);
             }
         }
 
@@ -1335,7 +1380,13 @@ public class BitshiftDepParseFeatures {
     /** Adds the features for grandparents siblings from TurboParser (Martins et al., 2013). */
     public static void addTurboGrandparentFeats(final IntAnnoSentence sent, final int grandparent, final int head, 
             final int modifier,             
-            final FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+            final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        addTurboGrandparentFeats(sent, grandparent, head, modifier, feats, prm, null);
+    }
+    
+    private static void addTurboGrandparentFeats(final IntAnnoSentence sent, final int grandparent, final int head, 
+            final int modifier, final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm, 
+            ArcFeatureCache cache) {
         final int mod = prm.featureHashMod;
         final boolean useCoarseTags = prm.useCoarseTags;
         final boolean useTrilexicalFeats = prm.useTrilexicalFeats;
@@ -1345,9 +1396,9 @@ public class BitshiftDepParseFeatures {
 
         if (usePairFor2ndOrder) {
             if (useUpperGrandDepFeats) {
-                addTurboWordPairFeats(sent, grandparent, head, FeatureCollection.GRANDPARENT_G_H, feats, prm);
+                addTurboWordPairFeats(sent, grandparent, head, FeatureCollection.GRANDPARENT_G_H, feats, prm, cache);
             }
-            addTurboWordPairFeats(sent, grandparent, modifier, FeatureCollection.GRANDPARENT_G_M, feats, prm);
+            addTurboWordPairFeats(sent, grandparent, modifier, FeatureCollection.GRANDPARENT_G_M, feats, prm, cache);
         }
         
         // Create flags.
@@ -1356,7 +1407,7 @@ public class BitshiftDepParseFeatures {
         flags |= direction << 4; // 2 bits.  
 
         if (useNonprojGrandDepFeats && direction == 0x2) {
-            addTurboWordPairFeats(sent, grandparent, modifier, FeatureCollection.GRANDPARENT_NONPROJ_H_M, feats, prm);
+            addTurboWordPairFeats(sent, grandparent, modifier, FeatureCollection.GRANDPARENT_NONPROJ_H_M, feats, prm, cache);
         }
 
         addTurboTripletFeats(sent, head, modifier, grandparent, flags, feats, mod, useCoarseTags, useTrilexicalFeats);
@@ -1364,8 +1415,9 @@ public class BitshiftDepParseFeatures {
 
     /** Features for siblings or grandparents. */
     private static void addTurboTripletFeats(final IntAnnoSentence sent, final int head, final int modifier,
-            final int sibling, byte flags, final FeatureVector feats, final int mod, final boolean useCoarseTags,
+            final int sibling, byte flags, final IntArrayList feats, final int mod, final boolean useCoarseTags,
             final boolean useTrilexicalFeats) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         // Head, modifier, and sibling words/tags.
         short hWord = (head < 0) ? TOK_WALL_INT : sent.getWord(head);
         byte hPos = (head < 0) ? TOK_WALL_INT : sent.getPosTag(head);
@@ -1380,23 +1432,23 @@ public class BitshiftDepParseFeatures {
         byte sCpos = (sibling < 0) ? TOK_END_INT : sent.getCposTag(sibling);
 
         // Bias feature.
-        addFeat(feats, mod, encodeFeatureB___(TriTs.BIAS, flags, (byte)0));
+        codes.add(encodeFeatureB___(TriTs.BIAS, flags, (byte)0));
         
         // --- Triplet features. ----
 
         // Three POS tags.
-        addFeat(feats, mod, encodeFeatureBBB_(TriTs.hP_mP_sP, flags, hPos, mPos, sPos));
+        codes.add(encodeFeatureBBB_(TriTs.hP_mP_sP, flags, hPos, mPos, sPos));
         // One word; Two POS tags.
-        addFeat(feats, mod, encodeFeatureSBB_(TriTs.hW_mP_sP, flags, hWord, mPos, sPos));
-        addFeat(feats, mod, encodeFeatureSBB_(TriTs.hP_mW_sP, flags, mWord, hPos, sPos));
-        addFeat(feats, mod, encodeFeatureSBB_(TriTs.hP_mP_sW, flags, sWord, hPos, mPos));
+        codes.add(encodeFeatureSBB_(TriTs.hW_mP_sP, flags, hWord, mPos, sPos));
+        codes.add(encodeFeatureSBB_(TriTs.hP_mW_sP, flags, mWord, hPos, sPos));
+        codes.add(encodeFeatureSBB_(TriTs.hP_mP_sW, flags, sWord, hPos, mPos));
         // Two words; One POS tags.
-        addFeat(feats, mod, encodeFeatureSSB_(TriTs.hW_mW_sP, flags, hWord, mWord, sPos));
-        addFeat(feats, mod, encodeFeatureSSB_(TriTs.hW_mP_sW, flags, hWord, sWord, mPos));
-        addFeat(feats, mod, encodeFeatureSSB_(TriTs.hP_mW_sW, flags, mWord, sWord, hPos));
+        codes.add(encodeFeatureSSB_(TriTs.hW_mW_sP, flags, hWord, mWord, sPos));
+        codes.add(encodeFeatureSSB_(TriTs.hW_mP_sW, flags, hWord, sWord, mPos));
+        codes.add(encodeFeatureSSB_(TriTs.hP_mW_sW, flags, mWord, sWord, hPos));
         // Three words.
         if (useTrilexicalFeats) {
-            addFeat(feats, mod, encodeFeatureSSS_(TriTs.hW_mW_sW, flags, hWord, mWord, sWord));
+            codes.add(encodeFeatureSSS_(TriTs.hW_mW_sW, flags, hWord, mWord, sWord));
         }
 
         // --- Pairwise features. ----
@@ -1404,54 +1456,57 @@ public class BitshiftDepParseFeatures {
         // flags used here may differ.
         
         // Two POS tags.
-        addFeat(feats, mod, encodeFeatureBB__(TriTs.hP_mP, flags, hPos, mPos));
-        addFeat(feats, mod, encodeFeatureBB__(TriTs.hP_sP, flags, hPos, sPos));
-        addFeat(feats, mod, encodeFeatureBB__(TriTs.mP_sP, flags, mPos, sPos));
+        codes.add(encodeFeatureBB__(TriTs.hP_mP, flags, hPos, mPos));
+        codes.add(encodeFeatureBB__(TriTs.hP_sP, flags, hPos, sPos));
+        codes.add(encodeFeatureBB__(TriTs.mP_sP, flags, mPos, sPos));
         // One word; One POS tag.
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.hW_sP, flags, hWord, sPos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.hW_mP, flags, hWord, mPos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.mW_sP, flags, mWord, sPos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.mW_hP, flags, mWord, hPos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.sW_hP, flags, sWord, hPos));
-        addFeat(feats, mod, encodeFeatureSB__(TriTs.sW_mP, flags, sWord, mPos));
+        codes.add(encodeFeatureSB__(TriTs.hW_sP, flags, hWord, sPos));
+        codes.add(encodeFeatureSB__(TriTs.hW_mP, flags, hWord, mPos));
+        codes.add(encodeFeatureSB__(TriTs.mW_sP, flags, mWord, sPos));
+        codes.add(encodeFeatureSB__(TriTs.mW_hP, flags, mWord, hPos));
+        codes.add(encodeFeatureSB__(TriTs.sW_hP, flags, sWord, hPos));
+        codes.add(encodeFeatureSB__(TriTs.sW_mP, flags, sWord, mPos));
         // Two words.
-        addFeat(feats, mod, encodeFeatureSS__(TriTs.hW_sW, flags, hWord, sWord));
-        addFeat(feats, mod, encodeFeatureSS__(TriTs.mW_sW, flags, mWord, sWord));
-        addFeat(feats, mod, encodeFeatureSS__(TriTs.hW_mW, flags, hWord, mWord));
+        codes.add(encodeFeatureSS__(TriTs.hW_sW, flags, hWord, sWord));
+        codes.add(encodeFeatureSS__(TriTs.mW_sW, flags, mWord, sWord));
+        codes.add(encodeFeatureSS__(TriTs.hW_mW, flags, hWord, mWord));
         
         if (useCoarseTags) {
             // --- Triplet features. ----
             // Three POS tags.
-            addFeat(feats, mod, encodeFeatureBBB_(TriTs.hC_mC_sC, flags, hCpos, mCpos, sCpos));
+            codes.add(encodeFeatureBBB_(TriTs.hC_mC_sC, flags, hCpos, mCpos, sCpos));
             // One word; Two POS tags.
-            addFeat(feats, mod, encodeFeatureSBB_(TriTs.hW_mC_sC, flags, hWord, mCpos, sCpos));
-            addFeat(feats, mod, encodeFeatureSBB_(TriTs.hC_mW_sC, flags, mWord, hCpos, sCpos));
-            addFeat(feats, mod, encodeFeatureSBB_(TriTs.hC_mC_sW, flags, sWord, hCpos, mCpos));
+            codes.add(encodeFeatureSBB_(TriTs.hW_mC_sC, flags, hWord, mCpos, sCpos));
+            codes.add(encodeFeatureSBB_(TriTs.hC_mW_sC, flags, mWord, hCpos, sCpos));
+            codes.add(encodeFeatureSBB_(TriTs.hC_mC_sW, flags, sWord, hCpos, mCpos));
             // Two words; One POS tags.
-            addFeat(feats, mod, encodeFeatureSSB_(TriTs.hW_mW_sC, flags, hWord, mWord, sCpos));
-            addFeat(feats, mod, encodeFeatureSSB_(TriTs.hW_mC_sW, flags, hWord, sWord, mCpos));
-            addFeat(feats, mod, encodeFeatureSSB_(TriTs.hC_mW_sW, flags, mWord, sWord, hCpos));
+            codes.add(encodeFeatureSSB_(TriTs.hW_mW_sC, flags, hWord, mWord, sCpos));
+            codes.add(encodeFeatureSSB_(TriTs.hW_mC_sW, flags, hWord, sWord, mCpos));
+            codes.add(encodeFeatureSSB_(TriTs.hC_mW_sW, flags, mWord, sWord, hCpos));
             // --- Pairwise features. ----
             // Martins notes that these are not redundant with the word-pair features added above, since the 
             // flags used here may differ.
             //
             // Two POS tags.
-            addFeat(feats, mod, encodeFeatureBB__(TriTs.hC_mC, flags, hCpos, mCpos));
-            addFeat(feats, mod, encodeFeatureBB__(TriTs.hC_sC, flags, hCpos, sCpos));
-            addFeat(feats, mod, encodeFeatureBB__(TriTs.mC_sC, flags, mCpos, sCpos));
+            codes.add(encodeFeatureBB__(TriTs.hC_mC, flags, hCpos, mCpos));
+            codes.add(encodeFeatureBB__(TriTs.hC_sC, flags, hCpos, sCpos));
+            codes.add(encodeFeatureBB__(TriTs.mC_sC, flags, mCpos, sCpos));
             // One word; One POS tag.
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.hW_sC, flags, hWord, sCpos));
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.hW_mC, flags, hWord, mCpos));
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.mW_sC, flags, mWord, sCpos));
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.mW_hC, flags, mWord, hCpos));
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.sW_hC, flags, sWord, hCpos));
-            addFeat(feats, mod, encodeFeatureSB__(TriTs.sW_mC, flags, sWord, mCpos));           
+            codes.add(encodeFeatureSB__(TriTs.hW_sC, flags, hWord, sCpos));
+            codes.add(encodeFeatureSB__(TriTs.hW_mC, flags, hWord, mCpos));
+            codes.add(encodeFeatureSB__(TriTs.mW_sC, flags, mWord, sCpos));
+            codes.add(encodeFeatureSB__(TriTs.mW_hC, flags, mWord, hCpos));
+            codes.add(encodeFeatureSB__(TriTs.sW_hC, flags, sWord, hCpos));
+            codes.add(encodeFeatureSB__(TriTs.sW_mC, flags, sWord, mCpos));           
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
 
     /** Adds the features for head-bigrams from TurboParser (Martins et al., 2013). */
     public static void addTurboHeadBigramFeats(final IntAnnoSentence sent, final int head, final int modifier,
-            final int headB, final FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+            final int headB, final IntArrayList feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         final int mod = prm.featureHashMod;
         final boolean useCoarseTags = prm.useCoarseTags;
         
@@ -1506,42 +1561,120 @@ public class BitshiftDepParseFeatures {
             }
 
             // Bias feature.
-            addFeat(feats, mod, encodeFeatureB___(HbTs.BIAS, flags, (byte)0));
+            codes.add(encodeFeatureB___(HbTs.BIAS, flags, (byte)0));
             // POS features.
             if (mode == 1) {
-                addFeat(feats, mod, encodeFeatureBBBBB(HbTs.lmP_mP_lDIST_DIST_FHB, flags,  lmPos, mPos, binDistCodeB, binDistCode, flagsBigram));
+                codes.add(encodeFeatureBBBBB(HbTs.lmP_mP_lDIST_DIST_FHB, flags,  lmPos, mPos, binDistCodeB, binDistCode, flagsBigram));
             }
-            addFeat(feats, mod, encodeFeatureBBBBB(HbTs.jP_lmP_hP_mP_FHB, flags, jPos, lmPos, hPos, mPos, flagsBigram));
+            codes.add(encodeFeatureBBBBB(HbTs.jP_lmP_hP_mP_FHB, flags, jPos, lmPos, hPos, mPos, flagsBigram));
             // One word; Three POS tags.
-            addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jW_lmP_hP_mP_FHB, flags, jWord, lmPos, hPos, mPos, flagsBigram));
-            addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jP_lmW_hP_mP_FHB, flags, lmWord, jPos, hPos, mPos, flagsBigram));
-            addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jP_lmP_hW_mP_FHB, flags, hWord, jPos, lmPos, mPos, flagsBigram));
-            addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jP_lmP_hP_mW_FHB, flags, mWord, jPos, lmPos, hPos, flagsBigram));
+            codes.add(encodeFeatureSBBBB(HbTs.jW_lmP_hP_mP_FHB, flags, jWord, lmPos, hPos, mPos, flagsBigram));
+            codes.add(encodeFeatureSBBBB(HbTs.jP_lmW_hP_mP_FHB, flags, lmWord, jPos, hPos, mPos, flagsBigram));
+            codes.add(encodeFeatureSBBBB(HbTs.jP_lmP_hW_mP_FHB, flags, hWord, jPos, lmPos, mPos, flagsBigram));
+            codes.add(encodeFeatureSBBBB(HbTs.jP_lmP_hP_mW_FHB, flags, mWord, jPos, lmPos, hPos, flagsBigram));
             if (useCoarseTags) {
                 // Coarse POS Features.
                 if (mode == 1) {
-                    addFeat(feats, mod, encodeFeatureBBBBB(HbTs.lmC_mC_lDIST_DIST_FHB, flags,  lmCpos, mCpos, binDistCodeB, binDistCode, flagsBigram));
+                    codes.add(encodeFeatureBBBBB(HbTs.lmC_mC_lDIST_DIST_FHB, flags,  lmCpos, mCpos, binDistCodeB, binDistCode, flagsBigram));
                 }
-                addFeat(feats, mod, encodeFeatureBBBBB(HbTs.jC_lmC_hC_mC_FHB, flags, jCpos, lmCpos, hCpos, mCpos, flagsBigram));
+                codes.add(encodeFeatureBBBBB(HbTs.jC_lmC_hC_mC_FHB, flags, jCpos, lmCpos, hCpos, mCpos, flagsBigram));
                 // One word; Three Coarse POS tags.
-                addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jW_lmC_hC_mC_FHB, flags, jWord, lmCpos, hCpos, mCpos, flagsBigram));
-                addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jC_lmW_hC_mC_FHB, flags, lmWord, jCpos, hCpos, mCpos, flagsBigram));
-                addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jC_lmC_hW_mC_FHB, flags, hWord, jCpos, lmCpos, mCpos, flagsBigram));
-                addFeat(feats, mod, encodeFeatureSBBBB(HbTs.jC_lmC_hC_mW_FHB, flags, mWord, jCpos, lmCpos, hCpos, flagsBigram));
+                codes.add(encodeFeatureSBBBB(HbTs.jW_lmC_hC_mC_FHB, flags, jWord, lmCpos, hCpos, mCpos, flagsBigram));
+                codes.add(encodeFeatureSBBBB(HbTs.jC_lmW_hC_mC_FHB, flags, lmWord, jCpos, hCpos, mCpos, flagsBigram));
+                codes.add(encodeFeatureSBBBB(HbTs.jC_lmC_hW_mC_FHB, flags, hWord, jCpos, lmCpos, mCpos, flagsBigram));
+                codes.add(encodeFeatureSBBBB(HbTs.jC_lmC_hC_mW_FHB, flags, mWord, jCpos, lmCpos, hCpos, flagsBigram));
             }
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
     
-    private static void addFeat(FeatureVector feats, int mod, long feat) {
-        int hash = MurmurHash.hash32(feat);
-        if (mod > 0) {
-            hash = FastMath.mod(hash, mod);
+    /**
+     * Adds each of the hashed feature indices in buf to feats with value 1.0.
+     */
+    public static void addAll(FeatureVector feats, IntArrayList buf) {
+        for (int i=0; i<buf.size(); i++) {
+            feats.add(buf.get(i), 1.0);
         }
-        feats.add(hash, 1.0);
-        // Enable this for debugging of feature creation.
-        //        if (feats instanceof LongFeatureVector) {
-        //            ((LongFeatureVector)feats).addLong(feat, 1.0);
-        //        }
+    }
+
+    /**
+     * Creates a feature vector containing each of the hashed feature indices in buf with value
+     * 1.0. The returned vector is sized exactly, so it is allocated only once.
+     */
+    public static FeatureVector toFeatureVector(IntArrayList buf) {
+        int[] idx = buf.toNativeArray();
+        double[] vals = new double[idx.length];
+        Arrays.fill(vals, 1.0);
+        return new FeatureVector(idx, vals);
+    }
+
+    // Versions of the above which add the features directly to a FeatureVector.
+
+    public static void addArcFeats(IntAnnoSentence sent, int head, int modifier, BitshiftDepParseFeatureExtractorPrm prm, FeatureVector feats) {
+        IntArrayList buf = new IntArrayList();
+        addArcFeats(sent, head, modifier, prm, buf);
+        addAll(feats, buf);
+    }
+
+    public static void addArcFactoredMSTFeats(IntAnnoSentence sent, int head, int modifier, byte pairType, FeatureVector feats, boolean basicOnly, boolean useCoarseFeats, int mod) {
+        IntArrayList buf = new IntArrayList();
+        addArcFactoredMSTFeats(sent, head, modifier, pairType, buf, basicOnly, useCoarseFeats, mod);
+        addAll(feats, buf);
+    }
+
+    public static void addArbitrarySiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addArbitrarySiblingFeats(sent, head, modifier, sibling, buf, prm);
+        addAll(feats, buf);
+    }
+
+    public static void addConsecutiveSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addConsecutiveSiblingFeats(sent, head, modifier, sibling, buf, prm);
+        addAll(feats, buf);
+    }
+
+    public static void addGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addGrandparentFeats(sent, grandparent, head, modifier, buf, prm);
+        addAll(feats, buf);
+    }
+
+    public static void addCarerrasSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, int mod, boolean consecutive) {
+        IntArrayList buf = new IntArrayList();
+        addCarerrasSiblingFeats(sent, head, modifier, sibling, buf, mod, consecutive);
+        addAll(feats, buf);
+    }
+
+    public static void addCarerrasGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier, FeatureVector feats, int mod) {
+        IntArrayList buf = new IntArrayList();
+        addCarerrasGrandparentFeats(sent, grandparent, head, modifier, buf, mod);
+        addAll(feats, buf);
+    }
+
+    public static void addTurboConsecutiveSiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addTurboConsecutiveSiblingFeats(sent, head, modifier, sibling, buf, prm);
+        addAll(feats, buf);
+    }
+
+    public static void addTurboArbitrarySiblingFeats(IntAnnoSentence sent, int head, int modifier, int sibling, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addTurboArbitrarySiblingFeats(sent, head, modifier, sibling, buf, prm);
+        addAll(feats, buf);
+    }
+
+    public static void addTurboGrandparentFeats(IntAnnoSentence sent, int grandparent, int head, int modifier, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addTurboGrandparentFeats(sent, grandparent, head, modifier, buf, prm);
+        addAll(feats, buf);
+    }
+
+    public static void addTurboHeadBigramFeats(IntAnnoSentence sent, int head, int modifier, int headB, FeatureVector feats, BitshiftDepParseFeatureExtractorPrm prm) {
+        IntArrayList buf = new IntArrayList();
+        addTurboHeadBigramFeats(sent, head, modifier, headB, buf, prm);
+        addAll(feats, buf);
     }
     
 }
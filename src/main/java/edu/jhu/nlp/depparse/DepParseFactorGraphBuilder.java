@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 
 import edu.jhu.nlp.CorpusStatistics;
 import edu.jhu.nlp.FeTypedFactor;
+import edu.jhu.nlp.SentScheduler.SentCost;
 import edu.jhu.nlp.data.DepEdgeMask;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.IntAnnoSentence;
@@ -74,6 +75,31 @@ public class DepParseFactorGraphBuilder implements Serializable {
         public BitshiftDepParseFeatureExtractorPrm bsDpFePrm = new BitshiftDepParseFeatureExtractorPrm();
     }
     
+    /**
+     * Estimates the relative cost of feature extraction and inference for a sentence under the
+     * given model. The tree factor costs O(n^3), the unary factors are linear in the number of
+     * unpruned edges, and each type of 2nd-order factor adds O(n) factors per unpruned edge.
+     */
+    public static double getCost(AnnoSentence sent, DepParseFactorGraphBuilderPrm prm) {
+        double n = sent.size();
+        double numEdges = (prm.pruneEdges && sent.getDepEdgeMask() != null) ? sent.getDepEdgeMask().getCount() : n * n;
+        double cost = n * n * n + numEdges;
+        if (prm.grandparentFactors) { cost += numEdges * n; }
+        if (prm.arbitrarySiblingFactors) { cost += numEdges * n; }
+        if (prm.headBigramFactors) { cost += numEdges * n; }
+        return cost;
+    }
+
+    /** Gets a sentence cost function for {@link edu.jhu.nlp.SentScheduler} under the given model. */
+    public static SentCost getSentCost(final DepParseFactorGraphBuilderPrm prm) {
+        return new SentCost() {
+            @Override
+            public double getCost(AnnoSentence sent) {
+                return DepParseFactorGraphBuilder.getCost(sent, prm);
+            }
+        };
+    }
+    
     public enum DepParseFactorTemplate {
         UNARY, GRANDPARENT, ARBITRARY_SIBLING, HEAD_BIGRAM
     }
@@ -10,6 +10,7 @@ import org.slf4j.LoggerFactory;
 import edu.jhu.nlp.AbstractParallelAnnotator;
 import edu.jhu.nlp.Annotator;
 import edu.jhu.nlp.CorpusStatistics;
+import edu.jhu.nlp.SentScheduler;
 import edu.jhu.nlp.data.DepEdgeMask;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
@@ -27,7 +28,6 @@ import edu.jhu.pacaya.gm.inf.BeliefPropagation.BpUpdateOrder;
 import edu.jhu.pacaya.gm.inf.FgInferencer;
 import edu.jhu.pacaya.gm.model.FactorGraph;
 import edu.jhu.pacaya.util.Prm;
-import edu.jhu.pacaya.util.Threads;
 import edu.jhu.pacaya.util.collections.QSets;
 import edu.jhu.pacaya.util.files.QFiles;
 import edu.jhu.pacaya.util.semiring.LogSemiring;
@@ -77,7 +77,7 @@ public class FirstOrderPruner implements Annotator {
         final AtomicInteger numEdgesKept = new AtomicInteger(0);
         Timer timer = new Timer();
         timer.start();
-        Threads.forEach(0, inputSents.size(), new FnIntToVoid() {            
+        SentScheduler.forEach(inputSents, DepParseFactorGraphBuilder.getSentCost(exPrm.fgPrm.dpPrm), new FnIntToVoid() {            
             @Override
             public void call(int i) {
                 try {
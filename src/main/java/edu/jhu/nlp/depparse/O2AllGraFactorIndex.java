@@ -0,0 +1,173 @@
+package edu.jhu.nlp.depparse;
+
+import static edu.jhu.pacaya.gm.model.globalfac.LinkVar.TRUE;
+
+import java.util.Arrays;
+
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.DepParseFactorTemplate;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.GraFeTypedFactor;
+import edu.jhu.pacaya.gm.model.ClampFactor;
+import edu.jhu.pacaya.gm.model.Factor;
+import edu.jhu.pacaya.gm.model.FactorGraph;
+import edu.jhu.pacaya.gm.model.Var;
+import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
+import edu.jhu.pacaya.gm.model.globalfac.ProjDepTreeFactor;
+
+/**
+ * Lookup tables from dependency arcs to the factors of a second-order grandparent factor graph,
+ * as used by {@link O2AllGraFgInferencer}.
+ *
+ * The tables depend only on the structure of the factor graph, so they can be built once and
+ * reused by every run of inference on that graph (see
+ * {@link edu.jhu.nlp.joint.JointNlpFactorGraph#getO2AllGraFactorIndex()}). All positions are chart
+ * positions: 0 is the wall and i+1 is the i'th token. The arc tables are stored as flat arrays in
+ * row-major order. The grandparent factors are stored sparsely, as a list for each arc sorted by
+ * grandparent, so the index is proportional to the size of the factor graph (e.g. only the kept
+ * arcs when pruning) rather than (n+1)^3.
+ *
+ * @author mgormley
+ */
+public class O2AllGraFactorIndex {
+
+    /** The sentence length. */
+    private final int n;
+    /** Indexed by (i,j). The ID of the unary factor on the arc from i to j, or -1 if none. */
+    private final int[] ijFacs;
+    /** Indexed by (i,j). Whether the arc from i to j was clamped to false. */
+    private final boolean[] ijPruned;
+    /** Indexed by (i,j). The start of the grandparents of the arc from i to j in graGs and graFacs. */
+    private final int[] graStarts;
+    /** The grandparent of each grandparent factor, sorted within each arc. */
+    private final int[] graGs;
+    /** The ID of each grandparent factor. */
+    private final int[] graFacs;
+
+    /**
+     * Creates the lookup tables for a factor graph which contains only a ProjDepTreeFactor, unary
+     * factors on the LinkVars, and grandparent factors.
+     *
+     * @param fg The factor graph.
+     * @param n The sentence length.
+     */
+    public O2AllGraFactorIndex(FactorGraph fg, int n) {
+        this.n = n;
+        int nplus = n + 1;
+        ijFacs = new int[nplus * nplus];
+        ijPruned = new boolean[nplus * nplus];
+        graStarts = new int[nplus * nplus + 1];
+        Arrays.fill(ijFacs, -1);
+
+        boolean containsProjDepTreeConstraint = false;
+        int numGra = 0;
+        for (int a=0; a<fg.getNumFactors(); a++) {
+            Factor f = fg.getFactor(a);
+            if (f instanceof ProjDepTreeFactor) {
+                containsProjDepTreeConstraint = true;
+            } else if (isGrandparentFactor(f)) {
+                GraFeTypedFactor ff = (GraFeTypedFactor) f;
+                // Count the grandparents of each arc.
+                graStarts[ij(ff.p+1, ff.c+1) + 1]++;
+                numGra++;
+            } else if (f.getVars().size() == 1 && f.getVars().get(0) instanceof LinkVar) {
+                LinkVar lv = (LinkVar) f.getVars().get(0);
+                int ij = ij(lv.getParent() + 1, lv.getChild() + 1);
+                ijFacs[ij] = f.getId();
+                if (f instanceof ClampFactor && f.getLogUnormalizedScore(TRUE) == Double.NEGATIVE_INFINITY) {
+                    ijPruned[ij] = true;
+                }
+            } else if (f.getVars().size() == 0) {
+                // Ignore clamped factor.
+            } else {
+                throw new RuntimeException("Unsupported factor type: " + f.getClass());
+            }
+        }
+        if (!containsProjDepTreeConstraint) {
+            throw new IllegalStateException("This inference method is only applicable to factor graphs containing "
+                        + " a factor constraining to a projective dependency tree.");
+        }
+
+        // Fill in the grandparents of each arc, and sort them.
+        for (int ij=0; ij<nplus*nplus; ij++) {
+            graStarts[ij+1] += graStarts[ij];
+        }
+        graGs = new int[numGra];
+        graFacs = new int[numGra];
+        int[] next = Arrays.copyOf(graStarts, nplus * nplus);
+        for (int a=0; a<fg.getNumFactors(); a++) {
+            Factor f = fg.getFactor(a);
+            if (isGrandparentFactor(f)) {
+                GraFeTypedFactor ff = (GraFeTypedFactor) f;
+                int k = next[ij(ff.p+1, ff.c+1)]++;
+                graGs[k] = ff.g+1;
+                graFacs[k] = ff.getId();
+            }
+        }
+        for (int ij=0; ij<nplus*nplus; ij++) {
+            // Insertion sort, since the factors are usually created in order of grandparent.
+            for (int k=graStarts[ij]+1; k<graStarts[ij+1]; k++) {
+                int g = graGs[k];
+                int fac = graFacs[k];
+                int m = k - 1;
+                while (m >= graStarts[ij] && graGs[m] > g) {
+                    graGs[m+1] = graGs[m];
+                    graFacs[m+1] = graFacs[m];
+                    m--;
+                }
+                graGs[m+1] = g;
+                graFacs[m+1] = fac;
+            }
+        }
+    }
+
+    /** Creates the lookup tables, guessing the sentence length from the LinkVars. */
+    public O2AllGraFactorIndex(FactorGraph fg) {
+        this(fg, getSentenceLength(fg));
+    }
+
+    private static boolean isGrandparentFactor(Factor f) {
+        return f instanceof GraFeTypedFactor && ((GraFeTypedFactor) f).getFactorType() == DepParseFactorTemplate.GRANDPARENT;
+    }
+
+    /** Gets the sentence length as the largest position of any LinkVar in the factor graph. */
+    public static int getSentenceLength(FactorGraph fg) {
+        int n = -1;
+        for (Var v : fg.getVars()) {
+            LinkVar lv = (LinkVar) v;
+            n = Math.max(n, lv.getChild()+1);
+            n = Math.max(n, lv.getParent()+1);
+        }
+        return n;
+    }
+
+    private int ij(int i, int j) {
+        return i * (n+1) + j;
+    }
+
+    /** Gets the sentence length. */
+    public int getSentenceLength() {
+        return n;
+    }
+
+    /** Gets the number of grandparent factors. */
+    public int getNumGrandparentFactors() {
+        return graFacs.length;
+    }
+
+    /** Gets the ID of the unary factor on the arc from i to j, or -1 if there is none. */
+    public int getEdgeFactorId(int i, int j) {
+        return ijFacs[ij(i, j)];
+    }
+
+    /** Gets the ID of the grandparent factor on the arcs from g to i and i to j, or -1 if there is none. */
+    public int getGrandparentFactorId(int i, int j, int g) {
+        int ij = ij(i, j);
+        int k = Arrays.binarySearch(graGs, graStarts[ij], graStarts[ij+1], g);
+        return (k < 0) ? -1 : graFacs[k];
+    }
+
+    /** Whether the arc from i to j was clamped to false. */
+    public boolean isPruned(int i, int j) {
+        return ijPruned[ij(i, j)];
+    }
+
+}
@@ -10,8 +10,10 @@ import java.util.List;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import edu.jhu.nlp.data.DepEdgeMask;
 import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.DepParseFactorTemplate;
 import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.GraFeTypedFactor;
+import edu.jhu.nlp.joint.JointNlpFactorGraph;
 import edu.jhu.pacaya.autodiff.Module;
 import edu.jhu.pacaya.autodiff.Tensor;
 import edu.jhu.pacaya.gm.inf.AbstractFgInferencer;
@@ -28,12 +30,13 @@ import edu.jhu.pacaya.gm.model.VarSet;
 import edu.jhu.pacaya.gm.model.VarTensor;
 import edu.jhu.pacaya.gm.model.globalfac.GlobalFactor;
 import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
-import edu.jhu.pacaya.gm.model.globalfac.ProjDepTreeFactor;
 import edu.jhu.pacaya.hypergraph.Hyperalgo;
 import edu.jhu.pacaya.hypergraph.Hyperalgo.HyperedgeDoubleFn;
 import edu.jhu.pacaya.hypergraph.Hyperalgo.Scores;
 import edu.jhu.pacaya.hypergraph.Hyperedge;
+import edu.jhu.pacaya.hypergraph.Hypergraph;
 import edu.jhu.pacaya.hypergraph.Hypernode;
+import edu.jhu.pacaya.hypergraph.Hyperpotential;
 import edu.jhu.pacaya.hypergraph.depparse.DependencyScorer;
 import edu.jhu.pacaya.hypergraph.depparse.ExplicitDependencyScorer;
 import edu.jhu.pacaya.hypergraph.depparse.InsideOutsideDepParse;
@@ -42,20 +45,30 @@ import edu.jhu.pacaya.hypergraph.depparse.PCGBasicHypernode;
 import edu.jhu.pacaya.util.collections.QLists;
 import edu.jhu.pacaya.util.semiring.Algebra;
 import edu.jhu.prim.arrays.DoubleArrays;
-import edu.jhu.prim.arrays.IntArrays;
 
 public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module<Beliefs>, FgInferencer {
 
     public static class O2AllGraFgInferencerFactory implements FgInferencerFactory, BeliefsModuleFactory {
 
         private Algebra s;
+        private boolean pruned;
+        
         public O2AllGraFgInferencerFactory(Algebra s) {
+            this(s, false);
+        }
+        
+        /**
+         * @param s The algebra.
+         * @param pruned Whether to build the hypergraph over only the arcs which were not pruned.
+         */
+        public O2AllGraFgInferencerFactory(Algebra s, boolean pruned) {
             this.s = s;
+            this.pruned = pruned;
         }
         
         @Override
         public FgInferencer getInferencer(FactorGraph fg) { 
-            return new O2AllGraFgInferencer(fg, s);
+            return new O2AllGraFgInferencer(fg, ForwardOnlyFactorsModule.getFactorsModule(fg, s), pruned);
         }
 
         @Override
@@ -65,7 +78,7 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
 
         @Override
         public Module<Beliefs> getBeliefsModule(Module<Factors> fm, FactorGraph fg) {
-            return new O2AllGraFgInferencer(fg, fm);
+            return new O2AllGraFgInferencer(fg, fm, pruned);
         }
         
     }
@@ -77,31 +90,48 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
     private final Algebra s;
     private FactorGraph fg;
     private int n;
+    private final boolean pruned;
     // Output:
     private Beliefs b;
     private Beliefs bAdj;
     // Cached: 
-    private O2AllGraDpHypergraph graph;
+    private Hypergraph graph;
+    private Hyperpotential potentials;
+    private O2AllGraDpHypergraph denseGraph;
+    private PrunedO2AllGraDpHypergraph prunedGraph;
     private Scores sc;
-    private int[][] ijFacs;
-    private int[][][] ijkFacs;
+    private O2AllGraFactorIndex idx;
+    /** Indexed by triple. The grandparent factor ID for each triple of the pruned hypergraph. */
+    private int[] tripleFacs;
     
     public O2AllGraFgInferencer(FactorGraph fg, Algebra s) {
         this(fg, ForwardOnlyFactorsModule.getFactorsModule(fg, s));
     }
 
     public O2AllGraFgInferencer(final FactorGraph fg, Module<Factors> fm) {
+        this(fg, fm, false);
+    }
+    
+    /**
+     * @param fg The factor graph.
+     * @param fm The module computing the factors.
+     * @param pruned Whether to build the hypergraph over only the arcs which are not clamped to
+     *            false (i.e. those kept by the DepEdgeMask). The cost is then proportional to the
+     *            number of kept arcs instead of (n+1)^4, but no adjoints are computed for the
+     *            clamped arcs.
+     */
+    public O2AllGraFgInferencer(final FactorGraph fg, Module<Factors> fm, boolean pruned) {
         this.s = fm.getAlgebra();
+        this.pruned = pruned;
         this.fg = fg;
         this.fm = fm;
-        // Guess the length of the sentence.
-        // TODO: Pass this in to the constructor.
-        n = -1;
-        for (Var v : fg.getVars()) {
-            LinkVar lv = (LinkVar) v;
-            n = Math.max(n, lv.getChild()+1);
-            n = Math.max(n, lv.getParent()+1);
+        // Get the indices for looking up factors, which are cached on the factor graph if possible.
+        if (fg instanceof JointNlpFactorGraph) {
+            idx = ((JointNlpFactorGraph) fg).getO2AllGraFactorIndex();
+        } else {
+            idx = new O2AllGraFactorIndex(fg);
         }
+        n = idx.getSentenceLength();
     }
 
     @Override
@@ -111,17 +141,23 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
     
     @Override
     public Beliefs forward() {
-        // Create indices for looking up factors.
-        gatherFactors();
-        
         // Build the hypergraph.
         // - extract the edge and edge-pair scores from the factor graph.
-        DependencyScorer scorer = forwardFgToScores();
-        graph = new O2AllGraDpHypergraph(scorer, s, InsideOutsideDepParse.singleRoot);
+        if (pruned) {
+            prunedGraph = new PrunedO2AllGraDpHypergraph(getDepEdgeMask(), n, s, InsideOutsideDepParse.singleRoot);
+            forwardFgToPrunedScores();
+            graph = prunedGraph;
+            potentials = prunedGraph.getPotentials();
+        } else {
+            DependencyScorer scorer = forwardFgToScores();
+            denseGraph = new O2AllGraDpHypergraph(scorer, s, InsideOutsideDepParse.singleRoot);
+            graph = denseGraph;
+            potentials = denseGraph.getPotentials();
+        }
         
         // Run inside-outside.
         sc = new Scores();
-        Hyperalgo.forward(graph, graph.getPotentials(), s, sc);
+        Hyperalgo.forward(graph, potentials, s, sc);
         if (sc.beta[graph.getRoot().getId()] == s.zero()) {
             if (log.isTraceEnabled()) { printScoreDetails(); }
             throw new IllegalStateException("Scores disallowed all possible parses.");
@@ -140,6 +176,10 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
 
         // Backprop from the hypernode marginals through the hyperedge weights to the edge-pair
         // scores.
+        if (pruned) {
+            backwardPruned();
+            return;
+        }
         final Tensor scoresAdj = new Tensor(s, n+1, n+1, n+1);
         HyperedgeDoubleFn lambda = new HyperedgeDoubleFn() {            
             @Override
@@ -150,12 +190,28 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
                 }
             }
         };
-        Hyperalgo.backward(graph, graph.getPotentials(), s, sc, lambda);
+        Hyperalgo.backward(graph, potentials, s, sc, lambda);
         
         // Backprop from the edge-pair scores to the factor modules. 
         backwardFgToScores(scoresAdj);
     }
 
+    private void backwardPruned() {
+        final double[] scoresAdj = new double[prunedGraph.getNumTriples()];
+        Arrays.fill(scoresAdj, s.zero());
+        HyperedgeDoubleFn lambda = new HyperedgeDoubleFn() {            
+            @Override
+            public void apply(Hyperedge e, double adj_w_e) {
+                int t = prunedGraph.getTriple(e.getHeadNode());
+                if (t != -1) {
+                    scoresAdj[t] = s.plus(scoresAdj[t], adj_w_e);
+                }
+            }
+        };
+        Hyperalgo.backward(graph, potentials, s, sc, lambda);
+        backwardFgToPrunedScores(scoresAdj);
+    }
+
     private DependencyScorer forwardFgToScores() {
         Factors factors = fm.getOutput();
 
@@ -166,12 +222,14 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
             for (int j=0; j<n+1; j++) {
                 for (int g=0; g<n+1; g++) {
                     if (i <= g && g <= j && !(i==0 && g == O2AllGraDpHypergraph.NIL)) { continue; }
-                    if (ijkFacs[i][j][g] != -1) {
-                        VarTensor psi_ijk = factors.get(ijkFacs[i][j][g]);
+                    int ijk = idx.getGrandparentFactorId(i, j, g);
+                    int ij = idx.getEdgeFactorId(i, j);
+                    if (ijk != -1) {
+                        VarTensor psi_ijk = factors.get(ijk);
                         scores[i][j][g] = s.times(scores[i][j][g], psi_ijk.getValue(TRUE_TRUE));
                     }
-                    if (ijFacs[i][j] != -1) {
-                        VarTensor psi_ij = factors.get(ijFacs[i][j]);
+                    if (ij != -1) {
+                        VarTensor psi_ij = factors.get(ij);
                         scores[i][j][g] = s.times(scores[i][j][g], psi_ij.getValue(TRUE));
                     }
                 }
@@ -197,14 +255,16 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
                     VarTensor adj_ij = null;
                     double psi_ijk_tt = s.one();
                     double psi_ij_t = s.one();
-                    if (ijkFacs[i][j][g] != -1) {
-                        psi_ijk = factors.get(ijkFacs[i][j][g]);
-                        adj_ijk = factorsAdj.get(ijkFacs[i][j][g]);
+                    int ijk = idx.getGrandparentFactorId(i, j, g);
+                    int ij = idx.getEdgeFactorId(i, j);
+                    if (ijk != -1) {
+                        psi_ijk = factors.get(ijk);
+                        adj_ijk = factorsAdj.get(ijk);
                         psi_ijk_tt = psi_ijk.getValue(TRUE_TRUE);
                     }
-                    if (ijFacs[i][j] != -1) {
-                        psi_ij = factors.get(ijFacs[i][j]);
-                        adj_ij = factorsAdj.get(ijFacs[i][j]);
+                    if (ij != -1) {
+                        psi_ij = factors.get(ij);
+                        adj_ij = factorsAdj.get(ij);
                         psi_ij_t = psi_ij.getValue(TRUE);
                     }
                     if (adj_ijk != null) {
@@ -218,6 +278,61 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
         }
     }
 
+    /** Gets the mask of arcs which are not clamped to false. */
+    private DepEdgeMask getDepEdgeMask() {
+        DepEdgeMask mask = new DepEdgeMask(n, true);
+        for (int i=0; i<n+1; i++) {
+            for (int j=1; j<n+1; j++) {
+                if (idx.isPruned(i, j)) {
+                    mask.setIsPruned(i-1, j-1, true);
+                }
+            }
+        }
+        return mask;
+    }
+
+    private void forwardFgToPrunedScores() {
+        Factors factors = fm.getOutput();
+        tripleFacs = new int[prunedGraph.getNumTriples()];
+        for (int t=0; t<prunedGraph.getNumTriples(); t++) {
+            int i = prunedGraph.getParent(t);
+            int j = prunedGraph.getChild(t);
+            int g = prunedGraph.getGrandparent(t);
+            tripleFacs[t] = idx.getGrandparentFactorId(i, j, g);
+            int ij = idx.getEdgeFactorId(i, j);
+            double score = s.one();
+            if (tripleFacs[t] != -1) {
+                score = s.times(score, factors.get(tripleFacs[t]).getValue(TRUE_TRUE));
+            }
+            if (ij != -1) {
+                score = s.times(score, factors.get(ij).getValue(TRUE));
+            }
+            prunedGraph.setScore(t, score);
+        }
+    }
+
+    private void backwardFgToPrunedScores(double[] scoresAdj) {
+        Factors factors = fm.getOutput();
+        Factors factorsAdj = fm.getOutputAdj();
+        for (int t=0; t<prunedGraph.getNumTriples(); t++) {
+            int ij = idx.getEdgeFactorId(prunedGraph.getParent(t), prunedGraph.getChild(t));
+            double psi_ijk_tt = s.one();
+            double psi_ij_t = s.one();
+            if (tripleFacs[t] != -1) {
+                psi_ijk_tt = factors.get(tripleFacs[t]).getValue(TRUE_TRUE);
+            }
+            if (ij != -1) {
+                psi_ij_t = factors.get(ij).getValue(TRUE);
+            }
+            if (tripleFacs[t] != -1) {
+                factorsAdj.get(tripleFacs[t]).addValue(TRUE_TRUE, s.times(scoresAdj[t], psi_ij_t));
+            }
+            if (ij != -1) {
+                factorsAdj.get(ij).addValue(TRUE, s.times(scoresAdj[t], psi_ijk_tt));
+            }
+        }
+    }
+
     /** Computes the beliefs from the hypernode marginals. */
     protected void forwardBeliefs() {        
         b = new Beliefs(new VarTensor[fg.getNumVars()], new VarTensor[fg.getNumFactors()]);
@@ -251,11 +366,9 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
         LinkVar lv = (LinkVar)var;
         int i = lv.getParent()+1;
         int j = lv.getChild()+1;
-        Hypernode[][][][] c = graph.getChart();
         double lv1 = s.zero();
-        for (int g=0; g<n+1; g++) {
-            if (c[i][j][g][O2AllGraDpHypergraph.INCOMPLETE] != null) {
-                int id = c[i][j][g][O2AllGraDpHypergraph.INCOMPLETE].getId();                
+        for (int id : getIncompleteIds(i, j)) {
+            if (id != -1) {
                 lv1 = s.plus(lv1, sc.marginal[id]);
             }
         }
@@ -277,12 +390,10 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
         int i = lv.getParent()+1;
         int j = lv.getChild()+1;
         int v = var.getId();
-        Hypernode[][][][] c = graph.getChart();
         VarTensor pxAdj = bAdj.varBeliefs[v];
         pxAdj.add(s.negate(pxAdj.get(FALSE)), TRUE);
-        for (int g=0; g<n+1; g++) {
-            if (c[i][j][g][O2AllGraDpHypergraph.INCOMPLETE] != null) {
-                int id = c[i][j][g][O2AllGraDpHypergraph.INCOMPLETE].getId();
+        for (int id : getIncompleteIds(i, j)) {
+            if (id != -1) {
                 sc.marginalAdj[id] = s.plus(sc.marginalAdj[id], pxAdj.get(TRUE));
             }
         }
@@ -300,7 +411,7 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
             int i = ff.p+1;
             int j = ff.c+1;                        
             VarTensor b = new VarTensor(s, f.getVars());
-            int id = graph.getChart()[i][j][k][O2AllGraDpHypergraph.INCOMPLETE].getId();            
+            int id = getIncompleteId(i, j, k);
             b.set(sc.marginal[id], TRUE, TRUE);
             // Compute the other marginals using the variable marginals. Consider the 2x2 table of 
             // probabilities. We have the marginals for all rows and columns, plus one entry.
@@ -351,7 +462,7 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
             VarTensor adj_px_ki = bAdj.varBeliefs[v_ki];
             VarTensor adj_px_ij = bAdj.varBeliefs[v_ij];
             VarTensor adj_px_ijk = bAdj.facBeliefs[ff.getId()];
-            int id = graph.getChart()[i][j][k][O2AllGraDpHypergraph.INCOMPLETE].getId();
+            int id = getIncompleteId(i, j, k);
 
             // 4. 
             adj_px_ijk.add(s.negate(adj_px_ijk.get(FALSE, FALSE)), FALSE, TRUE);
@@ -376,39 +487,28 @@ public class O2AllGraFgInferencer extends AbstractFgInferencer implements Module
         }
     }
 
-    /** Creates indices for looking up factors: 
-     * 1. graFacs maps i,j,k indices to a grandparent factor ID
-     * 2. edgeFacs maps i,j indices to an edge factor ID.
-     */
-    private void gatherFactors() {
-        ijFacs = new int[n+1][n+1];
-        ijkFacs = new int[n+1][n+1][n+1];
-        IntArrays.fill(ijFacs, -1);
-        IntArrays.fill(ijkFacs, -1);
-        
-        boolean containsProjDepTreeConstraint = false;
-        for (int a=0; a<fg.getNumFactors(); a++) {
-            Factor f = fg.getFactor(a);
-            if (f instanceof ProjDepTreeFactor) {
-                containsProjDepTreeConstraint = true;
-            } else if (f instanceof GraFeTypedFactor && ((GraFeTypedFactor) f).getFactorType() == DepParseFactorTemplate.GRANDPARENT) {
-                GraFeTypedFactor ff = (GraFeTypedFactor) f;
-                ijkFacs[ff.p+1][ff.c+1][ff.g+1] = ff.getId();
-            } else if (f.getVars().size() == 1 && f.getVars().get(0) instanceof LinkVar) {
-                LinkVar lv = (LinkVar) f.getVars().get(0);
-                int i = lv.getParent() + 1;
-                int j = lv.getChild() + 1;
-                ijFacs[i][j] = f.getId();
-            } else if (f.getVars().size() == 0) {
-                // Ignore clamped factor.
-            } else {
-                throw new RuntimeException("Unsupported factor type: " + f.getClass());
-            }
+    /** Gets the hypernode ID of the incomplete item for (i, j, g), or -1 if there is none. */
+    private int getIncompleteId(int i, int j, int g) {
+        if (pruned) {
+            return prunedGraph.getIncompleteNodeId(i, j, g);
+        }
+        Hypernode node = denseGraph.getChart()[i][j][g][O2AllGraDpHypergraph.INCOMPLETE];
+        return node == null ? -1 : node.getId();
+    }
+
+    /** Gets the hypernode IDs of the incomplete items for (i, j) with any grandparent. IDs may be -1. */
+    private int[] getIncompleteIds(int i, int j) {
+        if (pruned) {
+            int[] ids = prunedGraph.getIncompleteNodeIds(i, j);
+            return ids == null ? new int[0] : ids;
         }
-        if (!containsProjDepTreeConstraint) {
-            throw new IllegalStateException("This inference method is only applicable to factor graphs containing "
-                        + " a factor constraining to a projective dependency tree.");
+        Hypernode[][][][] c = denseGraph.getChart();
+        int[] ids = new int[n+1];
+        for (int g=0; g<n+1; g++) {
+            Hypernode node = c[i][j][g][O2AllGraDpHypergraph.INCOMPLETE];
+            ids[g] = (node == null) ? -1 : node.getId();
         }
+        return ids;
     }
 
     /** Returns a-b or 0 if b > a. This is to address floating point issues. */
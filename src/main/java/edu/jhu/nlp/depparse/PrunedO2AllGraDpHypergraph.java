@@ -0,0 +1,355 @@
+package edu.jhu.nlp.depparse;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import edu.jhu.nlp.data.DepEdgeMask;
+import edu.jhu.pacaya.hypergraph.BasicHypernode;
+import edu.jhu.pacaya.hypergraph.Hyperedge;
+import edu.jhu.pacaya.hypergraph.Hypergraph;
+import edu.jhu.pacaya.hypergraph.Hypernode;
+import edu.jhu.pacaya.hypergraph.Hyperpotential;
+import edu.jhu.pacaya.hypergraph.WeightedHyperedge;
+import edu.jhu.pacaya.hypergraph.depparse.O2AllGraDpHypergraph;
+import edu.jhu.pacaya.hypergraph.depparse.PCGBasicHypernode;
+import edu.jhu.pacaya.util.semiring.Algebra;
+import edu.jhu.pacaya.util.semiring.Semiring;
+import edu.jhu.prim.list.IntArrayList;
+
+/**
+ * Second-order grandparent dependency parsing hypergraph which includes only the arcs kept by a
+ * {@link DepEdgeMask}.
+ *
+ * This is the same dynamic program as {@link O2AllGraDpHypergraph}, but an incomplete item for the
+ * arc (p,c) with grandparent g exists only if both (p,c) and (g,p) are kept, and a complete item
+ * headed by h with grandparent g only if (g,h) is kept. The hyperedges are built once and stored
+ * in flat index arrays, and the scores are indexed by the (p,c,g) triples which were kept. So the
+ * time and space scale with the number of kept arcs rather than the (n+1)^4 hyperedges of the
+ * dense hypergraph.
+ *
+ * As in O2AllGraDpHypergraph, all positions are chart positions: 0 is the wall and i+1 is the i'th
+ * token. The wall's grandparent is 0 (i.e. O2AllGraDpHypergraph.NIL).
+ *
+ * @author mgormley
+ */
+public class PrunedO2AllGraDpHypergraph implements Hypergraph {
+
+    private static final int NIL = O2AllGraDpHypergraph.NIL;
+    private static final int NONE = -1;
+
+    private final Algebra a;
+    private final boolean singleRoot;
+    private final int nplus;
+    /** Indexed by parent and child. Whether the arc is kept. */
+    private final boolean[][] keep;
+    /** Indexed by head. The possible grandparents of the head, i.e. its kept parents. */
+    private final int[][] gs;
+    /** Indexed by head and grandparent. The position of the grandparent in gs[head], or -1 if not present. */
+    private final int[][] gPos;
+
+    /** Indexed by head, end and position in gs[head]. The id of the complete item, or -1 if not present. */
+    private final int[][][] compNodes;
+    /** Indexed by parent, child and position in gs[parent]. The id of the incomplete item, or -1 if not present. */
+    private final int[][][] incNodes;
+    private final List<Hypernode> nodes = new ArrayList<>();
+    private Hypernode root;
+
+    /** Indexed by node id. The triple for each incomplete item, or -1 for all other nodes. */
+    private final IntArrayList tripleOfNode = new IntArrayList();
+    private final IntArrayList tripleP = new IntArrayList();
+    private final IntArrayList tripleC = new IntArrayList();
+    private final IntArrayList tripleG = new IntArrayList();
+    /** Indexed by triple. The score of each (p,c,g) triple. */
+    private final double[] scores;
+
+    // Indexed by hyperedge id.
+    private final IntArrayList edgeHead = new IntArrayList();
+    private final IntArrayList edgeTail0 = new IntArrayList();
+    private final IntArrayList edgeTail1 = new IntArrayList();
+    private final IntArrayList edgeTriple = new IntArrayList();
+
+    /**
+     * Constructs the hypergraph. All of the scores are initialized to one, and should be set with
+     * {@link #setScore(int, double)} before running inference.
+     *
+     * @param mask The dependency arcs to keep.
+     * @param n The number of tokens in the sentence.
+     * @param a The algebra.
+     * @param singleRoot Whether to allow only one child of the wall.
+     */
+    public PrunedO2AllGraDpHypergraph(DepEdgeMask mask, int n, Algebra a, boolean singleRoot) {
+        this.a = a;
+        this.singleRoot = singleRoot;
+        this.nplus = n + 1;
+        this.keep = new boolean[nplus][nplus];
+        this.gs = new int[nplus][];
+        this.gPos = new int[nplus][nplus];
+        for (int[] row : gPos) {
+            Arrays.fill(row, NONE);
+        }
+        gs[0] = new int[] { NIL };
+        gPos[0][NIL] = 0;
+        for (int h = 1; h < nplus; h++) {
+            IntArrayList parents = new IntArrayList();
+            for (int g = 0; g < nplus; g++) {
+                if (g != h && mask.isKept(g - 1, h - 1)) {
+                    keep[g][h] = true;
+                    gPos[h][g] = parents.size();
+                    parents.add(g);
+                }
+            }
+            gs[h] = parents.toNativeArray();
+        }
+        this.compNodes = new int[nplus][nplus][];
+        this.incNodes = new int[nplus][nplus][];
+        createHypernodes();
+        this.scores = new double[tripleP.size()];
+        Arrays.fill(scores, a.one());
+        createHyperedges();
+    }
+
+    private void createHypernodes() {
+        // Complete items. Only the wall may span to the wall.
+        for (int h = 0; h < nplus; h++) {
+            for (int e = (h == 0) ? 0 : 1; e < nplus; e++) {
+                compNodes[h][e] = new int[gs[h].length];
+                for (int k = 0; k < gs[h].length; k++) {
+                    int g = gs[h][k];
+                    if (h != 0 && inSpan(g, h, e)) {
+                        compNodes[h][e][k] = NONE;
+                    } else {
+                        compNodes[h][e][k] = addNode(new BasicHypernode(null, nodes.size()), NONE);
+                    }
+                }
+            }
+        }
+        // Incomplete items. The wall is never a child.
+        for (int p = 0; p < nplus; p++) {
+            for (int c = 1; c < nplus; c++) {
+                if (!keep[p][c]) { continue; }
+                incNodes[p][c] = new int[gs[p].length];
+                for (int k = 0; k < gs[p].length; k++) {
+                    int g = gs[p][k];
+                    if (p != 0 && inSpan(g, p, c)) {
+                        incNodes[p][c][k] = NONE;
+                    } else {
+                        int t = tripleP.size();
+                        tripleP.add(p);
+                        tripleC.add(c);
+                        tripleG.add(g);
+                        incNodes[p][c][k] = addNode(new PCGBasicHypernode(null, nodes.size(), p - 1, c - 1, g - 1), t);
+                    }
+                }
+            }
+        }
+        root = new BasicHypernode("ROOT", nodes.size());
+        addNode(root, NONE);
+    }
+
+    private int addNode(Hypernode node, int triple) {
+        nodes.add(node);
+        tripleOfNode.add(triple);
+        return node.getId();
+    }
+
+    private static boolean inSpan(int g, int x, int y) {
+        return Math.min(x, y) <= g && g <= Math.max(x, y);
+    }
+
+    /** Creates the hyperedges in topological order. */
+    private void createHyperedges() {
+        // Complete items of width zero.
+        for (int s = 0; s < nplus; s++) {
+            for (int k = 0; k < gs[s].length; k++) {
+                addEdge(compNodes[s][s][k], NONE, NONE, NONE, 0);
+            }
+        }
+        int start = singleRoot ? 1 : 0;
+        for (int width = 1; width < nplus; width++) {
+            for (int i = start; i < nplus - width; i++) {
+                int j = i + width;
+                // Items headed by i, where j is to the right.
+                for (int g : gs[i]) {
+                    if (i != 0 && inSpan(g, i, j)) { continue; }
+                    int inc = getIncompleteNodeId(i, j, g);
+                    if (inc != NONE) {
+                        int t = tripleOfNode.get(inc);
+                        for (int r = i; r < j; r++) {
+                            addEdge(inc, getCompleteNodeId(i, r, g), getCompleteNodeId(j, r + 1, i), t, 2);
+                        }
+                    }
+                    int comp = getCompleteNodeId(i, j, g);
+                    for (int r = i + 1; r <= j; r++) {
+                        addEdge(comp, getIncompleteNodeId(i, r, g), getCompleteNodeId(r, j, i), NONE, 2);
+                    }
+                }
+                if (i == 0) { continue; }
+                // Items headed by j, where i is to the left.
+                for (int g : gs[j]) {
+                    if (inSpan(g, i, j)) { continue; }
+                    int inc = getIncompleteNodeId(j, i, g);
+                    if (inc != NONE) {
+                        int t = tripleOfNode.get(inc);
+                        for (int r = i; r < j; r++) {
+                            addEdge(inc, getCompleteNodeId(j, r + 1, g), getCompleteNodeId(i, r, j), t, 2);
+                        }
+                    }
+                    int comp = getCompleteNodeId(j, i, g);
+                    for (int r = i; r < j; r++) {
+                        addEdge(comp, getIncompleteNodeId(j, r, g), getCompleteNodeId(r, i, j), NONE, 2);
+                    }
+                }
+            }
+        }
+        int whole = getCompleteNodeId(0, nplus - 1, NIL);
+        if (singleRoot) {
+            // The wall has exactly one child.
+            for (int r = 1; r < nplus; r++) {
+                int inc = getIncompleteNodeId(0, r, NIL);
+                if (inc == NONE) { continue; }
+                addEdge(inc, getCompleteNodeId(r, 1, NIL), getCompleteNodeId(r, nplus - 1, NIL), tripleOfNode.get(inc), 2);
+                addEdge(whole, inc, NONE, NONE, 1);
+            }
+        }
+        addEdge(root.getId(), whole, NONE, NONE, 1);
+    }
+
+    /** Adds a hyperedge with the given number of tails, unless the head or one of the tails is missing. */
+    private void addEdge(int head, int tail0, int tail1, int triple, int numTails) {
+        if (head == NONE || (numTails > 0 && tail0 == NONE) || (numTails > 1 && tail1 == NONE)) {
+            return;
+        }
+        edgeHead.add(head);
+        edgeTail0.add(tail0);
+        edgeTail1.add(tail1);
+        edgeTriple.add(triple);
+    }
+
+    /** Gets the id of the complete item headed by h and ending at e with grandparent g, or -1 if not present. */
+    public int getCompleteNodeId(int h, int e, int g) {
+        int k = gPos[h][g];
+        if (k == NONE || compNodes[h][e] == null) {
+            return NONE;
+        }
+        return compNodes[h][e][k];
+    }
+
+    /** Gets the id of the incomplete item for the arc (p,c) with grandparent g, or -1 if not present. */
+    public int getIncompleteNodeId(int p, int c, int g) {
+        int k = gPos[p][g];
+        if (k == NONE || incNodes[p][c] == null) {
+            return NONE;
+        }
+        return incNodes[p][c][k];
+    }
+
+    /**
+     * Gets the ids of the incomplete items for the arc (p,c), one for each of the kept parents of
+     * p. An id is -1 if that grandparent is not allowed. Returns null if the arc is pruned.
+     */
+    public int[] getIncompleteNodeIds(int p, int c) {
+        return incNodes[p][c];
+    }
+
+    /** Gets the triple for the arc (p,c) with grandparent g, or -1 if not present. */
+    public int getTriple(int p, int c, int g) {
+        int id = getIncompleteNodeId(p, c, g);
+        return id == NONE ? NONE : tripleOfNode.get(id);
+    }
+
+    /** Gets the triple for the given node, or -1 if it is not an incomplete item. */
+    public int getTriple(Hypernode node) {
+        return tripleOfNode.get(node.getId());
+    }
+
+    /** Gets the number of kept (p,c,g) triples. */
+    public int getNumTriples() {
+        return scores.length;
+    }
+
+    /** Gets the parent of the given triple. */
+    public int getParent(int t) {
+        return tripleP.get(t);
+    }
+
+    /** Gets the child of the given triple. */
+    public int getChild(int t) {
+        return tripleC.get(t);
+    }
+
+    /** Gets the grandparent of the given triple. */
+    public int getGrandparent(int t) {
+        return tripleG.get(t);
+    }
+
+    /** Sets the score of the given triple. */
+    public void setScore(int t, double score) {
+        scores[t] = score;
+    }
+
+    @Override
+    public Hypernode getRoot() {
+        return root;
+    }
+
+    @Override
+    public List<Hypernode> getNodes() {
+        return nodes;
+    }
+
+    @Override
+    public int getNumEdges() {
+        return edgeHead.size();
+    }
+
+    public Hyperpotential getPotentials() {
+        return new Hyperpotential() {
+            @Override
+            public double getScore(Hyperedge e, Semiring s) {
+                return ((WeightedHyperedge) e).getWeight();
+            }
+        };
+    }
+
+    @Override
+    public void applyTopoSort(HyperedgeFn fn) {
+        WeightedHyperedge e = new WeightedHyperedge(0, null);
+        Hypernode[][] tails = new Hypernode[][] { new Hypernode[0], new Hypernode[1], new Hypernode[2] };
+        for (int id = 0; id < edgeHead.size(); id++) {
+            apply(fn, e, tails, id);
+        }
+    }
+
+    @Override
+    public void applyRevTopoSort(HyperedgeFn fn) {
+        WeightedHyperedge e = new WeightedHyperedge(0, null);
+        Hypernode[][] tails = new Hypernode[][] { new Hypernode[0], new Hypernode[1], new Hypernode[2] };
+        for (int id = edgeHead.size() - 1; id >= 0; id--) {
+            apply(fn, e, tails, id);
+        }
+    }
+
+    private void apply(HyperedgeFn fn, WeightedHyperedge e, Hypernode[][] tails, int id) {
+        int tail0 = edgeTail0.get(id);
+        int tail1 = edgeTail1.get(id);
+        Hypernode[] t;
+        if (tail0 == NONE) {
+            t = tails[0];
+        } else if (tail1 == NONE) {
+            t = tails[1];
+            t[0] = nodes.get(tail0);
+        } else {
+            t = tails[2];
+            t[0] = nodes.get(tail0);
+            t[1] = nodes.get(tail1);
+        }
+        int triple = edgeTriple.get(id);
+        e.setHeadNode(nodes.get(edgeHead.get(id)));
+        e.setTailNodes(t);
+        e.setWeight(triple == NONE ? a.one() : scores[triple]);
+        e.setId(id);
+        fn.apply(e);
+    }
+
+}
@@ -20,9 +20,11 @@ import edu.jhu.pacaya.util.semiring.RealAlgebra;
 import edu.jhu.prim.Primitives.MutableInt;
 import edu.jhu.prim.arrays.DoubleArrays;
 import edu.jhu.prim.bimap.IntObjectBimap;
+import edu.jhu.prim.list.IntArrayList;
 
 /**
- * Storage for a set of word embeddings. Also contains a method to load embeddings from a text file. 
+ * Storage for a set of word embeddings. Also contains a method to load embeddings from a text file
+ * or an {@link EmbeddingsStore}.
  * @author mgormley
  */
 public class Embeddings implements Serializable {
@@ -41,23 +43,46 @@ public class Embeddings implements Serializable {
         this.alphabet = alphabet;
     }
     
-    public Embeddings(File txtFile, final Set<String> words) {
+    /**
+     * Reads the embeddings from a text file (see {@link #parseEmbFile(File, EmbeddingHandler)}) or
+     * from an {@link EmbeddingsStore}.
+     * 
+     * @param file The text file or store.
+     * @param words The words whose embeddings should be kept, or null to keep all of them.
+     */
+    public Embeddings(File file, final Set<String> words) {
+        if (EmbeddingsStore.isStore(file)) {
+            log.info("Reading word embeddings from store: " + file);
+            try (EmbeddingsStore store = new EmbeddingsStore(file)) {
+                Embeddings e = new Embeddings(store, words);
+                this.embeds = e.embeds;
+                this.alphabet = e.alphabet;
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            return;
+        }
+        File txtFile = file;
         log.info("Reading word embeddings from file: " + txtFile);
         // Count the number of words and length of the embeddings.
         final MutableInt numWords = new MutableInt(0);
         final MutableInt dim = new MutableInt(-1);
+        final MutableInt numUnk = new MutableInt(0);
         EmbeddingHandler countHandler = new EmbeddingHandler(){
             @Override
             public void addEmbedding(String word, double[] embed) {
                 if (words == null || words.contains(word)) {
                     numWords.v += 1;                    
                     dim.v = embed.length;
+                    if (UNKNOWN_WORD.equals(word)) {
+                        numUnk.v += 1;
+                    }
                 }
             }
         };
         parseEmbFile(txtFile, countHandler);
-        // Store the embeddings.
-        embeds = new Tensor(RealAlgebra.getInstance(), numWords.v, dim.v);
+        // Store the embeddings, leaving a row for <UNK> if it is not in the file.
+        embeds = new Tensor(RealAlgebra.getInstance(), numWords.v + (numUnk.v == 0 ? 1 : 0), dim.v);
         alphabet = new IntObjectBimap<String>();
         EmbeddingHandler addHandler = new EmbeddingHandler(){
             @Override
@@ -72,17 +97,71 @@ public class Embeddings implements Serializable {
         };
         parseEmbFile(txtFile, addHandler);
         // Always add an embedding for the special <UNK> word type.
-        if (alphabet.lookupIndex(UNKNOWN_WORD) == -1) {
+        if (alphabet.lookupIndex(UNKNOWN_WORD, false) == -1) {
             // Initialize to some small random values.
             double[] embed = new double[dim.v];
             Gaussian.nextDoubleArray(0, 1e-4, embed);
-            addHandler.addEmbedding(UNKNOWN_WORD, embed);
+            setUnknownWord(embed);
         }
         alphabet.stopGrowth();
         log.debug("Embedding vocabulary size: " + alphabet.size() + " and dimension: " + dim.v);
     }
     
-    private interface EmbeddingHandler {
+    /**
+     * Copies the embeddings of the given words out of the store. Only the pages of the store which
+     * hold these words are read, so this is fast even for a large store when the words are
+     * restricted to those of a corpus.
+     * 
+     * @param store The store.
+     * @param words The words whose embeddings should be kept, or null to keep all of them.
+     */
+    public Embeddings(EmbeddingsStore store, Set<String> words) {
+        // Keep the words in the order of the store, as when reading a text file.
+        IntArrayList ids = new IntArrayList();
+        if (words == null) {
+            for (int id=0; id<store.getNumWords(); id++) {
+                ids.add(id);
+            }
+        } else {
+            for (String word : words) {
+                int id = store.lookup(word);
+                if (id != -1) {
+                    ids.add(id);
+                }
+            }
+            ids.sortAsc();
+        }
+        int unkId = store.lookup(UNKNOWN_WORD);
+        boolean addUnk = unkId == -1 || (words != null && !words.contains(UNKNOWN_WORD));
+        int dim = store.getDim();
+        embeds = new Tensor(RealAlgebra.getInstance(), ids.size() + (addUnk ? 1 : 0), dim);
+        alphabet = new IntObjectBimap<String>(embeds.getDim(0));
+        double[] embed = new double[dim];
+        for (int k=0; k<ids.size(); k++) {
+            int i = alphabet.lookupIndex(store.getWord(ids.get(k)));
+            store.getVector(ids.get(k), embed);
+            for (int d=0; d<dim; d++) {
+                embeds.set(embed[d], i, d);
+            }
+        }
+        // Always add an embedding for the special <UNK> word type.
+        if (addUnk) {
+            // Initialize to some small random values.
+            Gaussian.nextDoubleArray(0, 1e-4, embed);
+            setUnknownWord(embed);
+        }
+        alphabet.stopGrowth();
+        log.debug("Embedding vocabulary size: " + alphabet.size() + " and dimension: " + dim);
+    }
+    
+    private void setUnknownWord(double[] embed) {
+        int i = alphabet.lookupIndex(UNKNOWN_WORD);
+        for (int d=0; d<embed.length; d++) {
+            embeds.set(embed[d], i, d);
+        }
+    }
+    
+    interface EmbeddingHandler {
         void addEmbedding(String word, double[] embed);
     }
 
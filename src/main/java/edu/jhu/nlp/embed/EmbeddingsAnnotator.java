@@ -4,13 +4,13 @@ import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.jhu.nlp.AbstractParallelAnnotator;
 import edu.jhu.nlp.Annotator;
+import edu.jhu.nlp.HitCounter;
 import edu.jhu.nlp.data.NerMention;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
@@ -26,7 +26,7 @@ public class EmbeddingsAnnotator extends AbstractParallelAnnotator implements An
 
     public static class EmbeddingsAnnotatorPrm extends Prm {
         private static final long serialVersionUID = 1L;
-        // Path to word embeddings text file.
+        // Path to word embeddings text file or EmbeddingsStore.
         public File embeddingsFile = null;
         // Method for normalization of the embeddings.
         public Scaling embNorm = Scaling.L1_NORM;
@@ -40,9 +40,11 @@ public class EmbeddingsAnnotator extends AbstractParallelAnnotator implements An
     private static final Logger log = LoggerFactory.getLogger(Embeddings.class);
     private EmbeddingsAnnotatorPrm prm;
     private Embeddings embeddings;
-    // Internal counting for miss rate.
-    private AtomicInteger numLookups = new AtomicInteger(0);
-    private AtomicInteger numMisses = new AtomicInteger(0);
+    // Index for finding embeddings, created on first use.
+    private transient volatile EmbeddingsIndex index;
+    // Internal counting for miss rate, created on first use. It is not serialized, so models saved
+    // before it was added still load.
+    private transient volatile HitCounter hits;
     
     public EmbeddingsAnnotator(EmbeddingsAnnotatorPrm prm, Set<String> words) {
         this.prm = prm;
@@ -69,20 +71,36 @@ public class EmbeddingsAnnotator extends AbstractParallelAnnotator implements An
     }
     
     public void annotate(AnnoSentence sent) {
+        EmbeddingsIndex index = getIndex();
         IntArrayList embeds = new IntArrayList(sent.size());
         List<String> words = getWords(sent);
+        int numMisses = 0;
         for (int i=0; i<sent.size(); i++) {
             String word = words.get(i);
-            embeds.add(embeddings.findEmbedding(word));
+            embeds.add(index.findEmbedding(word));
             if (embeds.get(i) == -1) {
                 log.trace("Word not found: {}", word);
-                numMisses.incrementAndGet();
+                numMisses++;
             }
-            numLookups.incrementAndGet();
         }
+        getHits().add(sent.size(), numMisses);
         sent.setEmbedIds(embeds);
     }
 
+    private EmbeddingsIndex getIndex() {
+        EmbeddingsIndex index = this.index;
+        if (index == null) {
+            synchronized (this) {
+                index = this.index;
+                if (index == null) {
+                    index = new EmbeddingsIndex(embeddings);
+                    this.index = index;
+                }
+            }
+        }
+        return index;
+    }
+
     protected List<String> getWords(AnnoSentence sent) {
         if (prm.entitySpecificEmbeddings) {
             return getEntitySpecificWords(sent);
@@ -116,7 +134,21 @@ public class EmbeddingsAnnotator extends AbstractParallelAnnotator implements An
     }
 
     public double getHitRate() {
-        return (double) (numLookups.get() - numMisses.get()) / numLookups.get();
+        return getHits().getHitRate();
+    }
+
+    private HitCounter getHits() {
+        HitCounter hits = this.hits;
+        if (hits == null) {
+            synchronized (this) {
+                hits = this.hits;
+                if (hits == null) {
+                    hits = new HitCounter();
+                    this.hits = hits;
+                }
+            }
+        }
+        return hits;
     }
     
     @Override
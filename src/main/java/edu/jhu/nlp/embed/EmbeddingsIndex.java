@@ -0,0 +1,164 @@
+package edu.jhu.nlp.embed;
+
+import java.util.Locale;
+
+import edu.jhu.prim.bimap.IntObjectBimap;
+
+/**
+ * Finds the embedding of a word in the same way as {@link Embeddings#findEmbedding(String)}, but
+ * without allocating any objects.
+ *
+ * Each vocabulary word is stored once, with its hash code, in an open addressing hash table. The
+ * table is probed with every normalized form of the query in turn: the word itself, the word with
+ * its digits replaced by "#", then lowercased, then uppercased. The hash code of each form is
+ * computed and compared character by character as the query is read, so the forms are never
+ * built as strings. Words with non-ASCII characters, whose case mappings can change their
+ * length, fall back to {@link String#toLowerCase()} and {@link String#toUpperCase()}.
+ *
+ * Each thread also caches the results for the words it looked up most recently, which are
+ * compared by identity first since the words of a corpus are usually interned.
+ *
+ * The index is a snapshot of the alphabet of the embeddings when it was created.
+ *
+ * @author mgormley
+ */
+public class EmbeddingsIndex {
+
+    private enum Form { EXACT, DIGITS, LOWER, UPPER }
+
+    private static final int CACHE_SIZE = 1 << 14;
+
+    private static class Cache {
+        final String[] words = new String[CACHE_SIZE];
+        final int[] ids = new int[CACHE_SIZE];
+    }
+
+    private final String[] keys;
+    private final int[] hashes;
+    private final int[] ids;
+    private final int mask;
+    // Whether the case mappings of ASCII characters in the default locale are the usual ones.
+    private final boolean asciiCase;
+    private final ThreadLocal<Cache> cache = new ThreadLocal<Cache>() {
+        @Override
+        protected Cache initialValue() {
+            return new Cache();
+        }
+    };
+
+    public EmbeddingsIndex(Embeddings embeddings) {
+        this(embeddings.getAlphabet());
+    }
+
+    public EmbeddingsIndex(IntObjectBimap<String> alphabet) {
+        int numSlots = Integer.highestOneBit(Math.max(1, 2 * alphabet.size() - 1)) << 1;
+        keys = new String[numSlots];
+        hashes = new int[numSlots];
+        ids = new int[numSlots];
+        mask = numSlots - 1;
+        for (int i = 0; i < alphabet.size(); i++) {
+            String word = alphabet.lookupObject(i);
+            int h = word.hashCode();
+            int slot = EmbeddingsStore.mix(h) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = word;
+            hashes[slot] = h;
+            ids[slot] = i;
+        }
+        Locale locale = Locale.getDefault();
+        String upper = "ABCDEFGHIJKLMNOPQRSTUVWXYZ";
+        String lower = "abcdefghijklmnopqrstuvwxyz";
+        asciiCase = upper.toLowerCase(locale).equals(lower) && lower.toUpperCase(locale).equals(upper);
+    }
+
+    /**
+     * Gets the index of the embedding for the word, or -1 if none of its forms are in the
+     * vocabulary. This gives the same result as {@link Embeddings#findEmbedding(String)}.
+     */
+    public int findEmbedding(String word) {
+        Cache c = cache.get();
+        int slot = word.hashCode() & (CACHE_SIZE - 1);
+        String cached = c.words[slot];
+        if (cached == word || (cached != null && cached.equals(word))) {
+            return c.ids[slot];
+        }
+        int id = lookup(word);
+        c.words[slot] = word;
+        c.ids[slot] = id;
+        return id;
+    }
+
+    private int lookup(String word) {
+        int id;
+        if ((id = get(word, Form.EXACT)) != -1) {
+            return id;
+        }
+        boolean ascii = true;
+        boolean hasDigit = false;
+        for (int k = 0; k < word.length(); k++) {
+            char ch = word.charAt(k);
+            ascii &= ch < 0x80;
+            hasDigit |= ('0' <= ch && ch <= '9');
+        }
+        if (hasDigit && (id = get(word, Form.DIGITS)) != -1) {
+            return id;
+        }
+        if (ascii && asciiCase) {
+            if ((id = get(word, Form.LOWER)) != -1 || (id = get(word, Form.UPPER)) != -1) {
+                return id;
+            }
+            return -1;
+        }
+        // Case mappings may change the length of non-ASCII words.
+        String norm = hasDigit ? word.replaceAll("[0-9]", "#") : word;
+        norm = norm.toLowerCase();
+        if ((id = get(norm, Form.EXACT)) != -1) {
+            return id;
+        }
+        return get(norm.toUpperCase(), Form.EXACT);
+    }
+
+    /** Looks up the given form of the word. */
+    private int get(String word, Form form) {
+        int n = word.length();
+        int h = 0;
+        for (int k = 0; k < n; k++) {
+            h = 31 * h + normalize(word.charAt(k), form);
+        }
+        int slot = EmbeddingsStore.mix(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (hashes[slot] == h && key.length() == n && formEquals(key, word, form)) {
+                return ids[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    private static boolean formEquals(String key, String word, Form form) {
+        for (int k = 0; k < key.length(); k++) {
+            if (key.charAt(k) != normalize(word.charAt(k), form)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** Normalizes a character. Case is only normalized for ASCII characters. */
+    private static char normalize(char ch, Form form) {
+        if (form == Form.EXACT) {
+            return ch;
+        } else if ('0' <= ch && ch <= '9') {
+            return '#';
+        } else if (form == Form.LOWER && 'A' <= ch && ch <= 'Z') {
+            return (char) (ch + ('a' - 'A'));
+        } else if (form == Form.UPPER && 'a' <= ch && ch <= 'z') {
+            return (char) (ch - ('a' - 'A'));
+        }
+        return ch;
+    }
+
+}
@@ -0,0 +1,339 @@
+package edu.jhu.nlp.embed;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.FloatBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.nlp.embed.Embeddings.EmbeddingHandler;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * A read-only, memory mapped store of word embeddings, written from the text format of
+ * {@link Embeddings#parseEmbFile(File, EmbeddingHandler)} by {@link #convert(File, File)}.
+ *
+ * Opening a store only maps the file, so it takes constant time regardless of the size of the
+ * vocabulary, and the pages are shared through the OS page cache by every process which reads the
+ * same store. Words are looked up in an open addressing hash table that is part of the file,
+ * without decoding any strings or allocating any objects. The vectors are stored as 32-bit floats.
+ *
+ * The file layout is:
+ * <pre>
+ * header:      magic, version, numWords, dim, number of index slots, length of the words
+ * vectors:     the dim floats of each word
+ * word starts: the offset of the UTF-8 bytes of each word (and the total length)
+ * index:       for each slot, the id of a word + 1 or 0 if the slot is empty
+ * words:       the UTF-8 bytes of the words
+ * </pre>
+ *
+ * @author mgormley
+ */
+public class EmbeddingsStore implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(EmbeddingsStore.class);
+
+    static final int MAGIC = 0x50454D42; // "PEMB"
+    static final int VERSION = 1;
+    /** magic, version, numWords, dim, numSlots, and the length of the words. */
+    static final int HEADER_BYTES = 6 * 4;
+    /** The maximum number of bytes of vectors in a single mapped buffer. */
+    private static final int MAX_CHUNK_BYTES = 1 << 30;
+
+    private final File file;
+    private final RandomAccessFile raf;
+    private final int numWords;
+    private final int dim;
+    private final int mask;
+    private final int rowsPerChunk;
+    private final FloatBuffer[] vectors;
+    private final ByteBuffer wordStarts;
+    private final ByteBuffer index;
+    private final ByteBuffer words;
+
+    public EmbeddingsStore(File file) throws IOException {
+        this.file = file;
+        this.raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel ch = raf.getChannel();
+            ByteBuffer header = map(ch, 0, HEADER_BYTES);
+            if (header.getInt() != MAGIC) {
+                throw new IOException("Not an embeddings store: " + file);
+            }
+            int version = header.getInt();
+            if (version != VERSION) {
+                throw new IOException("Unsupported embeddings store version " + version + ": " + file);
+            }
+            numWords = header.getInt();
+            dim = header.getInt();
+            int numSlots = header.getInt();
+            int wordBytes = header.getInt();
+            if (Integer.bitCount(numSlots) != 1) {
+                throw new IOException("Number of index slots is not a power of two: " + numSlots);
+            }
+            mask = numSlots - 1;
+
+            long pos = HEADER_BYTES;
+            rowsPerChunk = Math.max(1, MAX_CHUNK_BYTES / (4 * Math.max(1, dim)));
+            vectors = new FloatBuffer[(numWords + rowsPerChunk - 1) / rowsPerChunk];
+            for (int c = 0; c < vectors.length; c++) {
+                int rows = Math.min(rowsPerChunk, numWords - c * rowsPerChunk);
+                long len = 4L * rows * dim;
+                vectors[c] = map(ch, pos, len).asFloatBuffer();
+                pos += len;
+            }
+            wordStarts = map(ch, pos, 4L * (numWords + 1));
+            pos += 4L * (numWords + 1);
+            index = map(ch, pos, 4L * numSlots);
+            pos += 4L * numSlots;
+            words = map(ch, pos, wordBytes);
+            pos += wordBytes;
+            if (pos != ch.size()) {
+                throw new IOException("Unexpected embeddings store length: " + file);
+            }
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static ByteBuffer map(FileChannel ch, long pos, long len) throws IOException {
+        if (len > Integer.MAX_VALUE) {
+            throw new IOException("Embeddings store section is too large to map: " + len + " bytes");
+        }
+        return ch.map(MapMode.READ_ONLY, pos, len);
+    }
+
+    /** Whether the file starts with the magic number of an embeddings store. */
+    public static boolean isStore(File file) {
+        if (!file.isFile() || file.length() < HEADER_BYTES) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            return in.readInt() == MAGIC;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /** Gets the number of words in the store. */
+    public int getNumWords() {
+        return numWords;
+    }
+
+    /** Gets the dimension of the embeddings. */
+    public int getDim() {
+        return dim;
+    }
+
+    /** Gets the id of the word, or -1 if it is not in the store. */
+    public int lookup(String word) {
+        int slot = mix(word.hashCode()) & mask;
+        int e;
+        while ((e = index.getInt(4 * slot)) != 0) {
+            if (wordEquals(e - 1, word)) {
+                return e - 1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Gets the word with the given id. */
+    public String getWord(int id) {
+        int start = wordStarts.getInt(4 * id);
+        byte[] bytes = new byte[wordStarts.getInt(4 * (id + 1)) - start];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = words.get(start + i);
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    /** Gets the d'th dimension of the embedding of the word with the given id. */
+    public float get(int id, int d) {
+        return vectors[id / rowsPerChunk].get((id % rowsPerChunk) * dim + d);
+    }
+
+    /** Copies the embedding of the word with the given id to dest. */
+    public void getVector(int id, double[] dest) {
+        FloatBuffer buf = vectors[id / rowsPerChunk];
+        int off = (id % rowsPerChunk) * dim;
+        for (int d = 0; d < dim; d++) {
+            dest[d] = buf.get(off + d);
+        }
+    }
+
+    /** Whether the UTF-8 bytes of the word with the given id decode to the given string. */
+    private boolean wordEquals(int id, String word) {
+        int i = wordStarts.getInt(4 * id);
+        int end = wordStarts.getInt(4 * (id + 1));
+        int n = word.length();
+        int k = 0;
+        while (i < end) {
+            int b = words.get(i++);
+            int cp;
+            if (b >= 0) {
+                cp = b;
+            } else if ((b & 0xe0) == 0xc0) {
+                cp = ((b & 0x1f) << 6) | (words.get(i++) & 0x3f);
+            } else if ((b & 0xf0) == 0xe0) {
+                cp = ((b & 0x0f) << 12) | ((words.get(i++) & 0x3f) << 6) | (words.get(i++) & 0x3f);
+            } else {
+                cp = ((b & 0x07) << 18) | ((words.get(i++) & 0x3f) << 12) | ((words.get(i++) & 0x3f) << 6)
+                        | (words.get(i++) & 0x3f);
+            }
+            if (cp < Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+                if (k >= n || word.charAt(k++) != cp) {
+                    return false;
+                }
+            } else {
+                if (k + 1 >= n || word.charAt(k++) != Character.highSurrogate(cp)
+                        || word.charAt(k++) != Character.lowSurrogate(cp)) {
+                    return false;
+                }
+            }
+        }
+        return k == n;
+    }
+
+    /** Spreads the bits of a String hash code, which are poorly distributed in the low bits. */
+    static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+    @Override
+    public void close() throws IOException {
+        raf.close();
+    }
+
+    @Override
+    public String toString() {
+        return "EmbeddingsStore [file=" + file + ", numWords=" + numWords + ", dim=" + dim + "]";
+    }
+
+    /**
+     * Converts embeddings from the text format read by
+     * {@link Embeddings#parseEmbFile(File, EmbeddingHandler)} to a store. The vectors are streamed
+     * to the output, so only the words are held in memory. If a word appears more than once, the
+     * last embedding is used, as when reading the text file.
+     */
+    public static void convert(File txtFile, File storeFile) throws IOException {
+        log.info("Converting word embeddings from " + txtFile + " to " + storeFile);
+        Timer timer = new Timer();
+        timer.start();
+        final List<String> wordList = new ArrayList<>();
+        final int[] dims = new int[]{ -1 };
+        int numSlots;
+        int numWordBytes;
+        try (final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(storeFile), 1 << 16))) {
+            // Reserve space for the header, which is written once the sizes are known.
+            out.write(new byte[HEADER_BYTES]);
+            try {
+                Embeddings.parseEmbFile(txtFile, new EmbeddingHandler() {
+                    @Override
+                    public void addEmbedding(String word, double[] embed) {
+                        if (dims[0] == -1) {
+                            dims[0] = embed.length;
+                        } else if (embed.length != dims[0]) {
+                            throw new RuntimeException("Read embedding with incorrect dimension: " + word + " " + embed.length);
+                        }
+                        try {
+                            for (int d = 0; d < embed.length; d++) {
+                                out.writeFloat((float) embed[d]);
+                            }
+                        } catch (IOException e) {
+                            throw new RuntimeException(e);
+                        }
+                        wordList.add(word);
+                    }
+                });
+            } catch (RuntimeException e) {
+                if (e.getCause() instanceof IOException) {
+                    throw (IOException) e.getCause();
+                }
+                throw e;
+            }
+            // Word starts.
+            List<byte[]> wordBytes = new ArrayList<>(wordList.size());
+            int start = 0;
+            out.writeInt(start);
+            for (String word : wordList) {
+                byte[] bytes = word.getBytes(StandardCharsets.UTF_8);
+                wordBytes.add(bytes);
+                start += bytes.length;
+                out.writeInt(start);
+            }
+            // Index, with a load factor of at most 1/2.
+            int[] slots = buildIndex(wordList, Integer.highestOneBit(Math.max(1, 2 * wordList.size() - 1)) << 1);
+            for (int slot : slots) {
+                out.writeInt(slot);
+            }
+            // Words.
+            for (byte[] bytes : wordBytes) {
+                out.write(bytes);
+            }
+            numSlots = slots.length;
+            numWordBytes = start;
+        }
+        writeHeader(storeFile, wordList.size(), Math.max(dims[0], 0), numSlots, numWordBytes);
+        timer.stop();
+        log.info(String.format("Converted %d word embeddings in %.2f seconds", wordList.size(), timer.totSec()));
+    }
+
+    private static int[] buildIndex(List<String> wordList, int numSlots) {
+        int[] slots = new int[numSlots];
+        int mask = numSlots - 1;
+        int numDups = 0;
+        for (int id = 0; id < wordList.size(); id++) {
+            String word = wordList.get(id);
+            int slot = mix(word.hashCode()) & mask;
+            while (slots[slot] != 0 && !wordList.get(slots[slot] - 1).equals(word)) {
+                slot = (slot + 1) & mask;
+            }
+            if (slots[slot] != 0) {
+                numDups++;
+            }
+            slots[slot] = id + 1;
+        }
+        if (numDups > 0) {
+            log.warn("Number of repeated words in embeddings: " + numDups);
+        }
+        return slots;
+    }
+
+    private static void writeHeader(File storeFile, int numWords, int dim, int numSlots, int wordBytes) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(storeFile, "rw")) {
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            raf.writeInt(numWords);
+            raf.writeInt(dim);
+            raf.writeInt(numSlots);
+            raf.writeInt(wordBytes);
+        }
+    }
+
+    /** Converts a text embeddings file (first argument) to a store (second argument). */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: java " + EmbeddingsStore.class.getName() + " <embeddings.txt> <embeddings.bin>");
+            System.exit(1);
+        }
+        convert(new File(args[0]), new File(args[1]));
+    }
+
+}
@@ -28,6 +28,41 @@ public class ProportionAnnotated implements Evaluator {
     @Override
     public double evaluate(AnnoSentenceCollection predSents, AnnoSentenceCollection goldSents, String name) {        
         int[] counts = new int[AT.values().length];
+        accumulate(predSents, counts);
+        report(counts, predSents.size());
+        return 0.0;
+    }
+
+    /**
+     * Gets a counter of the proportions annotated, which can be updated one batch of sentences at
+     * a time and reported at the end (e.g. when streaming).
+     */
+    public Counter getCounter() {
+        return new Counter();
+    }
+
+    /** Counts of the sentences annotated, accumulated over batches. */
+    public class Counter {
+
+        private int[] counts = new int[AT.values().length];
+        private int numSents = 0;
+
+        private Counter() { }
+
+        /** Adds the counts for a batch of sentences. */
+        public void accumulate(AnnoSentenceCollection predSents) {
+            ProportionAnnotated.this.accumulate(predSents, counts);
+            numSents += predSents.size();
+        }
+
+        /** Logs the proportions over all the batches so far. */
+        public void report() {
+            ProportionAnnotated.this.report(counts, numSents);
+        }
+
+    }
+
+    private void accumulate(AnnoSentenceCollection predSents, int[] counts) {
         for (AnnoSentence sent : predSents) {
             for (AT at : ats) {
                 if (sent.hasAt(at)) {
@@ -35,11 +70,13 @@ public class ProportionAnnotated implements Evaluator {
                 }
             }
         }
+    }
+
+    private void report(int[] counts, int numSents) {
         for (AT at : ats) {
-            log.info(String.format("Proportion %s: %d / %d = %g", at.name(), counts[at.ordinal()], predSents.size(), 
-                    (double) counts[at.ordinal()] / predSents.size()));
+            log.info(String.format("Proportion %s: %d / %d = %g", at.name(), counts[at.ordinal()], numSents, 
+                    (double) counts[at.ordinal()] / numSents));
         }
-        return 0.0;
     }
 
 }
@@ -1,5 +1,6 @@
 package edu.jhu.nlp.fcm;
 
+import java.util.Arrays;
 import java.util.List;
 
 import org.slf4j.Logger;
@@ -25,6 +26,7 @@ import edu.jhu.pacaya.util.collections.QLists;
 import edu.jhu.pacaya.util.semiring.Algebra;
 import edu.jhu.pacaya.util.semiring.RealAlgebra;
 import edu.jhu.prim.util.math.FastMath;
+import edu.jhu.prim.vector.IntDoubleDenseVector;
 import edu.jhu.prim.vector.IntDoubleVector;
 
 /**
@@ -62,6 +64,17 @@ public class FcmModule extends AbstractModule<VarTensor> implements Module<VarTe
     
     private VarTensor toUpdate; // TODO: Remove this hack.
     
+    // The number of doubles in a block of the blocked kernel.
+    private static final int BLOCK_SIZE = 2048;
+    private boolean useBlockedKernel = true;
+    // The sorted indices of the features used by any token.
+    private int[] featIdx;
+    // The positions in featIdx of the features of each token, starting at featPosStarts[i].
+    private int[] featPos;
+    private int[] featPosStarts;
+    // The feature-weighted sums of the embeddings, G_{d,k}, indexed by d * featIdx.length + j.
+    private double[] wsums;
+    
     public FcmModule(Module<MVecFgModel> modIn, Algebra s, List<FeatureVector> feats, FeatureNames featAlphabet, 
             VarSet vars, AnnoSentence sent, Embeddings embeddings, int paramOffset, boolean fineTuning,
             VarTensor toUpdate) {
@@ -101,13 +114,39 @@ public class FcmModule extends AbstractModule<VarTensor> implements Module<VarTe
         assert modIn.getAlgebra().equals(RealAlgebra.getInstance());
 
         IntDoubleVector modelParams = modIn.getOutput().getModel().getParams();
+        scores = new VarTensor(RealAlgebra.getInstance(), vars);
+        assert scores.size() == numLabels;
+        wsums = null;
+        if (useBlockedKernel && isDense(modelParams, tparamOffset + numLabels * embedDim * numFeats)) {
+            forwardBlocked(((IntDoubleDenseVector) modelParams).getInternalElements());
+        } else {
+            forwardSparse(modelParams);
+        }
+        
+        // TODO: This special case code should move to Exp.java -- i.e. support conversion of the Algebra there.
+        //
+        // Convert scores, s_y, to factor values, exp(s_y).
+        // \psi_{FCM}(y) = exp(s_y)
+        VarTensor fac = new VarTensor(s, scores.getVars());
+        for (int y=0; y<scores.size(); y++) {
+            fac.setValue(y, s.fromLogProb(scores.getValue(y)));
+        }
+        
+        if (toUpdate != null) {
+            // HACK: to update the containing FcmFactor for this FcmModule.
+            for (int c=0; c<fac.size(); c++) {
+                toUpdate.setValue(c, scores.getValue(c)); //fac.getAlgebra().toLogProb(fac.getValue(c)));
+            }
+        }
+        return y = fac;
+    }
+
+    /** Computes the scores by looping over the tokens, dimensions, features and labels. */
+    private void forwardSparse(IntDoubleVector modelParams) {
         // The embeddings must always come first because of how we initialize.
         VTensor embed = new VTensor(modIn.getAlgebra(), embedOffset, modelParams, numWordTypes, embedDim); // e_{w_i,d}
         VTensor tparam = new VTensor(modIn.getAlgebra(), tparamOffset, modelParams, numLabels, embedDim, numFeats); // T_{y,k,d}
 
-        scores = new VarTensor(RealAlgebra.getInstance(), vars);
-        assert scores.size() == numLabels;
-        
         // Loop over tokens.
         for (int i=0; i<sent.size(); i++) {
             int w_i = sent.getEmbedId(i);
@@ -138,23 +177,6 @@ public class FcmModule extends AbstractModule<VarTensor> implements Module<VarTe
                 }                   
             }
         }
-        
-        // TODO: This special case code should move to Exp.java -- i.e. support conversion of the Algebra there.
-        //
-        // Convert scores, s_y, to factor values, exp(s_y).
-        // \psi_{FCM}(y) = exp(s_y)
-        VarTensor fac = new VarTensor(s, scores.getVars());
-        for (int y=0; y<scores.size(); y++) {
-            fac.setValue(y, s.fromLogProb(scores.getValue(y)));
-        }
-        
-        if (toUpdate != null) {
-            // HACK: to update the containing FcmFactor for this FcmModule.
-            for (int c=0; c<fac.size(); c++) {
-                toUpdate.setValue(c, scores.getValue(c)); //fac.getAlgebra().toLogProb(fac.getValue(c)));
-            }
-        }
-        return y = fac;
     }
 
     /**
@@ -170,11 +192,7 @@ public class FcmModule extends AbstractModule<VarTensor> implements Module<VarTe
     @Override
     public void backward() {
         IntDoubleVector modelParams = modIn.getOutput().getModel().getParams();
-        VTensor embed = new VTensor(modIn.getAlgebra(), embedOffset, modelParams, numWordTypes, embedDim); // e_{w_i,d}
-        VTensor tparam = new VTensor(modIn.getAlgebra(), tparamOffset, modelParams, numLabels, embedDim, numFeats); // T_{y,k,d}
         IntDoubleVector modelParamsAdj = modIn.getOutputAdj().getModel().getParams();
-        VTensor embedAdj = fineTuning ? new VTensor(modIn.getAlgebra(), embedOffset, modelParamsAdj, numWordTypes, embedDim) : null; // e_{w_i,d}
-        VTensor tparamAdj = new VTensor(modIn.getAlgebra(), tparamOffset, modelParamsAdj, numLabels, embedDim, numFeats); // T_{y,k,d}
         
         // Backprop to scores.
         // dG/s_y = dG/d\psi_{FCM}(y) exp(s_y)
@@ -189,6 +207,19 @@ public class FcmModule extends AbstractModule<VarTensor> implements Module<VarTe
         }
         
         // Backprop to tensor parameters, T, and (optionally) embedding parameters, e.
+        if (useBlockedKernel && isDense(modelParams, tparamOffset + numLabels * embedDim * numFeats)) {
+            backwardBlocked(((IntDoubleDenseVector) modelParams).getInternalElements(), modelParamsAdj, scoresAdj);
+        } else {
+            backwardSparse(modelParams, modelParamsAdj, scoresAdj);
+        }
+    }
+
+    /** Backprops by looping over the tokens, dimensions, features and labels. */
+    private void backwardSparse(IntDoubleVector modelParams, IntDoubleVector modelParamsAdj, VarTensor scoresAdj) {
+        VTensor embed = new VTensor(modIn.getAlgebra(), embedOffset, modelParams, numWordTypes, embedDim); // e_{w_i,d}
+        VTensor tparam = new VTensor(modIn.getAlgebra(), tparamOffset, modelParams, numLabels, embedDim, numFeats); // T_{y,k,d}
+        VTensor embedAdj = fineTuning ? new VTensor(modIn.getAlgebra(), embedOffset, modelParamsAdj, numWordTypes, embedDim) : null; // e_{w_i,d}
+        VTensor tparamAdj = new VTensor(modIn.getAlgebra(), tparamOffset, modelParamsAdj, numLabels, embedDim, numFeats); // T_{y,k,d}
 
         // Loop over tokens.
         for (int i=0; i<sent.size(); i++) {
@@ -230,6 +261,166 @@ public class FcmModule extends AbstractModule<VarTensor> implements Module<VarTe
         }
     }
 
+    /**
+     * Computes the scores from the flat array of model parameters. The parameters T_{y,d,k} are
+     * stored with k varying fastest, then d, then y.
+     * 
+     * The feature-weighted sums of the embeddings, G_{d,k} = \sum_{i=1}^N f_{i,k} e_{w_i,d}, are
+     * computed once for the features used by any token, and then s_y = \sum_{d,k} T_{y,d,k} G_{d,k}.
+     * The dimensions are processed in blocks so that a block of G stays in cache across the labels.
+     */
+    private void forwardBlocked(double[] params) {
+        computeWeightedSums(params);
+        int nf = featIdx.length;
+        int blockDim = getBlockDim(nf);
+        double[] s_y = new double[numLabels];
+        for (int d0=0; d0<embedDim; d0+=blockDim) {
+            int d1 = Math.min(embedDim, d0 + blockDim);
+            for (int y=0; y<numLabels; y++) {
+                double sum = 0;
+                for (int d=d0; d<d1; d++) {
+                    int t = tparamOffset + (y * embedDim + d) * numFeats;
+                    int g = d * nf;
+                    for (int j=0; j<nf; j++) {
+                        sum += params[t + featIdx[j]] * wsums[g + j];
+                    }
+                }
+                s_y[y] += sum;
+            }
+        }
+        for (int y=0; y<numLabels; y++) {
+            scores.setValue(y, s_y[y]);
+        }
+    }
+
+    /**
+     * Backprops from the flat array of model parameters, reusing G_{d,k} from the forward pass:
+     * <pre>
+     * dG/dT_{y,d,k} = dG/ds_y G_{d,k}
+     * dG/de_{w_i,d} = \sum_k f_{i,k} H_{d,k} where H_{d,k} = \sum_y dG/ds_y T_{y,d,k}
+     * </pre>
+     */
+    private void backwardBlocked(double[] params, IntDoubleVector modelParamsAdj, VarTensor scoresAdj) {
+        if (wsums == null) {
+            computeWeightedSums(params);
+        }
+        double[] adj = isDense(modelParamsAdj, tparamOffset + numLabels * embedDim * numFeats) ?
+                ((IntDoubleDenseVector) modelParamsAdj).getInternalElements() : null;
+        int nf = featIdx.length;
+        int blockDim = getBlockDim(nf);
+        double[] hsums = fineTuning ? new double[embedDim * nf] : null;
+        for (int d0=0; d0<embedDim; d0+=blockDim) {
+            int d1 = Math.min(embedDim, d0 + blockDim);
+            for (int y=0; y<numLabels; y++) {
+                double adj_s_y = scoresAdj.getValue(y);
+                if (adj_s_y == 0) { continue; }
+                for (int d=d0; d<d1; d++) {
+                    int t = tparamOffset + (y * embedDim + d) * numFeats;
+                    int g = d * nf;
+                    for (int j=0; j<nf; j++) {
+                        double tadd = adj_s_y * wsums[g + j];
+                        if (adj != null) {
+                            adj[t + featIdx[j]] += tadd;
+                        } else {
+                            modelParamsAdj.add(t + featIdx[j], tadd);
+                        }
+                    }
+                    if (fineTuning) {
+                        for (int j=0; j<nf; j++) {
+                            hsums[g + j] += adj_s_y * params[t + featIdx[j]];
+                        }
+                    }
+                }
+            }
+        }
+        if (fineTuning) {
+            for (int i=0; i<sent.size(); i++) {
+                int w_i = sent.getEmbedId(i);
+                if (w_i == -1) { continue; }
+                FeatureVector f_i = feats.get(i);
+                int used = f_i.getUsed();
+                double[] vals = f_i.getInternalValues();
+                int e = embedOffset + w_i * embedDim;
+                int p = featPosStarts[i];
+                for (int d=0; d<embedDim; d++) {
+                    int g = d * nf;
+                    double eadd = 0;
+                    for (int j=0; j<used; j++) {
+                        eadd += vals[j] * hsums[g + featPos[p + j]];
+                    }
+                    if (adj != null) {
+                        adj[e + d] += eadd;
+                    } else {
+                        modelParamsAdj.add(e + d, eadd);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Computes the sorted indices of the features used by any token, the position of each token's
+     * features among them, and the feature-weighted sums of the embeddings, G_{d,k}.
+     */
+    private void computeWeightedSums(double[] params) {
+        int n = sent.size();
+        featPosStarts = new int[n + 1];
+        for (int i=0; i<n; i++) {
+            featPosStarts[i+1] = featPosStarts[i] + (sent.getEmbedId(i) == -1 ? 0 : feats.get(i).getUsed());
+        }
+        int[] all = new int[featPosStarts[n]];
+        for (int i=0; i<n; i++) {
+            if (sent.getEmbedId(i) == -1) { continue; }
+            System.arraycopy(feats.get(i).getInternalIndices(), 0, all, featPosStarts[i], featPosStarts[i+1] - featPosStarts[i]);
+        }
+        featIdx = Arrays.copyOf(all, all.length);
+        Arrays.sort(featIdx);
+        int nf = 0;
+        for (int j=0; j<featIdx.length; j++) {
+            if (j == 0 || featIdx[j] != featIdx[j-1]) {
+                featIdx[nf++] = featIdx[j];
+            }
+        }
+        featIdx = Arrays.copyOf(featIdx, nf);
+        featPos = new int[all.length];
+        for (int p=0; p<all.length; p++) {
+            assert 0 <= all[p] && all[p] < numFeats;
+            featPos[p] = Arrays.binarySearch(featIdx, all[p]);
+        }
+        wsums = new double[embedDim * nf];
+        for (int i=0; i<n; i++) {
+            int w_i = sent.getEmbedId(i);
+            if (w_i == -1) { continue; }
+            FeatureVector f_i = feats.get(i);
+            int used = f_i.getUsed();
+            double[] vals = f_i.getInternalValues();
+            int e = embedOffset + w_i * embedDim;
+            int p = featPosStarts[i];
+            for (int d=0; d<embedDim; d++) {
+                double e_wi_d = params[e + d];
+                int g = d * nf;
+                for (int j=0; j<used; j++) {
+                    wsums[g + featPos[p + j]] += vals[j] * e_wi_d;
+                }
+            }
+        }
+    }
+
+    /** Gets the number of dimensions in a block, such that a block of G fits in the L1 cache. */
+    private int getBlockDim(int nf) {
+        return Math.max(1, Math.min(embedDim, BLOCK_SIZE / Math.max(1, nf)));
+    }
+
+    /** Whether the vector is dense and already holds the given number of values. */
+    private static boolean isDense(IntDoubleVector v, int size) {
+        return v instanceof IntDoubleDenseVector && ((IntDoubleDenseVector) v).getInternalElements().length >= size;
+    }
+
+    /** Whether to use the blocked kernel when the model parameters are dense (for testing). */
+    void setUseBlockedKernel(boolean useBlockedKernel) {
+        this.useBlockedKernel = useBlockedKernel;
+    }
+
     @Override
     public List<? extends Module<? extends MVec>> getInputs() {
         return QLists.getList(modIn);
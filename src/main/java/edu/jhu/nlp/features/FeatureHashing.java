@@ -0,0 +1,149 @@
+package edu.jhu.nlp.features;
+
+import java.util.Arrays;
+
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.util.hash.MurmurHash;
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.list.LongArrayList;
+
+/**
+ * Hashing of bit-packed features (see {@link BitPacking}) into feature indices.
+ *
+ * Feature extraction is done in two phases: first the raw feature codes are packed into a
+ * {@link LongArrayList}, then the whole buffer is hashed in a single tight loop. The hash is
+ * identical to {@link MurmurHash#hash32(long)} followed by {@link edu.jhu.prim.util.math.FastMath#mod(int, int)},
+ * but specialized to 8-byte keys so that the loop body has no calls or branches.
+ *
+ * @author mgormley
+ */
+public final class FeatureHashing {
+
+    private FeatureHashing() {
+        // private constructor.
+    }
+
+    // Constants for MurmurHash2 as used by MurmurHash.hash32(long).
+    private static final int M = 0x5bd1e995;
+    private static final int SEED = 0x9747b28c;
+
+    private static final ThreadLocal<LongArrayList> codeBuffer = new ThreadLocal<LongArrayList>() {
+        @Override
+        protected LongArrayList initialValue() {
+            return new LongArrayList(512);
+        }
+    };
+
+    /**
+     * Gets an empty buffer of feature codes which is reused by the current thread. The buffer is
+     * cleared by each call, so callers must not nest its use.
+     */
+    public static LongArrayList getCodeBuffer() {
+        LongArrayList codes = codeBuffer.get();
+        codes.clear();
+        return codes;
+    }
+
+    /**
+     * Hashes a single bit-packed feature.
+     * @param mod The number of hash buckets, or a non-positive value for no modulus.
+     */
+    public static int hash(long feat, int mod) {
+        int h = hash32(feat);
+        if (mod > 0) {
+            h %= mod;
+            if (h < 0) { h += mod; }
+        }
+        return h;
+    }
+
+    /**
+     * Hashes each of the feature codes codes[0], ..., codes[n-1] into out[off], ..., out[off+n-1].
+     *
+     * @param mod The number of hash buckets, or a non-positive value for no modulus.
+     */
+    public static void hashAll(long[] codes, int n, int mod, int[] out, int off) {
+        if (mod > 0) {
+            for (int i=0; i<n; i++) {
+                int h = hash32(codes[i]) % mod;
+                out[off + i] = h + ((h >> 31) & mod);
+            }
+        } else {
+            for (int i=0; i<n; i++) {
+                out[off + i] = hash32(codes[i]);
+            }
+        }
+    }
+
+    /**
+     * Hashes each of the feature codes and appends the results to out.
+     *
+     * @param mod The number of hash buckets, or a non-positive value for no modulus.
+     */
+    public static void hashAll(LongArrayList codes, int mod, IntArrayList out) {
+        long[] c = codes.getInternalElements();
+        int n = codes.size();
+        if (mod > 0) {
+            for (int i=0; i<n; i++) {
+                int h = hash32(c[i]) % mod;
+                out.add(h + ((h >> 31) & mod));
+            }
+        } else {
+            for (int i=0; i<n; i++) {
+                out.add(hash32(c[i]));
+            }
+        }
+    }
+
+    /**
+     * Hashes each of the feature codes and adds them to feats with value 1.0.
+     *
+     * @param mod The number of hash buckets, or a non-positive value for no modulus.
+     */
+    public static void hashAll(LongArrayList codes, int mod, FeatureVector feats) {
+        long[] c = codes.getInternalElements();
+        int n = codes.size();
+        for (int i=0; i<n; i++) {
+            feats.add(hash(c[i], mod), 1.0);
+        }
+    }
+
+    /**
+     * Creates a feature vector containing the hash of each feature code with value 1.0. The hashes
+     * are written directly into the exactly sized arrays backing the returned vector.
+     *
+     * @param mod The number of hash buckets, or a non-positive value for no modulus.
+     */
+    public static FeatureVector toFeatureVector(long[] codes, int n, int mod) {
+        int[] idx = new int[n];
+        double[] vals = new double[n];
+        hashAll(codes, n, mod, idx, 0);
+        Arrays.fill(vals, 1.0);
+        return new FeatureVector(idx, vals);
+    }
+
+    /** MurmurHash2 of the 8 bytes of the given long. Equivalent to MurmurHash.hash32(long). */
+    private static int hash32(long code) {
+        int h = SEED ^ 8;
+
+        int k = (int) code;
+        k *= M;
+        k ^= k >>> 24;
+        k *= M;
+        h *= M;
+        h ^= k;
+
+        k = (int) (code >>> 32);
+        k *= M;
+        k ^= k >>> 24;
+        k *= M;
+        h *= M;
+        h ^= k;
+
+        h ^= h >>> 13;
+        h *= M;
+        h ^= h >>> 15;
+        return h;
+    }
+
+}
@@ -8,6 +8,7 @@ import org.slf4j.LoggerFactory;
 import edu.jhu.nlp.CorpusStatistics;
 import edu.jhu.nlp.data.simple.AlphabetStore;
 import edu.jhu.nlp.data.simple.IntAnnoSentence;
+import edu.jhu.nlp.data.simple.TieredIdList;
 import edu.jhu.nlp.features.TemplateLanguage.EdgeProperty;
 import edu.jhu.nlp.features.TemplateLanguage.FeatTemplate;
 import edu.jhu.nlp.features.TemplateLanguage.FeatTemplate0;
@@ -529,6 +530,15 @@ public class IntTemplateFeatureExtractor {
         }
     }
     
+    /**
+     * Converts an ID from a (possibly wide) alphabet to a property value. IDs which fit in a short
+     * keep the sign-extended short value that they have always had, so that feature hashes are
+     * unchanged for non-wide alphabets. Wider IDs are positive and so cannot collide with these.
+     */
+    private static int toTokPropVal(int id) {
+        return (id <= TieredIdList.MAX_SHORT_TIER_IDX) ? (short) id : id;
+    }
+
     /**
      * @return The property or null if the property is not included.
      */
@@ -537,9 +547,9 @@ public class IntTemplateFeatureExtractor {
         if (idx < 0) { return AlphabetStore.TOK_START_INT; }
         if (idx >= isent.size()) { return AlphabetStore.TOK_END_INT; }
         switch (prop) {
-        case WORD: return isent.getWord(idx);
+        case WORD: return toTokPropVal(isent.getWordInt(idx));
         case INDEX: return idx;
-        case LC: return isent.getLcWord(idx);
+        case LC: return toTokPropVal(isent.getLcWordInt(idx));
         case CAPITALIZED: return isent.isCapitalized(idx) ? 1 : 0;
         case WORD_TOP_N:
             short word = isent.getWord(idx);
@@ -559,13 +569,13 @@ public class IntTemplateFeatureExtractor {
         case CHSUF3: return isent.getSuffix(idx, 3);
         case CHSUF4: return isent.getSuffix(idx, 4);
         case CHSUF5: return isent.getSuffix(idx, 5);
-        case LEMMA: return isent.getLemma(idx);
+        case LEMMA: return toTokPropVal(isent.getLemmaInt(idx));
         case POS: return isent.getPosTag(idx);
         case CPOS: return isent.getCposTag(idx);
         case STRICT_POS: return isent.getStrictPosTag(idx);
         case PRED_SENSE: return isent.getSrlPredSense(idx);
         case BC0: return isent.getClusterPrefix(idx, 5);
-        case BC1: return isent.getCluster(idx);
+        case BC1: return toTokPropVal(isent.getClusterInt(idx));
         case DEPREL: return isent.getDeprel(idx);
         case MORPHO: return toFeat(isent.getFeats(idx));
         case MORPHO1: return safeGet(isent.getFeats(idx), 0);
@@ -8,7 +8,12 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.jhu.nlp.AnnoPipeline;
+import edu.jhu.nlp.AnnoPipeline.BatchSink;
+import edu.jhu.nlp.PipelinedAnnoExecutor.PipelinedAnnoExecutorPrm;
+import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.AnnoSentenceWriter;
+import edu.jhu.nlp.data.simple.CloseableIterable;
 import edu.jhu.nlp.data.simple.CorpusHandler;
 import edu.jhu.nlp.eval.ProportionAnnotated;
 import edu.jhu.pacaya.util.Threads;
@@ -37,6 +42,14 @@ public class AnnoPipelineRunner {
     public static int threads = 1;
     @Opt(hasArg = true, description = "Whether to use a log-add table for faster computation.")
     public static boolean useLogAddTable = false;
+    @Opt(hasArg = true, description = "If positive, stream the test data through the pipeline in batches of this many sentences.")
+    public static int streamBatchSize = 0;
+    @Opt(hasArg = true, description = "Whether to run each annotator as a concurrent stage when streaming (requires streamBatchSize > 0).")
+    public static boolean pipelineStages = false;
+    @Opt(hasArg = true, description = "Comma separated number of threads for each pipeline stage (defaults to 1 per stage).")
+    public static String stageThreads = null;
+    @Opt(hasArg = true, description = "Maximum number of batches waiting in front of each pipeline stage.")
+    public static int stageQueueCapacity = 4;
     
     // Options for model IO
     @Opt(hasArg = true, required = true, description = "File from which to read a serialized pipeline.")
@@ -52,7 +65,10 @@ public class AnnoPipelineRunner {
         CorpusHandler corpus = new CorpusHandler();
 
         AnnoPipeline anno = (AnnoPipeline) QFiles.deserialize(pipeIn);
-        if (corpus.hasTest()) {
+        if (corpus.hasTest() && streamBatchSize > 0) {
+            // Decode test data in batches, writing each one out as soon as it is annotated.
+            annotateTestStreaming(corpus, anno);
+        } else if (corpus.hasTest()) {
             // Decode test data.
             AnnoSentenceCollection testInput = corpus.getTestInput();
             anno.annotate(testInput);
@@ -64,6 +80,51 @@ public class AnnoPipelineRunner {
         rep.report("elapsedSec", t.totSec());
     }
 
+    private void annotateTestStreaming(CorpusHandler corpus, AnnoPipeline anno) throws IOException {
+        CloseableIterable<AnnoSentence> testInput = corpus.openTestInput();
+        final AnnoSentenceWriter writer = corpus.openTestPredsWriter();
+        // The batches are handed to the sink on this thread, so the counter needs no locking.
+        final ProportionAnnotated.Counter proportions = new ProportionAnnotated(CorpusHandler.getPredAts()).getCounter();
+        BatchSink sink = new BatchSink() {
+            @Override
+            public void accept(AnnoSentenceCollection batch) throws IOException {
+                proportions.accumulate(batch);
+                if (writer != null) {
+                    writer.writeBatch(batch);
+                }
+            }
+        };
+        try {
+            if (pipelineStages) {
+                PipelinedAnnoExecutorPrm prm = new PipelinedAnnoExecutorPrm();
+                prm.batchSize = streamBatchSize;
+                prm.queueCapacity = stageQueueCapacity;
+                prm.stageThreads = parseStageThreads(stageThreads);
+                anno.annotatePipelined(testInput, prm, sink);
+            } else {
+                anno.annotate(testInput, streamBatchSize, sink);
+            }
+            proportions.report();
+        } finally {
+            testInput.close();
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private static int[] parseStageThreads(String str) {
+        if (str == null) {
+            return null;
+        }
+        String[] splits = str.split(",");
+        int[] threads = new int[splits.length];
+        for (int i=0; i<splits.length; i++) {
+            threads[i] = Integer.parseInt(splits[i].trim());
+        }
+        return threads;
+    }
+
     public static void main(String[] args) throws IOException {
         ArgParser parser = new ArgParser(AnnoPipelineRunner.class);
         parser.registerClass(AnnoPipelineRunner.class);
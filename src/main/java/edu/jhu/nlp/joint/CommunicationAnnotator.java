@@ -5,21 +5,27 @@
 package edu.jhu.nlp.joint;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.List;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import edu.jhu.hlt.concrete.Communication;
 import edu.jhu.nlp.AnnoPipeline;
+import edu.jhu.nlp.data.concrete.ConcreteArchiveWriter;
 import edu.jhu.nlp.data.concrete.ConcreteReader;
 import edu.jhu.nlp.data.concrete.ConcreteReader.ConcreteReaderPrm;
 import edu.jhu.nlp.data.concrete.ConcreteWriter;
 import edu.jhu.nlp.data.concrete.ConcreteWriter.ConcreteWriterPrm;
+import edu.jhu.nlp.data.concrete.ParallelConcreteReader;
+import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
 import edu.jhu.pacaya.util.Prm;
 import edu.jhu.pacaya.util.Threads;
 import edu.jhu.pacaya.util.files.QFiles;
 import edu.jhu.pacaya.util.report.ReporterManager;
+import edu.jhu.prim.tuple.Pair;
 import edu.jhu.prim.util.random.Prng;
 
 /**
@@ -87,6 +93,28 @@ public class CommunicationAnnotator {
         cw.addAnnotations(sents, c);
     }
 
+    /**
+     * Annotates each Communication in a directory, zip file, or tar.gz file and writes it to a zip
+     * or tar.gz archive as soon as it is annotated. The Communications are read in parallel (see
+     * {@link ParallelConcreteReader}) and annotated in place.
+     */
+    public void annotate(File in, File out) throws IOException {
+        ConcreteReader cr = new ConcreteReader(prm.crPrm);
+        prm.cwPrm.addAnnoTypes(anno.getAnnoTypes());
+        ConcreteWriter cw = new ConcreteWriter(prm.cwPrm);
+        try (ParallelConcreteReader pcr = new ParallelConcreteReader(cr, in);
+                ConcreteArchiveWriter aw = new ConcreteArchiveWriter(out)) {
+            while (pcr.hasNext()) {
+                Pair<Communication, List<AnnoSentence>> p = pcr.next();
+                AnnoSentenceCollection sents = new AnnoSentenceCollection(p.get2());
+                anno.annotate(sents);
+                cw.addAnnotations(sents, p.get1());
+                aw.write(p.get1());
+            }
+            log.info("Number of Communications annotated: " + aw.getNumComms());
+        }
+    }
+
     public void close() {
         Threads.shutdownDefaultPool();
         ReporterManager.close();
@@ -22,10 +22,13 @@ import edu.jhu.nlp.AbstractParallelAnnotator;
 import edu.jhu.nlp.CorpusStatistics;
 import edu.jhu.nlp.CorpusStatistics.CorpusStatisticsPrm;
 import edu.jhu.nlp.Evaluator;
+import edu.jhu.nlp.SentScheduler;
+import edu.jhu.nlp.SentScheduler.SentCost;
 import edu.jhu.nlp.Trainable;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
 import edu.jhu.nlp.data.simple.CorpusHandler;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder;
 import edu.jhu.nlp.embed.Embeddings;
 import edu.jhu.nlp.eval.DepParseAccuracy;
 import edu.jhu.nlp.eval.PosTagAccuracy;
@@ -35,6 +38,7 @@ import edu.jhu.nlp.eval.SrlEvaluator.SrlEvaluatorPrm;
 import edu.jhu.nlp.fcm.FcmModule;
 import edu.jhu.nlp.features.TemplateLanguage.AT;
 import edu.jhu.nlp.joint.JointNlpDecoder.JointNlpDecoderPrm;
+import edu.jhu.nlp.joint.JointNlpFactorGraph.JointNlpFactorGraphPrm;
 import edu.jhu.nlp.joint.JointNlpFgExamplesBuilder.JointNlpFgExampleBuilderPrm;
 import edu.jhu.nlp.sprl.ConfusionMatrix;
 import edu.jhu.nlp.sprl.SprlEvaluator;
@@ -273,8 +277,8 @@ public class JointNlpAnnotator implements Trainable {
     }
 
     private void annotate(final AnnoSentenceCollection sents, final FgExampleList data) {
-        // Add the new predictions to the input sentences.
-        Threads.forEach(0, sents.size(), new FnIntToVoid() {
+        // Add the new predictions to the input sentences, starting with the most expensive.
+        SentScheduler.forEach(sents, getSentCost(prm.buPrm.fgPrm), new FnIntToVoid() {
             @Override
             public void call(int i) {
                 try {
@@ -290,6 +294,25 @@ public class JointNlpAnnotator implements Trainable {
         });
     }
 
+    /** Gets a sentence cost function for the given joint model. */
+    static SentCost getSentCost(final JointNlpFactorGraphPrm fgPrm) {
+        return new SentCost() {
+            @Override
+            public double getCost(AnnoSentence sent) {
+                double n = sent.size();
+                double cost = n;
+                if (fgPrm.includeDp) {
+                    cost += DepParseFactorGraphBuilder.getCost(sent, fgPrm.dpPrm);
+                }
+                if (fgPrm.includeSrl) {
+                    // One role variable per predicate-argument pair.
+                    cost += n * n;
+                }
+                return cost;
+            }
+        };
+    }
+
     public JointNlpFgModel getModel() {
         return model;
     }
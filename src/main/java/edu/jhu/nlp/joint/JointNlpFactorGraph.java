@@ -15,6 +15,7 @@ import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.IntAnnoSentence;
 import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder;
 import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.DepParseFactorGraphBuilderPrm;
+import edu.jhu.nlp.depparse.O2AllGraFactorIndex;
 import edu.jhu.nlp.features.LocalObservations;
 import edu.jhu.nlp.features.TemplateFeatureExtractor;
 import edu.jhu.nlp.features.TemplateLanguage.FeatTemplate;
@@ -113,6 +114,10 @@ public class JointNlpFactorGraph extends FactorGraph {
     private RelationsFactorGraphBuilder rel;
     private SprlFactorGraphBuilder sprl;
 
+    // Lookup tables for second-order dependency parsing inference, created on first use. These
+    // are not serialized with the cached factor graphs.
+    private transient O2AllGraFactorIndex o2AllGraFactorIndex;
+
     public JointNlpFactorGraph(JointNlpFactorGraphPrm prm, AnnoSentence sent, CorpusStatistics cs,
             ObsFeatureConjoiner ofc) {
         this.prm = prm;
@@ -125,8 +130,7 @@ public class JointNlpFactorGraph extends FactorGraph {
     public void build(AnnoSentence sent, CorpusStatistics cs, ObsFeatureConjoiner ofc, FactorGraph fg) {
         this.n = sent.size();
 
-        // TODO: This should move up the stack.
-        IntAnnoSentence isent = new IntAnnoSentence(sent, cs.store);
+        IntAnnoSentence isent = sent.getIntAnnoSentence(cs.store);
 
         // SPRL variables and factors that only touch SPRL variables
         if (prm.includeSprl) {
@@ -297,4 +301,16 @@ public class JointNlpFactorGraph extends FactorGraph {
         return rel;
     }
 
+    /**
+     * Gets the factor lookup tables for {@link edu.jhu.nlp.depparse.O2AllGraFgInferencer}. These
+     * are created on the first call and cached for all subsequent runs of inference on this
+     * factor graph.
+     */
+    public O2AllGraFactorIndex getO2AllGraFactorIndex() {
+        if (o2AllGraFactorIndex == null) {
+            o2AllGraFactorIndex = new O2AllGraFactorIndex(this, n);
+        }
+        return o2AllGraFactorIndex;
+    }
+
 }
@@ -36,6 +36,8 @@ public class JointNlpFgExamplesBuilder {
         private static final long serialVersionUID = 1L;
         public FgExamplesBuilderPrm exPrm = new FgExamplesBuilderPrm();
         public JointNlpFactorGraphPrm fgPrm = new JointNlpFactorGraphPrm();
+        /** Whether to featurize labeled examples once and store them off-heap (see {@link OffHeapFgExampleList}). */
+        public boolean offHeapStore = false;
     }
     
     private static final Logger log = LoggerFactory.getLogger(JointNlpFgExamplesBuilder.class);
@@ -69,7 +71,7 @@ public class JointNlpFgExamplesBuilder {
             // TODO: This seems like an odd place to initialize CorpusStatistics. Should this live in JointNlpAnnotator?
             log.info("Initializing corpus statistics.");
             cs.init(goldSents, false);
-            cs.store = new AlphabetStore(inputSents);
+            cs.store = new AlphabetStore(inputSents, cs.prm.wideAlphabets);
         }
         JointNlpEncoder.checkForRequiredAnnotations(jePrm, inputSents);
         
@@ -94,6 +96,11 @@ public class JointNlpFgExamplesBuilder {
             log.info("Initializing the observation function conjoiner.");
             ofc.init(data);
         }
+        if (prm.offHeapStore && labeledExamples) {
+            // The store reads the features in model space, so the conjoiner must be initialized first.
+            log.info("Storing featurized examples off-heap.");
+            data = new OffHeapFgExampleList(data);
+        }
                 
         log.info(String.format("Num examples: %d", data.size()));
         // TODO: log.info(String.format("Num factors in %s: %d", name, data.getNumFactors()));
@@ -196,7 +196,7 @@ public class JointNlpRunner {
     public static File reduceTags = null;
 
     // Options for Embeddings.
-    @Opt(hasArg=true, description="Path to word embeddings text file.")
+    @Opt(hasArg=true, description="Path to word embeddings text file or binary store (see EmbeddingsStore).")
     public static File embeddingsFile = null;
     @Opt(hasArg=true, description="Method for normalization of the embeddings.")
     public static Scaling embNorm = Scaling.L2_NORM;
@@ -244,6 +244,8 @@ public class JointNlpRunner {
     // Options for SRL feature extraction.
     @Opt(hasArg = true, description = "Cutoff for OOV words.")
     public static int cutoff = 3;
+    @Opt(hasArg = true, description = "Whether to keep all word, lemma, and cluster types when they exceed the short alphabet limit, rather than applying a count cutoff.")
+    public static boolean wideAlphabets = false;
     @Opt(hasArg = true, description = "For preprocessing: Minimum feature count for caching.")
     public static int featCountCutoff = 1;
     @Opt(hasArg = true, description = "Whether to include pairs of features.")
@@ -309,6 +311,8 @@ public class JointNlpRunner {
     public static boolean pruneByModel = false;
     @Opt(hasArg = true, description = "Whether to prune edges with a deterministic distance-based pruning approach.")
     public static boolean pruneByDist = false;
+    @Opt(hasArg = true, description = "Whether DP inference should build its hypergraph over only the unpruned edges.")
+    public static boolean dpPrunedHypergraph = true;
 
     // Options for Dependency parser feature extraction.
     @Opt(hasArg = true, description = "1st-order factor feature templates.")
@@ -327,6 +331,8 @@ public class JointNlpRunner {
     public static int maxEntriesInMemory = 100;
     @Opt(hasArg = true, description = "Whether to gzip an object before caching it.")
     public static boolean gzipCache = false;
+    @Opt(hasArg = true, description = "Whether to store featurized training examples off-heap, rebuilding factor graphs from them without feature extraction.")
+    public static boolean offHeapStore = false;
 
     // Options for training.
     @Opt(hasArg=true, description="The type of trainer to use (e.g. conditional log-likelihood, ERMA).")
@@ -610,6 +616,7 @@ public class JointNlpRunner {
         prm.exPrm.cacheType = cacheType;
         prm.exPrm.gzipped = gzipCache;
         prm.exPrm.maxEntriesInMemory = maxEntriesInMemory;
+        prm.offHeapStore = offHeapStore;
 
         return prm;
     }
@@ -733,6 +740,7 @@ public class JointNlpRunner {
     public static CorpusStatisticsPrm getCorpusStatisticsPrm() {
         CorpusStatisticsPrm prm = new CorpusStatisticsPrm();
         prm.cutoff = cutoff;
+        prm.wideAlphabets = wideAlphabets;
         prm.language = CorpusHandler.language;
         prm.useGoldSyntax = CorpusHandler.useGoldSyntax;
         return prm;
@@ -796,7 +804,8 @@ public class JointNlpRunner {
         } else if (inference == Inference.DP) {
             if (CorpusHandler.getPredAts().equals(QSets.getSet(AT.DEP_TREE))
                     && grandparentFactors && !arbitrarySiblingFactors && !headBigramFactors) {
-                return new O2AllGraFgInferencerFactory(algebra.getAlgebra());
+                return new O2AllGraFgInferencerFactory(algebra.getAlgebra(),
+                        dpPrunedHypergraph && (pruneByDist || pruneByModel));
             } else {
                 throw new IllegalStateException("DP inference only supported for dependency parsing with all grandparent factors.");
             }
@@ -0,0 +1,474 @@
+package edu.jhu.nlp.joint;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.nlp.FeTypedFactor;
+import edu.jhu.nlp.ObsFeTypedFactor;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.GraFeTypedFactor;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.HbFeTypedFactor;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.SibFeTypedFactor;
+import edu.jhu.pacaya.gm.data.FgExampleList;
+import edu.jhu.pacaya.gm.data.LFgExample;
+import edu.jhu.pacaya.gm.data.LabeledFgExample;
+import edu.jhu.pacaya.gm.feat.FeatureExtractor;
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.gm.model.ClampFactor;
+import edu.jhu.pacaya.gm.model.ExpFamFactor;
+import edu.jhu.pacaya.gm.model.FeExpFamFactor;
+import edu.jhu.pacaya.gm.model.Factor;
+import edu.jhu.pacaya.gm.model.FactorGraph;
+import edu.jhu.pacaya.gm.model.Var;
+import edu.jhu.pacaya.gm.model.Var.VarType;
+import edu.jhu.pacaya.gm.model.VarConfig;
+import edu.jhu.pacaya.gm.model.VarSet;
+import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
+import edu.jhu.pacaya.gm.model.globalfac.ProjDepTreeFactor;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * A list of labeled examples which are stored in a compact binary form outside of the Java heap.
+ *
+ * Each example is featurized once when the list is constructed. Only its structure is kept: the
+ * variables, the wiring of factors to variables, the gold configuration and the (model-space)
+ * feature vector of each configuration of each exponential family factor. The bytes are held in
+ * direct {@link ByteBuffer}s, so they add no GC pressure, and each call to {@link #get(int)}
+ * rebuilds a new factor graph from them without any feature extraction.
+ *
+ * The rebuilt factor graphs have the same variables and factors, in the same order, as the
+ * originals. However, every exponential family factor is rebuilt as a {@link FeTypedFactor} (or
+ * the matching {@link GraFeTypedFactor}, {@link SibFeTypedFactor} or {@link HbFeTypedFactor})
+ * whose features are read from the store, and the graph is a plain {@link FactorGraph} rather
+ * than a {@link JointNlpFactorGraph}. So the examples are suitable for training but not for
+ * decoding. Only factor graphs consisting of {@link ProjDepTreeFactor}s, {@link ClampFactor}s and
+ * {@link ExpFamFactor}s are supported.
+ *
+ * Since the features are read in model space, the list must be created after the
+ * ObsFeatureConjoiner has been initialized. This class is thread-safe after construction.
+ *
+ * @author mgormley
+ */
+public class OffHeapFgExampleList implements FgExampleList {
+
+    private static final Logger log = LoggerFactory.getLogger(OffHeapFgExampleList.class);
+
+    /** The default size of each direct buffer. */
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024 * 1024;
+
+    // Kinds of variables.
+    private static final byte VAR = 0;
+    private static final byte LINK_VAR = 1;
+    private static final byte TREE_LINK_VAR = 2;
+
+    // Kinds of factors.
+    private static final byte TREE_FAC = 0;
+    private static final byte CLAMP_FAC = 1;
+    private static final byte FE_FAC = 2;
+    private static final byte GRA_FAC = 3;
+    private static final byte SIB_FAC = 4;
+    private static final byte HB_FAC = 5;
+
+    private static final VarType[] VAR_TYPES = VarType.values();
+
+    private final int chunkSize;
+    private final List<ByteBuffer> chunks = new ArrayList<>();
+    /** Indexed by example. The chunk and the position within it of each example. */
+    private final int[] exChunk;
+    private final int[] exPos;
+    /** The distinct lists of state names and factor types, which are shared by many examples. */
+    private final List<List<String>> stateNames = new ArrayList<>();
+    private final List<Enum<?>> types = new ArrayList<>();
+    private long numBytes = 0;
+
+    /** Featurizes and stores all the given examples. */
+    public OffHeapFgExampleList(FgExampleList data) {
+        this(data, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Featurizes and stores all the given examples.
+     *
+     * @param data The examples to store.
+     * @param chunkSize The size in bytes of each direct buffer. Examples larger than this get a
+     *            buffer of their own.
+     */
+    public OffHeapFgExampleList(FgExampleList data, int chunkSize) {
+        this.chunkSize = chunkSize;
+        this.exChunk = new int[data.size()];
+        this.exPos = new int[data.size()];
+        Timer timer = new Timer();
+        timer.start();
+        Map<List<String>,Integer> stateNamesIdx = new IdentityHashMap<>();
+        Map<Enum<?>,Integer> typesIdx = new IdentityHashMap<>();
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        for (int i=0; i<data.size(); i++) {
+            bytes.reset();
+            try {
+                encode(data.get(i), new DataOutputStream(bytes), stateNamesIdx, typesIdx);
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+            store(i, bytes.toByteArray());
+        }
+        timer.stop();
+        log.info(String.format("Stored %d examples off-heap in %d bytes (%.2f sec).", data.size(), numBytes,
+                timer.totSec()));
+    }
+
+    private void store(int i, byte[] b) {
+        ByteBuffer chunk = chunks.isEmpty() ? null : chunks.get(chunks.size() - 1);
+        if (chunk == null || chunk.remaining() < b.length) {
+            chunk = ByteBuffer.allocateDirect(Math.max(chunkSize, b.length));
+            chunks.add(chunk);
+        }
+        exChunk[i] = chunks.size() - 1;
+        exPos[i] = chunk.position();
+        chunk.put(b);
+        numBytes += b.length;
+    }
+
+    /** Rebuilds the i'th example from the store. */
+    @Override
+    public LFgExample get(int i) {
+        ByteBuffer buf = chunks.get(exChunk[i]).duplicate();
+        buf.position(exPos[i]);
+        return decode(buf);
+    }
+
+    @Override
+    public int size() {
+        return exChunk.length;
+    }
+
+    /** Gets the number of bytes used to store all the examples. */
+    public long getNumBytes() {
+        return numBytes;
+    }
+
+    private void encode(LFgExample ex, DataOutputStream out, Map<List<String>,Integer> stateNamesIdx,
+            Map<Enum<?>,Integer> typesIdx) throws IOException {
+        FactorGraph fg = ex.getFactorGraph();
+        VarConfig gold = ex.getGoldConfig();
+
+        // The dependency tree factors, which create their own variables.
+        List<ProjDepTreeFactor> trees = new ArrayList<>();
+        for (Factor f : fg.getFactors()) {
+            if (f instanceof ProjDepTreeFactor) {
+                trees.add((ProjDepTreeFactor) f);
+            }
+        }
+        Map<Var,Integer> treeOfVar = new IdentityHashMap<>();
+        out.writeInt(trees.size());
+        for (int t=0; t<trees.size(); t++) {
+            ProjDepTreeFactor tree = trees.get(t);
+            LinkVar[] rootVars = tree.getRootVars();
+            out.writeInt(rootVars.length);
+            out.writeByte(rootVars[0].getType().ordinal());
+            for (Var v : tree.getVars()) {
+                treeOfVar.put(v, t);
+            }
+        }
+
+        // The variables, in the order of their ids.
+        out.writeInt(fg.getNumVars());
+        for (Var v : fg.getVars()) {
+            Integer t = treeOfVar.get(v);
+            if (t != null) {
+                LinkVar lv = (LinkVar) v;
+                out.writeByte(TREE_LINK_VAR);
+                out.writeInt(t);
+                out.writeInt(lv.getParent());
+                out.writeInt(lv.getChild());
+            } else if (v instanceof LinkVar) {
+                LinkVar lv = (LinkVar) v;
+                out.writeByte(LINK_VAR);
+                out.writeByte(v.getType().ordinal());
+                writeString(out, v.getName());
+                out.writeInt(lv.getParent());
+                out.writeInt(lv.getChild());
+            } else {
+                out.writeByte(VAR);
+                out.writeByte(v.getType().ordinal());
+                writeString(out, v.getName());
+                out.writeInt(v.getNumStates());
+                out.writeInt(getIndex(v.getStateNames(), stateNamesIdx, stateNames));
+            }
+            out.writeInt(gold.getState(v, -1));
+        }
+        out.writeDouble(ex.getWeight());
+
+        // The factors.
+        out.writeInt(fg.getNumFactors());
+        for (Factor f : fg.getFactors()) {
+            if (f instanceof ProjDepTreeFactor) {
+                out.writeByte(TREE_FAC);
+                out.writeInt(trees.indexOf(f));
+            } else if (f instanceof ClampFactor) {
+                out.writeByte(CLAMP_FAC);
+                out.writeInt(f.getVars().get(0).getId());
+                out.writeInt(getClampedState(f));
+            } else if (f instanceof ExpFamFactor) {
+                ExpFamFactor ef = (ExpFamFactor) f;
+                if (f instanceof GraFeTypedFactor) {
+                    GraFeTypedFactor ff = (GraFeTypedFactor) f;
+                    out.writeByte(GRA_FAC);
+                    out.writeInt(ff.p);
+                    out.writeInt(ff.c);
+                    out.writeInt(ff.g);
+                } else if (f instanceof SibFeTypedFactor) {
+                    SibFeTypedFactor ff = (SibFeTypedFactor) f;
+                    out.writeByte(SIB_FAC);
+                    out.writeInt(ff.p);
+                    out.writeInt(ff.c);
+                    out.writeInt(ff.s);
+                } else if (f instanceof HbFeTypedFactor) {
+                    HbFeTypedFactor ff = (HbFeTypedFactor) f;
+                    out.writeByte(HB_FAC);
+                    out.writeInt(ff.p);
+                    out.writeInt(ff.c);
+                    out.writeInt(ff.p_other);
+                } else {
+                    out.writeByte(FE_FAC);
+                }
+                out.writeInt(getIndex(getFactorType(f), typesIdx, types));
+                VarSet vars = f.getVars();
+                out.writeInt(vars.size());
+                for (Var v : vars) {
+                    out.writeInt(v.getId());
+                }
+                int numConfigs = vars.calcNumConfigs();
+                for (int c=0; c<numConfigs; c++) {
+                    writeFeatures(out, ef.getFeatures(c));
+                }
+            } else {
+                throw new IllegalStateException("Unsupported factor type for off-heap storage: " + f.getClass());
+            }
+        }
+    }
+
+    private LFgExample decode(ByteBuffer buf) {
+        ProjDepTreeFactor[] trees = new ProjDepTreeFactor[buf.getInt()];
+        for (int t=0; t<trees.length; t++) {
+            int n = buf.getInt();
+            trees[t] = new ProjDepTreeFactor(n, VAR_TYPES[buf.get()]);
+        }
+
+        FactorGraph fg = new FactorGraph();
+        VarConfig gold = new VarConfig();
+        Var[] vars = new Var[buf.getInt()];
+        for (int i=0; i<vars.length; i++) {
+            byte kind = buf.get();
+            Var v;
+            if (kind == TREE_LINK_VAR) {
+                ProjDepTreeFactor tree = trees[buf.getInt()];
+                int p = buf.getInt();
+                int c = buf.getInt();
+                v = tree.getLinkVar(p, c);
+            } else if (kind == LINK_VAR) {
+                VarType type = VAR_TYPES[buf.get()];
+                String name = readString(buf);
+                int p = buf.getInt();
+                int c = buf.getInt();
+                v = new LinkVar(type, name, p, c);
+            } else {
+                VarType type = VAR_TYPES[buf.get()];
+                String name = readString(buf);
+                int numStates = buf.getInt();
+                int sn = buf.getInt();
+                v = new Var(type, numStates, name, (sn == -1) ? null : stateNames.get(sn));
+            }
+            // Adding the variables first ensures that their ids match the original factor graph.
+            fg.addVar(v);
+            vars[i] = v;
+            int state = buf.getInt();
+            if (state != -1) {
+                gold.put(v, state);
+            }
+        }
+        double weight = buf.getDouble();
+
+        int numFactors = buf.getInt();
+        for (int a=0; a<numFactors; a++) {
+            byte kind = buf.get();
+            if (kind == TREE_FAC) {
+                fg.addFactor(trees[buf.getInt()]);
+            } else if (kind == CLAMP_FAC) {
+                Var v = vars[buf.getInt()];
+                fg.addFactor(new ClampFactor(v, buf.getInt()));
+            } else {
+                int x = 0, y = 0, z = 0;
+                if (kind != FE_FAC) {
+                    x = buf.getInt();
+                    y = buf.getInt();
+                    z = buf.getInt();
+                }
+                int typeIdx = buf.getInt();
+                Enum<?> type = (typeIdx == -1) ? null : types.get(typeIdx);
+                Var[] fvars = new Var[buf.getInt()];
+                for (int k=0; k<fvars.length; k++) {
+                    fvars[k] = vars[buf.getInt()];
+                }
+                VarSet vs = new VarSet(fvars);
+                final FeatureVector[] feats = new FeatureVector[vs.calcNumConfigs()];
+                for (int c=0; c<feats.length; c++) {
+                    feats[c] = readFeatures(buf);
+                }
+                FeatureExtractor fe = new FeatureExtractor() {
+                    @Override
+                    public FeatureVector calcFeatureVector(FeExpFamFactor factor, int configId) {
+                        return feats[configId];
+                    }
+                };
+                switch (kind) {
+                case GRA_FAC: fg.addFactor(new GraFeTypedFactor(vs, type, fe, x, y, z)); break;
+                case SIB_FAC: fg.addFactor(new SibFeTypedFactor(vs, type, fe, x, y, z)); break;
+                case HB_FAC: fg.addFactor(new HbFeTypedFactor(vs, type, fe, x, y, z)); break;
+                default: fg.addFactor(new FeTypedFactor(vs, type, fe)); break;
+                }
+            }
+        }
+
+        LabeledFgExample ex = new LabeledFgExample(fg, gold);
+        ex.setWeight(weight);
+        return ex;
+    }
+
+    /** Gets the only state of the clamped variable with non-zero score. */
+    private static int getClampedState(Factor f) {
+        for (int c=0; c<f.getVars().calcNumConfigs(); c++) {
+            if (f.getLogUnormalizedScore(c) != Double.NEGATIVE_INFINITY) {
+                return c;
+            }
+        }
+        throw new IllegalStateException("Clamp factor has no allowed state: " + f);
+    }
+
+    private static Enum<?> getFactorType(Factor f) {
+        if (f instanceof FeTypedFactor) {
+            return ((FeTypedFactor) f).getFactorType();
+        } else if (f instanceof ObsFeTypedFactor) {
+            return ((ObsFeTypedFactor) f).getFactorType();
+        } else {
+            return null;
+        }
+    }
+
+    /** Gets the index of the given object in the list, adding it if necessary. Returns -1 for null. */
+    private static <T> int getIndex(T obj, Map<T,Integer> idx, List<T> list) {
+        if (obj == null) {
+            return -1;
+        }
+        Integer i = idx.get(obj);
+        if (i == null) {
+            i = list.size();
+            list.add(obj);
+            idx.put(obj, i);
+        }
+        return i;
+    }
+
+    /**
+     * Writes the feature vector as the number of entries, whether all the values are 1.0, the
+     * indices and then the values (only if not all 1.0). The number of entries and the indices are
+     * written as variable length ints.
+     */
+    private static void writeFeatures(DataOutputStream out, FeatureVector fv) throws IOException {
+        int used = (fv == null) ? 0 : fv.getUsed();
+        writeVarInt(out, used);
+        if (used == 0) {
+            return;
+        }
+        int[] idx = fv.getInternalIndices();
+        double[] vals = fv.getInternalValues();
+        boolean allOnes = true;
+        for (int k=0; k<used; k++) {
+            if (vals[k] != 1.0) {
+                allOnes = false;
+                break;
+            }
+        }
+        out.writeBoolean(allOnes);
+        for (int k=0; k<used; k++) {
+            writeVarInt(out, idx[k]);
+        }
+        if (!allOnes) {
+            for (int k=0; k<used; k++) {
+                out.writeDouble(vals[k]);
+            }
+        }
+    }
+
+    private static FeatureVector readFeatures(ByteBuffer buf) {
+        int used = readVarInt(buf);
+        if (used == 0) {
+            return new FeatureVector();
+        }
+        boolean allOnes = (buf.get() != 0);
+        int[] idx = new int[used];
+        double[] vals = new double[used];
+        for (int k=0; k<used; k++) {
+            idx[k] = readVarInt(buf);
+        }
+        if (allOnes) {
+            Arrays.fill(vals, 1.0);
+        } else {
+            buf.asDoubleBuffer().get(vals);
+            buf.position(buf.position() + 8 * used);
+        }
+        return new FeatureVector(idx, vals);
+    }
+
+    /** Writes an int in 1 to 5 bytes, using fewer bytes for values closer to zero. */
+    private static void writeVarInt(DataOutputStream out, int x) throws IOException {
+        // Zig-zag encode so that negative values are also short.
+        int z = (x << 1) ^ (x >> 31);
+        while ((z & ~0x7f) != 0) {
+            out.writeByte((z & 0x7f) | 0x80);
+            z >>>= 7;
+        }
+        out.writeByte(z);
+    }
+
+    private static int readVarInt(ByteBuffer buf) {
+        int z = 0;
+        int shift = 0;
+        byte b;
+        do {
+            b = buf.get();
+            z |= (b & 0x7f) << shift;
+            shift += 7;
+        } while (b < 0);
+        return (z >>> 1) ^ -(z & 1);
+    }
+
+    private static void writeString(DataOutputStream out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        out.writeInt(s.length());
+        out.writeChars(s);
+    }
+
+    private static String readString(ByteBuffer buf) {
+        int len = buf.getInt();
+        if (len == -1) {
+            return null;
+        }
+        char[] cs = new char[len];
+        buf.asCharBuffer().get(cs);
+        buf.position(buf.position() + 2 * len);
+        return new String(cs);
+    }
+
+}
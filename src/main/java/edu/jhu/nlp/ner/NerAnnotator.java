@@ -12,6 +12,7 @@ import edu.jhu.hlt.optimize.function.Function;
 import edu.jhu.nlp.AbstractParallelAnnotator;
 import edu.jhu.nlp.Annotator;
 import edu.jhu.nlp.Evaluator;
+import edu.jhu.nlp.SentScheduler;
 import edu.jhu.nlp.Trainable;
 import edu.jhu.nlp.data.simple.AlphabetStore;
 import edu.jhu.nlp.data.simple.AnnoSentence;
@@ -100,8 +101,9 @@ public class NerAnnotator implements Trainable {
         timer.start();
         
         final FgExampleList data = getData(sents, null);  
-        // Add the new predictions to the input sentences.
-        Threads.forEach(0, sents.size(), new FnIntToVoid() {            
+        // Add the new predictions to the input sentences. Inference in the linear-chain model is 
+        // linear in the sentence length.
+        SentScheduler.forEach(sents, SentScheduler.LINEAR, new FnIntToVoid() {            
             @Override
             public void call(int i) {
                 try {
@@ -137,7 +139,7 @@ public class NerAnnotator implements Trainable {
                 NerFactorGraphBuilder builder = new NerFactorGraphBuilder(prm.nerPrm);
                 // Construct a factor graph which carries the builder.
                 NerFactorGraph fg = new NerFactorGraph(builder);
-                IntAnnoSentence isent = new IntAnnoSentence(inputSents.get(i), store);
+                IntAnnoSentence isent = inputSents.get(i).getIntAnnoSentence(store);
                 builder.build(isent, fg, tagLabelSet);
                 VarConfig goldConfig = null;
                 if (goldSents != null) {
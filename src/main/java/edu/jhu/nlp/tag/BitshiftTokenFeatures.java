@@ -13,10 +13,10 @@ import static edu.jhu.nlp.features.BitPacking.encodeFeatureS___;
 
 import edu.jhu.nlp.data.simple.IntAnnoSentence;
 import edu.jhu.nlp.depparse.BitshiftDepParseFeatures;
+import edu.jhu.nlp.features.FeatureHashing;
 import edu.jhu.pacaya.gm.feat.FeatureVector;
-import edu.jhu.pacaya.util.hash.MurmurHash;
+import edu.jhu.prim.list.LongArrayList;
 import edu.jhu.prim.util.SafeCast;
-import edu.jhu.prim.util.math.FastMath;
 
 public class BitshiftTokenFeatures {
 
@@ -128,11 +128,15 @@ public class BitshiftTokenFeatures {
     }
     
     public static void addBigramFeatures(IntAnnoSentence sent, int head, FeatureVector feats, int mod, short tagConfig) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         byte flags = FeatureCollection.BIGRAM; // 4 bits.
-        addFeat(feats, mod, encodeFeatureS___(TokTs.BIAS, flags, tagConfig));
+        codes.add(encodeFeatureS___(TokTs.BIAS, flags, tagConfig));
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
     
     public static void addWordFeatures(IntAnnoSentence sent, int head, FeatureVector feats, int mod, byte featCol, short tagConfig) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         int sentLen = sent.size();
 
         // Flags for the type of feature.
@@ -172,40 +176,42 @@ public class BitshiftTokenFeatures {
         // --------------------------------------------------------------------
         // Bias Feature.
         // --------------------------------------------------------------------        
-        addFeat(feats, mod, encodeFeatureB___(TokTs.BIAS, flags, (byte)0));
+        codes.add(encodeFeatureB___(TokTs.BIAS, flags, (byte)0));
 
         // --------------------------------------------------------------------
         // Unigram Features of the word and context words.
         // --------------------------------------------------------------------
 
         // Position.
-        addFeat(feats, mod, encodeFeatureSB__(TokTs.hFirst, flags, tagConfig, hFirst));
+        codes.add(encodeFeatureSB__(TokTs.hFirst, flags, tagConfig, hFirst));
 
         // Word.
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.hW, flags, tagConfig, hWord));
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.lhW, flags, tagConfig, lhWord)); 
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.rhW, flags, tagConfig, rhWord));
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.llhW, flags, tagConfig, llhWord));
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.rrhW, flags, tagConfig, rrhWord));
+        codes.add(encodeFeatureSS__(TokTs.hW, flags, tagConfig, hWord));
+        codes.add(encodeFeatureSS__(TokTs.lhW, flags, tagConfig, lhWord)); 
+        codes.add(encodeFeatureSS__(TokTs.rhW, flags, tagConfig, rhWord));
+        codes.add(encodeFeatureSS__(TokTs.llhW, flags, tagConfig, llhWord));
+        codes.add(encodeFeatureSS__(TokTs.rrhW, flags, tagConfig, rrhWord));
         
         // Word properties.
-        addFeat(feats, mod, encodeFeatureSB__(TokTs.hCap, flags, tagConfig, hCap));
+        codes.add(encodeFeatureSB__(TokTs.hCap, flags, tagConfig, hCap));
         
         // Prefix.
         len = 1;
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.hPr, flags, tagConfig, hPre1, len));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.lhPr, flags, tagConfig, lhPre1, len)); 
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.rhPr, flags, tagConfig, rhPre1, len));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.llhPr, flags, tagConfig, llhPre1, len));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.rrhPr, flags, tagConfig, rrhPre1, len));
+        codes.add(encodeFeatureSSB_(TokTs.hPr, flags, tagConfig, hPre1, len));
+        codes.add(encodeFeatureSSB_(TokTs.lhPr, flags, tagConfig, lhPre1, len)); 
+        codes.add(encodeFeatureSSB_(TokTs.rhPr, flags, tagConfig, rhPre1, len));
+        codes.add(encodeFeatureSSB_(TokTs.llhPr, flags, tagConfig, llhPre1, len));
+        codes.add(encodeFeatureSSB_(TokTs.rrhPr, flags, tagConfig, rrhPre1, len));
 
         // Suffix.
         len = 3;
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.hSu, flags, tagConfig, hSuf3, len));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.lhSu, flags, tagConfig, lhSuf3, len)); 
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.rhSu, flags, tagConfig, rhSuf3, len));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.llhSu, flags, tagConfig, llhSuf3, len));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.rrhSu, flags, tagConfig, rrhSuf3, len));
+        codes.add(encodeFeatureSSB_(TokTs.hSu, flags, tagConfig, hSuf3, len));
+        codes.add(encodeFeatureSSB_(TokTs.lhSu, flags, tagConfig, lhSuf3, len)); 
+        codes.add(encodeFeatureSSB_(TokTs.rhSu, flags, tagConfig, rhSuf3, len));
+        codes.add(encodeFeatureSSB_(TokTs.llhSu, flags, tagConfig, llhSuf3, len));
+        codes.add(encodeFeatureSSB_(TokTs.rrhSu, flags, tagConfig, rrhSuf3, len));
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
     
 
@@ -218,6 +224,7 @@ public class BitshiftTokenFeatures {
             final int maxTokenContext,
             final boolean useLemmaFeats,
             final boolean useCoarseTags) {
+        final LongArrayList codes = FeatureHashing.getCodeBuffer();
         
         int sentLen = sent.size();
 
@@ -256,20 +263,20 @@ public class BitshiftTokenFeatures {
         // --------------------------------------------------------------------
         // Bias Feature.
         // --------------------------------------------------------------------        
-        addFeat(feats, mod, encodeFeatureB___(TokTs.BIAS, flags, (byte)0));
+        codes.add(encodeFeatureB___(TokTs.BIAS, flags, (byte)0));
 
         // --------------------------------------------------------------------
         // Unigram Features.
         // --------------------------------------------------------------------
         
-        addSimpleTokenFeatures(sent, head, (byte)0, feats, mod, useLemmaFeats, useCoarseTags, tagConfig);
+        addSimpleTokenFeatures(sent, head, (byte)0, codes, useLemmaFeats, useCoarseTags, tagConfig);
         if (maxTokenContext >= 1) {
-            addSimpleTokenFeatures(sent, head, (byte)1, feats, mod, useLemmaFeats, useCoarseTags, tagConfig);
-            addSimpleTokenFeatures(sent, head, (byte)-1, feats, mod, useLemmaFeats, useCoarseTags, tagConfig);
+            addSimpleTokenFeatures(sent, head, (byte)1, codes, useLemmaFeats, useCoarseTags, tagConfig);
+            addSimpleTokenFeatures(sent, head, (byte)-1, codes, useLemmaFeats, useCoarseTags, tagConfig);
         }
         if (maxTokenContext >= 2) {
-            addSimpleTokenFeatures(sent, head, (byte)2, feats, mod, useLemmaFeats, useCoarseTags, tagConfig);
-            addSimpleTokenFeatures(sent, head, (byte)-2, feats, mod, useLemmaFeats, useCoarseTags, tagConfig);
+            addSimpleTokenFeatures(sent, head, (byte)2, codes, useLemmaFeats, useCoarseTags, tagConfig);
+            addSimpleTokenFeatures(sent, head, (byte)-2, codes, useLemmaFeats, useCoarseTags, tagConfig);
         }
         
         // --------------------------------------------------------------------
@@ -277,28 +284,30 @@ public class BitshiftTokenFeatures {
         // --------------------------------------------------------------------
 
         if (maxTokenContext >= 1) {
-            addFeat(feats, mod, encodeFeatureSBB_(TokTs.hP_lhP, flags, tagConfig, hPos, lhPos));
-            addFeat(feats, mod, encodeFeatureSBB_(TokTs.hP_rhP, flags, tagConfig, hPos, rhPos));
+            codes.add(encodeFeatureSBB_(TokTs.hP_lhP, flags, tagConfig, hPos, lhPos));
+            codes.add(encodeFeatureSBB_(TokTs.hP_rhP, flags, tagConfig, hPos, rhPos));
             if (useCoarseTags) {         
-                addFeat(feats, mod, encodeFeatureSBB_(TokTs.hC_lhC, flags, tagConfig, hCpos, lhCpos));
-                addFeat(feats, mod, encodeFeatureSBB_(TokTs.hC_rhC, flags, tagConfig, hCpos, rhCpos));
+                codes.add(encodeFeatureSBB_(TokTs.hC_lhC, flags, tagConfig, hCpos, lhCpos));
+                codes.add(encodeFeatureSBB_(TokTs.hC_rhC, flags, tagConfig, hCpos, rhCpos));
             }
         }
         if (maxTokenContext >= 2) {
-            addFeat(feats, mod, encodeFeatureSBBB(TokTs.hP_lhP_llhP, flags, tagConfig, hPos, lhPos, llhPos));
-            addFeat(feats, mod, encodeFeatureSBBB(TokTs.hP_rhP_rrhP, flags, tagConfig, hPos, rhPos, rrhPos));   
+            codes.add(encodeFeatureSBBB(TokTs.hP_lhP_llhP, flags, tagConfig, hPos, lhPos, llhPos));
+            codes.add(encodeFeatureSBBB(TokTs.hP_rhP_rrhP, flags, tagConfig, hPos, rhPos, rrhPos));   
             if (useCoarseTags) {         
-                addFeat(feats, mod, encodeFeatureSBBB(TokTs.hC_lhC_llhC, flags, tagConfig, hCpos, lhCpos, llhCpos));
-                addFeat(feats, mod, encodeFeatureSBBB(TokTs.hC_rhC_rrhC, flags, tagConfig, hCpos, rhCpos, rrhCpos));
+                codes.add(encodeFeatureSBBB(TokTs.hC_lhC_llhC, flags, tagConfig, hCpos, lhCpos, llhCpos));
+                codes.add(encodeFeatureSBBB(TokTs.hC_rhC_rrhC, flags, tagConfig, hCpos, rhCpos, rrhCpos));
             }
         }
+
+        FeatureHashing.hashAll(codes, mod, feats);
     }
 
     /**
      * Features of a single token positioned at center+offset. The offset is included in the flags.
      */
     private static void addSimpleTokenFeatures(final IntAnnoSentence sent, final int center, final byte offset, 
-            final FeatureVector feats, final int mod,
+            final LongArrayList codes,
             final boolean useLemmaFeats,
             final boolean useCoarseTags,
             final short tagConfig) {
@@ -337,55 +346,47 @@ public class BitshiftTokenFeatures {
         // --------------------------------------------------------------------        
         
         // Head Only.
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.hW, flags, tagConfig, hWord));
+        codes.add(encodeFeatureSS__(TokTs.hW, flags, tagConfig, hWord));
         
         // Position.
-        addFeat(feats, mod, encodeFeatureSB__(TokTs.hFirst, flags, tagConfig, hFirst));
+        codes.add(encodeFeatureSB__(TokTs.hFirst, flags, tagConfig, hFirst));
 
         // Word properties.
-        addFeat(feats, mod, encodeFeatureSB__(TokTs.hCap, flags, tagConfig, hCap));
+        codes.add(encodeFeatureSB__(TokTs.hCap, flags, tagConfig, hCap));
         
         // Word.
-        addFeat(feats, mod, encodeFeatureSS__(TokTs.hW, flags, tagConfig, hWord));
+        codes.add(encodeFeatureSS__(TokTs.hW, flags, tagConfig, hWord));
         
         // Prefix.
         len = 1;
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.hPr, flags, tagConfig, hPre1, len));
+        codes.add(encodeFeatureSSB_(TokTs.hPr, flags, tagConfig, hPre1, len));
 
         // Suffix.
         len = 3;
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.hSu, flags, tagConfig, hSuf3, len));
+        codes.add(encodeFeatureSSB_(TokTs.hSu, flags, tagConfig, hSuf3, len));
 
         // POS Tag
-        addFeat(feats, mod, encodeFeatureSB__(TokTs.hP, flags, tagConfig, hPos));
-        addFeat(feats, mod, encodeFeatureSSB_(TokTs.hW_hP, flags, tagConfig, hWord, hPos));
+        codes.add(encodeFeatureSB__(TokTs.hP, flags, tagConfig, hPos));
+        codes.add(encodeFeatureSSB_(TokTs.hW_hP, flags, tagConfig, hWord, hPos));
         
         // Coarse POS Tag
         if (useCoarseTags) {
-            addFeat(feats, mod, encodeFeatureSB__(TokTs.hC, flags, tagConfig, hCpos));
-            addFeat(feats, mod, encodeFeatureSSB_(TokTs.hW_hC, flags, tagConfig, hWord, hCpos));            
+            codes.add(encodeFeatureSB__(TokTs.hC, flags, tagConfig, hCpos));
+            codes.add(encodeFeatureSSB_(TokTs.hW_hC, flags, tagConfig, hWord, hCpos));            
         }
         
         // Lemma
         if (useLemmaFeats) {
-            addFeat(feats, mod, encodeFeatureSS__(TokTs.hL, flags, tagConfig, hLemma));
+            codes.add(encodeFeatureSS__(TokTs.hL, flags, tagConfig, hLemma));
         }
     }
     
     public static void addFeat(FeatureVector feats, int mod, long feat, double value) {
-        int hash = MurmurHash.hash32(feat);
-        if (mod > 0) {
-            hash = FastMath.mod(hash, mod);
-        }
-        feats.add(hash, value);
+        feats.add(FeatureHashing.hash(feat, mod), value);
     }
     
     public static void addFeat(FeatureVector feats, int mod, long feat) {
-        int hash = MurmurHash.hash32(feat);
-        if (mod > 0) {
-            hash = FastMath.mod(hash, mod);
-        }
-        feats.add(hash, 1.0);
+        feats.add(FeatureHashing.hash(feat, mod), 1.0);
         // Enable this for debugging of feature creation.
         //        if (feats instanceof LongFeatureVector) {
         //            ((LongFeatureVector)feats).addLong(feat, 1.0);
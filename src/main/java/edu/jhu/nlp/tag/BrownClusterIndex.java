@@ -0,0 +1,153 @@
+package edu.jhu.nlp.tag;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+
+import edu.jhu.prim.map.LongIntHashMap;
+
+/**
+ * A compact, read-only map from words to Brown clusters, for use by many threads at once.
+ *
+ * Each distinct cluster string is stored once and numbered. The words are stored in an open
+ * addressing hash table with their hash codes and cluster ids, and may also be looked up by a
+ * region of a string (e.g. for subwords).
+ *
+ * @author mgormley
+ */
+public class BrownClusterIndex implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+    /** The maximum length of a cluster bit string. */
+    public static final int MAX_LENGTH = 62;
+
+    // The open addressing hash table from words to cluster ids. Each entry packs the hash code of
+    // the word in the high bits and the cluster id in the low bits, so a probe reads one array.
+    private final String[] keys;
+    private final long[] entries;
+    private final int mask;
+    private final int numWords;
+    // The clusters, by id.
+    private final String[] clusters;
+
+    /**
+     * @param wordToCluster Map from words to clusters, where each cluster is a string of 0s and
+     *            1s of length at most {@link #MAX_LENGTH}.
+     */
+    public BrownClusterIndex(Map<String, String> wordToCluster) {
+        // Number the clusters.
+        LongIntHashMap clusterCodeToId = new LongIntHashMap();
+        List<String> clusterList = new ArrayList<>();
+        int numSlots = Integer.highestOneBit(Math.max(1, 2 * wordToCluster.size() - 1)) << 1;
+        keys = new String[numSlots];
+        entries = new long[numSlots];
+        mask = numSlots - 1;
+        numWords = wordToCluster.size();
+        for (Entry<String, String> e : wordToCluster.entrySet()) {
+            String cluster = e.getValue();
+            long code = encode(cluster);
+            int c = clusterCodeToId.getWithDefault(code, -1);
+            if (c == -1) {
+                c = clusterList.size();
+                clusterCodeToId.put(code, c);
+                clusterList.add(cluster.intern());
+            }
+            String word = e.getKey();
+            int h = word.hashCode();
+            int slot = mix(h) & mask;
+            while (keys[slot] != null) {
+                slot = (slot + 1) & mask;
+            }
+            keys[slot] = word;
+            entries[slot] = ((long) h << 32) | c;
+        }
+        clusters = clusterList.toArray(new String[clusterList.size()]);
+    }
+
+    /**
+     * Encodes a cluster bit string as (1 << length) | bits, which distinguishes clusters of
+     * different lengths.
+     */
+    public static long encode(String cluster) {
+        if (cluster.length() > MAX_LENGTH) {
+            throw new IllegalArgumentException("Cluster is longer than " + MAX_LENGTH + " bits: " + cluster);
+        }
+        long code = 1;
+        for (int i = 0; i < cluster.length(); i++) {
+            char ch = cluster.charAt(i);
+            if (ch != '0' && ch != '1') {
+                throw new IllegalArgumentException("Cluster is not a bit string: " + cluster);
+            }
+            code = (code << 1) | (ch - '0');
+        }
+        return code;
+    }
+
+    /** Gets the number of words. */
+    public int getNumWords() {
+        return numWords;
+    }
+
+    /** Gets the number of distinct clusters. */
+    public int getNumClusters() {
+        return clusters.length;
+    }
+
+    /** Gets the id of the word's cluster, or -1 if the word is not in the index. */
+    public int getClusterId(String word) {
+        // The hash code of a String is cached, and the words are usually interned.
+        int h = word.hashCode();
+        int slot = mix(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if (key == word || ((int) (entries[slot] >>> 32) == h && key.equals(word))) {
+                return (int) entries[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Gets the id of the cluster of the word given by word[off, off+len), or -1 if it is not in the index. */
+    public int getClusterId(String word, int off, int len) {
+        if (off == 0 && len == word.length()) {
+            return getClusterId(word);
+        }
+        int h = 0;
+        for (int i = off; i < off + len; i++) {
+            h = 31 * h + word.charAt(i);
+        }
+        int slot = mix(h) & mask;
+        String key;
+        while ((key = keys[slot]) != null) {
+            if ((int) (entries[slot] >>> 32) == h && key.length() == len && key.regionMatches(0, word, off, len)) {
+                return (int) entries[slot];
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /** Adds every word in the index and its cluster to the given map. */
+    public void putAll(Map<String, String> wordToCluster) {
+        for (int slot = 0; slot < keys.length; slot++) {
+            if (keys[slot] != null) {
+                wordToCluster.put(keys[slot], clusters[(int) entries[slot]]);
+            }
+        }
+    }
+
+    /** Gets the cluster with the given id. */
+    public String getCluster(int clusterId) {
+        return clusters[clusterId];
+    }
+
+    /** Spreads the bits of a String hash code, which are poorly distributed in the low bits. */
+    private static int mix(int h) {
+        h *= 0x9e3779b9;
+        return h ^ (h >>> 16);
+    }
+
+}
@@ -9,7 +9,6 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Set;
-import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 
 import org.slf4j.Logger;
@@ -17,6 +16,7 @@ import org.slf4j.LoggerFactory;
 
 import edu.jhu.nlp.AbstractParallelAnnotator;
 import edu.jhu.nlp.Annotator;
+import edu.jhu.nlp.HitCounter;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
 import edu.jhu.nlp.features.TemplateLanguage.AT;
@@ -40,6 +40,11 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
          * language specific logic for UNKs.
          */
         public String language;
+        /**
+         * Whether to store the clusters in a compact {@link BrownClusterIndex}. This is only
+         * possible if every cluster is a bit string, otherwise a map is used.
+         */
+        public boolean compact = true;
     }
     
     private static final long serialVersionUID = 1L;
@@ -47,12 +52,16 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
     private static final String OOV_CLUSTER = "UNK";
     private static final Pattern tab = Pattern.compile("\t");
     
-    /** Map from words to tags. */
+    /** Map from words to tags, or null if they are stored in the compact index instead. */
     private HashMap<String,String> map;
+    /** Compact index of the map, or null if not in compact mode. */
+    private BrownClusterIndex index;
+    /** The subword clusters of each cluster in the index. */
+    private String[] subwordClusters;
     private BrownClusterTaggerPrm prm;
-    // Internal counting for miss rate.
-    private AtomicInteger numLookups = new AtomicInteger(0);
-    private AtomicInteger numMisses = new AtomicInteger(0);
+    // Internal counting for miss rate, created on first use. It is not serialized, so models saved
+    // before it was added still load.
+    private transient volatile HitCounter hits;
     
     public BrownClusterTagger(BrownClusterTaggerPrm prm) {
         this.prm = prm;
@@ -79,6 +88,11 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
     
     /** Read the Brown clusters from an input stream. */
     public void read(InputStream input) throws IOException {
+        if (map == null) {
+            // Add to the clusters already in the compact index.
+            map = new HashMap<String,String>();
+            index.putAll(map);
+        }
         BufferedReader reader = new BufferedReader(new InputStreamReader(input, "UTF-8"));
         String line;
         while ((line = reader.readLine()) != null) {
@@ -89,6 +103,29 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
             String cutCluster = cutCluster(cluster, prm.maxTagLength);
             map.put(word.intern(), cutCluster.intern());
         }
+        if (prm.compact) {
+            buildIndex();
+        }
+    }
+
+    private void buildIndex() {
+        try {
+            index = new BrownClusterIndex(map);
+        } catch (IllegalArgumentException e) {
+            log.warn("Not using a compact index for the Brown clusters: " + e.getMessage());
+            index = null;
+            subwordClusters = null;
+            return;
+        }
+        // The index replaces the map.
+        map = null;
+        subwordClusters = new String[index.getNumClusters()];
+        for (int c=0; c<subwordClusters.length; c++) {
+            // Note: by adding "SW" as a prefix, we coarsen the cutoff
+            // version of these clusters.
+            subwordClusters[c] = ("SW" + index.getCluster(c)).intern();
+        }
+        log.debug("Number of Brown cluster words: {} clusters: {}", index.getNumWords(), index.getNumClusters());
     }
 
     /** Cuts tags longer than the max length down to size. */
@@ -98,18 +135,62 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
 
     /** Looks up the Brown cluster for this word. */
     public String getCluster(String word) {
+        String cluster = lookup(word);
+        getHits().add(1, cluster == null ? 1 : 0);
+        return cluster == null ? OOV_CLUSTER : cluster;
+    }
+
+    /** Looks up the Brown cluster for this word, or returns null if there is none. */
+    private String lookup(String word) {
+        if (index != null) {
+            int c = index.getClusterId(word);
+            if (c == -1 && prm.language != null) {
+                return tryGetSubwordClusterFromIndex(word);
+            }
+            return c == -1 ? null : index.getCluster(c);
+        }
         String cluster = map.get(word);
         if (cluster == null && prm.language != null) {
             cluster = tryGetSubwordCluster(word);
         }
-        if (cluster == null) {
-            cluster = OOV_CLUSTER;
-            numMisses.incrementAndGet();
-        }
-        numLookups.incrementAndGet();
         return cluster;
     }
 
+    /** Same as {@link #tryGetSubwordCluster(String)}, but looks up the subwords without creating them. */
+    private String tryGetSubwordClusterFromIndex(String word) {
+        if ("es".equals(prm.language) || "ca".equals(prm.language)) {
+            if (word.indexOf('_') != -1) {
+                // Trailing empty subwords are dropped, as by String.split().
+                int end = word.length();
+                while (end > 0 && word.charAt(end-1) == '_') {
+                    end--;
+                }
+                int start = 0;
+                while (start < end) {
+                    int next = word.indexOf('_', start);
+                    if (next == -1 || next > end) {
+                        next = end;
+                    }
+                    int c = index.getClusterId(word, start, next - start);
+                    if (c != -1) {
+                        return subwordClusters[c];
+                    }
+                    start = next + 1;
+                }
+            }
+        } else if ("zh".equals(prm.language)) {
+            if (word.length() > 1) {
+                for (int i=0; i<word.length(); i++) {
+                    int c = index.getClusterId(word, i, 1);
+                    if (c != -1) {
+                        return subwordClusters[c];
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
     private String tryGetSubwordCluster(String word) {
         String[] subwords = null;
         if ("es".equals(prm.language) || "ca".equals(prm.language)) {
@@ -139,7 +220,26 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
     }
     
     public double getHitRate() {
-        return (double) (numLookups.get() - numMisses.get()) / numLookups.get();
+        return getHits().getHitRate();
+    }
+
+    private HitCounter getHits() {
+        HitCounter hits = this.hits;
+        if (hits == null) {
+            synchronized (this) {
+                hits = this.hits;
+                if (hits == null) {
+                    hits = new HitCounter();
+                    this.hits = hits;
+                }
+            }
+        }
+        return hits;
+    }
+
+    /** Gets the compact index of the clusters, or null if not in compact mode. */
+    public BrownClusterIndex getIndex() {
+        return index;
     }
     
     @Override
@@ -149,10 +249,17 @@ public class BrownClusterTagger extends AbstractParallelAnnotator implements Ann
     }
     
     public void annotate(AnnoSentence sent) {
-        ArrayList<String> clusters = new ArrayList<String>();
+        ArrayList<String> clusters = new ArrayList<String>(sent.size());
+        int numMisses = 0;
         for (String word : sent.getWords()) {
-            clusters.add(getCluster(word));
+            String cluster = lookup(word);
+            if (cluster == null) {
+                cluster = OOV_CLUSTER;
+                numMisses++;
+            }
+            clusters.add(cluster);
         }
+        getHits().add(clusters.size(), numMisses);
         sent.setClusters(clusters);
     }
     
@@ -1,9 +1,11 @@
 package edu.jhu.nlp.tag;
 
 import edu.jhu.nlp.features.BitPacking;
+import edu.jhu.nlp.features.FeatureHashing;
 import edu.jhu.pacaya.gm.feat.FeatureVector;
 import edu.jhu.pacaya.gm.model.ExpFamFactor;
 import edu.jhu.pacaya.gm.model.VarSet;
+import edu.jhu.prim.list.LongArrayList;
 import edu.jhu.prim.util.SafeCast;
 
 /**
@@ -44,12 +46,11 @@ public class HashObsFeatsFactor extends ExpFamFactor {
         short shortConfig = SafeCast.safeIntToShort(config);
         int[] idxs = obsFeats.getInternalIndices();
         int used = obsFeats.getUsed();
-        FeatureVector feats = new FeatureVector(obsFeats.getUsed());
+        LongArrayList codes = FeatureHashing.getCodeBuffer();
         for (int k=0; k<used; k++) {
-            long feat = BitPacking.encodeFeatureISS_(idxs[k], shortConfig, factorType);
-            BitshiftTokenFeatures.addFeat(feats, featureHashMod, feat);
+            codes.add(BitPacking.encodeFeatureISS_(idxs[k], shortConfig, factorType));
         }
-        return feats;
+        return FeatureHashing.toFeatureVector(codes.getInternalElements(), codes.size(), featureHashMod);
     }
     
 }
\ No newline at end of file
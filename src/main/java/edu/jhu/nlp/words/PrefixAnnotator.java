@@ -1,7 +1,9 @@
 package edu.jhu.nlp.words;
 
 import java.util.ArrayList;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import edu.jhu.nlp.AbstractParallelAnnotator;
 import edu.jhu.nlp.Annotator;
@@ -15,14 +17,36 @@ import edu.jhu.pacaya.util.collections.QSets;
  * Adds the 5-character prefix of each word to the sentence. These prefixes are used as features in
  * McDonald et al. (2006) for dependency parsing.
  * 
+ * The prefix of each word type is computed once and kept in a table shared by all threads, so
+ * that annotating a token is a single lookup that creates no strings. The prefixes in the table
+ * are canonical: equal prefixes are the same object, as they would be if interned.
+ * 
  * @author mgormley
  */
 public class PrefixAnnotator extends AbstractParallelAnnotator implements Annotator {
 
     private static final long serialVersionUID = 1L;
+    /** The length of the prefixes. */
+    public static final int PREFIX_LEN = 5;
+    /** The maximum number of entries in the table, after which prefixes are interned instead. */
+    private static final int MAX_TABLE_SIZE = 1 << 21;
+    
     private boolean annoTrainGold;
+    private final boolean useTable;
+    // Map from each word type to its canonical prefix. Each prefix is also a key which maps to
+    // itself. This is created lazily, and not serialized.
+    private transient volatile ConcurrentHashMap<String,String> wordToPrefix;
     
     public PrefixAnnotator() {
+        this(true);
+    }
+    
+    /**
+     * @param useTable Whether to compute the prefix of each word type once, in a shared table,
+     *            instead of creating and interning the prefix of every token.
+     */
+    public PrefixAnnotator(boolean useTable) {
+        this.useTable = useTable;
     }
     
     public static void addPrefixes(AnnoSentenceCollection sents) {
@@ -30,14 +54,24 @@ public class PrefixAnnotator extends AbstractParallelAnnotator implements Annota
     }
 
     public void annotate(AnnoSentence sent) {
-        addPrefixes(sent);
+        if (!useTable) {
+            addPrefixes(sent);
+            return;
+        }
+        ConcurrentHashMap<String,String> wordToPrefix = getWordToPrefix();
+        List<String> words = sent.getWords();
+        ArrayList<String> prefixes = new ArrayList<>(words.size());
+        for (int i=0; i<words.size(); i++) {
+            prefixes.add(getPrefix(wordToPrefix, words.get(i)));
+        }
+        sent.setPrefixes(prefixes);
     }
     
     public static void addPrefixes(AnnoSentence sent) {
         ArrayList<String> prefixes = new ArrayList<>();
         for (String word : sent.getWords()) {
-            if (word.length() > 5) {
-                prefixes.add(word.substring(0, Math.min(word.length(), 5)));
+            if (word.length() > PREFIX_LEN) {
+                prefixes.add(word.substring(0, Math.min(word.length(), PREFIX_LEN)));
             } else {
                 prefixes.add(word);
             }
@@ -46,6 +80,50 @@ public class PrefixAnnotator extends AbstractParallelAnnotator implements Annota
         sent.setPrefixes(prefixes);
     }
 
+    /** Gets the canonical prefix of a word, adding the word type to the table if it is new. */
+    private static String getPrefix(ConcurrentHashMap<String,String> wordToPrefix, String word) {
+        String prefix = wordToPrefix.get(word);
+        if (prefix != null) {
+            return prefix;
+        }
+        if (wordToPrefix.size() >= MAX_TABLE_SIZE) {
+            return (word.length() > PREFIX_LEN) ? word.substring(0, PREFIX_LEN).intern() : word.intern();
+        }
+        if (word.length() > PREFIX_LEN) {
+            prefix = getCanonical(wordToPrefix, word.substring(0, PREFIX_LEN));
+            String prev = wordToPrefix.putIfAbsent(word, prefix);
+            return (prev != null) ? prev : prefix;
+        } else {
+            return getCanonical(wordToPrefix, word);
+        }
+    }
+
+    /** Gets the canonical copy of a string of at most {@link #PREFIX_LEN} characters. */
+    private static String getCanonical(ConcurrentHashMap<String,String> wordToPrefix, String s) {
+        String prev = wordToPrefix.putIfAbsent(s, s);
+        return (prev != null) ? prev : s;
+    }
+
+    private ConcurrentHashMap<String,String> getWordToPrefix() {
+        ConcurrentHashMap<String,String> wordToPrefix = this.wordToPrefix;
+        if (wordToPrefix == null) {
+            synchronized (this) {
+                wordToPrefix = this.wordToPrefix;
+                if (wordToPrefix == null) {
+                    wordToPrefix = new ConcurrentHashMap<>();
+                    this.wordToPrefix = wordToPrefix;
+                }
+            }
+        }
+        return wordToPrefix;
+    }
+
+    /** Gets the number of word types and prefixes in the table. */
+    public int getNumTypes() {
+        ConcurrentHashMap<String,String> wordToPrefix = this.wordToPrefix;
+        return (wordToPrefix == null) ? 0 : wordToPrefix.size();
+    }
+
     @Override
     public Set<AT> getAnnoTypes() {
         return QSets.getSet(AT.PREFIX);
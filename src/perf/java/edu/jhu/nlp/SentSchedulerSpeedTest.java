@@ -0,0 +1,103 @@
+package edu.jhu.nlp;
+
+import java.util.concurrent.atomic.LongAdder;
+
+import edu.jhu.nlp.CorpusStatistics.CorpusStatisticsPrm;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.AnnoSentenceReaderSpeedTest;
+import edu.jhu.nlp.depparse.DepParseDecoder;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.DepParseFactorGraphBuilderPrm;
+import edu.jhu.nlp.depparse.DepParseInferenceSpeedTest;
+import edu.jhu.nlp.depparse.O2AllGraDepParseSpeedTest;
+import edu.jhu.nlp.tag.StrictPosTagAnnotator;
+import edu.jhu.nlp.words.PrefixAnnotator;
+import edu.jhu.pacaya.gm.data.UFgExample;
+import edu.jhu.pacaya.gm.feat.FactorTemplateList;
+import edu.jhu.pacaya.gm.feat.ObsFeatureConjoiner;
+import edu.jhu.pacaya.gm.feat.ObsFeatureConjoiner.ObsFeatureConjoinerPrm;
+import edu.jhu.pacaya.gm.inf.FgInferencer;
+import edu.jhu.pacaya.gm.model.FactorGraph;
+import edu.jhu.pacaya.gm.model.FgModel;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.prim.util.Lambda.FnIntToVoid;
+import edu.jhu.prim.util.Timer;
+import edu.jhu.prim.util.math.FastMath;
+
+/**
+ * Compares index-order scheduling (Threads.forEach) with length-aware scheduling
+ * (SentScheduler.forEach) on 2nd-order dependency parsing: for each sentence we build the
+ * grandparent factor graph, extract features, run BP and decode, as in
+ * {@link O2AllGraDepParseSpeedTest}.
+ */
+public class SentSchedulerSpeedTest {
+
+    private static final int NUM_THREADS = 8;
+    private static final int NUM_PARAMS = 100000;
+
+    //@Test
+    public void testSpeed() {
+        FastMath.useLogAddTable = true;
+        final AnnoSentenceCollection sents = AnnoSentenceReaderSpeedTest.readPtbYmConllx();
+        PrefixAnnotator.addPrefixes(sents);
+        StrictPosTagAnnotator.addStrictPosTags(sents);
+        final FgModel model = new FgModel(NUM_PARAMS);
+        final CorpusStatistics cs = new CorpusStatistics(new CorpusStatisticsPrm());
+        cs.init(sents);
+        final ObsFeatureConjoiner ofc = new ObsFeatureConjoiner(new ObsFeatureConjoinerPrm(), new FactorTemplateList());
+        // The same model as O2AllGraDepParseSpeedTest.get2ndOrderFg(), for the cost estimates.
+        DepParseFactorGraphBuilderPrm prm = new DepParseFactorGraphBuilderPrm();
+        prm.grandparentFactors = true;
+        prm.arbitrarySiblingFactors = false;
+        // Each task adds its own result, so the sum must be the same under both schedules.
+        final LongAdder sumOfHeads = new LongAdder();
+        final FnIntToVoid fn = new FnIntToVoid() {
+            @Override
+            public void call(int i) {
+                AnnoSentence sent = sents.get(i);
+                UFgExample ex = O2AllGraDepParseSpeedTest.get2ndOrderFg(sent, cs, ofc, NUM_PARAMS, true);
+                FactorGraph fg = ex.getFactorGraph();
+                fg.updateFromModel(model);
+                FgInferencer bp = DepParseInferenceSpeedTest.runBp(fg, 5);
+                int[] parents = new DepParseDecoder().decode(bp, ex, sent);
+                for (int p : parents) {
+                    sumOfHeads.add(p);
+                }
+            }
+        };
+
+        Threads.initDefaultPool(NUM_THREADS);
+        try {
+            for (int trial = 0; trial < 3; trial++) {
+                sumOfHeads.reset();
+                Timer t1 = new Timer();
+                t1.start();
+                Threads.forEach(0, sents.size(), fn);
+                t1.stop();
+                long sum1 = sumOfHeads.sumThenReset();
+
+                Timer t2 = new Timer();
+                t2.start();
+                SentScheduler.forEach(sents, DepParseFactorGraphBuilder.getSentCost(prm), fn);
+                t2.stop();
+                long sum2 = sumOfHeads.sumThenReset();
+                if (sum1 != sum2) {
+                    throw new IllegalStateException("Schedules gave different parses: " + sum1 + " " + sum2);
+                }
+
+                double tokPerSec1 = sents.getNumTokens() / t1.totSec();
+                double tokPerSec2 = sents.getNumTokens() / t2.totSec();
+                System.out.println(String.format("threads=%d index-order tok/sec=%.2f length-aware tok/sec=%.2f gain=%.2fx",
+                        NUM_THREADS, tokPerSec1, tokPerSec2, tokPerSec2 / tokPerSec1));
+            }
+        } finally {
+            Threads.shutdownDefaultPool();
+        }
+    }
+
+    public static void main(String[] args) {
+        (new SentSchedulerSpeedTest()).testSpeed();
+    }
+
+}
@@ -1,10 +1,19 @@
 package edu.jhu.nlp.data.simple;
 
+import java.io.BufferedReader;
 import java.io.File;
 import java.io.IOException;
+import java.io.StringReader;
 
+import edu.jhu.nlp.data.conll.CoNLL02Reader;
+import edu.jhu.nlp.data.conll.CoNLL03Reader;
+import edu.jhu.nlp.data.conll.CoNLL08Reader;
+import edu.jhu.nlp.data.conll.CoNLL09Reader;
+import edu.jhu.nlp.data.conll.CoNLLXReader;
+import edu.jhu.nlp.data.conll.ConllLineScanner;
 import edu.jhu.nlp.data.simple.AnnoSentenceReader.AnnoSentenceReaderPrm;
 import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
+import edu.jhu.pacaya.util.files.QFiles;
 import edu.jhu.prim.util.Timer;
 
 /**
@@ -58,8 +67,132 @@ public class AnnoSentenceReaderSpeedTest {
         System.out.println("Total time (sec): " + (t.totSec()));
     }
     
-    public static void main(String[] args) {
+    /**
+     * Measures the throughput of writing and then reading back a corpus in the concatenated JSON
+     * format.
+     */
+    //@Test
+    public void testJsonReadWriteSpeed() throws IOException {
+        AnnoSentenceCollection sents = read(ptbYmTrain, DatasetType.CONLL_X);
+        File json = File.createTempFile("sents", ".json");
+        json.deleteOnExit();
+        int numTrials = 3;
+        Timer wt = new Timer();
+        Timer rt = new Timer();
+        for (int trial=0; trial<numTrials; trial++) {
+            wt.start();
+            try (JsonConcatWriter w = new JsonConcatWriter(json)) {
+                w.write(sents);
+            }
+            wt.stop();
+            rt.start();
+            int numRead = 0;
+            try (JsonConcatReader r = new JsonConcatReader(json)) {
+                for (AnnoSentence sent : r) {
+                    numRead += sent.size();
+                }
+            }
+            rt.stop();
+            assert numRead == sents.getNumTokens();
+        }
+        System.out.println("# sents: "+ sents.size());
+        System.out.println("File size (MB): " + (json.length() / 1024.0 / 1024.0));
+        System.out.println("Write tokens / sec: " + (numTrials * sents.getNumTokens() / wt.totSec()));
+        System.out.println("Read tokens / sec: " + (numTrials * sents.getNumTokens() / rt.totSec()));
+    }
+    
+    /**
+     * Measures the throughput (MB/s) of parsing each CoNLL format, both with the original
+     * line-splitting parser and with the {@link ConllLineScanner}. Each example file is repeated
+     * in memory so that disk access is not measured.
+     *
+     * Speed test results (MB / sec, line parser vs. scanner):
+     * CONLL_2009: 64 vs. 142
+     * CONLL_2008: 93 vs. 158
+     * CONLL_X: 75 vs. 206
+     * CONLL_2002: 88 vs. 216
+     * CONLL_2003: 97 vs. 245
+     */
+    //@Test
+    public void testConllParseSpeed() throws IOException {
+        String dir = "/edu/jhu/nlp/data/conll/";
+        testConllParseSpeed(dir + "CoNLL2009-ST-Catalan-trial.txt", DatasetType.CONLL_2009, "UTF-8");
+        testConllParseSpeed(dir + "conll-08-example.conll", DatasetType.CONLL_2008, "UTF-8");
+        testConllParseSpeed(dir + "bulgarian_bultreebank_train.conll", DatasetType.CONLL_X, "UTF-8");
+        testConllParseSpeed(dir + "conll-02-example.conll", DatasetType.CONLL_2002, "iso-8859-1");
+        testConllParseSpeed(dir + "conll-03-example.conll", DatasetType.CONLL_2003, "iso-8859-1");
+    }
+
+    private void testConllParseSpeed(String resource, DatasetType type, String charset) throws IOException {
+        String example = QFiles.getResourceAsString(resource, charset);
+        if (!example.endsWith("\n\n")) {
+            example += "\n";
+        }
+        StringBuilder sb = new StringBuilder();
+        while (sb.length() < 20 * 1024 * 1024) {
+            sb.append(example);
+        }
+        String data = sb.toString();
+        double mb = data.getBytes(charset).length / 1024.0 / 1024.0;
+        int numTrials = 5;
+        Timer lt = new Timer();
+        Timer st = new Timer();
+        int numLine = 0;
+        int numScan = 0;
+        for (int trial=0; trial<numTrials; trial++) {
+            lt.start();
+            numLine = readConll(new BufferedReader(new StringReader(data)), type);
+            lt.stop();
+            st.start();
+            numScan = readConll(new ConllLineScanner(new StringReader(data)), type);
+            st.stop();
+        }
+        assert numLine == numScan;
+        System.out.println(type + " # sents: " + numScan);
+        System.out.println(type + " line parser MB / sec: " + (numTrials * mb / lt.totSec()));
+        System.out.println(type + " scanner MB / sec: " + (numTrials * mb / st.totSec()));
+    }
+
+    private static int readConll(BufferedReader reader, DatasetType type) throws IOException {
+        int n = 0;
+        if (type == DatasetType.CONLL_2009) {
+            while (CoNLL09Reader.readCoNLL09Sentence(reader) != null) { n++; }
+        } else if (type == DatasetType.CONLL_2008) {
+            while (CoNLL08Reader.readCoNLL08Sentence(reader) != null) { n++; }
+        } else if (type == DatasetType.CONLL_X) {
+            while (CoNLLXReader.readCoNLLXSentence(reader) != null) { n++; }
+        } else if (type == DatasetType.CONLL_2002) {
+            while (CoNLL02Reader.readCoNLL02Sentence(reader) != null) { n++; }
+        } else if (type == DatasetType.CONLL_2003) {
+            while (CoNLL03Reader.readCoNLL03Sentence(reader) != null) { n++; }
+        } else {
+            throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+        return n;
+    }
+
+    private static int readConll(ConllLineScanner scanner, DatasetType type) throws IOException {
+        int n = 0;
+        if (type == DatasetType.CONLL_2009) {
+            while (CoNLL09Reader.readCoNLL09Sentence(scanner) != null) { n++; }
+        } else if (type == DatasetType.CONLL_2008) {
+            while (CoNLL08Reader.readCoNLL08Sentence(scanner) != null) { n++; }
+        } else if (type == DatasetType.CONLL_X) {
+            while (CoNLLXReader.readCoNLLXSentence(scanner) != null) { n++; }
+        } else if (type == DatasetType.CONLL_2002) {
+            while (CoNLL02Reader.readCoNLL02Sentence(scanner) != null) { n++; }
+        } else if (type == DatasetType.CONLL_2003) {
+            while (CoNLL03Reader.readCoNLL03Sentence(scanner) != null) { n++; }
+        } else {
+            throw new IllegalArgumentException("Unsupported type: " + type);
+        }
+        return n;
+    }
+
+    public static void main(String[] args) throws IOException {
         (new AnnoSentenceReaderSpeedTest()).testReaderSpeed();
+        (new AnnoSentenceReaderSpeedTest()).testJsonReadWriteSpeed();
+        (new AnnoSentenceReaderSpeedTest()).testConllParseSpeed();
     }
     
 }
@@ -0,0 +1,76 @@
+package edu.jhu.nlp.data.simple;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.files.QFiles;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for reading and writing compressed files with {@link CompressedFiles}.
+ *
+ * @author mgormley
+ */
+public class CompressedFilesSpeedTest {
+
+    private static final String conllxExample = "/edu/jhu/nlp/data/conll/bulgarian_bultreebank_train.conll";
+
+    /**
+     * Measures the throughput (uncompressed MB/s) of writing and then reading a CoNLL-X corpus,
+     * plain and compressed, with one and with four threads.
+     *
+     * Speed test results on a single core (50 MB from the page cache, write / read with 1 thread /
+     * read with 4 threads). The parallel gzip reader only helps with more than one core.
+     * plain: 357 / 4543 / 5552 MB/s
+     * gz: 53 / 526 / 354 MB/s, 6.8x smaller
+     * bz2: 5 / 15 / 17 MB/s (the repeated example compresses 79x)
+     */
+    //@Test
+    public void testReadWriteSpeed() throws IOException {
+        byte[] example = QFiles.getResourceAsString(conllxExample, "UTF-8").getBytes("UTF-8");
+        int numCopies = 50 * 1024 * 1024 / example.length;
+        double mb = (double) numCopies * example.length / 1024 / 1024;
+        for (String ext : new String[]{ ".conll", ".conll.gz", ".conll.bz2" }) {
+            File f = File.createTempFile("sents", ext);
+            f.deleteOnExit();
+            Timer wt = new Timer();
+            wt.start();
+            try (OutputStream os = CompressedFiles.newOutputStream(f)) {
+                for (int i=0; i<numCopies; i++) {
+                    os.write(example);
+                }
+            }
+            wt.stop();
+            System.out.println(ext + " write MB / sec: " + (mb / wt.totSec()));
+            System.out.println(ext + " compression ratio: " + (mb * 1024 * 1024 / f.length()));
+            for (int numThreads : new int[]{ 1, 4 }) {
+                Threads.initDefaultPool(numThreads);
+                try {
+                    Timer rt = new Timer();
+                    rt.start();
+                    long numBytes = 0;
+                    byte[] buf = new byte[1 << 16];
+                    try (InputStream is = CompressedFiles.newInputStream(f)) {
+                        int n;
+                        while ((n = is.read(buf)) != -1) {
+                            numBytes += n;
+                        }
+                    }
+                    rt.stop();
+                    assert numBytes == (long) numCopies * example.length;
+                    System.out.println(ext + " read MB / sec with " + numThreads + " threads: " + (mb / rt.totSec()));
+                } finally {
+                    Threads.shutdownDefaultPool();
+                }
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        (new CompressedFilesSpeedTest()).testReadWriteSpeed();
+    }
+
+}
@@ -0,0 +1,63 @@
+package edu.jhu.nlp.data.simple;
+
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
+import edu.jhu.nlp.tag.StrictPosTagAnnotator;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for the construction of IntAnnoSentences.
+ *
+ * @author mgormley
+ */
+public class IntAnnoSentenceSpeedTest {
+
+    private static final int NUM_ROUNDS = 10;
+
+    /**
+     * Compares the cost per token of constructing a new IntAnnoSentence for every sentence,
+     * resetting a single scratch IntAnnoSentence, and fetching the one cached on the sentence.
+     */
+    //@Test
+    public void testConstructionSpeed() {
+        AnnoSentenceCollection sents = AnnoSentenceReaderSpeedTest.read(AnnoSentenceReaderSpeedTest.ptbYmTrain, DatasetType.CONLL_X);
+        new StrictPosTagAnnotator().annotate(sents);
+        AlphabetStore store = new AlphabetStore(sents);
+        int numToks = sents.getNumTokens();
+        System.out.println("# sents: " + sents.size());
+        System.out.println("# tokens: " + numToks);
+
+        Timer tNew = new Timer();
+        Timer tReset = new Timer();
+        Timer tCached = new Timer();
+        IntAnnoSentence scratch = new IntAnnoSentence(sents.get(0), store);
+        long sum = 0;
+        for (int round=0; round<NUM_ROUNDS; round++) {
+            tNew.start();
+            for (AnnoSentence sent : sents) {
+                sum += new IntAnnoSentence(sent, store).size();
+            }
+            tNew.stop();
+            tReset.start();
+            for (AnnoSentence sent : sents) {
+                scratch.reset(sent, store);
+                sum += scratch.size();
+            }
+            tReset.stop();
+            tCached.start();
+            for (AnnoSentence sent : sents) {
+                sum += sent.getIntAnnoSentence(store).size();
+            }
+            tCached.stop();
+        }
+        System.out.println("Checksum: " + sum);
+        double totToks = (double) numToks * NUM_ROUNDS;
+        System.out.println("New (ns / token): " + tNew.totMs() * 1e6 / totToks);
+        System.out.println("Reset (ns / token): " + tReset.totMs() * 1e6 / totToks);
+        System.out.println("Cached (ns / token): " + tCached.totMs() * 1e6 / totToks);
+    }
+
+    public static void main(String[] args) {
+        (new IntAnnoSentenceSpeedTest()).testConstructionSpeed();
+    }
+
+}
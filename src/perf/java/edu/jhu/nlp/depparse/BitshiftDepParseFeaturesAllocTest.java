@@ -0,0 +1,110 @@
+package edu.jhu.nlp.depparse;
+
+import java.lang.management.ManagementFactory;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.nlp.data.simple.AlphabetStore;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.AnnoSentenceReaderSpeedTest;
+import edu.jhu.nlp.data.simple.IntAnnoSentence;
+import edu.jhu.nlp.depparse.BitshiftDepParseFeatureExtractor.BitshiftDepParseFeatureExtractorPrm;
+import edu.jhu.nlp.tag.StrictPosTagAnnotator;
+import edu.jhu.nlp.words.PrefixAnnotator;
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Measures the bytes allocated per token when extracting the features for every arc, grandparent
+ * and arbitrary sibling factor of a 2nd-order parser.
+ *
+ * The "growing" mode reproduces the previous behavior of BitshiftDepParseFeatureExtractor: a new
+ * FeatureVector is created for each factor and grown one feature at a time. The "scratch" mode is
+ * the current behavior: the features are hashed into a reused IntArrayList and copied into an
+ * exactly sized FeatureVector.
+ */
+public class BitshiftDepParseFeaturesAllocTest {
+
+    private static final Logger log = LoggerFactory.getLogger(BitshiftDepParseFeaturesAllocTest.class);
+    private static final int MAX_SENTS = 200;
+
+    //@Test
+    public void testAllocations() {
+        AnnoSentenceCollection sents = AnnoSentenceReaderSpeedTest.readPtbYmConllx();
+        sents = new AnnoSentenceCollection(sents.subList(0, Math.min(MAX_SENTS, sents.size())));
+        PrefixAnnotator.addPrefixes(sents);
+        StrictPosTagAnnotator.addStrictPosTags(sents);
+        AlphabetStore store = new AlphabetStore(sents);
+
+        BitshiftDepParseFeatureExtractorPrm prm = new BitshiftDepParseFeatureExtractorPrm();
+        prm.useMstFeats = false;
+        prm.useCarerrasFeats = false;
+        prm.useMorphologicalFeats = false;
+
+        for (int trial = 0; trial < 3; trial++) {
+            for (boolean growing : new boolean[]{ true, false }) {
+                Timer timer = new Timer();
+                timer.start();
+                long before = getAllocatedBytes();
+                long numFeats = run(sents, store, prm, growing);
+                long bytes = getAllocatedBytes() - before;
+                timer.stop();
+                log.info(String.format("%-8s bytes/token=%.1f bytes/feature=%.2f toks/sec=%.2f",
+                        growing ? "growing" : "scratch", (double) bytes / sents.getNumTokens(),
+                        (double) bytes / numFeats, sents.getNumTokens() / timer.totSec()));
+            }
+        }
+    }
+
+    private static long run(AnnoSentenceCollection sents, AlphabetStore store, BitshiftDepParseFeatureExtractorPrm prm, boolean growing) {
+        IntArrayList buf = new IntArrayList();
+        long numFeats = 0;
+        for (AnnoSentence sent : sents) {
+            IntAnnoSentence isent = new IntAnnoSentence(sent, store);
+            int n = sent.size();
+            for (int i = -1; i < n; i++) {
+                for (int j = 0; j < n; j++) {
+                    if (i == j) { continue; }
+                    buf.clear();
+                    BitshiftDepParseFeatures.addArcFeats(isent, i, j, prm, buf);
+                    numFeats += toFv(buf, growing).getUsed();
+                    for (int k = 0; k < n; k++) {
+                        if (k == i || k == j) { continue; }
+                        buf.clear();
+                        BitshiftDepParseFeatures.addGrandparentFeats(isent, k, i, j, buf, prm);
+                        numFeats += toFv(buf, growing).getUsed();
+                        if (j < k) {
+                            buf.clear();
+                            BitshiftDepParseFeatures.addArbitrarySiblingFeats(isent, i, j, k, buf, prm);
+                            numFeats += toFv(buf, growing).getUsed();
+                        }
+                    }
+                }
+            }
+        }
+        return numFeats;
+    }
+
+    private static FeatureVector toFv(IntArrayList buf, boolean growing) {
+        if (growing) {
+            FeatureVector fv = new FeatureVector();
+            BitshiftDepParseFeatures.addAll(fv, buf);
+            return fv;
+        } else {
+            return BitshiftDepParseFeatures.toFeatureVector(buf);
+        }
+    }
+
+    private static long getAllocatedBytes() {
+        com.sun.management.ThreadMXBean bean = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        return bean.getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) {
+        (new BitshiftDepParseFeaturesAllocTest()).testAllocations();
+    }
+
+}
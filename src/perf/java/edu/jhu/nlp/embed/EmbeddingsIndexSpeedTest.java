@@ -0,0 +1,78 @@
+package edu.jhu.nlp.embed;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import edu.jhu.pacaya.autodiff.Tensor;
+import edu.jhu.pacaya.util.files.QFiles;
+import edu.jhu.pacaya.util.semiring.RealAlgebra;
+import edu.jhu.prim.bimap.IntObjectBimap;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for finding embeddings with {@link Embeddings#findEmbedding(String)} and with
+ * {@link EmbeddingsIndex}.
+ *
+ * @author mgormley
+ */
+public class EmbeddingsIndexSpeedTest {
+
+    private static final String conllxExample = "/edu/jhu/nlp/data/conll/bulgarian_bultreebank_train.conll";
+
+    /**
+     * Speed test results (tokens of the Bulgarian CoNLL-X example, with the normalized forms of
+     * every other word type as the vocabulary, after warm up):
+     * Embeddings.findEmbedding: 4.6 M tokens / sec
+     * EmbeddingsIndex.findEmbedding: 18.7 M tokens / sec
+     */
+    //@Test
+    public void testFindEmbeddingSpeed() throws IOException {
+        List<String> tokens = new ArrayList<>();
+        IntObjectBimap<String> alphabet = new IntObjectBimap<>();
+        Set<String> types = new HashSet<>();
+        for (String line : QFiles.getResourceAsString(conllxExample, "UTF-8").split("\n")) {
+            String[] cols = line.split("\t");
+            if (cols.length > 1) {
+                String w = cols[1].intern();
+                tokens.add(w);
+                if (types.add(w) && types.size() % 2 == 0) {
+                    alphabet.lookupIndex(w.replaceAll("[0-9]", "#").toLowerCase());
+                }
+            }
+        }
+        alphabet.stopGrowth();
+        Embeddings embeds = new Embeddings(new Tensor(RealAlgebra.getInstance(), alphabet.size(), 1), alphabet);
+        EmbeddingsIndex index = new EmbeddingsIndex(embeds);
+        int numRounds = 200;
+        for (int trial = 0; trial < 3; trial++) {
+            Timer t = new Timer();
+            t.start();
+            long sum = 0;
+            for (int r = 0; r < numRounds; r++) {
+                for (String w : tokens) {
+                    sum += embeds.findEmbedding(w);
+                }
+            }
+            t.stop();
+            System.out.println("Embeddings.findEmbedding M tokens / sec: " + (numRounds * tokens.size() / t.totSec() / 1e6) + " " + sum);
+            t = new Timer();
+            t.start();
+            sum = 0;
+            for (int r = 0; r < numRounds; r++) {
+                for (String w : tokens) {
+                    sum += index.findEmbedding(w);
+                }
+            }
+            t.stop();
+            System.out.println("EmbeddingsIndex.findEmbedding M tokens / sec: " + (numRounds * tokens.size() / t.totSec() / 1e6) + " " + sum);
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        (new EmbeddingsIndexSpeedTest()).testFindEmbeddingSpeed();
+    }
+
+}
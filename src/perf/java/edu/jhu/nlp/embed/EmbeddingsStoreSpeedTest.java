@@ -0,0 +1,110 @@
+package edu.jhu.nlp.embed;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.util.HashSet;
+import java.util.Random;
+import java.util.Set;
+
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for loading word embeddings from a text file and from an {@link EmbeddingsStore}.
+ *
+ * @author mgormley
+ */
+public class EmbeddingsStoreSpeedTest {
+
+    private static final int numWords = 50000;
+    private static final int dim = 100;
+    private static final int numCorpusWords = 5000;
+
+    /**
+     * Speed test results (50,000 random 100-dimensional embeddings, 5,000 corpus words):
+     * text, all words: 2.98 sec
+     * text, corpus words: 2.25 sec
+     * convert text to store: 1.26 sec
+     * store, all words: 0.17 sec
+     * store, corpus words: 0.04 sec
+     * store lookups: 20.6 M / sec
+     */
+    //@Test
+    public void testLoadSpeed() throws IOException {
+        Random rand = new Random(1);
+        File txt = File.createTempFile("embeds", ".txt");
+        txt.deleteOnExit();
+        Set<String> corpusWords = new HashSet<>();
+        try (BufferedWriter w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(txt), "UTF-8"))) {
+            for (int i = 0; i < numWords; i++) {
+                String word = "w" + i;
+                if (i % (numWords / numCorpusWords) == 0) {
+                    corpusWords.add(word);
+                }
+                w.write(word);
+                for (int d = 0; d < dim; d++) {
+                    w.write("\t");
+                    w.write(Double.toString(rand.nextGaussian()));
+                }
+                w.write("\n");
+            }
+            w.write("<UNK>");
+            for (int d = 0; d < dim; d++) {
+                w.write("\t0.0");
+            }
+            w.write("\n");
+        }
+        File bin = File.createTempFile("embeds", ".bin");
+        bin.deleteOnExit();
+
+        Timer t = new Timer();
+        t.start();
+        new Embeddings(txt, null);
+        t.stop();
+        System.out.println("text, all words: " + t.totSec());
+        t = new Timer();
+        t.start();
+        new Embeddings(txt, corpusWords);
+        t.stop();
+        System.out.println("text, corpus words: " + t.totSec());
+        t = new Timer();
+        t.start();
+        EmbeddingsStore.convert(txt, bin);
+        t.stop();
+        System.out.println("convert text to store: " + t.totSec());
+        t = new Timer();
+        t.start();
+        new Embeddings(bin, null);
+        t.stop();
+        System.out.println("store, all words: " + t.totSec());
+        t = new Timer();
+        t.start();
+        new Embeddings(bin, corpusWords);
+        t.stop();
+        System.out.println("store, corpus words: " + t.totSec());
+
+        String[] queries = corpusWords.toArray(new String[0]);
+        try (EmbeddingsStore store = new EmbeddingsStore(bin)) {
+            int numLookups = 0;
+            long sum = 0;
+            t = new Timer();
+            t.start();
+            for (int r = 0; r < 1000; r++) {
+                for (String q : queries) {
+                    sum += store.lookup(q);
+                    numLookups++;
+                }
+            }
+            t.stop();
+            assert sum > 0;
+            System.out.println("store lookups (M / sec): " + (numLookups / t.totSec() / 1e6));
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        (new EmbeddingsStoreSpeedTest()).testLoadSpeed();
+    }
+
+}
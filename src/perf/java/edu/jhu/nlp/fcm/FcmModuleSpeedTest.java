@@ -0,0 +1,108 @@
+package edu.jhu.nlp.fcm;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.embed.Embeddings;
+import edu.jhu.pacaya.autodiff.Tensor;
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.gm.model.FgModel;
+import edu.jhu.pacaya.gm.model.FgModelIdentity;
+import edu.jhu.pacaya.gm.model.Var;
+import edu.jhu.pacaya.gm.model.Var.VarType;
+import edu.jhu.pacaya.gm.model.VarSet;
+import edu.jhu.pacaya.util.FeatureNames;
+import edu.jhu.pacaya.util.semiring.Algebra;
+import edu.jhu.pacaya.util.semiring.LogSemiring;
+import edu.jhu.pacaya.util.semiring.RealAlgebra;
+import edu.jhu.prim.bimap.IntObjectBimap;
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for the forward and backward passes of {@link FcmModule}, with and without the
+ * blocked kernel.
+ *
+ * @author mgormley
+ */
+public class FcmModuleSpeedTest {
+
+    // Sizes of a relation extraction factor: the ACE 2005 relation types with direction, 200
+    // dimensional embeddings, a feature alphabet from the word feature templates, and the tokens
+    // of a sentence with about 5 active features each.
+    private static final int numLabels = 37;
+    private static final int embedDim = 200;
+    private static final int numFeats = 60;
+    private static final int numWordTypes = 10000;
+    private static final int numTokens = 30;
+    private static final int featsPerToken = 5;
+
+    /**
+     * Speed test results (forward and backward passes / sec, with fine tuning). As in training,
+     * the gradient is accumulated in a sparse model, which dominates the blocked backward pass.
+     * sparse: 20 passes / sec
+     * blocked: 340 passes / sec
+     */
+    //@Test
+    public void testForwardBackwardSpeed() {
+        for (int trial = 0; trial < 3; trial++) {
+            for (boolean blocked : new boolean[]{ false, true }) {
+                FcmModule fcm = getFcm(LogSemiring.getInstance(), blocked);
+                int numPasses = blocked ? 2000 : 100;
+                Timer t = new Timer();
+                t.start();
+                for (int r = 0; r < numPasses; r++) {
+                    fcm.forward();
+                    fcm.getOutputAdj().fill(fcm.getAlgebra().one());
+                    fcm.backward();
+                }
+                t.stop();
+                System.out.println((blocked ? "blocked" : "sparse") + " passes / sec: " + (numPasses / t.totSec()));
+            }
+        }
+    }
+
+    private static FcmModule getFcm(Algebra s, boolean blocked) {
+        Random rand = new Random(1);
+        FgModel model = new FgModel(numWordTypes * embedDim + numLabels * embedDim * numFeats);
+        for (int i = 0; i < model.getNumParams(); i++) {
+            model.getParams().set(i, rand.nextGaussian() * 0.01);
+        }
+        FgModelIdentity id1 = new FgModelIdentity(model);
+        FeatureNames alphabet = new FeatureNames();
+        for (int k = 0; k < numFeats; k++) {
+            alphabet.lookupIndex("f-" + k);
+        }
+        List<FeatureVector> feats = new ArrayList<>();
+        List<String> words = new ArrayList<>();
+        IntArrayList embedIds = new IntArrayList();
+        for (int i = 0; i < numTokens; i++) {
+            FeatureVector f = new FeatureVector();
+            for (int j = 0; j < featsPerToken; j++) {
+                f.add(rand.nextInt(numFeats), 1.0);
+            }
+            feats.add(f);
+            words.add("w" + i);
+            embedIds.add(rand.nextInt(numWordTypes));
+        }
+        AnnoSentence sent = new AnnoSentence();
+        sent.setWords(words);
+        sent.setEmbedIds(embedIds);
+        IntObjectBimap<String> map = new IntObjectBimap<>();
+        for (int w = 0; w < numWordTypes; w++) {
+            map.lookupIndex("w" + w);
+        }
+        Embeddings embeds = new Embeddings(new Tensor(RealAlgebra.getInstance(), numWordTypes, embedDim), map);
+        VarSet vars = new VarSet(new Var(VarType.PREDICTED, numLabels, "y", null));
+        FcmModule fcm = new FcmModule(id1, s, feats, alphabet, vars, sent, embeds, 0, true, null);
+        fcm.setUseBlockedKernel(blocked);
+        return fcm;
+    }
+
+    public static void main(String[] args) {
+        (new FcmModuleSpeedTest()).testForwardBackwardSpeed();
+    }
+
+}
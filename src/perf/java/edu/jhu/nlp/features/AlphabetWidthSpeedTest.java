@@ -0,0 +1,78 @@
+package edu.jhu.nlp.features;
+
+import java.io.IOException;
+import java.util.List;
+
+import org.apache.commons.cli.ParseException;
+
+import edu.jhu.nlp.CorpusStatistics;
+import edu.jhu.nlp.CorpusStatistics.CorpusStatisticsPrm;
+import edu.jhu.nlp.data.simple.AlphabetStore;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
+import edu.jhu.nlp.data.simple.AnnoSentenceReaderSpeedTest;
+import edu.jhu.nlp.data.simple.IntAnnoSentence;
+import edu.jhu.nlp.features.TemplateLanguage.FeatTemplate;
+import edu.jhu.nlp.words.PrefixAnnotator;
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Compares the speed of integer feature extraction with the default (short) alphabets to the wide
+ * alphabets, on a corpus whose vocabulary does not fit in a short.
+ *
+ * @author mgormley
+ */
+public class AlphabetWidthSpeedTest {
+
+    private static int maxSents = 2000;
+
+    //@Test
+    public void testSpeedByWidth() throws ParseException, IOException {
+        AnnoSentenceCollection sents = AnnoSentenceReaderSpeedTest.read(AnnoSentenceReaderSpeedTest.czTrain, DatasetType.CONLL_X);
+        PrefixAnnotator.addPrefixes(sents);
+        List<FeatTemplate> tpls = TemplateSets.getFromResource(TemplateSets.mcdonaldDepFeatsResource);
+        CorpusStatistics cs = new CorpusStatistics(new CorpusStatisticsPrm());
+        
+        // The alphabet sizes for each width are logged by the AlphabetStore.
+        System.out.printf("%10s %15s\n", "Width", "Toks / sec");
+        for (boolean wide : new boolean[]{ false, true }) {
+            Timer t = new Timer();
+            t.start();
+            AlphabetStore store = new AlphabetStore(sents, wide);
+            t.stop();
+            System.out.println("Time to build store (ms): " + t.totMs());
+            double toksPerSec = run(sents, store, cs, tpls);
+            System.out.printf("%10s %15.2f\n", store.isWide() ? "int" : "short", toksPerSec);
+        }
+    }
+
+    private static double run(AnnoSentenceCollection sents, AlphabetStore store, CorpusStatistics cs, List<FeatTemplate> tpls) {
+        int numSents = Math.min(maxSents, sents.size());
+        Timer timer = new Timer();
+        int n = 0;
+        long sum = 0;
+        for (int s=0; s<numSents; s++) {
+            AnnoSentence sent = sents.get(s);
+            timer.start();
+            IntTemplateFeatureExtractor ext = new IntTemplateFeatureExtractor(new IntAnnoSentence(sent, store), cs);
+            for (int i = -1; i < sent.size(); i++) {
+                for (int j = 0; j < sent.size(); j++) {
+                    IntArrayList feats = new IntArrayList();
+                    ext.addFeatures(tpls, LocalObservations.newPidxCidx(i, j), feats);
+                    sum += feats.size();
+                }
+            }
+            timer.stop();
+            n += sent.size();
+        }
+        System.out.println("Checksum: " + sum);
+        return n / timer.totSec();
+    }
+
+    public static void main(String[] args) throws ParseException, IOException {
+        new AlphabetWidthSpeedTest().testSpeedByWidth();
+    }
+
+}
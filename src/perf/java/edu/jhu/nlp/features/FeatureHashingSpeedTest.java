@@ -0,0 +1,112 @@
+package edu.jhu.nlp.features;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import edu.jhu.nlp.data.simple.AlphabetStore;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.AnnoSentenceReaderSpeedTest;
+import edu.jhu.nlp.data.simple.IntAnnoSentence;
+import edu.jhu.nlp.words.PrefixAnnotator;
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.util.hash.MurmurHash;
+import edu.jhu.prim.list.LongArrayList;
+import edu.jhu.prim.util.Timer;
+import edu.jhu.prim.util.math.FastMath;
+
+/**
+ * Compares hashing bit-packed features one at a time (MurmurHash.hash32 and FastMath.mod per
+ * feature, growing the FeatureVector as we go) to packing all the codes for an arc first and then
+ * hashing them with {@link FeatureHashing#toFeatureVector(long[], int, int)}.
+ *
+ * The codes are a small set of word / POS tag pair features for every arc of every sentence in
+ * the PTB-YM training data used by BitshiftDepParseFeaturesSpeedTest.
+ */
+public class FeatureHashingSpeedTest {
+
+    private static final Logger log = LoggerFactory.getLogger(FeatureHashingSpeedTest.class);
+    private static final int MOD = 1000000;
+
+    //@Test
+    public void testSpeed() {
+        AnnoSentenceCollection sents = AnnoSentenceReaderSpeedTest.readPtbYmConllx();
+        PrefixAnnotator.addPrefixes(sents);
+        AlphabetStore store = new AlphabetStore(sents);
+        IntAnnoSentence[] isents = new IntAnnoSentence[sents.size()];
+        for (int s=0; s<sents.size(); s++) {
+            isents[s] = new IntAnnoSentence(sents.get(s), store);
+        }
+
+        for (int trial = 0; trial < 5; trial++) {
+            for (boolean batch : new boolean[]{ false, true }) {
+                Timer timer = new Timer();
+                timer.start();
+                long sum = run(sents, isents, batch);
+                timer.stop();
+                log.info(String.format("%-11s toks/sec=%.2f checksum=%d", batch ? "batch" : "per-feature",
+                        sents.getNumTokens() / timer.totSec(), sum));
+            }
+        }
+    }
+
+    private static long run(AnnoSentenceCollection sents, IntAnnoSentence[] isents, boolean batch) {
+        LongArrayList codes = new LongArrayList();
+        long sum = 0;
+        for (int s=0; s<sents.size(); s++) {
+            AnnoSentence sent = sents.get(s);
+            IntAnnoSentence isent = isents[s];
+            for (int h = 0; h < sent.size(); h++) {
+                for (int m = 0; m < sent.size(); m++) {
+                    if (h == m) { continue; }
+                    codes.clear();
+                    addCodes(isent, h, m, codes);
+                    FeatureVector fv;
+                    if (batch) {
+                        fv = FeatureHashing.toFeatureVector(codes.getInternalElements(), codes.size(), MOD);
+                    } else {
+                        fv = new FeatureVector();
+                        for (int k=0; k<codes.size(); k++) {
+                            int hash = MurmurHash.hash32(codes.get(k));
+                            hash = FastMath.mod(hash, MOD);
+                            fv.add(hash, 1.0);
+                        }
+                    }
+                    sum += fv.getInternalIndices()[0];
+                }
+            }
+        }
+        return sum;
+    }
+
+    private static void addCodes(IntAnnoSentence isent, int h, int m, LongArrayList codes) {
+        byte flags = 0;
+        short hW = isent.getWord(h);
+        short mW = isent.getWord(m);
+        byte hP = isent.getPosTag(h);
+        byte mP = isent.getPosTag(m);
+        short hW5 = isent.getPrefix(h, 5);
+        short mW5 = isent.getPrefix(m, 5);
+        byte t = 0;
+        codes.add(BitPacking.encodeFeatureS___(t++, flags, hW));
+        codes.add(BitPacking.encodeFeatureS___(t++, flags, mW));
+        codes.add(BitPacking.encodeFeatureB___(t++, flags, hP));
+        codes.add(BitPacking.encodeFeatureB___(t++, flags, mP));
+        codes.add(BitPacking.encodeFeatureSB__(t++, flags, hW, hP));
+        codes.add(BitPacking.encodeFeatureSB__(t++, flags, mW, mP));
+        codes.add(BitPacking.encodeFeatureSS__(t++, flags, hW, mW));
+        codes.add(BitPacking.encodeFeatureBB__(t++, flags, hP, mP));
+        codes.add(BitPacking.encodeFeatureSSB_(t++, flags, hW, mW, hP));
+        codes.add(BitPacking.encodeFeatureSSB_(t++, flags, hW, mW, mP));
+        codes.add(BitPacking.encodeFeatureSBB_(t++, flags, hW, hP, mP));
+        codes.add(BitPacking.encodeFeatureSBB_(t++, flags, mW, hP, mP));
+        codes.add(BitPacking.encodeFeatureSS__(t++, flags, hW5, mW5));
+        codes.add(BitPacking.encodeFeatureSBB_(t++, flags, hW5, hP, mP));
+        codes.add(BitPacking.encodeFeatureSBB_(t++, flags, mW5, hP, mP));
+    }
+
+    public static void main(String[] args) {
+        (new FeatureHashingSpeedTest()).testSpeed();
+    }
+
+}
@@ -0,0 +1,102 @@
+package edu.jhu.nlp.tag;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.tag.BrownClusterTagger.BrownClusterTaggerPrm;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for annotating Brown clusters with and without the compact index.
+ *
+ * @author mgormley
+ */
+public class BrownClusterTaggerSpeedTest {
+
+    private static final int numWords = 200000;
+    private static final int numClusters = 1000;
+    private static final int numSents = 10000;
+    private static final int sentLen = 25;
+
+    /**
+     * Speed test results (200,000 words in 1,000 clusters, 250,000 tokens of which 10% are
+     * compounds found by the Spanish subword fallback, after warm up). The retained heap of the
+     * two, including the words, was about the same at 13 to 16 MB.
+     * map: 22 M tokens / sec
+     * compact: 27 M tokens / sec
+     */
+    //@Test
+    public void testAnnotateSpeed() throws IOException {
+        Random rand = new Random(1);
+        String[] clusters = new String[numClusters];
+        for (int c = 0; c < numClusters; c++) {
+            StringBuilder sb = new StringBuilder();
+            for (int i = 0, n = 4 + rand.nextInt(16); i < n; i++) {
+                sb.append(rand.nextBoolean() ? '1' : '0');
+            }
+            clusters[c] = sb.toString();
+        }
+        StringBuilder paths = new StringBuilder();
+        for (int w = 0; w < numWords; w++) {
+            paths.append(clusters[rand.nextInt(numClusters)]).append("\tw").append(w).append("\t1\n");
+        }
+        byte[] pathBytes = paths.toString().getBytes("UTF-8");
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (int s = 0; s < numSents; s++) {
+            List<String> words = new ArrayList<>();
+            for (int i = 0; i < sentLen; i++) {
+                // Skewed towards frequent words, with some unknown words and compounds.
+                int r = rand.nextInt(10);
+                if (r == 0) {
+                    words.add(("x" + rand.nextInt(1000) + "_w" + rand.nextInt(100)).intern());
+                } else {
+                    words.add(("w" + (int) Math.pow(numWords, rand.nextDouble())).intern());
+                }
+            }
+            AnnoSentence sent = new AnnoSentence();
+            sent.setWords(words);
+            sents.add(sent);
+        }
+        for (int trial = 0; trial < 3; trial++) {
+            for (boolean compact : new boolean[] { false, true }) {
+                BrownClusterTaggerPrm prm = new BrownClusterTaggerPrm();
+                prm.language = "es";
+                prm.compact = compact;
+                long before = getUsedMemory();
+                BrownClusterTagger tagger = new BrownClusterTagger(prm);
+                tagger.read(new ByteArrayInputStream(pathBytes));
+                long after = getUsedMemory();
+                int numRounds = 10;
+                Timer t = new Timer();
+                t.start();
+                for (int r = 0; r < numRounds; r++) {
+                    for (AnnoSentence sent : sents) {
+                        tagger.annotate(sent);
+                    }
+                }
+                t.stop();
+                System.out.println((compact ? "compact" : "map") + " M tokens / sec: "
+                        + (numRounds * numSents * sentLen / t.totSec() / 1e6) + " hit rate: " + tagger.getHitRate()
+                        + " MB: " + ((after - before) / 1e6));
+            }
+        }
+    }
+
+    private static long getUsedMemory() {
+        Runtime rt = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++) {
+            System.gc();
+        }
+        return rt.totalMemory() - rt.freeMemory();
+    }
+
+    public static void main(String[] args) throws IOException {
+        (new BrownClusterTaggerSpeedTest()).testAnnotateSpeed();
+    }
+
+}
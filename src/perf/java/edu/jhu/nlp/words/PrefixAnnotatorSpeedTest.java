@@ -0,0 +1,66 @@
+package edu.jhu.nlp.words;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.pacaya.util.files.QFiles;
+import edu.jhu.prim.util.Timer;
+
+/**
+ * Speed test for {@link PrefixAnnotator}, with and without the table of word types.
+ *
+ * @author mgormley
+ */
+public class PrefixAnnotatorSpeedTest {
+
+    private static final String conllxExample = "/edu/jhu/nlp/data/conll/bulgarian_bultreebank_train.conll";
+
+    /**
+     * Speed test results (sentences of the Bulgarian CoNLL-X example, after warm up):
+     * intern: 16 M tokens / sec
+     * table: 140 M tokens / sec
+     */
+    //@Test
+    public void testAnnotateSpeed() throws IOException {
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        List<String> words = new ArrayList<>();
+        int numTokens = 0;
+        for (String line : QFiles.getResourceAsString(conllxExample, "UTF-8").split("\n")) {
+            String[] cols = line.split("\t");
+            if (cols.length > 1) {
+                // The reader does not intern the words.
+                words.add(new String(cols[1]));
+            } else if (words.size() > 0) {
+                AnnoSentence sent = new AnnoSentence();
+                sent.setWords(words);
+                sents.add(sent);
+                numTokens += words.size();
+                words = new ArrayList<>();
+            }
+        }
+        int numRounds = 2000;
+        for (int trial = 0; trial < 3; trial++) {
+            for (boolean useTable : new boolean[] { false, true }) {
+                PrefixAnnotator pa = new PrefixAnnotator(useTable);
+                Timer t = new Timer();
+                t.start();
+                for (int r = 0; r < numRounds; r++) {
+                    for (AnnoSentence sent : sents) {
+                        pa.annotate(sent);
+                    }
+                }
+                t.stop();
+                System.out.println((useTable ? "table" : "intern") + " M tokens / sec: "
+                        + (numRounds * numTokens / t.totSec() / 1e6));
+            }
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        (new PrefixAnnotatorSpeedTest()).testAnnotateSpeed();
+    }
+
+}
@@ -0,0 +1,201 @@
+package edu.jhu.nlp;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.AnnoPipeline.BatchSink;
+import edu.jhu.nlp.PipelinedAnnoExecutor.PipelinedAnnoExecutorPrm;
+import edu.jhu.nlp.PipelinedAnnoExecutor.StageStats;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.features.TemplateLanguage.AT;
+import edu.jhu.pacaya.util.collections.QLists;
+import edu.jhu.pacaya.util.collections.QSets;
+
+public class AnnoPipelineTest {
+
+    @Test
+    public void testStreamingAnnotate() throws Exception {
+        AnnoPipeline pipe = new AnnoPipeline();
+        pipe.add(new LowercaseLemmatizer());
+        pipe.add(new CopyLemmaTagger());
+
+        AnnoSentenceCollection sents = JackKnifeAnnotatorTest.getTaggedSents("A", "B", "C", "D", "E");
+        final List<Integer> batchSizes = new ArrayList<>();
+        final AnnoSentenceCollection out = new AnnoSentenceCollection();
+        int numSents = pipe.annotate(sents, 2, new BatchSink() {
+            @Override
+            public void accept(AnnoSentenceCollection batch) throws IOException {
+                batchSizes.add(batch.size());
+                out.addAll(batch);
+            }
+        });
+
+        assertEquals(5, numSents);
+        assertEquals("[2, 2, 1]", batchSizes.toString());
+        assertEquals(5, out.size());
+        assertEquals("a", out.get(0).getLemma(0));
+        assertEquals("a", out.get(0).getPosTag(0));
+        assertEquals("e", out.get(4).getLemma(0));
+        assertEquals("e", out.get(4).getPosTag(0));
+    }
+
+    @Test
+    public void testPipelinedAnnotate() throws Exception {
+        String[] tags = new String[100];
+        for (int i=0; i<tags.length; i++) {
+            tags[i] = "T" + i;
+        }
+        AnnoSentenceCollection sents = JackKnifeAnnotatorTest.getTaggedSents(tags);
+        final AnnoSentenceCollection out = new AnnoSentenceCollection();
+        PipelinedAnnoExecutorPrm prm = new PipelinedAnnoExecutorPrm();
+        prm.batchSize = 3;
+        prm.queueCapacity = 2;
+        prm.stageThreads = new int[]{ 3, 2 };
+        PipelinedAnnoExecutor exec = new PipelinedAnnoExecutor(
+                QLists.getList(new LowercaseLemmatizer(), new CopyLemmaTagger()), prm);
+        int numSents = exec.annotate(sents, new BatchSink() {
+            @Override
+            public void accept(AnnoSentenceCollection batch) throws IOException {
+                out.addAll(batch);
+            }
+        });
+
+        assertEquals(100, numSents);
+        assertEquals(100, out.size());
+        for (int i=0; i<tags.length; i++) {
+            // Output order must match input order.
+            assertEquals("t" + i, out.get(i).getPosTag(0));
+        }
+        List<StageStats> stats = exec.getStageStats();
+        assertEquals(2, stats.size());
+        for (StageStats st : stats) {
+            assertEquals(34, st.getNumBatches());
+            assertEquals(100, st.getNumSents());
+            assertEquals(0, st.getQueueDepth());
+        }
+    }
+
+    @Test
+    public void testOneWorkerForNonParallelAnnotator() throws Exception {
+        AnnoSentenceCollection sents = JackKnifeAnnotatorTest.getTaggedSents("A", "B", "C", "D", "E");
+        PipelinedAnnoExecutorPrm prm = new PipelinedAnnoExecutorPrm();
+        prm.batchSize = 1;
+        prm.defaultStageThreads = 3;
+        final AtomicInteger maxConcurrent = new AtomicInteger();
+        Annotator counting = new Annotator() {
+            private static final long serialVersionUID = 1L;
+            private final AtomicInteger numActive = new AtomicInteger();
+            @Override
+            public void annotate(AnnoSentenceCollection sents) {
+                int n = numActive.incrementAndGet();
+                maxConcurrent.set(Math.max(maxConcurrent.get(), n));
+                Thread.yield();
+                numActive.decrementAndGet();
+            }
+            @Override
+            public Set<AT> getAnnoTypes() {
+                return QSets.getSet();
+            }
+        };
+        PipelinedAnnoExecutor exec = new PipelinedAnnoExecutor(
+                QLists.getList(new LowercaseLemmatizer(), counting), prm);
+        int numSents = exec.annotate(sents, new BatchSink() {
+            @Override
+            public void accept(AnnoSentenceCollection batch) throws IOException { }
+        });
+        assertEquals(5, numSents);
+        assertEquals(3, exec.getStageStats().get(0).getNumThreads());
+        assertEquals(1, exec.getStageStats().get(1).getNumThreads());
+        assertEquals(1, maxConcurrent.get());
+    }
+
+    @Test
+    public void testSlowBatchBoundsBatchesInFlight() throws Exception {
+        String[] tags = new String[50];
+        for (int i=0; i<tags.length; i++) {
+            tags[i] = "T" + i;
+        }
+        AnnoSentenceCollection sents = JackKnifeAnnotatorTest.getTaggedSents(tags);
+        PipelinedAnnoExecutorPrm prm = new PipelinedAnnoExecutorPrm();
+        prm.batchSize = 1;
+        prm.queueCapacity = 1;
+        prm.defaultStageThreads = 3;
+        final AtomicInteger numDoneWhileSlow = new AtomicInteger(-1);
+        final AtomicInteger numDone = new AtomicInteger();
+        Annotator slowFirst = new AbstractParallelAnnotator() {
+            private static final long serialVersionUID = 1L;
+            @Override
+            public void annotate(AnnoSentence sent) {
+                if (sent.getWord(0).equals("T0")) {
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException e) {
+                        throw new RuntimeException(e);
+                    }
+                    numDoneWhileSlow.set(numDone.get());
+                }
+                numDone.incrementAndGet();
+            }
+            @Override
+            public Set<AT> getAnnoTypes() {
+                return QSets.getSet();
+            }
+        };
+        PipelinedAnnoExecutor exec = new PipelinedAnnoExecutor(QLists.getList(slowFirst), prm);
+        int numSents = exec.annotate(sents, new BatchSink() {
+            @Override
+            public void accept(AnnoSentenceCollection batch) throws IOException { }
+        });
+        assertEquals(50, numSents);
+        // Only the batches admitted alongside the slow one may finish before it.
+        assertEquals(5, exec.getMaxBatchesInFlight());
+        assertTrue(numDoneWhileSlow.get() <= exec.getMaxBatchesInFlight() - 1);
+    }
+
+    private static class LowercaseLemmatizer extends AbstractParallelAnnotator {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void annotate(AnnoSentence sent) {
+            List<String> lemmas = new ArrayList<>();
+            for (String w : sent.getWords()) {
+                lemmas.add(w.toLowerCase());
+            }
+            sent.setLemmas(lemmas);
+        }
+
+        @Override
+        public Set<AT> getAnnoTypes() {
+            return QSets.getSet(AT.LEMMA);
+        }
+
+    }
+
+    /** Requires the output of the previous stage. */
+    private static class CopyLemmaTagger extends AbstractParallelAnnotator {
+
+        private static final long serialVersionUID = 1L;
+
+        @Override
+        public void annotate(AnnoSentence sent) {
+            sent.setPosTags(new ArrayList<>(sent.getLemmas()));
+        }
+
+        @Override
+        public Set<AT> getAnnoTypes() {
+            return QSets.getSet(AT.POS);
+        }
+
+    }
+
+}
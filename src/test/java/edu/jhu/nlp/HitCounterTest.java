@@ -0,0 +1,35 @@
+package edu.jhu.nlp;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class HitCounterTest {
+
+    @Test
+    public void testCountsOfTerminatedThreadsAreKept() throws InterruptedException {
+        final HitCounter counter = new HitCounter();
+        counter.add(1, 1);
+        for (int round = 0; round < 3; round++) {
+            Thread[] threads = new Thread[4];
+            for (int t = 0; t < threads.length; t++) {
+                threads[t] = new Thread(new Runnable() {
+                    @Override
+                    public void run() {
+                        counter.add(10, 2);
+                    }
+                });
+                threads[t].start();
+            }
+            for (Thread t : threads) {
+                t.join();
+            }
+            assertEquals(1 + 40 * (round + 1), counter.getNumLookups());
+            assertEquals(1 + 8 * (round + 1), counter.getNumMisses());
+        }
+        counter.add(1, 0);
+        assertEquals(122, counter.getNumLookups());
+        assertEquals(25, counter.getNumMisses());
+    }
+
+}
@@ -0,0 +1,72 @@
+package edu.jhu.nlp;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.DepParseFactorGraphBuilderPrm;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.collections.QLists;
+import edu.jhu.prim.util.Lambda.FnIntToVoid;
+
+public class SentSchedulerTest {
+
+    @Test
+    public void testGetOrder() {
+        AnnoSentenceCollection sents = getSents(3, 1, 5, 3, 2);
+        // Ties are broken by index.
+        assertArrayEquals(new int[]{ 2, 0, 3, 4, 1 }, SentScheduler.getOrder(sents, SentScheduler.LINEAR));
+    }
+
+    @Test
+    public void testDepParseCost() {
+        DepParseFactorGraphBuilderPrm prm = new DepParseFactorGraphBuilderPrm();
+        AnnoSentence sent = getSents(10).get(0);
+        assertEquals(1000 + 100, DepParseFactorGraphBuilder.getCost(sent, prm), 1e-13);
+        prm.grandparentFactors = true;
+        prm.arbitrarySiblingFactors = true;
+        assertEquals(1000 + 100 + 2 * 1000, DepParseFactorGraphBuilder.getCost(sent, prm), 1e-13);
+    }
+
+    @Test
+    public void testForEachVisitsEachSentenceOnce() {
+        Threads.initDefaultPool(3);
+        try {
+            AnnoSentenceCollection sents = getSents(7, 1, 30, 2, 2, 9, 4, 11, 1, 1);
+            final AtomicIntegerArray counts = new AtomicIntegerArray(sents.size());
+            SentScheduler.forEach(sents, SentScheduler.LINEAR, new FnIntToVoid() {
+                @Override
+                public void call(int i) {
+                    counts.incrementAndGet(i);
+                }
+            });
+            for (int i=0; i<sents.size(); i++) {
+                assertEquals(1, counts.get(i));
+            }
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+    }
+
+    private static AnnoSentenceCollection getSents(int... lengths) {
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (int n : lengths) {
+            AnnoSentence sent = new AnnoSentence();
+            String[] words = new String[n];
+            for (int i=0; i<n; i++) {
+                words[i] = "w" + i;
+            }
+            sent.setWords(QLists.getList(words));
+            sents.add(sent);
+        }
+        return sents;
+    }
+
+}
@@ -1,7 +1,10 @@
 package edu.jhu.nlp.data.concrete;
 
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 import java.io.File;
@@ -34,6 +37,7 @@ import edu.jhu.nlp.data.conll.CoNLL09Sentence;
 import edu.jhu.nlp.data.conll.SrlGraphTest;
 import edu.jhu.nlp.data.simple.AnnoSentence;
 import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.CloseableIterable;
 import edu.jhu.nlp.features.TemplateLanguage.AT;
 
 public class ConcreteWriterTest {
@@ -114,6 +118,152 @@ public class ConcreteWriterTest {
         Files.delete(opath);
     }
 
+    @Test
+    public void testWriteArchives() throws Exception {
+        List<Communication> comms = new ArrayList<>();
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        ConcreteReader reader = new ConcreteReader(new ConcreteReaderPrm());
+        for (int i=0; i<3; i++) {
+            Communication comm = createSimpleCommunication();
+            comm.setId("comm" + i);
+            comms.add(comm);
+            sents.addAll(reader.sentsFromComm(comm));
+        }
+        sents.setSourceSents(comms);
+        setParents(sents);
+        List<Communication> origComms = new ArrayList<>();
+        for (Communication comm : comms) {
+            origComms.add(comm.deepCopy());
+        }
+
+        ConcreteWriterPrm cwPrm = new ConcreteWriterPrm();
+        cwPrm.addAnnoTypes(Arrays.asList(AT.DEP_TREE));
+        ConcreteWriter cw = new ConcreteWriter(cwPrm);
+        for (String name : Arrays.asList("comms.zip", "comms.tar.gz")) {
+            File out = new File(tempFolder.getRoot(), name);
+            cw.write(sents, out);
+            // The annotations are removed from the source Communications after writing.
+            assertEquals(origComms, comms);
+            assertParentsRead(out, sents);
+        }
+    }
+
+    @Test
+    public void testWriteArchiveWithDroppedSentences() throws Exception {
+        List<Communication> comms = new ArrayList<>();
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        ConcreteReader reader = new ConcreteReader(new ConcreteReaderPrm());
+        for (int i=0; i<3; i++) {
+            Communication comm = createSimpleCommunication();
+            comm.setId("comm" + i);
+            comms.add(comm);
+            sents.addAll(reader.sentsFromComm(comm));
+        }
+        setParents(sents);
+        // Drop the sentence of the middle Communication, as the reader would for a long sentence.
+        AnnoSentenceCollection kept = new AnnoSentenceCollection();
+        kept.add(sents.get(0));
+        kept.add(sents.get(2));
+        kept.setSourceSents(comms);
+
+        ConcreteWriterPrm cwPrm = new ConcreteWriterPrm();
+        cwPrm.addAnnoTypes(Arrays.asList(AT.DEP_TREE));
+        File out = new File(tempFolder.getRoot(), "comms.zip");
+        new ConcreteWriter(cwPrm).write(kept, out);
+
+        ConcreteReaderPrm crPrm = new ConcreteReaderPrm();
+        crPrm.depParseTool = ConcreteWriter.DEP_PARSE_TOOL;
+        AnnoSentenceCollection actual = new ConcreteReader(crPrm).sentsFromPath(out);
+        assertEquals(3, actual.size());
+        assertArrayEquals(sents.get(0).getParents(), actual.get(0).getParents());
+        assertNull(actual.get(1).getParents());
+        assertArrayEquals(sents.get(2).getParents(), actual.get(2).getParents());
+    }
+
+    @Test
+    public void testStreamingWrite() throws Exception {
+        File in = new File(tempFolder.getRoot(), "in.zip");
+        try (ConcreteArchiveWriter aw = new ConcreteArchiveWriter(in)) {
+            for (int i=0; i<3; i++) {
+                Communication comm = createSimpleCommunication();
+                comm.setId("comm" + i);
+                aw.write(comm);
+            }
+        }
+        AnnoSentenceCollection sents = new ConcreteReader(new ConcreteReaderPrm()).sentsFromPath(in);
+        assertEquals(3, sents.size());
+        setParents(sents);
+
+        ConcreteWriterPrm cwPrm = new ConcreteWriterPrm();
+        cwPrm.addAnnoTypes(Arrays.asList(AT.DEP_TREE));
+        File out = new File(tempFolder.getRoot(), "out.tar.gz");
+        try (StreamingConcreteWriter w = new StreamingConcreteWriter(new ConcreteWriter(cwPrm), out)) {
+            w.writeBatch(sents.subList(0, 2));
+            w.writeBatch(sents.subList(2, 3));
+        }
+        assertParentsRead(out, sents);
+    }
+
+    @Test
+    public void testStreamingWriteKeepsCommsWithNoSentences() throws Exception {
+        File in = new File(tempFolder.getRoot(), "in.zip");
+        try (ConcreteArchiveWriter aw = new ConcreteArchiveWriter(in)) {
+            for (int i=0; i<5; i++) {
+                Communication comm = createSimpleCommunication();
+                comm.setId("comm" + i);
+                aw.write(comm);
+            }
+        }
+        ConcreteReaderPrm crPrm = new ConcreteReaderPrm();
+        crPrm.trackComms = true;
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        try (CloseableIterable<AnnoSentence> reader = new ConcreteReader(crPrm).openSentsFromPath(in)) {
+            for (AnnoSentence sent : reader) {
+                sents.add(sent);
+            }
+        }
+        assertEquals(5, sents.size());
+        setParents(sents);
+
+        ConcreteWriterPrm cwPrm = new ConcreteWriterPrm();
+        cwPrm.addAnnoTypes(Arrays.asList(AT.DEP_TREE));
+        File out = new File(tempFolder.getRoot(), "out.zip");
+        try (StreamingConcreteWriter w = new StreamingConcreteWriter(new ConcreteWriter(cwPrm), out)) {
+            // Drop the sentences of the first, middle and last Communications.
+            w.write(sents.get(1));
+            w.write(sents.get(3));
+        }
+
+        AnnoSentenceCollection actual = new ConcreteReader(new ConcreteReaderPrm()).sentsFromPath(out);
+        List<Communication> comms = (List<Communication>) actual.getSourceSents();
+        assertEquals(5, comms.size());
+        for (int i=0; i<5; i++) {
+            assertEquals("comm" + i, comms.get(i).getId());
+            Tokenization tok = comms.get(i).getSectionList().get(0).getSentenceList().get(0).getTokenization();
+            boolean annotated = (i == 1 || i == 3);
+            assertEquals(annotated ? 1 : 0, tok.getDependencyParseListSize());
+        }
+    }
+
+    private static void setParents(AnnoSentenceCollection sents) {
+        for (int i=0; i<sents.size(); i++) {
+            AnnoSentence sent = sents.get(i);
+            // Vary the parse by sentence so that misordered output is detected.
+            sent.setParents(new int[]{ -1, 0, (i % 2 == 0) ? 0 : 1, 2 });
+            sent.setDeprels(Arrays.asList("root", "a", "b", "c"));
+        }
+    }
+
+    private static void assertParentsRead(File out, AnnoSentenceCollection expected) throws Exception {
+        ConcreteReaderPrm crPrm = new ConcreteReaderPrm();
+        crPrm.depParseTool = ConcreteWriter.DEP_PARSE_TOOL;
+        AnnoSentenceCollection actual = new ConcreteReader(crPrm).sentsFromPath(out);
+        assertEquals(expected.size(), actual.size());
+        for (int i=0; i<expected.size(); i++) {
+            assertArrayEquals(expected.get(i).getParents(), actual.get(i).getParents());
+        }
+    }
+
     public static Communication createSimpleCommunication() throws Exception {
         Communication comm = new Communication();
         comm.setId("Gore-y Landing");
@@ -0,0 +1,163 @@
+package edu.jhu.nlp.data.concrete;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.hlt.concrete.Communication;
+import edu.jhu.hlt.concrete.serialization.CompactCommunicationSerializer;
+import edu.jhu.nlp.data.concrete.ConcreteReader.ConcreteReaderPrm;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.data.simple.CloseableIterable;
+import edu.jhu.pacaya.util.Threads;
+
+public class ParallelConcreteReaderTest {
+
+    private static final int NUM_COMMS = 25;
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testReadZipInOrder() throws Exception {
+        File zip = writeZip(getCommBytes());
+        assertInOrder(readIds(zip));
+    }
+
+    @Test
+    public void testReadTarGzInOrder() throws Exception {
+        File tgz = writeTarGz(getCommBytes());
+        assertInOrder(readIds(tgz));
+    }
+
+    @Test
+    public void testReadDir() throws Exception {
+        File dir = writeDir(getCommBytes());
+        // The order of the files in a directory is unspecified.
+        assertEquals(new HashSet<>(getIds()), new HashSet<>(readIds(dir)));
+    }
+
+    @Test
+    public void testReadInParallelInOrder() throws Exception {
+        List<byte[]> bytez = getCommBytes();
+        File zip = writeZip(bytez);
+        File tgz = writeTarGz(bytez);
+        Threads.initDefaultPool(3);
+        try {
+            assertInOrder(readIds(zip));
+            assertInOrder(readIds(tgz));
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+    }
+
+    @Test
+    public void testOpenSentsFromPath() throws Exception {
+        File tgz = writeTarGz(getCommBytes());
+        ConcreteReader reader = new ConcreteReader(new ConcreteReaderPrm());
+        AnnoSentenceCollection expected = reader.sentsFromPath(tgz);
+        List<AnnoSentence> actual = new ArrayList<>();
+        try (CloseableIterable<AnnoSentence> sents = reader.openSentsFromPath(tgz)) {
+            for (AnnoSentence sent : sents) {
+                actual.add(sent);
+            }
+        }
+        assertEquals(NUM_COMMS, actual.size());
+        for (int i=0; i<NUM_COMMS; i++) {
+            assertEquals(expected.get(i).getWords(), actual.get(i).getWords());
+        }
+    }
+
+    private static List<String> readIds(File path) throws Exception {
+        ConcreteReader reader = new ConcreteReader(new ConcreteReaderPrm());
+        AnnoSentenceCollection sents = reader.sentsFromPath(path);
+        assertEquals(NUM_COMMS, sents.size());
+        @SuppressWarnings("unchecked")
+        List<Communication> comms = (List<Communication>) sents.getSourceSents();
+        assertEquals(NUM_COMMS, comms.size());
+        List<String> ids = new ArrayList<>();
+        for (Communication comm : comms) {
+            ids.add(comm.getId());
+        }
+        return ids;
+    }
+
+    private static void assertInOrder(List<String> ids) {
+        assertEquals(getIds(), ids);
+    }
+
+    private static List<String> getIds() {
+        List<String> ids = new ArrayList<>();
+        for (int i=0; i<NUM_COMMS; i++) {
+            ids.add(String.format("comm%03d", i));
+        }
+        return ids;
+    }
+
+    private static List<byte[]> getCommBytes() throws Exception {
+        CompactCommunicationSerializer ser = new CompactCommunicationSerializer();
+        List<byte[]> bytez = new ArrayList<>();
+        for (String id : getIds()) {
+            Communication comm = ConcreteReaderTest.createSimpleCommunication();
+            comm.setId(id);
+            bytez.add(ser.toBytes(comm));
+        }
+        return bytez;
+    }
+
+    private File writeDir(List<byte[]> bytez) throws Exception {
+        File dir = tempFolder.newFolder("comms");
+        List<String> ids = getIds();
+        for (int i=0; i<bytez.size(); i++) {
+            try (FileOutputStream os = new FileOutputStream(new File(dir, ids.get(i) + ".comm"))) {
+                os.write(bytez.get(i));
+            }
+        }
+        return dir;
+    }
+
+    private File writeZip(List<byte[]> bytez) throws Exception {
+        File zip = tempFolder.newFile("comms.zip");
+        List<String> ids = getIds();
+        try (ZipOutputStream zos = new ZipOutputStream(new FileOutputStream(zip))) {
+            for (int i=0; i<bytez.size(); i++) {
+                zos.putNextEntry(new ZipEntry(ids.get(i) + ".comm"));
+                zos.write(bytez.get(i));
+                zos.closeEntry();
+            }
+        }
+        return zip;
+    }
+
+    private File writeTarGz(List<byte[]> bytez) throws Exception {
+        File tgz = tempFolder.newFile("comms.tar.gz");
+        List<String> ids = getIds();
+        try (TarArchiveOutputStream tos = new TarArchiveOutputStream(
+                new GzipCompressorOutputStream(new FileOutputStream(tgz)))) {
+            for (int i=0; i<bytez.size(); i++) {
+                TarArchiveEntry te = new TarArchiveEntry(ids.get(i) + ".comm");
+                te.setSize(bytez.get(i).length);
+                tos.putArchiveEntry(te);
+                tos.write(bytez.get(i));
+                tos.closeArchiveEntry();
+            }
+        }
+        return tgz;
+    }
+
+}
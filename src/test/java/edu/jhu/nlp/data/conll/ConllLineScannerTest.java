@@ -0,0 +1,145 @@
+package edu.jhu.nlp.data.conll;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class ConllLineScannerTest {
+
+    @Test
+    public void testColumns() throws IOException {
+        ConllLineScanner s = new ConllLineScanner(new StringReader("1\tThe  _\ta|b||c|\t-12 _\n"));
+        assertTrue(s.nextLine());
+        assertFalse(s.isBlank());
+        assertEquals(1, s.nextInt());
+        assertEquals("The", s.nextString());
+        assertNull(s.nextOptString());
+        assertEquals(Arrays.asList("a", "b", "", "c"), s.nextFeats());
+        assertEquals(-12, s.nextOptInt(-1));
+        assertEquals(-1, s.nextOptInt(-1));
+        assertFalse(s.hasNextColumn());
+        try {
+            s.nextString();
+            fail();
+        } catch (IllegalStateException e) {
+            // expected
+        }
+        assertFalse(s.nextLine());
+        s.close();
+    }
+
+    @Test
+    public void testLines() throws IOException {
+        ConllLineScanner s = new ConllLineScanner(new StringReader("a b\r\n \t\r\n\nc d"));
+        assertTrue(s.nextLine());
+        assertEquals(Arrays.asList("a", "b"), s.nextStrings());
+        assertTrue(s.nextLine());
+        assertTrue(s.isBlank());
+        assertTrue(s.nextLine());
+        assertTrue(s.isBlank());
+        assertTrue(s.nextLine());
+        assertEquals(4, s.getLineNum());
+        assertEquals("c d", s.getLine());
+        assertEquals(Arrays.asList("c", "d"), s.nextStrings());
+        assertFalse(s.nextLine());
+        s.close();
+    }
+
+    @Test
+    public void testLinesLongerThanBuffer() throws IOException {
+        StringBuilder sb = new StringBuilder();
+        for (int i=0; i<50000; i++) {
+            sb.append("w").append(i).append(' ');
+        }
+        String line = sb.toString().trim();
+        ConllLineScanner s = new ConllLineScanner(new StringReader(line + "\n" + line + "\n"));
+        for (int l=0; l<2; l++) {
+            assertTrue(s.nextLine());
+            List<String> strs = s.nextStrings();
+            assertEquals(50000, strs.size());
+            assertEquals("w49999", strs.get(49999));
+        }
+        assertFalse(s.nextLine());
+        s.close();
+    }
+
+    @Test
+    public void testStringsAreInterned() throws IOException {
+        ConllLineScanner s = new ConllLineScanner(new StringReader("NN VB\nNN\n"));
+        s.nextLine();
+        String nn = s.nextString();
+        assertSame("VB", s.nextString());
+        s.nextLine();
+        assertSame(nn, s.nextString());
+        assertSame("NN", nn);
+        s.close();
+    }
+
+    @Test
+    public void testSameAsLineParser() throws IOException {
+        String c09 = "/edu/jhu/nlp/data/conll/CoNLL2009-ST-Catalan-trial.txt";
+        List<CoNLL09Sentence> expected = new ArrayList<>();
+        try (BufferedReader r = open(c09, "UTF-8")) {
+            CoNLL09Sentence sent;
+            while ((sent = CoNLL09Reader.readCoNLL09Sentence(r)) != null) { expected.add(sent); }
+        }
+        try (CoNLL09Reader r = new CoNLL09Reader(getClass().getResourceAsStream(c09))) {
+            assertEquals(expected, r.readAll());
+        }
+
+        String c08 = "/edu/jhu/nlp/data/conll/conll-08-example.conll";
+        List<CoNLL08Sentence> expected08 = new ArrayList<>();
+        try (BufferedReader r = open(c08, "UTF-8")) {
+            CoNLL08Sentence sent;
+            while ((sent = CoNLL08Reader.readCoNLL08Sentence(r)) != null) { expected08.add(sent); }
+        }
+        try (CoNLL08Reader r = new CoNLL08Reader(getClass().getResourceAsStream(c08))) {
+            assertEquals(expected08, r.readAll());
+        }
+
+        // CoNLL-X sentences do not implement equals(), so compare them as written.
+        String cx = "/edu/jhu/nlp/data/conll/conll-x-example.conll";
+        StringWriter expectedX = new StringWriter();
+        try (BufferedReader r = open(cx, "UTF-8"); CoNLLXWriter w = new CoNLLXWriter(expectedX)) {
+            CoNLLXSentence sent;
+            while ((sent = CoNLLXReader.readCoNLLXSentence(r)) != null) { w.write(sent); }
+        }
+        StringWriter actualX = new StringWriter();
+        try (CoNLLXReader r = new CoNLLXReader(getClass().getResourceAsStream(cx)); CoNLLXWriter w = new CoNLLXWriter(actualX)) {
+            for (CoNLLXSentence sent : r) { w.write(sent); }
+        }
+        assertTrue(expectedX.toString().length() > 0);
+        assertEquals(expectedX.toString(), actualX.toString());
+
+        String c03 = "/edu/jhu/nlp/data/conll/conll-03-example.conll";
+        List<CoNLL03Sentence> expected03 = new ArrayList<>();
+        try (BufferedReader r = open(c03, "iso-8859-1")) {
+            CoNLL03Sentence sent;
+            while ((sent = CoNLL03Reader.readCoNLL03Sentence(r)) != null) { expected03.add(sent); }
+        }
+        List<CoNLL03Sentence> actual03 = new ArrayList<>();
+        try (CoNLL03Reader r = new CoNLL03Reader(getClass().getResourceAsStream(c03))) {
+            for (CoNLL03Sentence sent : r) { actual03.add(sent); }
+        }
+        assertEquals(expected03, actual03);
+    }
+
+    private BufferedReader open(String resource, String charset) throws IOException {
+        return new BufferedReader(new InputStreamReader(getClass().getResourceAsStream(resource), charset));
+    }
+
+}
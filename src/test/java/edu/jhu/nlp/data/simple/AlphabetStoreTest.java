@@ -1,11 +1,13 @@
 package edu.jhu.nlp.data.simple;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -13,6 +15,7 @@ import edu.jhu.nlp.data.DepGraph;
 import edu.jhu.nlp.features.TemplateLanguage.AT;
 import edu.jhu.nlp.tag.StrictPosTagAnnotator.StrictPosTag;
 import edu.jhu.pacaya.util.collections.QLists;
+import edu.jhu.prim.bimap.CountingIntObjectBimap;
 
 public class AlphabetStoreTest {
 
@@ -153,6 +156,39 @@ public class AlphabetStoreTest {
         assertEquals(NUM_TOKENS, store.srlArgs.size());
     }
     
+    /**
+     * Tests that the wide mode keeps all the word, lemma and cluster types from getSents(true),
+     * instead of applying a count cutoff.
+     */
+    @Test
+    public void testAlphabetStoreWide() {
+        AnnoSentenceCollection sents = getSents(true);
+        AlphabetStore store = new AlphabetStore(sents, true);
+        assertTrue(store.isWide());
+        int numTypes = AlphabetStore.NUM_SPECIAL_TOKS + 0xffff + 10;
+        assertEquals(numTypes, store.words.size());
+        assertEquals(numTypes, store.lcWords.size());
+        assertEquals(numTypes, store.lemmas.size());
+        assertEquals(numTypes, store.clusters.size());
+        // The other alphabets still apply the count cutoff.
+        assertEquals(NUM_TOKENS, store.posTags.size());
+        assertEquals(NUM_TOKENS, store.feats.size());
+        // The most frequent types have the smallest indices.
+        assertEquals(FIRST_TOK_ID, store.words.lookupIndex("Word0"));
+
+        // The last sentence has a word beyond the short tier.
+        IntAnnoSentence isent = new IntAnnoSentence(sents.get(sents.size()-1), store);
+        int wordIdx = store.words.lookupIndex("Word65544");
+        assertTrue(wordIdx > TieredIdList.MAX_SHORT_TIER_IDX);
+        assertEquals(wordIdx, isent.getWordInt(0));
+        assertEquals(store.lemmas.lookupIndex("lemma65544"), isent.getLemmaInt(0));
+        assertEquals(AlphabetStore.TOK_UNK_INT, isent.getWord(0));
+        assertEquals(AlphabetStore.TOK_UNK_INT, store.getWordIdx("Word65544"));
+
+        // The wide mode is only used when the vocabulary doesn't fit in a short.
+        assertFalse(new AlphabetStore(getSents(false), true).isWide());
+    }
+    
     @Test
     public void testWordCounts() {
         {
@@ -292,6 +328,34 @@ public class AlphabetStoreTest {
         return s;
     }
     
+    @Test
+    public void testCountCutoffMatchesIncrementalSearch() {
+        Random rand = new Random(7);
+        for (int trial=0; trial<20; trial++) {
+            CountingIntObjectBimap<String> counter = new CountingIntObjectBimap<>();
+            int numTypes = rand.nextInt(300);
+            for (int t=0; t<numTypes; t++) {
+                counter.lookupIndex("type"+t);
+                counter.setObjectCount(t, 1 + rand.nextInt(20));
+            }
+            for (int maxIdx : new int[]{ 4, 10, 50, 255 }) {
+                // Search for the cutoff by increasing it one at a time.
+                int expected = 1;
+                while (true) {
+                    int size = AlphabetStore.NUM_SPECIAL_TOKS;
+                    for (int idx=0; idx<counter.size(); idx++) {
+                        if (counter.lookupObjectCount(idx) >= expected) { size++; }
+                    }
+                    if (size - 1 <= maxIdx) { break; }
+                    expected++;
+                }
+                assertEquals(expected, AlphabetStore.getCountCutoff(maxIdx, counter));
+                CountingIntObjectBimap<String> alphabet = AlphabetStore.applyCountCutoffToGetAlphabet("test", maxIdx, counter);
+                assertTrue(alphabet.size() - 1 <= maxIdx);
+            }
+        }
+    }
+
     @Test
     public void testStopGrowth() {
         AlphabetStore store = new AlphabetStore(new AnnoSentenceCollection());
@@ -1,6 +1,8 @@
 package edu.jhu.nlp.data.simple;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 import java.util.ArrayList;
 import java.util.List;
@@ -48,5 +50,26 @@ public class AnnoSentenceTest {
         AnnoSentence sent = new AnnoSentence();
         sent.setSrlGraph(null);
     }
+
+    @Test
+    public void testCompactAndShallowCopy() {
+        AnnoSentence sent = getDogConll09Sentence().toAnnoSentence(true);
+        List<String> words = QLists.copyOf(sent.getWords());
+        List<String> posTags = QLists.copyOf(sent.getPosTags());
+        List<List<String>> feats = QLists.copyOf(sent.getFeats());
+        sent.compact(new ColumnAlphabets());
+        assertTrue(sent.getWords() instanceof StringColumn);
+        assertTrue(sent.getFeats() instanceof StringListColumn);
+        assertEquals(1, ((StringColumn) sent.getPosTags()).getIdWidth());
+        assertEquals(words, sent.getWords());
+        assertEquals(posTags, sent.getPosTags());
+        assertEquals(feats, sent.getFeats());
+
+        // Modifying a shallow copy should not change the original.
+        AnnoSentence copy = sent.getShallowCopy();
+        copy.getPosTags().set(1, "Adj");
+        assertEquals(posTags, sent.getPosTags());
+        assertEquals("Adj", copy.getPosTags().get(1));
+    }
     
 }
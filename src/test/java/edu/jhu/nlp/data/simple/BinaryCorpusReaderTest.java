@@ -0,0 +1,206 @@
+package edu.jhu.nlp.data.simple;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.AnnoSentenceReaderPrm;
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
+import edu.jhu.nlp.data.simple.AnnoSentenceWriter.AnnoSentenceWriterPrm;
+import edu.jhu.nlp.data.simple.BinaryCorpusReader.Column;
+import edu.jhu.pacaya.util.collections.QLists;
+
+public class BinaryCorpusReaderTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        AnnoSentenceCollection sents = getSents();
+        File f = writeBinary(sents);
+
+        AnnoSentenceReader reader = new AnnoSentenceReader(new AnnoSentenceReaderPrm());
+        reader.loadSents(f, DatasetType.BINARY);
+        AnnoSentenceCollection out = reader.getData();
+        assertEquals(sents.size(), out.size());
+        for (int s = 0; s < sents.size(); s++) {
+            AnnoSentence exp = sents.get(s);
+            AnnoSentence act = out.get(s);
+            assertEquals(exp.getWords(), act.getWords());
+            assertEquals(exp.getLemmas(), act.getLemmas());
+            assertEquals(exp.getPosTags(), act.getPosTags());
+            assertEquals(exp.getCposTags(), act.getCposTags());
+            assertEquals(exp.getClusters(), act.getClusters());
+            assertEquals(exp.getFeats(), act.getFeats());
+            assertEquals(exp.getDeprels(), act.getDeprels());
+            assertArrayEquals(exp.getParents(), act.getParents());
+        }
+    }
+
+    @Test
+    public void testIdAccess() throws Exception {
+        AnnoSentenceCollection sents = getSents();
+        try (BinaryCorpusReader corpus = new BinaryCorpusReader(writeBinary(sents))) {
+            assertEquals(sents.size(), corpus.getNumSents());
+            assertEquals(sents.getNumTokens(), corpus.getNumTokens());
+            // Words need two bytes per id, POS tags need one.
+            assertTrue(corpus.getAlphabetSize(Column.WORD) > 0xff);
+            AnnoSentence last = sents.get(sents.size() - 1);
+            int s = sents.size() - 1;
+            assertEquals(last.size(), corpus.size(s));
+            assertEquals("Wörd-1", corpus.lookupString(Column.WORD, corpus.getId(Column.WORD, s, 1)));
+            assertEquals(0, corpus.getId(Column.PARENT, s, 1));
+            assertEquals(-1, corpus.getId(Column.PARENT, s, 0));
+            assertFalse(corpus.hasColumn(s, Column.LEMMA));
+            assertFalse(corpus.hasColumn(s, Column.FEAT));
+            assertTrue(corpus.hasColumn(s, Column.POS));
+            assertEquals(2, corpus.getNumFeats(0, 0));
+            assertEquals("featB0", corpus.lookupString(Column.FEAT, corpus.getFeatId(0, 0, 1)));
+        }
+    }
+
+    @Test
+    public void testIntAnnoSentence() throws Exception {
+        AnnoSentenceCollection sents = getSents();
+        // Build the store from a subset, so that some types are unknown.
+        AlphabetStore store = new AlphabetStore(sents.subList(0, 50));
+        try (BinaryCorpusReader corpus = new BinaryCorpusReader(writeBinary(sents))) {
+            for (int s = 0; s < corpus.getNumSents(); s++) {
+                AnnoSentence sent = corpus.getSentence(s);
+                IntAnnoSentence exp = new IntAnnoSentence(sent, store);
+                IntAnnoSentence act = corpus.getIntAnnoSentence(s, store);
+                assertEquals(exp.size(), act.size());
+                for (int i = 0; i < exp.size(); i++) {
+                    assertEquals(exp.getWord(i), act.getWord(i));
+                    assertEquals(exp.getLcWord(i), act.getLcWord(i));
+                    assertEquals(exp.isCapitalized(i), act.isCapitalized(i));
+                    for (int k = 1; k <= store.maxPrefixLen; k++) {
+                        assertEquals(exp.getPrefix(i, k), act.getPrefix(i, k));
+                        assertEquals(exp.getSuffix(i, k), act.getSuffix(i, k));
+                        assertEquals(exp.getClusterPrefix(i, k), act.getClusterPrefix(i, k));
+                    }
+                    if (sent.getLemmas() != null) {
+                        assertEquals(exp.getLemma(i), act.getLemma(i));
+                        assertEquals(exp.getFeats(i), act.getFeats(i));
+                    }
+                    assertEquals(exp.getPosTag(i), act.getPosTag(i));
+                    assertEquals(exp.getCposTag(i), act.getCposTag(i));
+                    assertEquals(exp.getCluster(i), act.getCluster(i));
+                    assertEquals(exp.getDeprel(i), act.getDeprel(i));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testIntAnnoSentenceFromReader() throws Exception {
+        AnnoSentenceCollection sents = getSents();
+        AlphabetStore store = new AlphabetStore(sents.subList(0, 50));
+        AnnoSentenceReader reader = new AnnoSentenceReader(new AnnoSentenceReaderPrm());
+        reader.loadSents(writeBinary(sents), DatasetType.BINARY);
+        AnnoSentence sent = reader.getData().get(3);
+        // Read through the corpus ids.
+        IntAnnoSentence act = sent.getIntAnnoSentence(store);
+        IntAnnoSentence exp = new IntAnnoSentence(sent, store);
+        for (int i = 0; i < sent.size(); i++) {
+            assertEquals(exp.getWord(i), act.getWord(i));
+            assertEquals(exp.getPosTag(i), act.getPosTag(i));
+            assertEquals(exp.getCluster(i), act.getCluster(i));
+            assertEquals(exp.getDeprel(i), act.getDeprel(i));
+        }
+        // Replacing a layer stored in the corpus means its ids no longer apply.
+        sent.setPosTags(QLists.getList("pos1", "pos1"));
+        act = sent.getIntAnnoSentence(store);
+        assertEquals(store.getPosTagIdx("pos1"), act.getPosTag(0));
+    }
+
+    @Test
+    public void testCompressedTempFileDeletedOnClose() throws Exception {
+        AnnoSentenceCollection sents = getSents();
+        File f = writeBinary(sents);
+        File gz = new File(f.getPath() + ".gz");
+        try (InputStream is = new FileInputStream(f); OutputStream os = CompressedFiles.newOutputStream(gz)) {
+            IOUtils.copy(is, os);
+        }
+        File tmpDir = new File(System.getProperty("java.io.tmpdir"));
+        int numTmp = getNumTempCopies(tmpDir, gz);
+        AnnoSentenceReader reader = new AnnoSentenceReader(new AnnoSentenceReaderPrm());
+        CloseableIterable<AnnoSentence> it = reader.openSents(gz, DatasetType.BINARY);
+        assertEquals(numTmp + 1, getNumTempCopies(tmpDir, gz));
+        int n = 0;
+        for (AnnoSentence sent : it) {
+            assertEquals(sents.get(n++).getWords(), sent.getWords());
+        }
+        it.close();
+        assertEquals(sents.size(), n);
+        assertEquals(numTmp, getNumTempCopies(tmpDir, gz));
+    }
+
+    private static int getNumTempCopies(File tmpDir, File file) {
+        String[] names = tmpDir.list();
+        int count = 0;
+        for (String name : names) {
+            if (name.startsWith(file.getName() + ".")) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    @Test
+    public void testEmptyCorpus() throws Exception {
+        try (BinaryCorpusReader corpus = new BinaryCorpusReader(writeBinary(new AnnoSentenceCollection()))) {
+            assertEquals(0, corpus.getNumSents());
+            assertFalse(corpus.iterator().hasNext());
+        }
+    }
+
+    private File writeBinary(AnnoSentenceCollection sents) throws Exception {
+        File f = tempFolder.newFile("corpus.bin");
+        f.delete();
+        AnnoSentenceWriter writer = new AnnoSentenceWriter(new AnnoSentenceWriterPrm());
+        writer.write(f, DatasetType.BINARY, sents, null);
+        return f;
+    }
+
+    private static AnnoSentenceCollection getSents() {
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (int j = 0; j < 300; j++) {
+            AnnoSentence s = new AnnoSentence();
+            s.setWords(QLists.getList("Word" + j, "word" + (j % 7)));
+            s.setLemmas(QLists.getList("lemma" + j, "lemma"));
+            s.setPosTags(QLists.getList("pos" + (j % 3), "pos"));
+            s.setCposTags(QLists.getList("cpos" + (j % 2), "cpos"));
+            s.setClusters(QLists.getList("0110" + j, "1"));
+            s.setFeats(QLists.getList(QLists.getList("featA" + j, "featB" + j), QLists.<String>getList()));
+            s.setDeprels(QLists.getList("ROOT", "dep" + (j % 5)));
+            s.setParents(new int[] { -1, 0 });
+            sents.add(s);
+        }
+        // A sentence with missing columns and non-ASCII characters.
+        AnnoSentence s = new AnnoSentence();
+        s.setWords(QLists.getList("Wörd-0", "Wörd-1", "Wörd-2"));
+        s.setPosTags(QLists.getList("pos0", "pos1", "pos2"));
+        s.setCposTags(QLists.getList("cpos0", "cpos1", "cpos0"));
+        s.setClusters(QLists.getList("0", "01", "011"));
+        s.setDeprels(QLists.getList("ROOT", "dep1", "dep2"));
+        s.setParents(new int[] { -1, 0, 1 });
+        sents.add(s);
+        assertNull(s.getLemmas());
+        return sents;
+    }
+
+}
@@ -0,0 +1,157 @@
+package edu.jhu.nlp.data.simple;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.apache.commons.compress.utils.IOUtils;
+import org.junit.Test;
+
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.AnnoSentenceReaderPrm;
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
+import edu.jhu.nlp.data.simple.AnnoSentenceWriter.AnnoSentenceWriterPrm;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.files.QFiles;
+
+public class CompressedFilesTest {
+
+    private static final String conllxExample = "/edu/jhu/nlp/data/conll/conll-x-example.conll";
+
+    @Test
+    public void testBlockGzipRoundTrip() throws IOException {
+        Random rand = new Random(7);
+        int bs = BlockGzipOutputStream.BLOCK_SIZE;
+        for (int size : new int[]{ 0, 1, bs - 1, bs, 3 * bs + 7 }) {
+            // Half random (incompressible) and half repetitive bytes.
+            byte[] data = new byte[size];
+            for (int i=0; i<size; i++) {
+                data[i] = (i < size / 2) ? (byte) rand.nextInt() : (byte) (i % 7);
+            }
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            try (OutputStream os = new BlockGzipOutputStream(baos)) {
+                os.write(data, 0, size / 3);
+                for (int i = size / 3; i < size / 2; i++) {
+                    os.write(data[i]);
+                }
+                os.write(data, size / 2, size - size / 2);
+            }
+            byte[] gz = baos.toByteArray();
+            assertTrue(BlockGzipInputStream.isBlockGzip(new ByteArrayInputStream(gz)));
+            // Readable by any gzip reader.
+            assertArrayEquals(data, readAll(new GZIPInputStream(new ByteArrayInputStream(gz))));
+            // Readable one block at a time, and in parallel.
+            assertArrayEquals(data, readAll(new BlockGzipInputStream(new ByteArrayInputStream(gz), 1)));
+            Threads.initDefaultPool(3);
+            try {
+                assertArrayEquals(data, readAll(new BlockGzipInputStream(new ByteArrayInputStream(gz))));
+            } finally {
+                Threads.shutdownDefaultPool();
+                Threads.initDefaultPool(1);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockGzipFollowedByPlainGzip() throws IOException {
+        byte[] a = "block compressed ".getBytes("UTF-8");
+        byte[] b = "then plain".getBytes("UTF-8");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new BlockGzipOutputStream(baos)) {
+            os.write(a);
+        }
+        try (OutputStream os = new GZIPOutputStream(baos)) {
+            os.write(b);
+        }
+        assertArrayEquals("block compressed then plain".getBytes("UTF-8"),
+                readAll(new BlockGzipInputStream(new ByteArrayInputStream(baos.toByteArray()), 1)));
+    }
+
+    @Test(expected = ZipException.class)
+    public void testBlockGzipRejectsCorruptSize() throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (OutputStream os = new BlockGzipOutputStream(baos)) {
+            os.write(new byte[100]);
+        }
+        byte[] gz = baos.toByteArray();
+        // Set the uncompressed size in the footer of the first block to 2 GB.
+        int bsize = ((gz[16] & 0xff) | ((gz[17] & 0xff) << 8)) + 1;
+        gz[bsize - 1] = 0x7f;
+        readAll(new BlockGzipInputStream(new ByteArrayInputStream(gz), 1));
+    }
+
+    @Test
+    public void testReadPlainGzip() throws IOException {
+        byte[] data = "a plain gzip file".getBytes("UTF-8");
+        File f = File.createTempFile("plain", ".gz");
+        f.deleteOnExit();
+        try (OutputStream os = new GZIPOutputStream(new FileOutputStream(f))) {
+            os.write(data);
+        }
+        assertFalse(BlockGzipInputStream.isBlockGzip(new BufferedInputStream(new FileInputStream(f))));
+        Threads.initDefaultPool(3);
+        try {
+            assertArrayEquals(data, readAll(CompressedFiles.newInputStream(f)));
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+    }
+
+    @Test
+    public void testReadWriteCompressedCorpora() throws IOException {
+        AnnoSentenceCollection sents = read(getResourceFile(), DatasetType.CONLL_X);
+        String expected = sents.toString();
+        for (DatasetType type : new DatasetType[]{ DatasetType.CONLL_X, DatasetType.JSON, DatasetType.BINARY }) {
+            for (String ext : new String[]{ "", ".gz", ".bz2" }) {
+                File f = File.createTempFile("sents", ext);
+                f.deleteOnExit();
+                new AnnoSentenceWriter(new AnnoSentenceWriterPrm()).write(f, type, sents, null);
+                assertEquals(type + ext, expected, read(f, type).toString());
+            }
+        }
+    }
+
+    private AnnoSentenceCollection read(File f, DatasetType type) throws IOException {
+        AnnoSentenceReader reader = new AnnoSentenceReader(new AnnoSentenceReaderPrm());
+        reader.loadSents(f, type);
+        AnnoSentenceCollection sents = reader.getData();
+        for (AnnoSentence sent : sents) {
+            // Omit the source, which is printed by identity.
+            sent.setSourceSent(null);
+        }
+        return sents;
+    }
+
+    private File getResourceFile() throws IOException {
+        File f = File.createTempFile("conllx", ".conll");
+        f.deleteOnExit();
+        try (OutputStream os = new FileOutputStream(f)) {
+            os.write(QFiles.getResourceAsString(conllxExample, "UTF-8").getBytes("UTF-8"));
+        }
+        return f;
+    }
+
+    private static byte[] readAll(InputStream is) throws IOException {
+        try {
+            return IOUtils.toByteArray(is);
+        } finally {
+            is.close();
+        }
+    }
+
+}
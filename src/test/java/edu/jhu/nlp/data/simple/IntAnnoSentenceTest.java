@@ -1,6 +1,8 @@
 package edu.jhu.nlp.data.simple;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 import org.junit.Test;
 
@@ -111,4 +113,51 @@ public class IntAnnoSentenceTest {
         assertEquals(4, isent.getNumVerbsInBetween(-1, 8));
     }
 
+    @Test
+    public void testCachedOnSentence() {
+        AnnoSentenceCollection sents = AlphabetStoreTest.getSents(false);
+        AlphabetStore store = new AlphabetStore(sents);
+        AnnoSentence s = sents.get(0);
+        IntAnnoSentence isent = s.getIntAnnoSentence(store);
+        assertSame(isent, s.getIntAnnoSentence(store));
+        assertSame(s, isent.getAnnoSentence());
+
+        // Replacing a layer invalidates the cache.
+        s.setPosTags(QLists.getList("pos1"));
+        IntAnnoSentence isent2 = s.getIntAnnoSentence(store);
+        assertNotSame(isent, isent2);
+        assertEquals((byte) store.getPosTagIdx("pos1"), isent2.getPosTag(0));
+        // So does a different store.
+        assertNotSame(isent2, s.getIntAnnoSentence(new AlphabetStore(sents)));
+    }
+
+    @Test
+    public void testReset() {
+        AnnoSentenceCollection sents = AlphabetStoreTest.getSents(false);
+        AlphabetStore store = new AlphabetStore(sents);
+        IntAnnoSentence scratch = new IntAnnoSentence(sents.get(0), store);
+        // Sentences of different lengths, with and without strict POS tags.
+        for (AnnoSentence s : QLists.getList(AlphabetStoreTest.getAnnoSentenceForRange(0, 5), sents.get(1),
+                AlphabetStoreTest.getAnnoSentenceForRange(10, 13), AlphabetStoreTest.getAnnoSentenceForRange(20, 22))) {
+            scratch.reset(s, store);
+            IntAnnoSentence isent = new IntAnnoSentence(s, store);
+            assertEquals(isent.size(), scratch.size());
+            for (int i=0; i<isent.size(); i++) {
+                assertEquals(isent.getWord(i), scratch.getWord(i));
+                assertEquals(isent.getLcWord(i), scratch.getLcWord(i));
+                assertEquals(isent.getPrefix(i, 2), scratch.getPrefix(i, 2));
+                assertEquals(isent.getSuffix(i, 3), scratch.getSuffix(i, 3));
+                assertEquals(isent.getLemma(i), scratch.getLemma(i));
+                assertEquals(isent.getPosTag(i), scratch.getPosTag(i));
+                assertEquals(isent.getCluster(i), scratch.getCluster(i));
+                assertEquals(isent.getFeats(i), scratch.getFeats(i));
+                assertEquals(isent.getDeprel(i), scratch.getDeprel(i));
+                assertEquals(isent.getSrlPredSense(i), scratch.getSrlPredSense(i));
+                if (s.getStrictPosTags() != null) {
+                    assertEquals(isent.getNumVerbsInBetween(-1, i), scratch.getNumVerbsInBetween(-1, i));
+                }
+            }
+        }
+    }
+
 }
@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.util.Arrays;
 
 import org.junit.Test;
 
@@ -37,4 +38,53 @@ public class JsonConcatReaderTest {
         assertEquals(JsonConcatWriterTest.expectedStr, str);
     }
 
+    @Test
+    public void testReadLegacyFormat() throws Exception {
+        // Entity pairs stored as JSON strings are read and written back as nested arrays.
+        AnnoSentenceCollection sents = read(JsonConcatWriterTest.legacyStr);
+        assertEquals(2, sents.size());
+        assertEquals(JsonConcatWriterTest.expectedStr, write(sents));
+    }
+
+    @Test
+    public void testReadWriteNerAndRelations() throws Exception {
+        AnnoSentence sent = JsonConcatWriterTest.get6WordAnnoSentence();
+        sent.setFeats(Arrays.asList(Arrays.asList("f1", "f2"), Arrays.asList("f3")));
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        sents.add(sent);
+        String str = write(sents);
+        AnnoSentenceCollection sents2 = read(str);
+        assertEquals(1, sents2.size());
+        AnnoSentence sent2 = sents2.get(0);
+        assertEquals(sent.getNamedEntities().toString(), sent2.getNamedEntities().toString());
+        assertEquals(sent.getRelations().toString(), sent2.getRelations().toString());
+        assertEquals(sent.getFeats(), sent2.getFeats());
+        // Writing again gives the same string.
+        assertEquals(str, write(sents2));
+    }
+
+    @Test
+    public void testEmpty() throws Exception {
+        assertEquals(0, read("").size());
+        assertEquals("", write(new AnnoSentenceCollection()));
+    }
+
+    private static AnnoSentenceCollection read(String str) throws Exception {
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        try (JsonConcatReader r = new JsonConcatReader(new ByteArrayInputStream(str.getBytes("UTF-8")))) {
+            for (AnnoSentence sent : r) {
+                sents.add(sent);
+            }
+        }
+        return sents;
+    }
+
+    private static String write(AnnoSentenceCollection sents) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        try (JsonConcatWriter w = new JsonConcatWriter(os)) {
+            w.write(sents);
+        }
+        return os.toString("UTF-8");
+    }
+
 }
@@ -0,0 +1,130 @@
+package edu.jhu.nlp.data.simple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.data.conll.CoNLLXReader;
+import edu.jhu.nlp.data.conll.CoNLLXSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.AnnoSentenceReaderPrm;
+import edu.jhu.nlp.data.simple.AnnoSentenceReader.DatasetType;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.files.QFiles;
+
+public class ParallelAnnoSentenceReaderTest {
+
+    private static final String conllxExample = "/edu/jhu/nlp/data/conll/conll-x-example.conll";
+    private static final String conll09Example = "/edu/jhu/nlp/data/conll/CoNLL2009-ST-Catalan-trial.txt";
+
+    private static final Converter<String, List<AnnoSentence>> conllxParser = new Converter<String, List<AnnoSentence>>() {
+        @Override
+        public List<AnnoSentence> convert(String chunk) {
+            List<AnnoSentence> sents = new ArrayList<>();
+            for (CoNLLXSentence sent : new CoNLLXReader(new BufferedReader(new StringReader(chunk)))) {
+                AnnoSentence aSent = sent.toAnnoSentence(false);
+                // Omit the source, which is printed by identity.
+                aSent.setSourceSent(null);
+                sents.add(aSent);
+            }
+            return sents;
+        }
+    };
+
+    private static final Converter<String, List<AnnoSentence>> jsonParser = new Converter<String, List<AnnoSentence>>() {
+        @Override
+        public List<AnnoSentence> convert(String chunk) {
+            List<AnnoSentence> sents = new ArrayList<>();
+            for (AnnoSentence sent : new JsonConcatReader(new StringReader(chunk))) {
+                sents.add(sent);
+            }
+            return sents;
+        }
+    };
+
+    @Test
+    public void testConllChunks() throws IOException {
+        // Repeated blank lines must not end the input early.
+        String conll = QFiles.getResourceAsString(conllxExample, "UTF-8").replace("\n\n", "\n\n\n");
+        List<String> expected = toStrings(conllxParser.convert(conll));
+        assertEquals(7, expected.size());
+        for (int chunkSize : new int[]{ 1, 100, 1000, 1000000 }) {
+            assertEquals(expected, readAll(new ParallelAnnoSentenceReader(new StringReader(conll), false, conllxParser, chunkSize, 3)));
+        }
+    }
+
+    @Test
+    public void testJsonChunks() throws IOException {
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (AnnoSentence sent : conllxParser.convert(QFiles.getResourceAsString(conllxExample, "UTF-8"))) {
+            sents.add(sent);
+        }
+        // Include braces and quotes inside of strings.
+        sents.get(0).getWords().set(0, "{\"}\\");
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (JsonConcatWriter w = new JsonConcatWriter(baos)) {
+            w.write(sents);
+        }
+        String json = baos.toString("UTF-8");
+        List<String> expected = toStrings(sents);
+        for (int chunkSize : new int[]{ 1, 100, 1000, 1000000 }) {
+            assertEquals(expected, readAll(new ParallelAnnoSentenceReader(new StringReader(json), true, jsonParser, chunkSize, 3)));
+        }
+    }
+
+    @Test
+    public void testAnnoSentenceReaderInParallel() throws IOException {
+        List<String> expected = toStrings(load(conll09Example, DatasetType.CONLL_2009));
+        assertTrue(expected.size() > 1);
+        Threads.initDefaultPool(3);
+        try {
+            AnnoSentenceCollection sents = load(conll09Example, DatasetType.CONLL_2009);
+            assertEquals(expected, toStrings(sents));
+            // The sentences are interned once they pass the filters.
+            for (String lemma : sents.get(0).getLemmas()) {
+                assertSame(lemma.intern(), lemma);
+            }
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+    }
+
+    private AnnoSentenceCollection load(String resource, DatasetType type) throws IOException {
+        AnnoSentenceReader reader = new AnnoSentenceReader(new AnnoSentenceReaderPrm());
+        try (InputStream is = this.getClass().getResourceAsStream(resource)) {
+            reader.loadSents(is, type);
+        }
+        return reader.getData();
+    }
+
+    private static List<String> readAll(ParallelAnnoSentenceReader reader) throws IOException {
+        List<String> strs = new ArrayList<>();
+        try {
+            for (AnnoSentence sent : reader) {
+                strs.add(sent.toString());
+            }
+        } finally {
+            reader.close();
+        }
+        return strs;
+    }
+
+    private static List<String> toStrings(List<AnnoSentence> sents) {
+        List<String> strs = new ArrayList<>();
+        for (AnnoSentence sent : sents) {
+            strs.add(sent.toString());
+        }
+        return strs;
+    }
+
+}
@@ -0,0 +1,71 @@
+package edu.jhu.nlp.data.simple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.jhu.pacaya.util.collections.QLists;
+
+public class StringColumnTest {
+
+    @Test
+    public void testGetAndSet() {
+        StringAlphabet alphabet = new StringAlphabet();
+        List<String> strs = QLists.getList("a", "b", null, "a");
+        StringColumn col = new StringColumn(strs, alphabet);
+        assertEquals(strs, col);
+        assertEquals(4, col.size());
+        assertEquals(col.getId(0), col.getId(3));
+        assertEquals(-1, col.getId(2));
+        assertEquals(2, alphabet.size());
+
+        assertEquals("b", col.set(1, "c"));
+        assertEquals("c", col.get(1));
+        assertNull(col.set(2, "d"));
+        assertEquals(QLists.getList("a", "c", "d", "a"), col);
+        assertEquals(4, alphabet.size());
+    }
+
+    @Test
+    public void testCopyOnWrite() {
+        StringColumn col = new StringColumn(QLists.getList("a", "b", "c"), new StringAlphabet());
+        StringColumn copy = col.copy();
+        StringColumn copy2 = copy.copy();
+        copy.set(0, "x");
+        col.set(2, "y");
+        assertEquals(QLists.getList("a", "b", "y"), col);
+        assertEquals(QLists.getList("x", "b", "c"), copy);
+        assertEquals(QLists.getList("a", "b", "c"), copy2);
+    }
+
+    @Test
+    public void testNarrowIdsWiden() {
+        StringAlphabet alphabet = new StringAlphabet();
+        StringColumn col = new StringColumn(QLists.getList("a", null), alphabet);
+        StringColumn copy = col.copy();
+        assertEquals(1, col.getIdWidth());
+        for (int i=0; i<300; i++) {
+            alphabet.lookupIndex("s" + i);
+        }
+        col.set(1, "s299");
+        assertEquals(2, col.getIdWidth());
+        assertEquals(QLists.getList("a", "s299"), col);
+        for (int i=300; i<70000; i++) {
+            alphabet.lookupIndex("s" + i);
+        }
+        col.set(0, "s69999");
+        assertEquals(4, col.getIdWidth());
+        assertEquals(QLists.getList("s69999", "s299"), col);
+        assertEquals(1, copy.getIdWidth());
+        assertEquals(QLists.getList("a", null), copy);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testFixedSize() {
+        new StringColumn(QLists.getList("a"), new StringAlphabet()).add("b");
+    }
+
+}
@@ -0,0 +1,32 @@
+package edu.jhu.nlp.data.simple;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+public class StringInternerTest {
+
+    @Test
+    public void testInternMatchesJvmPool() {
+        StringInterner interner = new StringInterner();
+        String s = interner.intern(new String("dog"));
+        assertSame("dog", s);
+        char[] buf = "a dog bites".toCharArray();
+        assertSame("dog", interner.intern(buf, 2, 3));
+        assertEquals(1, interner.size());
+    }
+
+    @Test
+    public void testFullTableFallsBackToJvmPool() {
+        StringInterner interner = new StringInterner(2);
+        for (int i=0; i<10; i++) {
+            String s = interner.intern(new String("w" + i));
+            assertSame(("w" + i).intern(), s);
+            char[] buf = ("w" + i).toCharArray();
+            assertSame(s, interner.intern(buf, 0, buf.length));
+        }
+        assertEquals(2, interner.size());
+    }
+
+}
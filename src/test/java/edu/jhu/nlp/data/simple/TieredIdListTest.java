@@ -0,0 +1,30 @@
+package edu.jhu.nlp.data.simple;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Test;
+
+public class TieredIdListTest {
+
+    @Test
+    public void testShortAndOverflowTiers() {
+        int max = TieredIdList.MAX_SHORT_TIER_IDX;
+        int[] ids = new int[] { 0, 7, max, max + 1, 40000, 1 << 20, 5, Integer.MAX_VALUE };
+        TieredIdList list = new TieredIdList(2);
+        for (int id : ids) {
+            list.add(id);
+        }
+        assertEquals(ids.length, list.size());
+        for (int i=0; i<ids.length; i++) {
+            assertEquals(ids[i], list.getInt(i));
+            int expected = (ids[i] <= max) ? ids[i] : AlphabetStore.TOK_UNK_INT;
+            assertEquals(expected, list.getShort(i) & 0xffff);
+        }
+
+        list.clear();
+        assertEquals(0, list.size());
+        list.add(3);
+        assertEquals(3, list.getInt(0));
+    }
+
+}
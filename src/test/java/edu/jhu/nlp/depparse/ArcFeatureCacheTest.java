@@ -0,0 +1,71 @@
+package edu.jhu.nlp.depparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.data.simple.AlphabetStore;
+import edu.jhu.nlp.data.simple.AlphabetStoreTest;
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.IntAnnoSentence;
+import edu.jhu.nlp.depparse.BitshiftDepParseFeatureExtractor.BitshiftDepParseFeatureExtractorPrm;
+import edu.jhu.nlp.depparse.BitshiftDepParseFeatures.FeatureCollection;
+import edu.jhu.pacaya.util.collections.QLists;
+import edu.jhu.prim.list.IntArrayList;
+
+public class ArcFeatureCacheTest {
+
+    @Test
+    public void testCachedFeatsMatchUncached() {
+        AnnoSentence sent = AlphabetStoreTest.getAnnoSentenceForRange(0, 5);
+        AlphabetStore store = new AlphabetStore(QLists.getList(sent));
+        IntAnnoSentence isent = new IntAnnoSentence(sent, store);
+        BitshiftDepParseFeatureExtractorPrm prm = new BitshiftDepParseFeatureExtractorPrm();
+        prm.usePairFor2ndOrder = true;
+        prm.useUpperGrandDepFeats = true;
+        prm.useNonprojGrandDepFeats = true;
+        ArcFeatureCache cache = new ArcFeatureCache(isent, prm);
+
+        int n = isent.size();
+        for (int round = 0; round < 2; round++) {
+            int numCached = cache.getNumCachedFeats();
+            for (int h = -1; h < n; h++) {
+                for (int m = 0; m < n; m++) {
+                    if (h == m) { continue; }
+                    IntArrayList exp = new IntArrayList();
+                    IntArrayList act = new IntArrayList();
+                    for (int k = 0; k < n; k++) {
+                        if (k == h || k == m) { continue; }
+                        exp.clear();
+                        act.clear();
+                        BitshiftDepParseFeatures.addGrandparentFeats(isent, k, h, m, exp, prm);
+                        BitshiftDepParseFeatures.addGrandparentFeats(isent, k, h, m, act, prm, cache);
+                        assertEquals(exp, act);
+                        exp.clear();
+                        act.clear();
+                        BitshiftDepParseFeatures.addArbitrarySiblingFeats(isent, h, m, k, exp, prm);
+                        BitshiftDepParseFeatures.addArbitrarySiblingFeats(isent, h, m, k, act, prm, cache);
+                        assertEquals(exp, act);
+                    }
+                }
+            }
+            if (round == 0) {
+                assertTrue(cache.getNumCachedFeats() > 0);
+            } else {
+                // Nothing new is computed on the second pass.
+                assertEquals(numCached, cache.getNumCachedFeats());
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testArcFeatsNotCached() {
+        AnnoSentence sent = AlphabetStoreTest.getAnnoSentenceForRange(0, 5);
+        AlphabetStore store = new AlphabetStore(QLists.getList(sent));
+        IntAnnoSentence isent = new IntAnnoSentence(sent, store);
+        ArcFeatureCache cache = new ArcFeatureCache(isent, new BitshiftDepParseFeatureExtractorPrm());
+        cache.addTurboWordPairFeats(0, 1, FeatureCollection.ARC, new IntArrayList());
+    }
+
+}
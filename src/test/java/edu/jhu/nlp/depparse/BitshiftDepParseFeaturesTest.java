@@ -11,7 +11,11 @@ import edu.jhu.nlp.data.simple.IntAnnoSentence;
 import edu.jhu.nlp.depparse.BitshiftDepParseFeatureExtractor.BitshiftDepParseFeatureExtractorPrm;
 import edu.jhu.nlp.depparse.BitshiftDepParseFeatures.ArcTs;
 import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.gm.model.Var.VarType;
+import edu.jhu.pacaya.gm.model.VarSet;
+import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
 import edu.jhu.pacaya.util.collections.QLists;
+import edu.jhu.prim.list.IntArrayList;
 import edu.jhu.prim.set.LongHashSet;
 import edu.jhu.prim.util.SafeCast;
 import edu.jhu.prim.vector.LongDoubleUnsortedVector;
@@ -167,6 +171,33 @@ public class BitshiftDepParseFeaturesTest {
         }
     }
 
+    @Test
+    public void testIntArrayListSinkMatchesFeatureVector() throws Exception {
+        IntAnnoSentence isent = getIntAnnoSentence();
+        BitshiftDepParseFeatureExtractorPrm prm = getDefaultBitshiftDepParseFeatureExtractorPrm();
+        FeatureVector feats = getFv();
+        BitshiftDepParseFeatures.addGrandparentFeats(isent, 0, 2, 3, feats, prm);
+        IntArrayList buf = new IntArrayList();
+        BitshiftDepParseFeatures.addGrandparentFeats(isent, 0, 2, 3, buf, prm);
+        FeatureVector bufFeats = BitshiftDepParseFeatures.toFeatureVector(buf);
+        assertEquals(feats.getUsed(), bufFeats.getUsed());
+        for (int i=0; i<buf.size(); i++) {
+            assertEquals(feats.get(buf.get(i)), bufFeats.get(buf.get(i)), 1e-13);
+        }
+        checkNumFeatsBeforeAndAfterCompact(bufFeats, 388, 388);
+    }
+
+    @Test
+    public void testHasFalseLink() throws Exception {
+        VarSet vars = new VarSet(new LinkVar(VarType.PREDICTED, LinkVar.getDefaultName(0, 1), 0, 1),
+                new LinkVar(VarType.PREDICTED, LinkVar.getDefaultName(1, 2), 1, 2));
+        for (int c=0; c<vars.calcNumConfigs(); c++) {
+            int[] vc = vars.getVarConfigAsArray(c);
+            boolean expected = vc[0] == LinkVar.FALSE || vc[1] == LinkVar.FALSE;
+            assertEquals(expected, BitshiftDepParseFeatureExtractor.hasFalseLink(vars, c));
+        }
+    }
+
     protected FeatureVector getFv() {
         return new FeatureVector();
     }
@@ -0,0 +1,103 @@
+package edu.jhu.nlp.depparse;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.FeTypedFactor;
+import edu.jhu.nlp.data.DepEdgeMask;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.DepParseFactorGraphBuilderPrm;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.GraFeTypedFactor;
+import edu.jhu.pacaya.gm.feat.FeatureExtractor;
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.gm.model.ClampFactor;
+import edu.jhu.pacaya.gm.model.Factor;
+import edu.jhu.pacaya.gm.model.FactorGraph;
+import edu.jhu.pacaya.gm.model.FeExpFamFactor;
+import edu.jhu.pacaya.gm.model.Var.VarType;
+import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
+import edu.jhu.pacaya.util.collections.QLists;
+
+public class O2AllGraFactorIndexTest {
+
+    @Test
+    public void testLookups() {
+        int n = 4;
+        DepEdgeMask mask = new DepEdgeMask(n, true);
+        mask.setIsPruned(-1, 3, true);
+        mask.setIsPruned(2, 0, true);
+        FactorGraph fg = getFg(n, mask);
+        O2AllGraFactorIndex idx = new O2AllGraFactorIndex(fg);
+        assertEquals(n, idx.getSentenceLength());
+
+        int numEdge = 0;
+        int numGra = 0;
+        for (Factor f : fg.getFactors()) {
+            if (f instanceof GraFeTypedFactor) {
+                GraFeTypedFactor ff = (GraFeTypedFactor) f;
+                assertEquals(f.getId(), idx.getGrandparentFactorId(ff.p+1, ff.c+1, ff.g+1));
+                numGra++;
+            } else if (f instanceof FeTypedFactor || f instanceof ClampFactor) {
+                LinkVar lv = (LinkVar) f.getVars().get(0);
+                assertEquals(f.getId(), idx.getEdgeFactorId(lv.getParent()+1, lv.getChild()+1));
+                numEdge++;
+            }
+        }
+        assertEquals(n*n, numEdge);
+        assertTrue(numGra > 0);
+        // Only the grandparent factors which exist are stored.
+        assertEquals(numGra, idx.getNumGrandparentFactors());
+
+        // Pruned arcs.
+        assertTrue(idx.isPruned(0, 4));
+        assertTrue(idx.isPruned(3, 1));
+        assertFalse(idx.isPruned(0, 1));
+        assertFalse(idx.isPruned(1, 3));
+        // Grandparent factors are not created for pruned arcs.
+        assertEquals(-1, idx.getGrandparentFactorId(4, 1, 0));
+        assertEquals(-1, idx.getGrandparentFactorId(3, 1, 2));
+        // Missing arcs.
+        assertEquals(-1, idx.getEdgeFactorId(1, 1));
+        assertEquals(-1, idx.getEdgeFactorId(1, 0));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testRequiresProjDepTreeFactor() {
+        DepParseFactorGraphBuilderPrm prm = getPrm();
+        prm.useProjDepTreeFactor = false;
+        FactorGraph fg = new FactorGraph();
+        new DepParseFactorGraphBuilder(prm).build(QLists.getList("a", "b"), null, getFe(), fg);
+        new O2AllGraFactorIndex(fg);
+    }
+
+    private static FactorGraph getFg(int n, DepEdgeMask mask) {
+        FactorGraph fg = new FactorGraph();
+        String[] words = new String[n];
+        for (int i=0; i<n; i++) {
+            words[i] = "w" + i;
+        }
+        new DepParseFactorGraphBuilder(getPrm()).build(QLists.getList(words), mask, getFe(), fg);
+        return fg;
+    }
+
+    private static DepParseFactorGraphBuilderPrm getPrm() {
+        DepParseFactorGraphBuilderPrm prm = new DepParseFactorGraphBuilderPrm();
+        prm.useProjDepTreeFactor = true;
+        prm.grandparentFactors = true;
+        prm.linkVarType = VarType.PREDICTED;
+        prm.pruneEdges = true;
+        return prm;
+    }
+
+    private static FeatureExtractor getFe() {
+        return new FeatureExtractor() {
+            @Override
+            public FeatureVector calcFeatureVector(FeExpFamFactor f, int configId) {
+                return new FeatureVector();
+            }
+        };
+    }
+
+}
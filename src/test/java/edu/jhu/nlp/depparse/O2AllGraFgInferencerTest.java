@@ -29,6 +29,7 @@ import edu.jhu.pacaya.gm.model.FactorsModule;
 import edu.jhu.pacaya.gm.model.FeExpFamFactor;
 import edu.jhu.pacaya.gm.model.FgModel;
 import edu.jhu.pacaya.gm.model.FgModelIdentity;
+import edu.jhu.pacaya.gm.model.ForwardOnlyFactorsModule;
 import edu.jhu.pacaya.gm.model.Var;
 import edu.jhu.pacaya.gm.model.Var.VarType;
 import edu.jhu.pacaya.gm.model.VarConfig;
@@ -94,17 +95,66 @@ public class O2AllGraFgInferencerTest {
         checkBruteForceEqualsDynamicProgramming(false, QLists.getList("a", "b", "c", "d"));
     }
     
+    @Test
+    public void testPrunedUnmaskedSingleRoot() {
+        InsideOutsideDepParse.singleRoot = true;
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a"), null);
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a", "b"), null);
+        checkBruteForceEqualsPrunedDynamicProgramming(true, QLists.getList("a", "b", "c", "d"), null);
+    }
+    
+    @Test
+    public void testPrunedUnmaskedMultiRoot() {
+        InsideOutsideDepParse.singleRoot = false;
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a"), null);
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a", "b"), null);
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a", "b", "c", "d"), null);
+    }
+    
+    @Test
+    public void testPrunedMaskedSingleRoot() {
+        InsideOutsideDepParse.singleRoot = true;
+        checkBruteForceEqualsPrunedDynamicProgramming(true, QLists.getList("a", "b", "c", "d"), getMask(4));
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a", "b", "c", "d"), getMask(4));
+    }
+    
+    @Test
+    public void testPrunedMaskedMultiRoot() {
+        InsideOutsideDepParse.singleRoot = false;
+        checkBruteForceEqualsPrunedDynamicProgramming(true, QLists.getList("a", "b", "c", "d"), getMask(4));
+        checkBruteForceEqualsPrunedDynamicProgramming(false, QLists.getList("a", "b", "c", "d"), getMask(4));
+    }
+    
+    /** Gets a mask which prunes a few arcs, including one from the wall, but still allows both single and multi-root trees. */
+    private static DepEdgeMask getMask(int n) {
+        DepEdgeMask mask = new DepEdgeMask(n, true);
+        mask.setIsPruned(-1, 3, true);
+        mask.setIsPruned(2, 0, true);
+        mask.setIsPruned(3, 1, true);
+        mask.setIsPruned(0, 2, true);
+        return mask;
+    }
+    
     private static void checkBruteForceEqualsDynamicProgramming(boolean zeroModel, List<String> words) {
         checkBruteForceEqualsDynamicProgramming(zeroModel, words, RealAlgebra.getInstance());
         checkBruteForceEqualsDynamicProgramming(zeroModel, words, LogSemiring.getInstance());
     }
     
     private static void checkBruteForceEqualsDynamicProgramming(boolean zeroModel, List<String> words, Algebra s) {
-        FactorGraph fg = getO2AllGraFg(zeroModel, words);
+        checkBruteForceEqualsDynamicProgramming(zeroModel, words, null, s, false);
+    }
+    
+    private static void checkBruteForceEqualsPrunedDynamicProgramming(boolean zeroModel, List<String> words, DepEdgeMask mask) {
+        checkBruteForceEqualsDynamicProgramming(zeroModel, words, mask, RealAlgebra.getInstance(), true);
+        checkBruteForceEqualsDynamicProgramming(zeroModel, words, mask, LogSemiring.getInstance(), true);
+    }
+    
+    private static void checkBruteForceEqualsDynamicProgramming(boolean zeroModel, List<String> words, DepEdgeMask mask, Algebra s, boolean pruned) {
+        FactorGraph fg = getO2AllGraFgAndModel(zeroModel, words, mask).get1();
         
         BruteForceInferencer bf = new BruteForceInferencer(fg, s);
         bf.run();
-        O2AllGraFgInferencer dp = new O2AllGraFgInferencer(fg, s);
+        O2AllGraFgInferencer dp = new O2AllGraFgInferencer(fg, ForwardOnlyFactorsModule.getFactorsModule(fg, s), pruned);
         dp.run();
         
         if (words.size() <= 3) {
@@ -118,20 +168,21 @@ public class O2AllGraFgInferencerTest {
         BeliefPropagationTest.assertEqualMarginals(fg, bf, dp, tolerance, false);
     }
 
-    private static FactorGraph getO2AllGraFg(boolean zeroModel, List<String> words) {
-        return getO2AllGraFgAndModel(zeroModel, words).get1();
+    private static Pair<FactorGraph,FgModel> getO2AllGraFgAndModel(boolean zeroModel, List<String> words) {
+        return getO2AllGraFgAndModel(zeroModel, words, null);
     }
     
-    private static Pair<FactorGraph,FgModel> getO2AllGraFgAndModel(boolean zeroModel, List<String> words) {
+    private static Pair<FactorGraph,FgModel> getO2AllGraFgAndModel(boolean zeroModel, List<String> words, DepEdgeMask mask) {
         DepParseFactorGraphBuilderPrm prm = new DepParseFactorGraphBuilderPrm();
         prm.useProjDepTreeFactor = true;
         prm.grandparentFactors = true;
         prm.arbitrarySiblingFactors = false;
         prm.linkVarType = VarType.PREDICTED;
+        prm.pruneEdges = true;
         DepParseFactorGraphBuilder builder = new DepParseFactorGraphBuilder(prm);
         FactorGraph fg = new FactorGraph();
         
-        DepEdgeMask depEdgeMask = new DepEdgeMask(words.size(), true);
+        DepEdgeMask depEdgeMask = (mask != null) ? mask : new DepEdgeMask(words.size(), true);
         AnnoSentence sent = new AnnoSentence();
         sent.setWords(words);
         sent.setDepEdgeMask(depEdgeMask);
@@ -203,15 +254,24 @@ public class O2AllGraFgInferencerTest {
         helpGradByFiniteDiffsAllSemirings(false, QLists.getList("a", "b", "c", "d"));
     }
 
+    @Test
+    public void testGradByFiniteDiffsPrunedFast() {
+        helpGradByFiniteDiffsAllSemirings(false, QLists.getList("a", "b", "c", "d"), getMask(4), true);
+    }
+
     protected void helpGradByFiniteDiffsAllSemirings(boolean zeroModel, List<String> words) {
-        Pair<FactorGraph,FgModel> pair = getO2AllGraFgAndModel(zeroModel, words);
+        helpGradByFiniteDiffsAllSemirings(zeroModel, words, null, false);
+    }
+    
+    protected void helpGradByFiniteDiffsAllSemirings(boolean zeroModel, List<String> words, DepEdgeMask mask, final boolean pruned) {
+        Pair<FactorGraph,FgModel> pair = getO2AllGraFgAndModel(zeroModel, words, mask);
         final FactorGraph fg = pair.get1();
         FgModel model = pair.get2();
         FactorsModule modIn = new FactorsModule(new FgModelIdentity(model), fg, RealAlgebra.getInstance());
         modIn.forward();
         OneToOneFactory<Factors,Beliefs> fact = new OneToOneFactory<Factors,Beliefs>() {
             public Module<Beliefs> getModule(Module<Factors> m1) {
-                return new O2AllGraFgInferencer(fg, m1);
+                return new O2AllGraFgInferencer(fg, m1, pruned);
             }
         };
         AbstractModuleTest.evalOneToOneByFiniteDiffsAbs(fact, modIn);
@@ -0,0 +1,101 @@
+package edu.jhu.nlp.embed;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.embed.EmbeddingsAnnotator.EmbeddingsAnnotatorPrm;
+import edu.jhu.pacaya.autodiff.Tensor;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.collections.QLists;
+import edu.jhu.pacaya.util.semiring.RealAlgebra;
+import edu.jhu.prim.bimap.IntObjectBimap;
+
+public class EmbeddingsIndexTest {
+
+    private static final List<String> vocab = QLists.getList("the", "Dog", "NASA", "##.#", "a#b", "école",
+            "STRASSE", "日本", "<UNK>");
+    private static final List<String> queries = QLists.getList("the", "The", "THE", "dog", "DOG", "Dog", "nasa",
+            "12.5", "A1B", "a1b", "École", "ÉCOLE", "straße", "Straße", "日本", "<UNK>", "<unk>", "missing", "",
+            "12", "1a#b");
+
+    @Test
+    public void testSameAsFindEmbedding() {
+        Embeddings embeds = getEmbeddings();
+        EmbeddingsIndex index = new EmbeddingsIndex(embeds);
+        // Look up each word twice, the second time from the cache.
+        for (int r = 0; r < 2; r++) {
+            for (String q : queries) {
+                assertEquals(q, embeds.findEmbedding(q), index.findEmbedding(q));
+                assertEquals(q, embeds.findEmbedding(q), index.findEmbedding(new String(q)));
+            }
+        }
+    }
+
+    @Test
+    public void testAnnotatorInParallel() {
+        Embeddings embeds = getEmbeddings();
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (int i = 0; i < 100; i++) {
+            AnnoSentence sent = new AnnoSentence();
+            sent.setWords(queries);
+            sents.add(sent);
+        }
+        EmbeddingsAnnotator anno = new EmbeddingsAnnotator(new EmbeddingsAnnotatorPrm(), embeds);
+        Threads.initDefaultPool(3);
+        try {
+            anno.annotate(sents);
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+        int[] expected = new int[queries.size()];
+        int numMisses = 0;
+        for (int i = 0; i < queries.size(); i++) {
+            expected[i] = embeds.findEmbedding(queries.get(i));
+            numMisses += (expected[i] == -1) ? 1 : 0;
+        }
+        for (AnnoSentence sent : sents) {
+            assertArrayEquals(expected, sent.getEmbedIds().toNativeArray());
+        }
+        assertEquals((double) (queries.size() - numMisses) / queries.size(), anno.getHitRate(), 1e-13);
+    }
+
+    @Test
+    public void testDeserializeWithoutHitCounts() throws Exception {
+        EmbeddingsAnnotator anno = new EmbeddingsAnnotator(new EmbeddingsAnnotatorPrm(), getEmbeddings());
+        // The hit counts and index are not serialized, so this stream has no fields for them (like
+        // those written before they were added).
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(anno);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            anno = (EmbeddingsAnnotator) in.readObject();
+        }
+        AnnoSentence sent = new AnnoSentence();
+        sent.setWords(QLists.getList("the", "missing"));
+        anno.annotate(sent);
+        assertEquals(-1, sent.getEmbedIds().get(1));
+        assertEquals(0.5, anno.getHitRate(), 1e-13);
+    }
+
+    private static Embeddings getEmbeddings() {
+        IntObjectBimap<String> alphabet = new IntObjectBimap<>();
+        for (String w : vocab) {
+            alphabet.lookupIndex(w);
+        }
+        alphabet.stopGrowth();
+        return new Embeddings(new Tensor(RealAlgebra.getInstance(), vocab.size(), 2), alphabet);
+    }
+
+}
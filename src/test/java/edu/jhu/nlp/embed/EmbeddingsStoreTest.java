@@ -0,0 +1,96 @@
+package edu.jhu.nlp.embed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.Set;
+
+import org.junit.Test;
+
+import edu.jhu.pacaya.util.collections.QSets;
+
+public class EmbeddingsStoreTest {
+
+    private static final String[] words = { "the", "The", "<UNK>", "naïve", "日本", "𝄞", "##", "the" };
+
+    @Test
+    public void testConvertAndLookup() throws IOException {
+        File txt = writeTxt();
+        File bin = File.createTempFile("embeds", ".bin");
+        bin.deleteOnExit();
+        EmbeddingsStore.convert(txt, bin);
+        assertTrue(EmbeddingsStore.isStore(bin));
+        assertFalse(EmbeddingsStore.isStore(txt));
+        try (EmbeddingsStore store = new EmbeddingsStore(bin)) {
+            assertEquals(words.length, store.getNumWords());
+            assertEquals(3, store.getDim());
+            for (int i = 0; i < words.length; i++) {
+                assertEquals(words[i], store.getWord(i));
+                if (i > 0 && i < words.length - 1) {
+                    assertEquals(words[i], i, store.lookup(words[i]));
+                }
+                for (int d = 0; d < 3; d++) {
+                    assertEquals(getValue(i, d), store.get(i, d), 1e-6);
+                }
+            }
+            // The last embedding of a repeated word is used.
+            assertEquals(words.length - 1, store.lookup("the"));
+            assertEquals(-1, store.lookup("THE"));
+            assertEquals(-1, store.lookup("naïv"));
+            assertEquals(-1, store.lookup("\ud834"));
+            assertEquals(-1, store.lookup(""));
+        }
+    }
+
+    @Test
+    public void testSameEmbeddingsAsText() throws IOException {
+        File txt = writeTxt();
+        File bin = File.createTempFile("embeds", ".bin");
+        bin.deleteOnExit();
+        EmbeddingsStore.convert(txt, bin);
+        Set<String> subset = QSets.getSet("The", "日本", "##", "missing");
+        for (Set<String> ws : QSets.getSet(null, subset)) {
+            Embeddings expected = new Embeddings(txt, ws);
+            Embeddings actual = new Embeddings(bin, ws);
+            assertEquals(expected.getAlphabet().size(), actual.getAlphabet().size());
+            for (int i = 0; i < expected.getAlphabet().size(); i++) {
+                String word = expected.getAlphabet().lookupObject(i);
+                assertEquals(word, actual.getAlphabet().lookupObject(i));
+                if (ws != null && !ws.contains(word)) {
+                    // The <UNK> embedding is random.
+                    continue;
+                }
+                for (int d = 0; d < 3; d++) {
+                    assertEquals(expected.getEmbeddings().get(i, d), actual.getEmbeddings().get(i, d), 1e-6);
+                }
+            }
+            assertEquals(expected.findEmbedding("THE"), actual.findEmbedding("THE"));
+        }
+    }
+
+    private static File writeTxt() throws IOException {
+        File txt = File.createTempFile("embeds", ".txt");
+        txt.deleteOnExit();
+        try (Writer w = new OutputStreamWriter(new FileOutputStream(txt), "UTF-8")) {
+            for (int i = 0; i < words.length; i++) {
+                w.write(words[i]);
+                for (int d = 0; d < 3; d++) {
+                    w.write("\t" + getValue(i, d));
+                }
+                w.write("\n");
+            }
+        }
+        return txt;
+    }
+
+    private static double getValue(int i, int d) {
+        return (i + 1) * 0.1 - d * 0.37;
+    }
+
+}
@@ -3,7 +3,9 @@ package edu.jhu.nlp.fcm;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 
 import org.junit.Test;
 
@@ -27,6 +29,7 @@ import edu.jhu.pacaya.util.semiring.Algebra;
 import edu.jhu.pacaya.util.semiring.LogSemiring;
 import edu.jhu.pacaya.util.semiring.RealAlgebra;
 import edu.jhu.prim.bimap.IntObjectBimap;
+import edu.jhu.prim.list.IntArrayList;
 import edu.jhu.prim.tuple.Pair;
 
 
@@ -153,6 +156,76 @@ public class FcmModuleTest {
         ModuleTestUtils.assertGradientCorrectByFd(fcm, 1e-5, 1e-8);
     }
 
+    @Test
+    public void testBlockedKernelMatchesSparse() {
+        for (boolean fineTuning : new boolean[]{ true, false }) {
+            Algebra s = LogSemiring.getInstance();
+            FcmModule blocked = getRandomFcm(s, fineTuning);
+            FcmModule sparse = getRandomFcm(s, fineTuning);
+            sparse.setUseBlockedKernel(false);
+            for (FcmModule fcm : QLists.getList(blocked, sparse)) {
+                fcm.forward();
+                for (int y=0; y<fcm.getOutputAdj().size(); y++) {
+                    fcm.getOutputAdj().setValue(y, s.fromReal(y + 1.5));
+                }
+                fcm.backward();
+            }
+            for (int y=0; y<blocked.getOutput().size(); y++) {
+                assertEquals(sparse.getOutput().getValue(y), blocked.getOutput().getValue(y), 1e-10);
+            }
+            FgModel expected = ((FgModelIdentity) sparse.getInputs().get(0)).getOutputAdj().getModel();
+            FgModel actual = ((FgModelIdentity) blocked.getInputs().get(0)).getOutputAdj().getModel();
+            for (int i=0; i<expected.getNumParams(); i++) {
+                assertEquals(expected.getParams().get(i), actual.getParams().get(i), 1e-10);
+            }
+        }
+    }
+
+    @Test
+    public void testBlockedKernelGradByFiniteDiffs() {
+        // The embedding dimension spans more than one block. Fine tuning is on, since otherwise
+        // the embeddings are read from the model but get no gradient.
+        FcmModule fcm = getRandomFcm(RealAlgebra.getInstance(), true);
+        ModuleTestUtils.assertGradientCorrectByFd(fcm, 1e-5, 1e-8);
+    }
+
+    /** Gets an FCM with 4 labels, 70 dimensions, 50 features and 6 tokens, one without an embedding. */
+    private static FcmModule getRandomFcm(Algebra s, boolean fineTuning) {
+        Random rand = new Random(11);
+        int numLabels = 4, embedDim = 70, numFeats = 50, numWordTypes = 5, numTokens = 6;
+        FgModel model = new FgModel(1 + numWordTypes * embedDim + numLabels * embedDim * numFeats);
+        for (int i = 0; i < model.getNumParams(); i++) {
+            model.getParams().set(i, rand.nextGaussian() * 0.1);
+        }
+        FgModelIdentity id1 = new FgModelIdentity(model);
+        FeatureNames alphabet = new FeatureNames();
+        for (int k = 0; k < numFeats; k++) {
+            alphabet.lookupIndex("f-" + k);
+        }
+        List<FeatureVector> feats = new ArrayList<>();
+        AnnoSentence sent = new AnnoSentence();
+        List<String> words = new ArrayList<>();
+        IntArrayList embedIds = new IntArrayList();
+        for (int i = 0; i < numTokens; i++) {
+            FeatureVector f = new FeatureVector();
+            for (int j = 0; j < 8; j++) {
+                f.add(rand.nextInt(numFeats), rand.nextDouble());
+            }
+            feats.add(f);
+            words.add("w" + i);
+            embedIds.add(i == 2 ? -1 : rand.nextInt(numWordTypes));
+        }
+        sent.setWords(words);
+        sent.setEmbedIds(embedIds);
+        IntObjectBimap<String> map = new IntObjectBimap<>();
+        for (int w = 0; w < numWordTypes; w++) {
+            map.lookupIndex("w" + w);
+        }
+        Embeddings embeds = new Embeddings(new Tensor(RealAlgebra.getInstance(), numWordTypes, embedDim), map);
+        VarSet vars = new VarSet(new Var(VarType.PREDICTED, numLabels, "y", null));
+        return new FcmModule(id1, s, feats, alphabet, vars, sent, embeds, 1, fineTuning, null);
+    }
+
     public static Pair<FgModelIdentity,FcmModule> getFcm2(Algebra s) {
         // Model - 1 offset, 2*2*1 tensor, 2*1 embeddings.
         int numTParams = 2*2*1;
@@ -0,0 +1,73 @@
+package edu.jhu.nlp.features;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Random;
+
+import org.junit.Test;
+
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.util.hash.MurmurHash;
+import edu.jhu.prim.list.IntArrayList;
+import edu.jhu.prim.list.LongArrayList;
+import edu.jhu.prim.util.math.FastMath;
+
+public class FeatureHashingTest {
+
+    private static final int[] MODS = new int[]{ -1, 0, 1, 7, 1000, 1 << 20, Integer.MAX_VALUE };
+
+    @Test
+    public void testHashMatchesMurmurHash() {
+        Random rand = new Random(1);
+        long[] codes = getCodes(rand, 1000);
+        for (int mod : MODS) {
+            for (long code : codes) {
+                assertEquals(getExpected(code, mod), FeatureHashing.hash(code, mod));
+            }
+        }
+    }
+
+    @Test
+    public void testHashAll() {
+        Random rand = new Random(1);
+        long[] codes = getCodes(rand, 1000);
+        for (int mod : MODS) {
+            int[] out = new int[codes.length + 3];
+            FeatureHashing.hashAll(codes, codes.length, mod, out, 3);
+            IntArrayList outList = new IntArrayList();
+            outList.add(-5);
+            FeatureHashing.hashAll(new LongArrayList(codes), mod, outList);
+            FeatureVector fv = FeatureHashing.toFeatureVector(codes, codes.length, mod);
+            assertEquals(codes.length + 1, outList.size());
+            assertEquals(codes.length, fv.getUsed());
+            for (int i=0; i<codes.length; i++) {
+                int exp = getExpected(codes[i], mod);
+                assertEquals(exp, out[3 + i]);
+                assertEquals(exp, outList.get(1 + i));
+                assertEquals(exp, fv.getInternalIndices()[i]);
+                assertEquals(1.0, fv.getInternalValues()[i], 1e-13);
+            }
+        }
+    }
+
+    private static long[] getCodes(Random rand, int n) {
+        long[] codes = new long[n];
+        for (int i=0; i<n; i++) {
+            codes[i] = rand.nextLong();
+        }
+        codes[0] = 0;
+        codes[1] = -1;
+        codes[2] = Long.MIN_VALUE;
+        codes[3] = Long.MAX_VALUE;
+        return codes;
+    }
+
+    private static int getExpected(long code, int mod) {
+        int hash = MurmurHash.hash32(code);
+        if (mod > 0) {
+            hash = FastMath.mod(hash, mod);
+        }
+        return hash;
+    }
+
+}
@@ -0,0 +1,158 @@
+package edu.jhu.nlp.joint;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.util.List;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.CorpusStatistics;
+import edu.jhu.nlp.CorpusStatistics.CorpusStatisticsPrm;
+import edu.jhu.nlp.data.conll.CoNLL09ReadWriteTest;
+import edu.jhu.nlp.data.conll.CoNLL09Reader;
+import edu.jhu.nlp.data.conll.CoNLL09Sentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.depparse.DepParseFactorGraphBuilder.GraFeTypedFactor;
+import edu.jhu.nlp.features.TemplateSets;
+import edu.jhu.nlp.joint.JointNlpFgExamplesBuilder.JointNlpFgExampleBuilderPrm;
+import edu.jhu.nlp.srl.SrlFactorGraphBuilder.RoleStructure;
+import edu.jhu.pacaya.gm.data.FgExampleList;
+import edu.jhu.pacaya.gm.data.LFgExample;
+import edu.jhu.pacaya.gm.feat.FactorTemplateList;
+import edu.jhu.pacaya.gm.feat.FeatureVector;
+import edu.jhu.pacaya.gm.feat.ObsFeatureConjoiner;
+import edu.jhu.pacaya.gm.feat.ObsFeatureConjoiner.ObsFeatureConjoinerPrm;
+import edu.jhu.pacaya.gm.model.ClampFactor;
+import edu.jhu.pacaya.gm.model.ExpFamFactor;
+import edu.jhu.pacaya.gm.model.Factor;
+import edu.jhu.pacaya.gm.model.FactorGraph;
+import edu.jhu.pacaya.gm.model.FgModel;
+import edu.jhu.pacaya.gm.model.Var;
+import edu.jhu.pacaya.gm.model.Var.VarType;
+import edu.jhu.pacaya.gm.model.globalfac.GlobalFactor;
+import edu.jhu.pacaya.gm.model.globalfac.LinkVar;
+import edu.jhu.pacaya.gm.model.globalfac.ProjDepTreeFactor;
+
+public class OffHeapFgExampleListTest {
+
+    @Test
+    public void testRebuiltExamplesMatchOriginals() throws Exception {
+        JointNlpFgExampleBuilderPrm prm = getPrm();
+        FgExampleList data = getData(prm);
+        // Use tiny chunks so that the examples are spread across several buffers.
+        OffHeapFgExampleList store = new OffHeapFgExampleList(data, 1024);
+        assertEquals(data.size(), store.size());
+        assertTrue(store.getNumBytes() > 0);
+
+        FgModel model = new FgModel(1000000);
+        for (int i=0; i<model.getNumParams(); i++) {
+            model.getParams().set(i, (i*31 % 1009) / 100.);
+        }
+        for (int i=0; i<data.size(); i++) {
+            LFgExample ex = data.get(i);
+            LFgExample ex2 = store.get(i);
+            assertEqualExamples(ex, ex2, model);
+            // Each call rebuilds a new factor graph.
+            assertTrue(store.get(i).getFactorGraph() != ex2.getFactorGraph());
+        }
+    }
+
+    @Test
+    public void testBuilderOffHeapStore() throws Exception {
+        JointNlpFgExampleBuilderPrm prm = getPrm();
+        prm.offHeapStore = true;
+        FgExampleList data = getData(prm);
+        assertTrue(data instanceof OffHeapFgExampleList);
+        assertEquals(2, data.size());
+    }
+
+    private static void assertEqualExamples(LFgExample ex, LFgExample ex2, FgModel model) {
+        FactorGraph fg = ex.getFactorGraph();
+        FactorGraph fg2 = ex2.getFactorGraph();
+        assertEquals(ex.getWeight(), ex2.getWeight(), 1e-13);
+
+        assertEquals(fg.getNumVars(), fg2.getNumVars());
+        for (int v=0; v<fg.getNumVars(); v++) {
+            Var var = fg.getVar(v);
+            Var var2 = fg2.getVar(v);
+            assertEquals(v, var2.getId());
+            assertEquals(var.getType(), var2.getType());
+            assertEquals(var.getNumStates(), var2.getNumStates());
+            assertEquals(var.getName(), var2.getName());
+            assertEquals(var.getStateNames(), var2.getStateNames());
+            assertEquals(var instanceof LinkVar, var2 instanceof LinkVar);
+            if (var instanceof LinkVar) {
+                assertEquals(((LinkVar) var).getParent(), ((LinkVar) var2).getParent());
+                assertEquals(((LinkVar) var).getChild(), ((LinkVar) var2).getChild());
+            }
+            assertEquals(ex.getGoldConfig().getState(var, -1), ex2.getGoldConfig().getState(var2, -1));
+        }
+
+        fg.updateFromModel(model);
+        fg2.updateFromModel(model);
+        assertEquals(fg.getNumFactors(), fg2.getNumFactors());
+        for (int a=0; a<fg.getNumFactors(); a++) {
+            Factor f = fg.getFactor(a);
+            Factor f2 = fg2.getFactor(a);
+            assertEquals(f.getVars().size(), f2.getVars().size());
+            for (int k=0; k<f.getVars().size(); k++) {
+                assertEquals(f.getVars().get(k).getId(), f2.getVars().get(k).getId());
+            }
+            if (f instanceof ProjDepTreeFactor || f instanceof ClampFactor || f instanceof GraFeTypedFactor) {
+                assertEquals(f.getClass(), f2.getClass());
+            }
+            if (f instanceof GlobalFactor) {
+                continue;
+            }
+            for (int c=0; c<f.getVars().calcNumConfigs(); c++) {
+                assertEquals(f.getLogUnormalizedScore(c), f2.getLogUnormalizedScore(c), 1e-13);
+                if (f instanceof ExpFamFactor) {
+                    FeatureVector fv = ((ExpFamFactor) f).getFeatures(c);
+                    FeatureVector fv2 = ((ExpFamFactor) f2).getFeatures(c);
+                    assertEquals(fv.getUsed(), fv2.getUsed());
+                    for (int k=0; k<fv.getUsed(); k++) {
+                        assertEquals(fv.getInternalIndices()[k], fv2.getInternalIndices()[k]);
+                        assertEquals(fv.getInternalValues()[k], fv2.getInternalValues()[k], 1e-13);
+                    }
+                }
+            }
+        }
+    }
+
+    private static JointNlpFgExampleBuilderPrm getPrm() {
+        JointNlpFgExampleBuilderPrm prm = new JointNlpFgExampleBuilderPrm();
+        prm.fgPrm.dpPrm.useProjDepTreeFactor = true;
+        prm.fgPrm.dpPrm.grandparentFactors = true;
+        prm.fgPrm.dpPrm.linkVarType = VarType.PREDICTED;
+        prm.fgPrm.dpPrm.dpFePrm.secondOrderTpls = prm.fgPrm.dpPrm.dpFePrm.firstOrderTpls;
+        prm.fgPrm.srlPrm.srlFePrm.useTemplates = true;
+        prm.fgPrm.srlPrm.srlFePrm.senseTemplates = TemplateSets.getBjorkelundSenseUnigramFeatureTemplates();
+        prm.fgPrm.srlPrm.srlFePrm.argTemplates = TemplateSets.getBjorkelundArgUnigramFeatureTemplates();
+        prm.fgPrm.srlPrm.roleStructure = RoleStructure.PREDS_GIVEN;
+        prm.fgPrm.srlPrm.predictSense = true;
+        prm.fgPrm.srlPrm.predictPredPos = false;
+        return prm;
+    }
+
+    private FgExampleList getData(JointNlpFgExampleBuilderPrm prm) throws Exception {
+        InputStream inputStream = this.getClass().getResourceAsStream(CoNLL09ReadWriteTest.conll2009Example);
+        CoNLL09Reader cr = new CoNLL09Reader(inputStream);
+        List<CoNLL09Sentence> sents = cr.readSents(2);
+        CorpusStatisticsPrm csPrm = new CorpusStatisticsPrm();
+        csPrm.useGoldSyntax = true;
+        AnnoSentenceCollection simpleSents = new AnnoSentenceCollection();
+        for (CoNLL09Sentence s : sents) {
+            s.normalizeRoleNames();
+            simpleSents.add(s.toAnnoSentence(csPrm.useGoldSyntax));
+        }
+        CorpusStatistics cs = new CorpusStatistics(csPrm);
+        cs.init(simpleSents);
+
+        ObsFeatureConjoiner ofc = new ObsFeatureConjoiner(new ObsFeatureConjoinerPrm(), new FactorTemplateList());
+        JointNlpFgExamplesBuilder builder = new JointNlpFgExamplesBuilder(prm, ofc, cs);
+        return builder.getData(simpleSents, simpleSents);
+    }
+
+}
@@ -0,0 +1,132 @@
+package edu.jhu.nlp.tag;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.nlp.tag.BrownClusterTagger.BrownClusterTaggerPrm;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.collections.QLists;
+
+public class BrownClusterTaggerTest {
+
+    private static final String paths = "0\tthe\t10\n" + "0110\tdog\t5\n" + "01101\tcat\t4\n" + "0111\tru\t3\n"
+            + "1\t日\t2\n" + "10\tfoo_bar\t1\n" + "110\tbar\t1\n" + "1110011\t\t1\n";
+    private static final String[] words = { "the", "dog", "cat", "ru", "日", "日本", "本日", "foo_bar", "foo_bar_",
+            "_bar", "x_y", "baz", "_", "__", "日本語", "the_dog", "", "bar__" };
+
+    @Test
+    public void testCompactSameAsMap() throws IOException {
+        for (String language : new String[] { null, "es", "zh" }) {
+            for (int maxTagLength : new int[] { Integer.MAX_VALUE, 3 }) {
+                BrownClusterTagger map = getTagger(language, maxTagLength, false);
+                BrownClusterTagger compact = getTagger(language, maxTagLength, true);
+                assertNull(map.getIndex());
+                assertNotNull(compact.getIndex());
+                for (String word : words) {
+                    assertEquals(language + " " + word, map.getCluster(word), compact.getCluster(word));
+                }
+                assertEquals(map.getHitRate(), compact.getHitRate(), 1e-13);
+            }
+        }
+    }
+
+    @Test
+    public void testNotBitStrings() throws IOException {
+        BrownClusterTaggerPrm prm = new BrownClusterTaggerPrm();
+        BrownClusterTagger tagger = new BrownClusterTagger(prm);
+        tagger.read(new ByteArrayInputStream("A1\tthe\t1\n".getBytes("UTF-8")));
+        assertNull(tagger.getIndex());
+        assertEquals("A1", tagger.getCluster("the"));
+    }
+
+    @Test
+    public void testReadTwice() throws IOException {
+        BrownClusterTagger tagger = getTagger(null, Integer.MAX_VALUE, true);
+        tagger.read(new ByteArrayInputStream("0111\tdog\t5\n00\tfish\t1\n".getBytes("UTF-8")));
+        assertEquals(9, tagger.getIndex().getNumWords());
+        assertEquals("0111", tagger.getCluster("dog"));
+        assertEquals("00", tagger.getCluster("fish"));
+        assertEquals("01101", tagger.getCluster("cat"));
+    }
+
+    @Test
+    public void testClusterIds() throws IOException {
+        BrownClusterIndex index = getTagger(null, Integer.MAX_VALUE, true).getIndex();
+        assertEquals(8, index.getNumClusters());
+        int dog = index.getClusterId("dog");
+        int cat = index.getClusterId("cat");
+        assertEquals("0110", index.getCluster(dog));
+        assertEquals("01101", index.getCluster(cat));
+        assertEquals(index.getClusterId("dog"), index.getClusterId("hotdog", 3, 3));
+        assertEquals(-1, index.getClusterId("dogs"));
+    }
+
+    @Test
+    public void testAnnotateInParallel() throws IOException {
+        BrownClusterTagger tagger = getTagger(null, Integer.MAX_VALUE, true);
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (int i = 0; i < 100; i++) {
+            AnnoSentence sent = new AnnoSentence();
+            sent.setWords(QLists.getList("the", "dog", "baz", "cat"));
+            sents.add(sent);
+        }
+        Threads.initDefaultPool(3);
+        try {
+            tagger.annotate(sents);
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+        for (AnnoSentence sent : sents) {
+            assertEquals(QLists.getList("0", "0110", "UNK", "01101"), sent.getClusters());
+        }
+        assertEquals(0.75, tagger.getHitRate(), 1e-13);
+    }
+
+    @Test
+    public void testDeserializeWithoutHitCounts() throws Exception {
+        for (boolean compact : new boolean[] { false, true }) {
+            // The hit counts are not serialized, so this stream has no field for them (like those
+            // written before they were added).
+            BrownClusterTagger tagger = roundTrip(getTagger(null, Integer.MAX_VALUE, compact));
+            assertEquals("0110", tagger.getCluster("dog"));
+            AnnoSentence sent = new AnnoSentence();
+            sent.setWords(QLists.getList("dog", "missing"));
+            tagger.annotate(sent);
+            assertEquals(QLists.getList("0110", "UNK"), sent.getClusters());
+            assertEquals(2.0 / 3.0, tagger.getHitRate(), 1e-13);
+        }
+    }
+
+    private static BrownClusterTagger roundTrip(BrownClusterTagger tagger) throws Exception {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(baos)) {
+            out.writeObject(tagger);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(baos.toByteArray()))) {
+            return (BrownClusterTagger) in.readObject();
+        }
+    }
+
+    private static BrownClusterTagger getTagger(String language, int maxTagLength, boolean compact) throws IOException {
+        BrownClusterTaggerPrm prm = new BrownClusterTaggerPrm();
+        prm.language = language;
+        prm.maxTagLength = maxTagLength;
+        prm.compact = compact;
+        BrownClusterTagger tagger = new BrownClusterTagger(prm);
+        tagger.read(new ByteArrayInputStream(paths.getBytes("UTF-8")));
+        return tagger;
+    }
+
+}
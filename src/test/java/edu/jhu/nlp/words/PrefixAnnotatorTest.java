@@ -0,0 +1,67 @@
+package edu.jhu.nlp.words;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import org.junit.Test;
+
+import edu.jhu.nlp.data.simple.AnnoSentence;
+import edu.jhu.nlp.data.simple.AnnoSentenceCollection;
+import edu.jhu.pacaya.util.Threads;
+import edu.jhu.pacaya.util.collections.QLists;
+
+public class PrefixAnnotatorTest {
+
+    @Test
+    public void testSameAsInterned() {
+        AnnoSentence sent = getSentence("the", "walked", "walker", "walke", "", "über-cool");
+        PrefixAnnotator.addPrefixes(sent);
+        AnnoSentence sent2 = getSentence("the", "walked", "walker", "walke", "", "über-cool");
+        PrefixAnnotator pa = new PrefixAnnotator();
+        pa.annotate(sent2);
+        assertEquals(QLists.getList("the", "walke", "walke", "walke", "", "über-"), sent2.getPrefixes());
+        assertEquals(sent.getPrefixes(), sent2.getPrefixes());
+        // the, walked, walker, walke, "", über-cool, über-
+        assertEquals(7, pa.getNumTypes());
+    }
+
+    @Test
+    public void testCanonicalPrefixes() {
+        PrefixAnnotator pa = new PrefixAnnotator();
+        AnnoSentence sent1 = getSentence(new String("walked"), new String("walks"));
+        AnnoSentence sent2 = getSentence(new String("walker"), new String("walks"), new String("walked"));
+        pa.annotate(sent1);
+        pa.annotate(sent2);
+        assertSame(sent1.getPrefix(0), sent2.getPrefix(0));
+        assertSame(sent1.getPrefix(0), sent2.getPrefix(2));
+        assertSame(sent1.getPrefix(1), sent2.getPrefix(1));
+    }
+
+    @Test
+    public void testAnnotateInParallel() {
+        AnnoSentenceCollection sents = new AnnoSentenceCollection();
+        for (int i = 0; i < 100; i++) {
+            sents.add(getSentence("word" + (i % 10), "prefix" + (i % 7), "a"));
+        }
+        PrefixAnnotator pa = new PrefixAnnotator();
+        Threads.initDefaultPool(3);
+        try {
+            pa.annotate(sents);
+        } finally {
+            Threads.shutdownDefaultPool();
+            Threads.initDefaultPool(1);
+        }
+        for (int i = 0; i < sents.size(); i++) {
+            assertEquals(QLists.getList("word" + (i % 10), "prefi", "a"), sents.get(i).getPrefixes());
+        }
+        // 10 words, 7 longer words and their prefix, and "a".
+        assertEquals(19, pa.getNumTypes());
+    }
+
+    private static AnnoSentence getSentence(String... words) {
+        AnnoSentence sent = new AnnoSentence();
+        sent.setWords(QLists.getList(words));
+        return sent;
+    }
+
+}